@@ -10,4 +10,24 @@ public final class SymbolTable {
     public static final String ENTRY_POINT_METHOD_NAME = "main";
     public static final String ENTRY_POINT_METHOD_DESC = "([Ljava/lang/String;)V";
     public static final String CLINIT_METH_FULL_NAME = "<clinit>()V";
+    public static final String INIT_METH_FULL_NAME = "<init>()V";
+    public static final String STRING_INIT_METH_FULL_NAME = "<init>(Ljava/lang/String;)V";
+    public static final String THROWABLE_INIT_METH_FULL_NAME = "<init>(Ljava/lang/Throwable;)V";
+    public static final String OBJECT_CLASS_NAME = "java/lang/Object";
+    public static final String CLONEABLE_CLASS_NAME = "java/lang/Cloneable";
+    public static final String STRING_CLASS_NAME = "java/lang/String";
+    public static final String CLASS_CLASS_NAME = "java/lang/Class";
+    public static final String THREAD_CLASS_NAME = "java/lang/Thread";
+    public static final String ERROR_CLASS_NAME = "java/lang/Error";
+    public static final String EXCEPTION_IN_INITIALIZER_ERROR_CLASS_NAME = "java/lang/ExceptionInInitializerError";
+    public static final String NO_CLASS_DEF_FOUND_ERROR_CLASS_NAME = "java/lang/NoClassDefFoundError";
+    public static final String THREAD_GROUP_CLASS_NAME = "java/lang/ThreadGroup";
+    public static final String MAIN_THREAD_NAME = "main";
+    public static final String THREAD_RUN_METH_FULL_NAME = "run()V";
+    public static final String THREAD_EXIT_METH_FULL_NAME = "exit()V";
+    public static final String STRING_VALUE_FIELD_NAME = "value";
+    public static final String STRING_CODER_FIELD_NAME = "coder";
+    public static final String FIELD_CLASS_NAME = "java/lang/reflect/Field";
+    public static final String FIELD_CLAZZ_FIELD_NAME = "clazz";
+    public static final String FIELD_NAME_FIELD_NAME = "name";
 }
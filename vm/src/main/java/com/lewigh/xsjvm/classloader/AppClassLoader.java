@@ -3,6 +3,7 @@ package com.lewigh.xsjvm.classloader;
 import com.lewigh.xsjvm.classloader.reader.info.attribute.*;
 import com.lewigh.xsjvm.engine.runtime.*;
 import com.lewigh.xsjvm.classloader.reader.ClassReader;
+import com.lewigh.xsjvm.classloader.reader.flag.ClassAccessFlag;
 import com.lewigh.xsjvm.classloader.reader.info.ClassFile;
 import com.lewigh.xsjvm.classloader.reader.info.FieldInfo;
 import com.lewigh.xsjvm.classloader.reader.info.MethodInfo;
@@ -10,6 +11,7 @@ import com.lewigh.xsjvm.classloader.reader.info.MethodInfo;
 import java.nio.file.Path;
 import java.util.*;
 
+import static com.lewigh.xsjvm.SymbolTable.OBJECT_CLASS_NAME;
 import static com.lewigh.xsjvm.classloader.reader.resolvers.DescriptorResolver.resolveMethodDescriptor;
 import static com.lewigh.xsjvm.classloader.reader.resolvers.DescriptorResolver.resolveType;
 import static com.lewigh.xsjvm.engine.runtime.Access.*;
@@ -28,19 +30,34 @@ public class AppClassLoader {
         this.classStorage = classStorage;
     }
 
+    /**
+     * Arrays have no classes of their own yet: their negative class ids, see
+     * {@link com.lewigh.xsjvm.mem.VmMemoryManager#getClassId(long)}, load {@code java/lang/Object}.
+     */
     public KlassDesc load(int classId) {
+        if (classId < 0) {
+            return load(OBJECT_CLASS_NAME);
+        }
         return ofNullable(classStorage.getById(classId))
                 .orElseThrow(() -> new IllegalArgumentException("class not found"));
     }
 
 
+    /**
+     * Loads the class unless it is stored already. Classes are loaded by one thread at a time, a thread which
+     * finds the class missing checks again once it holds the loader.
+     */
     public KlassDesc load(String className) {
         return requireNonNullElseGet(
                 classStorage.getByName(className),
                 () -> executeLoading(className));
     }
 
-    private KlassDesc executeLoading(String className) {
+    private synchronized KlassDesc executeLoading(String className) {
+        KlassDesc loaded = classStorage.getByName(className);
+        if (loaded != null) {
+            return loaded;
+        }
 
         System.out.printf("  Loading %s%n", className);
 
@@ -54,35 +71,65 @@ public class AppClassLoader {
                 .orElseThrow(() -> new IllegalStateException("Failed to load the class %s".formatted(className)));
 
 
-        var classFile = reader.read(classFullPath.toString());
+        return link(reader.read(classFullPath.toString()));
+    }
+
+    /**
+     * Defines a class which has no class file on the class path but is spun by the VM, e.g. the class of a lambda.
+     * It is linked like any loaded class and can be found by its name afterwards.
+     */
+    public synchronized KlassDesc define(ClassFile classFile) {
+        if (classStorage.getByName(classFile.thisName()) != null) {
+            throw new IllegalStateException("Class %s is already defined".formatted(classFile.thisName()));
+        }
+        return link(classFile);
+    }
 
+    private KlassDesc link(ClassFile classFile) {
         KlassDesc superClass = resolveSuper(classFile);
         KlassDesc[] interfaces = resolveInterfaces(classFile);
         HashMap<String, MethodDesc> methods = new HashMap<>();
-        HashMap<String, MethodDesc> vtable = new HashMap<>();
 
         FieldDescGroup fields = resolveFields(classFile, superClass);
 
-        resolveMethods(classFile, superClass, methods, vtable);
+        boolean isInterface = Arrays.asList(classFile.accessFlags()).contains(ClassAccessFlag.ACC_INTERFACE);
+
+        resolveMethods(classFile, superClass, isInterface, methods);
+
+        int id = classStorage.nextId();
 
         KlassDesc newklass = new KlassDesc(
-                classStorage.nextId(),
+                id,
                 classFile.thisName(),
                 superClass,
                 classFile.accessFlags(),
                 interfaces,
                 fields,
                 methods,
-                vtable,
                 classFile.constantPool(),
+                resolveBootstrapMethods(classFile),
+                Supertypes.of(id, superClass, interfaces, isInterface),
                 new KlassDesc.State()
         );
 
+        if (!isInterface) {
+            newklass.setVtable(buildVtable(newklass));
+        }
+        newklass.setItable(Itable.of(newklass, classStorage::getById));
+
         classStorage.store(newklass);
 
         return newklass;
     }
 
+    private static BootstrapMethodsAttribute.BootstrapMethod[] resolveBootstrapMethods(ClassFile classFile) {
+        return Arrays.stream(classFile.attributes())
+                .filter(BootstrapMethodsAttribute.class::isInstance)
+                .map(attribute -> ((BootstrapMethodsAttribute) attribute).bootstrapMethods())
+                .findFirst()
+                .orElse(new BootstrapMethodsAttribute.BootstrapMethod[0]);
+    }
+
     private KlassDesc resolveSuper(ClassFile classFile) {
         return classFile.superName() != null ? load(classFile.superName()) : null;
     }
@@ -175,39 +222,57 @@ public class AppClassLoader {
     }
 
 
-    private void resolveMethods(ClassFile classFile, KlassDesc superClass, Map<String, MethodDesc> methods, Map<String, MethodDesc> virtuals) {
+    private void resolveMethods(ClassFile classFile, KlassDesc superClass, boolean isInterface, Map<String, MethodDesc> methods) {
+
+        // methods of an interface are numbered in declaration order and found by the number in itables, virtual
+        // methods of a class take the vtable slot of the method they override or get a new one after the inherited
+        int interfaceSlots = 0;
+        int vtableSize = superClass != null ? superClass.vtable().length : 0;
 
         for (var methodInfo : classFile.methods()) {
             var mName = methodInfo.name();
+            var signature = mName + methodInfo.descriptor();
+
+            int slot = MethodDesc.NO_SLOT;
+            if (isInterface && !methodInfo.isStatic() && !methodInfo.isPrivate()) {
+                slot = interfaceSlots++;
+            } else if (!isInterface && !methodInfo.isStatic() && !methodInfo.isPrivate() && !mName.startsWith("<")) {
+                slot = inheritedSlot(superClass, packageName(classFile.thisName()), signature);
+                if (slot == MethodDesc.NO_SLOT) {
+                    slot = vtableSize++;
+                }
+            }
 
-            if (methodInfo.isNative()) {
-                MethodDesc nativeMethod = new MethodDesc(
+            if (methodInfo.isNative() || methodInfo.isAbstract()) {
+                MethodDesc methodWithoutCode = new MethodDesc(
                         mName,
                         resolveMethodDescriptor(methodInfo.descriptor()),
                         computeAccess(methodInfo),
                         methodInfo.isStatic(),
                         methodInfo.isFinal(),
-                        true,
+                        methodInfo.isNative(),
                         methodInfo.isSynchronized(),
-                        false,
+                        methodInfo.isAbstract(),
                         methodInfo.isVarargs(),
                         false,
                         false,
                         methodInfo.isStrict(),
+                        slot,
                         (short) 0,
                         (short) 0,
-                        new Instruction[0],
-                        new ExceptionTable[0],
-                        new HashMap<>()
-
+                        new int[0],
+                        ExceptionHandlers.NONE,
+                        new HashMap<>(),
+                        new InlineCache[0],
+                        new MethodDesc.State()
                 );
 
-                methods.put("%s%s".formatted(nativeMethod.name(), methodInfo.descriptor()), nativeMethod);
+                methods.put(signature, methodWithoutCode);
             }
 
             AttributeInfo[] attributes = methodInfo.attributes();
 
-            HashMap<Short, Short> lineMapping = new HashMap<>();
+            HashMap<Integer, Integer> lineMapping = new HashMap<>();
 
             CodeAttribute codeAtt = Arrays.stream(attributes)
                     .map(a -> {
@@ -224,10 +289,13 @@ public class AppClassLoader {
                 continue;
             }
 
+            BytecodeDecoder.Decoded decoded = BytecodeDecoder.decode(codeAtt.code(), codeAtt.codeLength());
+            Superinstructions.fuse(decoded.code());
+
             for (var codeAt : codeAtt.attributes()) {
                 if (codeAt instanceof LineNumberTableAttribute la) {
                     for (var entry : la.lineNumberTable()) {
-                        lineMapping.put(entry.startPc(), entry.lineNumber());
+                        lineMapping.put(decoded.indexOf(entry.startPc()), (int) entry.lineNumber());
                     }
                 }
             }
@@ -248,35 +316,58 @@ public class AppClassLoader {
                     methodInfo.isBridge(),
                     methodInfo.isSynthetic(),
                     methodInfo.isStrict(),
+                    slot,
                     codeAtt.maxStack(),
                     codeAtt.maxLocals(),
-                    codeAtt.code(),
-                    codeAtt.exceptionTable(),
-                    lineMapping
+                    decoded.code(),
+                    ExceptionHandlers.of(codeAtt.exceptionTable(), decoded::indexOf, decoded.code().length),
+                    lineMapping,
+                    new InlineCache[decoded.code().length],
+                    new MethodDesc.State()
             );
 
-            methods.put("%s%s".formatted(methodMeta.name(), methodInfo.descriptor()), methodMeta);
+            methods.put(signature, methodMeta);
         }
+    }
 
-        virtuals.putAll(methods);
+    /**
+     * Slot of the method in the vtable of the superclass which the method overrides. A package-private method is
+     * overridden only by a method of a class in the same package, a method of another package takes a new slot.
+     */
+    private int inheritedSlot(KlassDesc superClass, String packageName, String signature) {
+        for (var klass = superClass; klass != null; klass = klass.superKlass()) {
+            MethodDesc method = klass.methods().get(signature);
+
+            if (method != null && method.slot() != MethodDesc.NO_SLOT
+                    && (method.access() != LOCAL || packageName.equals(packageName(klass.name())))) {
+                return method.slot();
+            }
+        }
+        return MethodDesc.NO_SLOT;
+    }
 
-        if (superClass != null) {
-            Map<String, MethodDesc> superMethods = superClass.methods();
+    private static String packageName(String className) {
+        return className.substring(0, Math.max(className.lastIndexOf('/'), 0));
+    }
 
-            for (var mEntry : superMethods.entrySet()) {
-                String sName = mEntry.getKey();
+    /**
+     * The vtable of a class starts as a copy of the vtable of its superclass, own methods then take the slots they
+     * override or the slots appended for them.
+     */
+    private InlineCache.Target[] buildVtable(KlassDesc klass) {
+        InlineCache.Target[] inherited = klass.superKlass() != null ? klass.superKlass().vtable() : new InlineCache.Target[0];
 
-                if (!virtuals.containsKey(sName)) {
-                    MethodDesc superMethod = mEntry.getValue();
+        int size = klass.methods().values().stream()
+                .mapToInt(method -> method.slot() + 1)
+                .reduce(inherited.length, Math::max);
 
-                    if (!superMethod.fFinal() && !superMethod.fStatic() && superMethod.access() != PRIVATE) {
-                        virtuals.put(sName, superMethod);
-                    }
+        InlineCache.Target[] vtable = Arrays.copyOf(inherited, size);
 
-                }
+        for (MethodDesc method : klass.methods().values()) {
+            if (method.slot() != MethodDesc.NO_SLOT) {
+                vtable[method.slot()] = new InlineCache.Target(klass, method);
             }
         }
-
+        return vtable;
     }
-
 }
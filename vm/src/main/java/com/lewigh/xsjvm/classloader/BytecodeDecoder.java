@@ -0,0 +1,147 @@
+package com.lewigh.xsjvm.classloader;
+
+import com.lewigh.xsjvm.classloader.reader.info.attribute.Instruction;
+import lombok.NoArgsConstructor;
+
+import java.util.Arrays;
+
+import static com.lewigh.xsjvm.engine.runtime.Bytecodes.*;
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Link-time decoder which turns the instructions of a method into the flat code stream of the interpreter.
+ * <p>
+ * Operands are stored inline right after the opcode, the shorthand forms ({@code ILOAD_0}, {@code ASTORE_3},
+ * {@code LDC_W}, {@code GOTO_W}...) are folded into their generic form and branch offsets are converted
+ * from byte offsets into absolute stream indices. Field instructions and interface calls get two spare operands
+ * which are filled when the instruction is quickened, virtual calls get one for the vtable slot and type checks
+ * one for the class id of the last successful check. Switches keep their jump tables inline, see {@code Bytecodes.length(int[], int)}.
+ */
+@NoArgsConstructor(access = PRIVATE)
+public final class BytecodeDecoder {
+
+    private static final int NO_INDEX = -1;
+
+    public record Decoded(int[] code, int[] indexByPc) {
+
+        /**
+         * @return the index of the instruction at the pc, the end of the bytecode maps to the end of the stream
+         */
+        public int indexOf(int pc) {
+            if (pc == indexByPc.length) {
+                return code.length;
+            }
+            int index = pc >= 0 && pc < indexByPc.length ? indexByPc[pc] : NO_INDEX;
+            if (index == NO_INDEX) {
+                throw new IllegalStateException("Pc %d is not at an instruction boundary".formatted(pc));
+            }
+            return index;
+        }
+    }
+
+    public static Decoded decode(Instruction[] instructions, int codeLength) {
+        int[] indexByPc = new int[codeLength];
+        Arrays.fill(indexByPc, NO_INDEX);
+
+        int streamLength = 0;
+        for (var instruction : instructions) {
+            indexByPc[instruction.pc()] = streamLength;
+            streamLength += streamLength(instruction);
+        }
+
+        var decoded = new Decoded(new int[streamLength], indexByPc);
+
+        int ip = 0;
+        for (var instruction : instructions) {
+            try {
+                ip = emit(decoded, instruction, ip);
+            } catch (RuntimeException e) {
+                throw new IllegalStateException("Unable to decode instruction %s".formatted(instruction), e);
+            }
+        }
+
+        if (ip != streamLength) {
+            throw new IllegalStateException("Decoded stream length %d differs from expected %d".formatted(ip, streamLength));
+        }
+
+        return decoded;
+    }
+
+    private static int emit(Decoded decoded, Instruction instruction, int ip) {
+        int[] code = decoded.code();
+        int op = instruction.opCode().getCode();
+        int[] operands = instruction.operamds();
+
+        if (op >= ILOAD_0 && op <= ALOAD_3) {
+            return put(code, ip, ILOAD + (op - ILOAD_0) / 4, (op - ILOAD_0) % 4);
+        }
+        if (op >= ISTORE_0 && op <= ASTORE_3) {
+            return put(code, ip, ISTORE + (op - ISTORE_0) / 4, (op - ISTORE_0) % 4);
+        }
+        if (isBranch(op)) {
+            return put(code, ip, canonical(op), decoded.indexOf(instruction.pc() + operands[0]));
+        }
+
+        return switch (op) {
+            case TABLESWITCH -> {
+                int[] table = operands.clone();
+                table[0] = decoded.indexOf(instruction.pc() + table[0]);
+                for (int i = 3; i < table.length; i++) {
+                    table[i] = decoded.indexOf(instruction.pc() + table[i]);
+                }
+                yield put(code, ip, op, table);
+            }
+            case LOOKUPSWITCH -> {
+                int[] pairs = operands.clone();
+                pairs[0] = decoded.indexOf(instruction.pc() + pairs[0]);
+                for (int i = 3; i < pairs.length; i += 2) {
+                    pairs[i] = decoded.indexOf(instruction.pc() + pairs[i]);
+                }
+                yield put(code, ip, op, pairs);
+            }
+            case BIPUSH -> put(code, ip, op, (byte) operands[0]);
+            case SIPUSH, NEWARRAY, RET,
+                    ILOAD, LLOAD, FLOAD, DLOAD, ALOAD,
+                    ISTORE, LSTORE, FSTORE, DSTORE, ASTORE -> put(code, ip, op, operands[0]);
+            case GETSTATIC, PUTSTATIC, GETFIELD, PUTFIELD -> put(code, ip, op, operands[0] & 0xFFFF, 0, 0);
+            case LDC, LDC_W, LDC2_W,
+                    INVOKESPECIAL, INVOKESTATIC, INVOKEDYNAMIC,
+                    NEW, ANEWARRAY -> put(code, ip, canonical(op), operands[0] & 0xFFFF);
+            case INVOKEVIRTUAL -> put(code, ip, op, operands[0] & 0xFFFF, 0);
+            case INVOKEINTERFACE -> put(code, ip, op, operands[0] & 0xFFFF, 0, 0);
+            case CHECKCAST, INSTANCEOF -> put(code, ip, op, operands[0] & 0xFFFF, 0);
+            case IINC -> put(code, ip, op, operands[0], operands[1]);
+            case MULTIANEWARRAY -> put(code, ip, op, operands[0] & 0xFFFF, operands[1]);
+            default -> put(code, ip, op);
+        };
+    }
+
+    private static int streamLength(Instruction instruction) {
+        int op = instruction.opCode().getCode();
+        if (op == TABLESWITCH || op == LOOKUPSWITCH) {
+            return 1 + instruction.operamds().length;
+        }
+        return length(canonical(op));
+    }
+
+    private static int canonical(int op) {
+        if (op >= ILOAD_0 && op <= ALOAD_3) {
+            return ILOAD + (op - ILOAD_0) / 4;
+        }
+        if (op >= ISTORE_0 && op <= ASTORE_3) {
+            return ISTORE + (op - ISTORE_0) / 4;
+        }
+        return switch (op) {
+            case LDC_W -> LDC;
+            case GOTO_W -> GOTO;
+            case JSR_W -> JSR;
+            default -> op;
+        };
+    }
+
+    private static int put(int[] code, int ip, int op, int... operands) {
+        code[ip] = op;
+        System.arraycopy(operands, 0, code, ip + 1, operands.length);
+        return ip + 1 + operands.length;
+    }
+}
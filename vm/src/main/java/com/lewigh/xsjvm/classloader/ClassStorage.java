@@ -2,12 +2,21 @@ package com.lewigh.xsjvm.classloader;
 
 import com.lewigh.xsjvm.engine.runtime.KlassDesc;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Classes shared by all guest threads. Lookups take no lock, storing a class and handing out ids is serialized.
+ */
 public class ClassStorage {
-    private final Map<String, KlassDesc> nameAndClasses = new HashMap<>();
-    private final Map<Integer, KlassDesc> idAndClass = new HashMap<>();
+    private final Map<String, KlassDesc> nameAndClasses = new ConcurrentHashMap<>();
+    /**
+     * Classes indexed by their id, ids are handed out in the order classes are stored. The array is replaced when
+     * it grows, so a reader always sees a complete one.
+     */
+    private volatile KlassDesc[] idAndClass = new KlassDesc[64];
 
     private final Map<Integer, Long> staticTable = new HashMap<>();
 
@@ -15,20 +24,26 @@ public class ClassStorage {
 
 
     public KlassDesc getById(int classId) {
-        return idAndClass.get(classId);
+        KlassDesc[] classes = idAndClass;
+        return classId >= 0 && classId < classes.length ? classes[classId] : null;
     }
 
     public KlassDesc getByName(String className) {
         return nameAndClasses.get(className);
     }
 
-    public int nextId() {
+    public synchronized int nextId() {
         nextId++;
         return nextId;
     }
 
-    public void store(KlassDesc klass) {
-        idAndClass.put(klass.id(), klass);
+    public synchronized void store(KlassDesc klass) {
+        KlassDesc[] classes = idAndClass;
+        if (classes.length <= klass.id()) {
+            classes = Arrays.copyOf(classes, Math.max(classes.length * 2, klass.id() + 1));
+        }
+        classes[klass.id()] = klass;
+        idAndClass = classes;
         nameAndClasses.put(klass.name(), klass);
     }
 }
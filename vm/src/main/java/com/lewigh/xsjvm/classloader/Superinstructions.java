@@ -0,0 +1,85 @@
+package com.lewigh.xsjvm.classloader;
+
+import com.lewigh.xsjvm.engine.runtime.Bytecodes;
+import com.lewigh.xsjvm.support.Logger;
+import lombok.NoArgsConstructor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.lewigh.xsjvm.engine.runtime.Bytecodes.*;
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Link-time pass which fuses frequent instruction sequences of a decoded code stream into superinstructions.
+ * <p>
+ * Fusion is done in place: only the opcode of the first instruction of a sequence is replaced by the fused opcode,
+ * the following instructions stay untouched. A branch into the middle of a sequence still lands on a regular
+ * instruction, quickening still rewrites the inner field instructions, and a walk over the stream with
+ * {@link Bytecodes#length(int[], int)} still sees every instruction.
+ * <p>
+ * Fusion can be switched off with {@code -Dxsjvm.fusion=false}. With {@code -Dxsjvm.fusion.report=true} the engine
+ * counts how often each superinstruction fires and prints the numbers at the end of the thread.
+ */
+@NoArgsConstructor(access = PRIVATE)
+public final class Superinstructions {
+
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("xsjvm.fusion", "true"));
+    public static final boolean REPORT = Boolean.getBoolean("xsjvm.fusion.report");
+
+    private static final int FUSED_COUNT = ILOAD_IF_ICMP - ILOAD_ILOAD_IADD_ISTORE + 1;
+
+    private static final AtomicLongArray FUSED_SITES = new AtomicLongArray(FUSED_COUNT);
+    private static final AtomicLongArray FIRED = new AtomicLongArray(FUSED_COUNT);
+
+    public static void fuse(int[] code) {
+        if (!ENABLED) {
+            return;
+        }
+
+        int ip = 0;
+        while (ip < code.length) {
+            int fused = match(code, ip);
+
+            if (fused != NOP) {
+                code[ip] = fused;
+                FUSED_SITES.incrementAndGet(fused - ILOAD_ILOAD_IADD_ISTORE);
+                ip += Bytecodes.fusedLength(code, ip);
+            } else {
+                ip += Bytecodes.length(code, ip);
+            }
+        }
+    }
+
+    private static int match(int[] code, int ip) {
+        int op = code[ip];
+
+        if (op == ILOAD && at(code, ip + 2, ILOAD) && at(code, ip + 4, IADD) && at(code, ip + 5, ISTORE)) {
+            return ILOAD_ILOAD_IADD_ISTORE;
+        }
+        if (op == ALOAD && at(code, ip + 2, GETFIELD)) {
+            return ALOAD_GETFIELD;
+        }
+        if (op == ILOAD && ip + 2 < code.length && code[ip + 2] >= IF_ICMPEQ && code[ip + 2] <= IF_ICMPLE) {
+            return ILOAD_IF_ICMP;
+        }
+        return NOP;
+    }
+
+    private static boolean at(int[] code, int ip, int op) {
+        return ip < code.length && code[ip] == op;
+    }
+
+    /**
+     * Counts an execution of the superinstruction, called by the engine only when {@link #REPORT} is on.
+     */
+    public static void fired(int fusedOp) {
+        FIRED.incrementAndGet(fusedOp - ILOAD_ILOAD_IADD_ISTORE);
+    }
+
+    public static void report() {
+        Logger.debug("Superinstructions:%n");
+        for (int i = 0; i < FUSED_COUNT; i++) {
+            Logger.debug("  %-26s sites: %6d fired: %10d%n", Bytecodes.name(ILOAD_ILOAD_IADD_ISTORE + i), FUSED_SITES.get(i), FIRED.get(i));
+        }
+    }
+}
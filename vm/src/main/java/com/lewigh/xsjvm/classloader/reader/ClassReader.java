@@ -2,6 +2,7 @@ package com.lewigh.xsjvm.classloader.reader;
 
 import com.lewigh.xsjvm.classloader.reader.info.attribute.AttributeInfo;
 import com.lewigh.xsjvm.classloader.reader.pool.ConstantPool;
+import com.lewigh.xsjvm.classloader.reader.resolvers.AttributeResolver;
 import com.lewigh.xsjvm.classloader.reader.resolvers.ConstantPoolResolver;
 import com.lewigh.xsjvm.classloader.reader.resolvers.FieldResolver;
 import com.lewigh.xsjvm.classloader.reader.resolvers.InterfaceResolver;
@@ -41,6 +42,7 @@ public class ClassReader {
             String[] interfaces = InterfaceResolver.resolve(is, constantPool);
             FieldInfo[] fields = FieldResolver.resolve(is, constantPool, className);
             MethodInfo[] methods = MethodResolver.resolve(is, constantPool, className);
+            AttributeInfo[] attributes = AttributeResolver.resolveSupported(is, readAsShort(is), constantPool, thisName);
 
             return new ClassFile(
                     major,
@@ -52,7 +54,7 @@ public class ClassReader {
                     interfaces,
                     fields,
                     methods,
-                    new AttributeInfo[0]
+                    attributes
             );
         } catch (FileNotFoundException e) {
             throw new RuntimeException(e);
@@ -11,7 +11,8 @@ public sealed interface AttributeInfo permits
         ExceptionsAttribute,
         DeprecatedAttribute,
         MethodParametersAttribute,
-        ConstantValueAttribute {
+        ConstantValueAttribute,
+        BootstrapMethodsAttribute {
 
     String attributeName();
 
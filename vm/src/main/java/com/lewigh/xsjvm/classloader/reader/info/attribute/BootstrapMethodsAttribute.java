@@ -0,0 +1,16 @@
+package com.lewigh.xsjvm.classloader.reader.info.attribute;
+
+public record BootstrapMethodsAttribute(
+        String attributeName,
+        int attributeLength,
+        BootstrapMethod[] bootstrapMethods
+) implements AttributeInfo {
+
+    /**
+     * @param methodRefIndex index of the {@code CONSTANT_MethodHandle} of the bootstrap method
+     * @param arguments      indices of the static arguments passed to the bootstrap method
+     */
+    public record BootstrapMethod(short methodRefIndex,
+                                  short[] arguments) {
+    }
+}
@@ -5,19 +5,19 @@ import lombok.NonNull;
 import java.util.Arrays;
 import java.util.Objects;
 
-public record Instruction(@NonNull OpCode opCode, @NonNull short[] operamds) {
+public record Instruction(int pc, @NonNull OpCode opCode, @NonNull int[] operamds) {
 
-    public short firstOperand() {
+    public int firstOperand() {
         checkLen();
         return operamds[0];
     }
 
-    public short secondOperand() {
+    public int secondOperand() {
         checkLen();
         return operamds[1];
     }
 
-    public short thirdOperand() {
+    public int thirdOperand() {
         checkLen();
         return operamds[2];
     }
@@ -33,12 +33,12 @@ public record Instruction(@NonNull OpCode opCode, @NonNull short[] operamds) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Instruction that = (Instruction) o;
-        return opCode == that.opCode && Arrays.equals(operamds, that.operamds);
+        return pc == that.pc && opCode == that.opCode && Arrays.equals(operamds, that.operamds);
     }
 
     @Override
     public int hashCode() {
-        int result = Objects.hash(opCode);
+        int result = Objects.hash(pc, opCode);
         result = 31 * result + Arrays.hashCode(operamds);
         return result;
     }
@@ -46,7 +46,8 @@ public record Instruction(@NonNull OpCode opCode, @NonNull short[] operamds) {
     @Override
     public String toString() {
         return "Instruction{" +
-                "opCode=" + opCode +
+                "pc=" + pc +
+                ", opCode=" + opCode +
                 ", operamds=" + Arrays.toString(operamds) +
                 '}';
     }
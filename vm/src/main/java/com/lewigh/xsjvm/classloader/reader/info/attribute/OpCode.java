@@ -226,7 +226,7 @@ public enum OpCode {
     RET(169, UBYTE, "Return from subroutine"),
     TABLESWITCH(170, EMPTY, "Access jump table by index and jump"),
 
-    LOOKUPSWITCH(171, EMPTY, "Negate float"),
+    LOOKUPSWITCH(171, EMPTY, "Access jump table by key match and jump"),
 
 
     //RETURN
@@ -345,26 +345,26 @@ public enum OpCode {
 
         private final int bytesLen;
 
-        public short[] retrieve(byte[] buffer) {
+        public int[] retrieve(byte[] buffer) {
             return switch (this) {
                 case UBYTE, UBYTE_UBYTE -> {
-                    short[] shorts = new short[buffer.length];
+                    int[] operands = new int[buffer.length];
                     for (int i = 0; i < buffer.length; i++) {
-                        shorts[i] = unsignAsShort(buffer[i]);
+                        operands[i] = Byte.toUnsignedInt(buffer[i]);
                     }
-                    yield shorts;
+                    yield operands;
                 }
-                case UBYTE_BYTE -> new short[]{
-                        unsignAsShort(buffer[0]),
+                case UBYTE_BYTE -> new int[]{
+                        Byte.toUnsignedInt(buffer[0]),
                         buffer[1]
                 };
-                case C_SHORT, C_SHORT_ZERO_ZERO -> new short[]{joinToShort(buffer)};
-                case C_SHORT_UBYTE, C_SHORT_UBYTE_ZERO -> new short[]{
+                case C_SHORT, C_SHORT_ZERO_ZERO -> new int[]{joinToShort(buffer)};
+                case C_SHORT_UBYTE, C_SHORT_UBYTE_ZERO -> new int[]{
                         joinToShort(buffer),
-                        unsignAsShort(buffer[2])
+                        Byte.toUnsignedInt(buffer[2])
                 };
-                case C_INT -> new short[]{joinToInt(buffer)};
-                case EMPTY -> new short[0];
+                case C_INT -> new int[]{joinToInt(buffer)};
+                case EMPTY -> new int[0];
             };
         }
     }
@@ -373,12 +373,8 @@ public enum OpCode {
         return (short) ((buffer[0] << 8) | buffer[1] & 0xff);
     }
 
-    private static short joinToInt(byte[] buffer) {
-        return (short) ((buffer[0] << 24) | (buffer[1] << 16) | (buffer[2] << 8) | buffer[3] & 0xff);
-    }
-
-    private static short unsignAsShort(byte bt) {
-        return (short) Byte.toUnsignedInt(bt);
+    private static int joinToInt(byte[] buffer) {
+        return (buffer[0] << 24) | ((buffer[1] & 0xff) << 16) | ((buffer[2] & 0xff) << 8) | buffer[3] & 0xff;
     }
 
 }
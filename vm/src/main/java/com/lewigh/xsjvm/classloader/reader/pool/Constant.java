@@ -40,6 +40,15 @@ public sealed interface Constant {
         }
     }
 
+    /**
+     * Reference to a field or a method: the class it is looked up in and its name and descriptor.
+     */
+    sealed interface MemberRef extends Constant {
+        short classIndex();
+
+        short nameAndTypeIndex();
+    }
+
     record Utf8(String text) implements Constant {
     }
 
@@ -53,10 +62,10 @@ public sealed interface Constant {
     record DynamicInfo(short bootstrapMethodAttrIndex, short nameAndTypeIndex) implements Constant {
     }
 
-    record FieldInfo(short classIndex, short nameAndTypeIndex) implements Constant {
+    record FieldInfo(short classIndex, short nameAndTypeIndex) implements MemberRef {
     }
 
-    record InterfaceMethodRef(short classIndex, short nameAndTypeIndex) implements Constant {
+    record InterfaceMethodRef(short classIndex, short nameAndTypeIndex) implements MemberRef {
     }
 
     record InvokeDynamicInfo(short bootstrapMethodAttrIndex, short nameAndTypeIndex) implements Constant {
@@ -65,7 +74,7 @@ public sealed interface Constant {
     record MethodHandleInfo(byte referenceKind, short referenceIndex) implements Constant {
     }
 
-    record MethodRefInfo(short classIndex, short nameAndTypeIndex) implements Constant {
+    record MethodRefInfo(short classIndex, short nameAndTypeIndex) implements MemberRef {
     }
 
     record MethodTypeInfo(short descriptorIndex) implements Constant {
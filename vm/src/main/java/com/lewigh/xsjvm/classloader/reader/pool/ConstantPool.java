@@ -1,38 +1,72 @@
 package com.lewigh.xsjvm.classloader.reader.pool;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 
 import java.util.ArrayList;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 @Data
 public class ConstantPool {
 
     private final ArrayList<Constant> constants;
 
-    public Constant get(short index) {
-        return Objects.requireNonNull(constants.get(index), "Invalid index %d of the constant pool".formatted(index));
+    /**
+     * Runtime entries resolved from the constants (classes, fields, methods, strings...), indexed like the pool
+     * itself and filled lazily by the execution engine.
+     */
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private final AtomicReferenceArray<Object> resolved;
+
+    public ConstantPool(ArrayList<Constant> constants) {
+        this.constants = constants;
+        this.resolved = new AtomicReferenceArray<>(constants.size());
+    }
+
+    public Constant get(int index) {
+        int unsigned = index & 0xFFFF;
+        return Objects.requireNonNull(constants.get(unsigned), "Invalid index %d of the constant pool".formatted(unsigned));
+    }
+
+    /**
+     * @return the runtime entry resolved for the constant or {@code null} if it is not resolved yet
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T resolved(int index) {
+        return (T) resolved.getAcquire(index & 0xFFFF);
     }
 
-    public String resolveUtf8Ref(short index) {
+    /**
+     * Publishes the runtime entry resolved for the constant. Resolution is idempotent, so when several threads
+     * resolve the same constant at once the first published entry wins and is returned to all of them.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T publishResolved(int index, T entry) {
+        Object witness = resolved.compareAndExchange(index & 0xFFFF, null, Objects.requireNonNull(entry));
+        return witness == null ? entry : (T) witness;
+    }
+
+    public String resolveUtf8Ref(int index) {
         Constant.Utf8 utf8 = (Constant.Utf8) get(index);
         return utf8.text();
     }
 
-    public String resolveClassRef(short classIndex) {
+    public String resolveClassRef(int classIndex) {
         var stringIndex = (Constant.Class) get(classIndex);
         return resolveUtf8Ref(stringIndex.nameIndex());
     }
 
-    public Constant.MethodRefInfo resolveMethorRefInfo(short index) {
-        return (Constant.MethodRefInfo) get(index);
-    }
-
-    public Constant.FieldInfo resolveFieldInfo(short index) {
-        return (Constant.FieldInfo) get(index);
+    public Constant.MemberRef resolveMemberRef(int index) {
+        return (Constant.MemberRef) get(index);
     }
 
-    public Constant.NameAndTypeInfo resolveNameAndTypeInfo(short index) {
+    public Constant.NameAndTypeInfo resolveNameAndTypeInfo(int index) {
         return (Constant.NameAndTypeInfo) get(index);
     }
 
@@ -7,6 +7,7 @@ import lombok.NonNull;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -16,6 +17,21 @@ import static com.lewigh.xsjvm.support.StreamBSupport.readAsShort;
 
 public class AttributeResolver {
 
+    private static final List<AttributeResolvingStrategy> RESOLVERS = List.of(
+            new CodeAttributeResolver(),
+            new LineNumberTableAttributeResolver(),
+            new LocalVaribleTableAttributeResolver(),
+            new LocalVaribleTypeTableAttributeResolver(),
+            new RuntimeVisibleAnnotationsAttributeResolver(),
+            new SignatureAttributeResolver(),
+            new StackMapTableAttributeResolver(),
+            new ExceptionsAttributeResolver(),
+            new DeprecatedAttributeResolver(),
+            new MethodParametersAttributeResolver(),
+            new ConstantValueAttributeResolver(),
+            new BootstrapMethodsAttributeResolver()
+    );
+
     public static AttributeInfo[] resolve(@NonNull InputStream is,
                                           short attributesCount,
                                           @NonNull ConstantPool pool,
@@ -24,20 +40,6 @@ public class AttributeResolver {
 
         var attributes = new AttributeInfo[attributesCount];
 
-        List<AttributeResolvingStrategy> resolvers = List.of(
-                new CodeAttributeResolver(),
-                new LineNumberTableAttributeResolver(),
-                new LocalVaribleTableAttributeResolver(),
-                new LocalVaribleTypeTableAttributeResolver(),
-                new RuntimeVisibleAnnotationsAttributeResolver(),
-                new SignatureAttributeResolver(),
-                new StackMapTableAttributeResolver(),
-                new ExceptionsAttributeResolver(),
-                new DeprecatedAttributeResolver(),
-                new MethodParametersAttributeResolver(),
-                new ConstantValueAttributeResolver()
-        );
-
         for (int i = 0; i < attributesCount; i++) {
             short nameIndex = readAsShort(is);
             String attrName = pool.resolveUtf8Ref(nameIndex);
@@ -45,7 +47,7 @@ public class AttributeResolver {
 
             try {
                 boolean filed = false;
-                for (var resolver : resolvers) {
+                for (var resolver : RESOLVERS) {
                     if (resolver.supports(attrName)) {
                         AttributeInfo resolved = resolver.resolve(is, attrName, attrLength, pool, className, target);
                         if (resolved == null) {
@@ -71,4 +73,30 @@ public class AttributeResolver {
         }
         return attributes;
     }
+
+    /**
+     * Unlike {@link #resolve(InputStream, short, ConstantPool, String, String)} skips the attributes no resolver
+     * supports, as most attributes of a class ({@code SourceFile}, {@code InnerClasses}, {@code NestMembers}...)
+     * are of no use to the VM.
+     */
+    public static AttributeInfo[] resolveSupported(@NonNull InputStream is,
+                                                   short attributesCount,
+                                                   @NonNull ConstantPool pool,
+                                                   @NonNull String className) throws IOException {
+        List<AttributeInfo> attributes = new ArrayList<>(attributesCount);
+
+        for (int i = 0; i < attributesCount; i++) {
+            short nameIndex = readAsShort(is);
+            String attrName = pool.resolveUtf8Ref(nameIndex);
+            int attrLength = readAsInt(is);
+
+            var resolver = RESOLVERS.stream().filter(r -> r.supports(attrName)).findFirst();
+            if (resolver.isPresent()) {
+                attributes.add(resolver.get().resolve(is, attrName, attrLength, pool, className, className));
+            } else {
+                is.skipNBytes(attrLength);
+            }
+        }
+        return attributes.toArray(AttributeInfo[]::new);
+    }
 }
@@ -11,5 +11,6 @@ public class Attributes {
     static final String StackMapTable = "StackMapTable";
     static final String MethodParameters = "MethodParameters";
     static final String ConstantValue = "ConstantValue";
+    static final String BootstrapMethods = "BootstrapMethods";
 
 }
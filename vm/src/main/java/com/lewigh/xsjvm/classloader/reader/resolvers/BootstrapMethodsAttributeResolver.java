@@ -0,0 +1,38 @@
+package com.lewigh.xsjvm.classloader.reader.resolvers;
+
+import com.lewigh.xsjvm.classloader.reader.info.attribute.AttributeInfo;
+import com.lewigh.xsjvm.classloader.reader.info.attribute.BootstrapMethodsAttribute;
+import com.lewigh.xsjvm.classloader.reader.pool.ConstantPool;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static com.lewigh.xsjvm.support.StreamBSupport.readAsShort;
+
+class BootstrapMethodsAttributeResolver implements AttributeResolvingStrategy<BootstrapMethodsAttribute> {
+
+    @NonNull
+    @Override
+    public AttributeInfo resolve(InputStream is, String attName, int attLen, ConstantPool pool, String className, String target) throws IOException {
+        int bootstrapMethodsCount = readAsShort(is) & 0xFFFF;
+        var bootstrapMethods = new BootstrapMethodsAttribute.BootstrapMethod[bootstrapMethodsCount];
+
+        for (int i = 0; i < bootstrapMethodsCount; i++) {
+            short methodRefIndex = pool.check(readAsShort(is));
+            short[] arguments = new short[readAsShort(is) & 0xFFFF];
+
+            for (int j = 0; j < arguments.length; j++) {
+                arguments[j] = pool.check(readAsShort(is));
+            }
+            bootstrapMethods[i] = new BootstrapMethodsAttribute.BootstrapMethod(methodRefIndex, arguments);
+        }
+
+        return new BootstrapMethodsAttribute(attName, attLen, bootstrapMethods);
+    }
+
+    @Override
+    public boolean supports(String name) {
+        return name.equals(Attributes.BootstrapMethods);
+    }
+}
@@ -59,40 +59,111 @@ public class CodeAttributeResolver implements AttributeResolvingStrategy {
     private Instruction[] resolveOperations(byte[] bytes) {
         Instruction[] operations = new Instruction[bytes.length];
 
-        int skip = 0;
         int realIdx = 0;
+        int pc = 0;
 
-        for (int i = 0; i < bytes.length; i++) {
-            if (skip > 0) {
-                skip--;
+        while (pc < bytes.length) {
+            OpCode opCode = resolveOpCode(operations, bytes[pc]);
+
+            if (opCode == OpCode.WIDE) {
+                operations[realIdx] = resolveWide(operations, bytes, pc);
+                pc += operations[realIdx].opCode() == OpCode.IINC ? 6 : 4;
+                realIdx++;
                 continue;
             }
-            int unsignedInt = Byte.toUnsignedInt(bytes[i]);
-            OpCode opCode;
-            try {
-                opCode = OpCode.byCode(unsignedInt);
-            } catch (Exception e) {
-                throw new IllegalStateException(prepareIncorrectByteCodemsg(operations, unsignedInt), e);
+
+            if (opCode == OpCode.TABLESWITCH || opCode == OpCode.LOOKUPSWITCH) {
+                operations[realIdx] = resolveSwitch(opCode, bytes, pc);
+                pc = switchEnd(operations[realIdx], pc);
+                realIdx++;
+                continue;
             }
 
             int operandsBytesLen = opCode.getOperandsType().getBytesLen();
-            byte[] operandsBuffer = new byte[operandsBytesLen];
+            byte[] operandsBuffer = Arrays.copyOfRange(bytes, pc + 1, pc + 1 + operandsBytesLen);
 
-            if (operandsBytesLen > 0) {
-                for (int j = 0; j < operandsBytesLen; j++) {
-                    operandsBuffer[j] = bytes[i + j + 1];
-                    skip++;
-                }
-            }
-
-            operations[realIdx] = new Instruction(opCode, opCode.getOperandsType().retrieve(operandsBuffer));
+            operations[realIdx] = new Instruction(pc, opCode, opCode.getOperandsType().retrieve(operandsBuffer));
             realIdx++;
+            pc += 1 + operandsBytesLen;
         }
 
         return Arrays.copyOf(operations, realIdx);
 
     }
 
+    /**
+     * The wide prefix is folded into the instruction it modifies, so the instruction keeps the pc of the prefix
+     * and carries the already widened operands.
+     */
+    private Instruction resolveWide(Instruction[] prepared, byte[] bytes, int pc) {
+        OpCode modified = resolveOpCode(prepared, bytes[pc + 1]);
+        int index = joinToUnsignedShort(bytes, pc + 2);
+
+        if (modified == OpCode.IINC) {
+            return new Instruction(pc, modified, new int[]{index, (short) joinToUnsignedShort(bytes, pc + 4)});
+        }
+        return new Instruction(pc, modified, new int[]{index});
+    }
+
+    /**
+     * Switch payloads are aligned to 4 bytes from the start of the code. Operands are
+     * {@code [default, low, high, offsets...]} for the table switch and {@code [default, npairs, match, offset...]}
+     * for the lookup switch, offsets are relative to the pc of the switch.
+     */
+    private Instruction resolveSwitch(OpCode opCode, byte[] bytes, int pc) {
+        int cursor = switchPayloadStart(pc);
+        int defaultOffset = joinToInt(bytes, cursor);
+        int[] operands;
+
+        if (opCode == OpCode.TABLESWITCH) {
+            int low = joinToInt(bytes, cursor + 4);
+            int high = joinToInt(bytes, cursor + 8);
+            operands = new int[3 + high - low + 1];
+            operands[1] = low;
+            operands[2] = high;
+            cursor += 12;
+        } else {
+            int npairs = joinToInt(bytes, cursor + 4);
+            operands = new int[2 + 2 * npairs];
+            operands[1] = npairs;
+            cursor += 8;
+        }
+        operands[0] = defaultOffset;
+
+        int first = opCode == OpCode.TABLESWITCH ? 3 : 2;
+        for (int i = first; i < operands.length; i++, cursor += 4) {
+            operands[i] = joinToInt(bytes, cursor);
+        }
+
+        return new Instruction(pc, opCode, operands);
+    }
+
+    private static int switchEnd(Instruction instruction, int pc) {
+        int fixed = instruction.opCode() == OpCode.TABLESWITCH ? 3 : 2;
+        return switchPayloadStart(pc) + 4 * fixed + 4 * (instruction.operamds().length - fixed);
+    }
+
+    private static int switchPayloadStart(int pc) {
+        return (pc + 4) & ~3;
+    }
+
+    private static int joinToInt(byte[] bytes, int from) {
+        return (bytes[from] << 24) | ((bytes[from + 1] & 0xff) << 16) | ((bytes[from + 2] & 0xff) << 8) | bytes[from + 3] & 0xff;
+    }
+
+    private OpCode resolveOpCode(Instruction[] prepared, byte code) {
+        int unsignedInt = Byte.toUnsignedInt(code);
+        try {
+            return OpCode.byCode(unsignedInt);
+        } catch (Exception e) {
+            throw new IllegalStateException(prepareIncorrectByteCodemsg(prepared, unsignedInt), e);
+        }
+    }
+
+    private static int joinToUnsignedShort(byte[] bytes, int from) {
+        return ((bytes[from] & 0xff) << 8) | bytes[from + 1] & 0xff;
+    }
+
     private static ExceptionTable[] resolveExceptionTable(int len, InputStream is) throws IOException {
         var exceptionTable = new ExceptionTable[len];
 
@@ -41,9 +41,6 @@ public class ConstantPoolResolver {
 
         ArrayList<Constant> constants = new ArrayList<>();
 
-
-        var constantPool = new ConstantPool(constants);
-
         constants.add((short) 0, null);
 
         boolean gap = false;
@@ -88,6 +85,6 @@ public class ConstantPoolResolver {
                 default -> throw new IllegalStateException(format("Tag %s not recognized", tag));
             }
         }
-        return constantPool;
+        return new ConstantPool(constants);
     }
 }
@@ -0,0 +1,341 @@
+package com.lewigh.xsjvm.engine;
+
+import com.lewigh.xsjvm.engine.runtime.ImplicitException;
+import lombok.NoArgsConstructor;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Handlers of the arithmetic, bitwise, shift, conversion and compare instructions, one per opcode.
+ * <p>
+ * Every handler reads its operands with the typed pops of the {@link StackFrame} and writes the result with the
+ * typed push, so no value is boxed and no type is tested on the way. The types of the operands are guaranteed by the
+ * class-file verifier, the frame checks the tags only when assertions are enabled. Java arithmetic has the same
+ * semantics as the instructions: wrapping int and long overflow, IEEE 754 float and double operations and the
+ * saturating float-to-integer conversions.
+ */
+@NoArgsConstructor(access = PRIVATE)
+final class Arithmetic {
+
+    static void isub(StackFrame frame, int ip) {
+        int b = frame.popInt();
+        frame.pushInt(frame.popInt() - b);
+        frame.ip = ip + 1;
+    }
+
+    static void imul(StackFrame frame, int ip) {
+        int b = frame.popInt();
+        frame.pushInt(frame.popInt() * b);
+        frame.ip = ip + 1;
+    }
+
+    static void idiv(StackFrame frame, int ip) {
+        int b = frame.popInt();
+        checkDivisor(b);
+        frame.pushInt(frame.popInt() / b);
+        frame.ip = ip + 1;
+    }
+
+    static void irem(StackFrame frame, int ip) {
+        int b = frame.popInt();
+        checkDivisor(b);
+        frame.pushInt(frame.popInt() % b);
+        frame.ip = ip + 1;
+    }
+
+    static void ineg(StackFrame frame, int ip) {
+        frame.pushInt(-frame.popInt());
+        frame.ip = ip + 1;
+    }
+
+    static void ladd(StackFrame frame, int ip) {
+        long b = frame.popLong();
+        frame.pushLong(frame.popLong() + b);
+        frame.ip = ip + 1;
+    }
+
+    static void lsub(StackFrame frame, int ip) {
+        long b = frame.popLong();
+        frame.pushLong(frame.popLong() - b);
+        frame.ip = ip + 1;
+    }
+
+    static void lmul(StackFrame frame, int ip) {
+        long b = frame.popLong();
+        frame.pushLong(frame.popLong() * b);
+        frame.ip = ip + 1;
+    }
+
+    static void ldiv(StackFrame frame, int ip) {
+        long b = frame.popLong();
+        checkDivisor(b);
+        frame.pushLong(frame.popLong() / b);
+        frame.ip = ip + 1;
+    }
+
+    static void lrem(StackFrame frame, int ip) {
+        long b = frame.popLong();
+        checkDivisor(b);
+        frame.pushLong(frame.popLong() % b);
+        frame.ip = ip + 1;
+    }
+
+    static void lneg(StackFrame frame, int ip) {
+        frame.pushLong(-frame.popLong());
+        frame.ip = ip + 1;
+    }
+
+    static void fadd(StackFrame frame, int ip) {
+        float b = frame.popFloat();
+        frame.pushFloat(frame.popFloat() + b);
+        frame.ip = ip + 1;
+    }
+
+    static void fsub(StackFrame frame, int ip) {
+        float b = frame.popFloat();
+        frame.pushFloat(frame.popFloat() - b);
+        frame.ip = ip + 1;
+    }
+
+    static void fmul(StackFrame frame, int ip) {
+        float b = frame.popFloat();
+        frame.pushFloat(frame.popFloat() * b);
+        frame.ip = ip + 1;
+    }
+
+    static void fdiv(StackFrame frame, int ip) {
+        float b = frame.popFloat();
+        frame.pushFloat(frame.popFloat() / b);
+        frame.ip = ip + 1;
+    }
+
+    static void frem(StackFrame frame, int ip) {
+        float b = frame.popFloat();
+        frame.pushFloat(frame.popFloat() % b);
+        frame.ip = ip + 1;
+    }
+
+    static void fneg(StackFrame frame, int ip) {
+        frame.pushFloat(-frame.popFloat());
+        frame.ip = ip + 1;
+    }
+
+    static void dadd(StackFrame frame, int ip) {
+        double b = frame.popDouble();
+        frame.pushDouble(frame.popDouble() + b);
+        frame.ip = ip + 1;
+    }
+
+    static void dsub(StackFrame frame, int ip) {
+        double b = frame.popDouble();
+        frame.pushDouble(frame.popDouble() - b);
+        frame.ip = ip + 1;
+    }
+
+    static void dmul(StackFrame frame, int ip) {
+        double b = frame.popDouble();
+        frame.pushDouble(frame.popDouble() * b);
+        frame.ip = ip + 1;
+    }
+
+    static void ddiv(StackFrame frame, int ip) {
+        double b = frame.popDouble();
+        frame.pushDouble(frame.popDouble() / b);
+        frame.ip = ip + 1;
+    }
+
+    static void drem(StackFrame frame, int ip) {
+        double b = frame.popDouble();
+        frame.pushDouble(frame.popDouble() % b);
+        frame.ip = ip + 1;
+    }
+
+    static void dneg(StackFrame frame, int ip) {
+        frame.pushDouble(-frame.popDouble());
+        frame.ip = ip + 1;
+    }
+
+    static void ishl(StackFrame frame, int ip) {
+        int shift = frame.popInt();
+        frame.pushInt(frame.popInt() << shift);
+        frame.ip = ip + 1;
+    }
+
+    static void ishr(StackFrame frame, int ip) {
+        int shift = frame.popInt();
+        frame.pushInt(frame.popInt() >> shift);
+        frame.ip = ip + 1;
+    }
+
+    static void iushr(StackFrame frame, int ip) {
+        int shift = frame.popInt();
+        frame.pushInt(frame.popInt() >>> shift);
+        frame.ip = ip + 1;
+    }
+
+    static void iand(StackFrame frame, int ip) {
+        int b = frame.popInt();
+        frame.pushInt(frame.popInt() & b);
+        frame.ip = ip + 1;
+    }
+
+    static void ior(StackFrame frame, int ip) {
+        int b = frame.popInt();
+        frame.pushInt(frame.popInt() | b);
+        frame.ip = ip + 1;
+    }
+
+    static void ixor(StackFrame frame, int ip) {
+        int b = frame.popInt();
+        frame.pushInt(frame.popInt() ^ b);
+        frame.ip = ip + 1;
+    }
+
+    static void lshl(StackFrame frame, int ip) {
+        int shift = frame.popInt();
+        frame.pushLong(frame.popLong() << shift);
+        frame.ip = ip + 1;
+    }
+
+    static void lshr(StackFrame frame, int ip) {
+        int shift = frame.popInt();
+        frame.pushLong(frame.popLong() >> shift);
+        frame.ip = ip + 1;
+    }
+
+    static void lushr(StackFrame frame, int ip) {
+        int shift = frame.popInt();
+        frame.pushLong(frame.popLong() >>> shift);
+        frame.ip = ip + 1;
+    }
+
+    static void land(StackFrame frame, int ip) {
+        long b = frame.popLong();
+        frame.pushLong(frame.popLong() & b);
+        frame.ip = ip + 1;
+    }
+
+    static void lor(StackFrame frame, int ip) {
+        long b = frame.popLong();
+        frame.pushLong(frame.popLong() | b);
+        frame.ip = ip + 1;
+    }
+
+    static void lxor(StackFrame frame, int ip) {
+        long b = frame.popLong();
+        frame.pushLong(frame.popLong() ^ b);
+        frame.ip = ip + 1;
+    }
+
+    static void i2l(StackFrame frame, int ip) {
+        frame.pushLong(frame.popInt());
+        frame.ip = ip + 1;
+    }
+
+    static void i2f(StackFrame frame, int ip) {
+        frame.pushFloat((float) frame.popInt());
+        frame.ip = ip + 1;
+    }
+
+    static void i2d(StackFrame frame, int ip) {
+        frame.pushDouble((double) frame.popInt());
+        frame.ip = ip + 1;
+    }
+
+    static void l2i(StackFrame frame, int ip) {
+        frame.pushInt((int) frame.popLong());
+        frame.ip = ip + 1;
+    }
+
+    static void l2f(StackFrame frame, int ip) {
+        frame.pushFloat((float) frame.popLong());
+        frame.ip = ip + 1;
+    }
+
+    static void l2d(StackFrame frame, int ip) {
+        frame.pushDouble((double) frame.popLong());
+        frame.ip = ip + 1;
+    }
+
+    static void f2i(StackFrame frame, int ip) {
+        frame.pushInt((int) frame.popFloat());
+        frame.ip = ip + 1;
+    }
+
+    static void f2l(StackFrame frame, int ip) {
+        frame.pushLong((long) frame.popFloat());
+        frame.ip = ip + 1;
+    }
+
+    static void f2d(StackFrame frame, int ip) {
+        frame.pushDouble((double) frame.popFloat());
+        frame.ip = ip + 1;
+    }
+
+    static void d2i(StackFrame frame, int ip) {
+        frame.pushInt((int) frame.popDouble());
+        frame.ip = ip + 1;
+    }
+
+    static void d2l(StackFrame frame, int ip) {
+        frame.pushLong((long) frame.popDouble());
+        frame.ip = ip + 1;
+    }
+
+    static void d2f(StackFrame frame, int ip) {
+        frame.pushFloat((float) frame.popDouble());
+        frame.ip = ip + 1;
+    }
+
+    static void i2b(StackFrame frame, int ip) {
+        frame.pushInt((byte) frame.popInt());
+        frame.ip = ip + 1;
+    }
+
+    static void i2c(StackFrame frame, int ip) {
+        frame.pushInt((char) frame.popInt());
+        frame.ip = ip + 1;
+    }
+
+    static void i2s(StackFrame frame, int ip) {
+        frame.pushInt((short) frame.popInt());
+        frame.ip = ip + 1;
+    }
+
+    static void lcmp(StackFrame frame, int ip) {
+        long b = frame.popLong();
+        frame.pushInt(Long.compare(frame.popLong(), b));
+        frame.ip = ip + 1;
+    }
+
+    /**
+     * {@code FCMPL} and {@code FCMPG}, which differ only in the result of a comparison with NaN.
+     */
+    static void fcmp(StackFrame frame, int ip, int nanResult) {
+        float b = frame.popFloat();
+        float a = frame.popFloat();
+        frame.pushInt(a > b ? 1 : a == b ? 0 : a < b ? -1 : nanResult);
+        frame.ip = ip + 1;
+    }
+
+    /**
+     * {@code DCMPL} and {@code DCMPG}, which differ only in the result of a comparison with NaN.
+     */
+    static void dcmp(StackFrame frame, int ip, int nanResult) {
+        double b = frame.popDouble();
+        double a = frame.popDouble();
+        frame.pushInt(a > b ? 1 : a == b ? 0 : a < b ? -1 : nanResult);
+        frame.ip = ip + 1;
+    }
+
+    static void iinc(StackFrame frame, int ip, int local, int increment) {
+        frame.storeInt(local, frame.loadInt(local) + increment);
+        frame.ip = ip + 3;
+    }
+
+    private static void checkDivisor(long divisor) {
+        if (divisor == 0) {
+            throw ImplicitException.of(ImplicitException.Kind.ARITHMETIC);
+        }
+    }
+}
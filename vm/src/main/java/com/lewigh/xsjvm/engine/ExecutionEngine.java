@@ -1,52 +1,486 @@
 package com.lewigh.xsjvm.engine;
 
 
+import com.lewigh.xsjvm.VmException;
 import com.lewigh.xsjvm.classloader.AppClassLoader;
-import com.lewigh.xsjvm.classloader.reader.info.attribute.ExceptionTable;
-import com.lewigh.xsjvm.classloader.reader.info.attribute.Instruction;
+import com.lewigh.xsjvm.classloader.Superinstructions;
+import com.lewigh.xsjvm.classloader.reader.info.ClassFile;
 import com.lewigh.xsjvm.classloader.reader.pool.Constant;
 import com.lewigh.xsjvm.classloader.reader.pool.ConstantPool;
+import com.lewigh.xsjvm.classloader.reader.resolvers.DescriptorResolver;
+import com.lewigh.xsjvm.engine.jit.CompiledCode;
+import com.lewigh.xsjvm.engine.jit.Deoptimization;
+import com.lewigh.xsjvm.engine.jit.JitCompiler;
+import com.lewigh.xsjvm.engine.jit.JitRuntime;
+import com.lewigh.xsjvm.engine.indy.CallSites;
+import com.lewigh.xsjvm.engine.natives.Natives;
 import com.lewigh.xsjvm.engine.runtime.*;
 import com.lewigh.xsjvm.mem.VmMemoryManager;
 import com.lewigh.xsjvm.support.Logger;
 import lombok.NonNull;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
+import static com.lewigh.xsjvm.SymbolTable.CLASS_CLASS_NAME;
 import static com.lewigh.xsjvm.SymbolTable.ENTRY_POINT_METHOD_DESC;
 import static com.lewigh.xsjvm.SymbolTable.ENTRY_POINT_METHOD_NAME;
-
+import static com.lewigh.xsjvm.SymbolTable.ERROR_CLASS_NAME;
+import static com.lewigh.xsjvm.SymbolTable.EXCEPTION_IN_INITIALIZER_ERROR_CLASS_NAME;
+import static com.lewigh.xsjvm.SymbolTable.INIT_METH_FULL_NAME;
+import static com.lewigh.xsjvm.SymbolTable.MAIN_THREAD_NAME;
+import static com.lewigh.xsjvm.SymbolTable.NO_CLASS_DEF_FOUND_ERROR_CLASS_NAME;
+import static com.lewigh.xsjvm.SymbolTable.OBJECT_CLASS_NAME;
+import static com.lewigh.xsjvm.SymbolTable.STRING_CLASS_NAME;
+import static com.lewigh.xsjvm.SymbolTable.STRING_CODER_FIELD_NAME;
+import static com.lewigh.xsjvm.SymbolTable.STRING_INIT_METH_FULL_NAME;
+import static com.lewigh.xsjvm.SymbolTable.STRING_VALUE_FIELD_NAME;
+import static com.lewigh.xsjvm.SymbolTable.THREAD_CLASS_NAME;
+import static com.lewigh.xsjvm.SymbolTable.THREAD_EXIT_METH_FULL_NAME;
+import static com.lewigh.xsjvm.SymbolTable.THREAD_GROUP_CLASS_NAME;
+import static com.lewigh.xsjvm.SymbolTable.THREAD_RUN_METH_FULL_NAME;
+import static com.lewigh.xsjvm.SymbolTable.THROWABLE_INIT_METH_FULL_NAME;
+import static com.lewigh.xsjvm.engine.runtime.Bytecodes.*;
+
+/**
+ * Interprets guest code. Every guest thread is run by a host thread of its own, see {@link VmThread}; the state of
+ * a running method lives in the {@link ThreadStack} of its thread, anything reachable from a class or from the heap
+ * is shared.
+ * <p>
+ * A code stream is rewritten by one thread at a time: a thread which resolves an instruction holds the lock of the
+ * stream and quickens it unless another thread has done so meanwhile. The quickened opcode is stored after its
+ * operands with release semantics. Sites of static members are quickened only once the class is initialized, until
+ * then every execution passes the initialization barrier. A quickened field site keeps the access mode of its field,
+ * so only volatile fields pay for ordering their accesses.
+ * <p>
+ * Guest monitors live in the mark words of the objects, see {@link Monitors}. A synchronized method enters its
+ * monitor before its first instruction and leaves it when its frame is popped, by a return or by an exception.
+ * <p>
+ * A thread polls for {@link Safepoints} whenever it enters or re-enters a method, a taken backward branch with an
+ * operation pending leaves the method to re-enter it.
+ */
 @SuppressWarnings({"java:S1119", "DuplicateBranchesInSwitch"})
 public class ExecutionEngine {
 
+    /**
+     * Indexed by the distance of an {@code IF_ICMPxx} opcode from {@code IF_ICMPEQ}.
+     */
+    private static final CmpType[] CMP_TYPES = CmpType.values();
+    private static final int NO_HANDLER = -1;
+    private static final int NOT_FIELD_OPERAND = -1;
+    private static final VarHandle CODE = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final int NORM_PRIORITY = 5;
+
     private final AppClassLoader classLoader;
     private final VmMemoryManager memoryManager;
+    private final JitCompiler jit = new JitCompiler();
+    private final JitRuntime jitRuntime;
+    private final FastThrow fastThrow;
+    private final Natives natives;
+    private final CallSites callSites;
 
-    private final Map<Constant.MethodRefInfo, ClassAndMethodDesc> methodDescriptors = new HashMap<>();
-    private final Map<Constant.FieldInfo, ClassAndFieldDesc> fieldDescriptors = new HashMap<>();
+    private final Map<Long, KlassDesc> mirroredClasses = new ConcurrentHashMap<>();
+    private final ThreadLocal<VmThread> currentThread = new ThreadLocal<>();
+    /**
+     * Started guest threads which have not terminated yet, by their {@code java/lang/Thread} instances.
+     */
+    private final Map<Long, VmThread> threads = new ConcurrentHashMap<>();
+    private final GreenScheduler scheduler = new GreenScheduler(this::runSlice);
+    private final Safepoints safepoints = new Safepoints();
+    private final Monitors monitors;
+
+    private final Map<String, Long> internedStrings = new ConcurrentHashMap<>();
 
 
     public ExecutionEngine(AppClassLoader appClassLoader, VmMemoryManager allocator) {
+        this(appClassLoader, allocator, new FastThrow());
+    }
+
+    ExecutionEngine(AppClassLoader appClassLoader, VmMemoryManager allocator, FastThrow fastThrow) {
         this.classLoader = appClassLoader;
         this.memoryManager = allocator;
+        this.fastThrow = fastThrow;
+        this.monitors = new Monitors(allocator, scheduler, safepoints);
+        this.jitRuntime = new JitRuntime(allocator, appClassLoader, new JitRuntime.Host() {
+            @Override
+            public long call(@NonNull KlassDesc klass, @NonNull MethodDesc method, long[] args) {
+                return callFromCompiled(klass, method, args);
+            }
+
+            @Override
+            public long allocate(@NonNull KlassDesc klass) {
+                return allocateObject(klass);
+            }
+
+            @Override
+            public void poll() {
+                ExecutionEngine.this.poll();
+            }
+        });
+        this.natives = Natives.create(allocator, new Natives.Host() {
+            @Override
+            public long mirror(@NonNull KlassDesc klass) {
+                return ExecutionEngine.this.mirror(klass);
+            }
+
+            @Override
+            public KlassDesc mirrored(long mirror) {
+                return mirroredClasses.get(mirror);
+            }
+
+            @Override
+            public KlassDesc klass(@NonNull String className) {
+                return classLoader.load(className);
+            }
+
+            @Override
+            public KlassDesc klassOf(long objectRef) {
+                return classLoader.load(memoryManager.getClassId(objectRef));
+            }
+
+            @Override
+            public long allocate(@NonNull KlassDesc klass) {
+                return allocateObject(klass);
+            }
+
+            @Override
+            public long call(@NonNull KlassDesc klass, @NonNull MethodDesc method, long[] args) {
+                return callFromCompiled(klass, method, args);
+            }
+
+            @Override
+            public String string(long stringRef) {
+                return hostString(stringRef);
+            }
+
+            @Override
+            public KlassDesc callerClass() {
+                StackFrame caller = currentThread.get().frame(1);
+                return caller == null ? null : caller.getKlass();
+            }
+
+            @Override
+            public long currentThread() {
+                return ExecutionEngine.this.currentThread();
+            }
+
+            @Override
+            public void startThread(long threadRef) {
+                ExecutionEngine.this.startThread(threadRef);
+            }
+
+            @Override
+            public void monitorWait(long objectRef, long millis) {
+                monitors.await(currentThread.get(), objectRef, millis);
+            }
+
+            @Override
+            public void monitorNotify(long objectRef, boolean all) {
+                monitors.signal(currentThread.get(), objectRef, all);
+            }
+
+            @Override
+            public boolean holdsMonitor(long objectRef) {
+                return monitors.holds(currentThread.get(), objectRef);
+            }
+
+            @Override
+            public void sleep(long millis) {
+                ExecutionEngine.this.sleep(millis);
+            }
+        });
+        this.callSites = new CallSites(allocator, new CallSites.Host() {
+            @Override
+            public KlassDesc klass(@NonNull String className) {
+                return classLoader.load(className);
+            }
+
+            @Override
+            public KlassDesc klassOf(long objectRef) {
+                return classLoader.load(memoryManager.getClassId(objectRef));
+            }
+
+            @Override
+            public long call(@NonNull KlassDesc klass, @NonNull MethodDesc method, long[] args) {
+                return callFromCompiled(klass, method, args);
+            }
+
+            @Override
+            public long allocate(@NonNull KlassDesc klass) {
+                return allocateObject(klass);
+            }
+
+            @Override
+            public KlassDesc define(@NonNull ClassFile classFile) {
+                return classLoader.define(classFile);
+            }
+        });
     }
 
 
+    /**
+     * Runs the {@code main} method of the class on the calling thread and waits for the guest threads which are not
+     * daemons.
+     */
     public void execute(String className) {
-        var threadStack = new ThreadStack();
-        var mainClass = getClass(className, threadStack);
-        var mainMethod = mainClass.findMethod(ENTRY_POINT_METHOD_NAME, ENTRY_POINT_METHOD_DESC, InvokeType.STATIC);
-        var mainFrame = StackFrame.create(mainClass, mainMethod);
+        VmThread main = VmThread.main();
+        currentThread.set(main);
+        safepoints.attach(main);
+        safepoints.startPeriodic();
+        try {
+            var threadStack = new ThreadStack();
+            main.enterStack(threadStack);
+            safepoints.resume(main);
 
-        threadStack.push(mainFrame);
+            var mainClass = getClass(className, threadStack);
+            var mainMethod = mainClass.findMethod(ENTRY_POINT_METHOD_NAME, ENTRY_POINT_METHOD_DESC, InvokeType.STATIC);
+            var mainFrame = StackFrame.create(mainClass, mainMethod);
 
-        runThreadLoop(threadStack);
+            threadStack.push(mainFrame);
+
+            try {
+                runThreadLoop(threadStack);
+            } finally {
+                safepoints.detach(main);
+            }
+            awaitThreads();
+        } finally {
+            currentThread.remove();
+        }
+    }
+
+    private void awaitThreads() {
+        for (; ; ) {
+            Optional<VmThread> running = threads.values().stream().filter(thread -> !thread.isDaemon()).findAny();
+            if (running.isEmpty()) {
+                return;
+            }
+            running.get().join(0);
+        }
+    }
+
+    /**
+     * Starts the guest thread on a host thread of its own or, with green threads enabled, submits it to the
+     * scheduler. The thread is alive from now on, see {@code Thread.isAlive()}, and runs its {@code run()} method
+     * followed by {@code exit()}.
+     */
+    private void startThread(long threadObject) {
+        KlassDesc threadKlass = classLoader.load(THREAD_CLASS_NAME);
+        KlassDesc runOwner = klassOf(threadObject).selectMethodOwner(THREAD_RUN_METH_FULL_NAME);
+        MethodDesc run = runOwner.methods().get(THREAD_RUN_METH_FULL_NAME);
+        boolean daemon = getField(threadObject, threadKlass, "daemon") != 0;
+
+        VmThread thread;
+        if (GreenScheduler.ENABLED) {
+            var threadStack = new ThreadStack();
+            threadStack.setQuantum(GreenScheduler.QUANTUM);
+            threadStack.push(StackFrame.create(runOwner, run, new long[]{threadObject}));
+            thread = VmThread.green(threadObject, daemon, threadStack);
+        } else {
+            thread = VmThread.of(threadObject, daemon);
+        }
+
+        threads.put(threadObject, thread);
+        safepoints.attach(thread);
+        putField(threadObject, threadKlass, "threadStatus", VmThread.RUNNABLE);
+        putField(threadObject, threadKlass, "eetop", threadObject);
+
+        if (GreenScheduler.ENABLED) {
+            scheduler.submit(thread);
+        } else {
+            String name = hostString(getField(threadObject, threadKlass, "name"));
+            thread.start(name, started -> runThread(started, runOwner, run));
+        }
+    }
+
+    private void runThread(VmThread thread, KlassDesc klass, MethodDesc run) {
+        currentThread.set(thread);
+        safepoints.resume(thread);
+        try {
+            callFromCompiled(klass, run, new long[]{thread.threadObject()});
+        } catch (GuestException e) {
+            logUncaught(e);
+        } finally {
+            exitThread(thread);
+        }
+    }
+
+    /**
+     * Runs a slice of the green thread, see {@link GreenScheduler.Host#runSlice(VmThread)}. Every call and return
+     * counts against the quantum like a backward branch does. The thread is safe between its slices.
+     */
+    private boolean runSlice(VmThread thread) {
+        ThreadStack threadStack = thread.greenStack();
+        currentThread.set(thread);
+        safepoints.resume(thread);
+        try {
+            try {
+                while (!threadStack.isEmpty()) {
+                    executeMethod(threadStack);
+                    threadStack.tick();
+
+                    if (threadStack.takeYieldRequest() || thread.isParkRequested()) {
+                        return false;
+                    }
+                }
+            } catch (GuestException e) {
+                logUncaught(e);
+            } catch (RuntimeException | Error e) {
+                exitThread(thread);
+                throw e;
+            }
+            exitThread(thread);
+            return true;
+        } finally {
+            safepoints.stop(thread);
+            currentThread.remove();
+        }
+    }
+
+    private void logUncaught(GuestException e) {
+        Logger.debug("Uncaught exception %s in thread %s%n", klassOf(e.getException()).name(), hostString(getField(
+                currentThread.get().threadObject(), classLoader.load(THREAD_CLASS_NAME), "name")));
+    }
+
+    /**
+     * A green thread is parked for the time, any other blocks its host thread. An interrupt of the host thread ends
+     * the sleep early and stays pending, guest interrupts do not reach host threads yet.
+     */
+    private void sleep(long millis) {
+        VmThread thread = currentThread.get();
+        if (thread.canPark()) {
+            scheduler.unparkAfter(thread, thread.requestPark(), millis);
+        } else if (thread.isGreen()) {
+            safepoints.block(thread, () -> scheduler.blockCarrier(() -> hostSleep(millis)));
+        } else {
+            safepoints.block(thread, () -> hostSleep(millis));
+        }
+    }
+
+    private static void hostSleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Lets the guest thread clean up after itself, e.g. leave its thread group, and marks it terminated. Like
+     * HotSpot, it notifies the threads joining it, which wait on the monitor of its {@code java/lang/Thread}
+     * instance until it is no longer alive.
+     */
+    private void exitThread(VmThread thread) {
+        KlassDesc threadKlass = classLoader.load(THREAD_CLASS_NAME);
+        long threadObject = thread.threadObject();
+
+        try {
+            callFromCompiled(threadKlass, threadKlass.methods().get(THREAD_EXIT_METH_FULL_NAME), new long[]{threadObject});
+        } catch (GuestException e) {
+            logUncaught(e);
+        } finally {
+            monitors.lock(thread, threadObject);
+            try {
+                putField(threadObject, threadKlass, "threadStatus", VmThread.TERMINATED);
+                putField(threadObject, threadKlass, "eetop", 0);
+                monitors.signal(thread, threadObject, true);
+            } finally {
+                monitors.exit(thread, threadObject);
+            }
+            threads.remove(threadObject);
+            safepoints.detach(thread);
+            thread.terminate();
+        }
     }
 
 
     private void runThreadLoop(ThreadStack threadStack) {
-        for (; ; ) {
-            if (executeMethod(threadStack)) break;
+        try {
+            for (; ; ) {
+                if (executeMethod(threadStack)) break;
+            }
+        } catch (GuestException e) {
+            throw ThreadStack.Exception.uncaught(klassOf(e.getException()).name());
+        }
+    }
+
+    /**
+     * Runs a call made by compiled code: a compiled callee is called directly, an interpreted one runs on its own
+     * thread stack until it returns.
+     */
+    private long callFromCompiled(KlassDesc klass, MethodDesc method, long[] args) {
+        poll();
+
+        if (method.fNative() || method.nativeCode() != null) {
+            return callNative(klass, method, args);
+        }
+
+        CompiledCode compiled = jit.compiledCode(klass, method);
+        StackFrame frame;
+
+        if (compiled == null) {
+            frame = StackFrame.create(klass, method, args);
+        } else {
+            try {
+                return compiled.run(jitRuntime, args);
+            } catch (Deoptimization deopt) {
+                jit.invalidate(klass, method, deopt);
+                frame = deoptimized(klass, method, deopt);
+            }
+        }
+
+        var threadStack = new ThreadStack();
+        threadStack.push(frame);
+
+        VmThread thread = currentThread.get();
+        thread.enterStack(threadStack);
+        try {
+            while (!threadStack.isEmpty()) {
+                executeMethod(threadStack);
+            }
+        } finally {
+            thread.exitStack();
+        }
+
+        return threadStack.getResult();
+    }
+
+    /**
+     * Calls the host implementation of the native method or intrinsic. A native method is bound on its first call,
+     * an intrinsic when its class is initialized. A synchronized one runs holding its monitor, which the thread
+     * blocks for rather than parks.
+     */
+    private long callNative(KlassDesc klass, MethodDesc method, long[] args) {
+        MethodHandle code = method.nativeCode();
+
+        if (code == null) {
+            code = natives.bind(klass, method);
+            method.bindNativeCode(code);
+        }
+
+        VmThread thread = null;
+        long monitor = 0;
+        if (method.fSynchronized()) {
+            thread = currentThread.get();
+            monitor = method.fStatic() ? mirror(klass) : args[0];
+            monitors.lock(thread, monitor);
+        }
+
+        try {
+            return (long) code.invokeExact(args);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new VmException(e);
+        } finally {
+            if (monitor != 0) {
+                monitors.exit(thread, monitor);
+            }
         }
     }
 
@@ -55,257 +489,326 @@ public class ExecutionEngine {
 
             if (threadStack.isEmpty()) {
                 Logger.debug("End of thread%n");
+                if (Superinstructions.REPORT) {
+                    Superinstructions.report();
+                }
+                if (FastThrow.REPORT) {
+                    fastThrow.report();
+                }
+                if (Safepoints.REPORT) {
+                    safepoints.report();
+                }
                 return true;
             }
 
+            poll();
+
             var frame = threadStack.top();
             var method = frame.getMethod();
+            var code = method.code();
+
+            if (method.fSynchronized() && frame.monitor == 0 && !enterMethodMonitor(frame)) {
+                return false;
+            }
 
             Logger.invoke(frame);
 
-            loop:
-            for (var i = frame.ip; i < method.instructions().length; i++) {
-                frame.setIp(i);
-                var instruction = method.instructions()[i];
-                var opCode = instruction.opCode();
+            for (; ; ) {
+                var ip = frame.ip;
 
-                switch (opCode) {
+                switch (Bytecodes.opcode(code, ip)) {
+                    case NOP -> frame.ip = ip + 1;
                     case ACONST_NULL -> {
-                        frame.inc();
-                        frame.push(new Value.Ref.Null());
-                    }
-                    case ICONST_0 -> {
-                        frame.inc();
-                        iconst(frame, 0);
-                    }
-                    case ICONST_1 -> {
-                        frame.inc();
-                        iconst(frame, 1);
+                        frame.pushRef(0);
+                        frame.ip = ip + 1;
                     }
-                    case ICONST_2 -> {
-                        frame.inc();
-                        iconst(frame, 2);
+                    case ICONST_M_1 -> iconst(frame, ip, -1);
+                    case ICONST_0 -> iconst(frame, ip, 0);
+                    case ICONST_1 -> iconst(frame, ip, 1);
+                    case ICONST_2 -> iconst(frame, ip, 2);
+                    case ICONST_3 -> iconst(frame, ip, 3);
+                    case ICONST_4 -> iconst(frame, ip, 4);
+                    case ICONST_5 -> iconst(frame, ip, 5);
+                    case LCONST_0, LCONST_1 -> {
+                        frame.pushLong(code[ip] - LCONST_0);
+                        frame.ip = ip + 1;
                     }
-                    case ICONST_3 -> {
-                        frame.inc();
-                        iconst(frame, 3);
+                    case FCONST_0, FCONST_1, FCONST_2 -> {
+                        frame.pushFloat(code[ip] - FCONST_0);
+                        frame.ip = ip + 1;
                     }
-                    case ICONST_4 -> {
-                        frame.inc();
-                        iconst(frame, 4);
+                    case DCONST_0, DCONST_1 -> {
+                        frame.pushDouble(code[ip] - DCONST_0);
+                        frame.ip = ip + 1;
                     }
-                    case ICONST_5 -> {
-                        frame.inc();
-                        iconst(frame, 5);
+                    case BIPUSH, SIPUSH -> {
+                        frame.pushInt(code[ip + 1]);
+                        frame.ip = ip + 2;
                     }
-                    case FCONST_2 -> {
-                        frame.inc();
-                        frame.push(new Value.Float(2.0f));
+                    case LDC, LDC2_W -> ldc(frame, ip, code[ip + 1]);
+                    case ILOAD, LLOAD, FLOAD, DLOAD, ALOAD -> {
+                        frame.load(code[ip + 1]);
+                        frame.ip = ip + 2;
                     }
-                    case LDC, LDC_W -> ldc(frame, instruction);
-                    case ISTORE -> {
-                        frame.inc();
-
-                        frame.popAndStoreTo(instruction.firstOperand());
-                    }
-
-                    case ISTORE_0 -> {
-                        frame.inc();
-                        frame.popAndStoreTo(0);
-                    }
-                    case ISTORE_1 -> {
-                        frame.inc();
-                        frame.popAndStoreTo(1);
-                    }
-                    case ISTORE_2 -> {
-                        frame.inc();
-                        frame.popAndStoreTo(2);
-                    }
-
-                    case ISTORE_3 -> {
-                        frame.inc();
-                        frame.popAndStoreTo(3);
-                    }
-                    case FSTORE -> frame.popAndStoreTo(instruction.firstOperand());
-                    case FSTORE_0 -> {
-                        frame.inc();
-                        frame.popAndStoreTo(0);
-                    }
-                    case ILOAD_0 -> {
-                        frame.inc();
-                        frame.push(frame.load(0));
-                    }
-                    case ILOAD_1 -> {
-                        frame.inc();
-                        frame.push(frame.load(1));
-                    }
-                    case ILOAD_2 -> {
-                        frame.push(frame.load(2));
-                    }
-                    case FLOAD_0 -> {
-                        frame.push(frame.load(0));
+                    case ISTORE, LSTORE, FSTORE, DSTORE, ASTORE -> {
+                        frame.store(code[ip + 1]);
+                        frame.ip = ip + 2;
                     }
                     case IADD -> {
-                        frame.inc();
-                        Value operA = frame.pop();
-                        Value operB = frame.pop();
-                        if (operA instanceof Value.Int a && operB instanceof Value.Int b) {
-                            frame.push(new Value.Int(a.value() + b.value()));
-                        } else {
-                            throw StackFrame.Exception.create("Operands have wrong types %s %s for adding.".formatted(operA, operB), frame);
-                        }
+                        frame.pushInt(frame.popInt() + frame.popInt());
+                        frame.ip = ip + 1;
                     }
+                    case LADD -> Arithmetic.ladd(frame, ip);
+                    case FADD -> Arithmetic.fadd(frame, ip);
+                    case DADD -> Arithmetic.dadd(frame, ip);
+                    case ISUB -> Arithmetic.isub(frame, ip);
+                    case LSUB -> Arithmetic.lsub(frame, ip);
+                    case FSUB -> Arithmetic.fsub(frame, ip);
+                    case DSUB -> Arithmetic.dsub(frame, ip);
+                    case IMUL -> Arithmetic.imul(frame, ip);
+                    case LMUL -> Arithmetic.lmul(frame, ip);
+                    case FMUL -> Arithmetic.fmul(frame, ip);
+                    case DMUL -> Arithmetic.dmul(frame, ip);
+                    case IDIV -> Arithmetic.idiv(frame, ip);
+                    case LDIV -> Arithmetic.ldiv(frame, ip);
+                    case FDIV -> Arithmetic.fdiv(frame, ip);
+                    case DDIV -> Arithmetic.ddiv(frame, ip);
+                    case IREM -> Arithmetic.irem(frame, ip);
+                    case LREM -> Arithmetic.lrem(frame, ip);
+                    case FREM -> Arithmetic.frem(frame, ip);
+                    case DREM -> Arithmetic.drem(frame, ip);
+                    case INEG -> Arithmetic.ineg(frame, ip);
+                    case LNEG -> Arithmetic.lneg(frame, ip);
+                    case FNEG -> Arithmetic.fneg(frame, ip);
+                    case DNEG -> Arithmetic.dneg(frame, ip);
+                    case ISHL -> Arithmetic.ishl(frame, ip);
+                    case LSHL -> Arithmetic.lshl(frame, ip);
+                    case ISHR -> Arithmetic.ishr(frame, ip);
+                    case LSHR -> Arithmetic.lshr(frame, ip);
+                    case IUSHR -> Arithmetic.iushr(frame, ip);
+                    case LUSHR -> Arithmetic.lushr(frame, ip);
+                    case IAND -> Arithmetic.iand(frame, ip);
+                    case LAND -> Arithmetic.land(frame, ip);
+                    case IOR -> Arithmetic.ior(frame, ip);
+                    case LOR -> Arithmetic.lor(frame, ip);
+                    case IXOR -> Arithmetic.ixor(frame, ip);
+                    case LXOR -> Arithmetic.lxor(frame, ip);
+                    case IINC -> Arithmetic.iinc(frame, ip, code[ip + 1], code[ip + 2]);
+                    case I_2_L -> Arithmetic.i2l(frame, ip);
+                    case I_2_F -> Arithmetic.i2f(frame, ip);
+                    case I_2_D -> Arithmetic.i2d(frame, ip);
+                    case L_2_I -> Arithmetic.l2i(frame, ip);
+                    case L_2_F -> Arithmetic.l2f(frame, ip);
+                    case L_2_D -> Arithmetic.l2d(frame, ip);
+                    case F_2_I -> Arithmetic.f2i(frame, ip);
+                    case F_2_L -> Arithmetic.f2l(frame, ip);
+                    case F_2_D -> Arithmetic.f2d(frame, ip);
+                    case D_2_I -> Arithmetic.d2i(frame, ip);
+                    case D_2_L -> Arithmetic.d2l(frame, ip);
+                    case D_2_F -> Arithmetic.d2f(frame, ip);
+                    case I_2_B -> Arithmetic.i2b(frame, ip);
+                    case I_2_C -> Arithmetic.i2c(frame, ip);
+                    case I_2_S -> Arithmetic.i2s(frame, ip);
+                    case LCMP -> Arithmetic.lcmp(frame, ip);
+                    case FCMPL -> Arithmetic.fcmp(frame, ip, -1);
+                    case FCMPG -> Arithmetic.fcmp(frame, ip, 1);
+                    case DCMPL -> Arithmetic.dcmp(frame, ip, -1);
+                    case DCMPG -> Arithmetic.dcmp(frame, ip, 1);
                     case IRETURN, LRETURN, FRETURN, DRETURN, ARETURN -> {
+                        exitMethodMonitor(frame);
                         var cur = threadStack.pop();
-                        Value retVal = cur.pop();
-                        threadStack.top().push(retVal);
-                        Logger.retval(frame, retVal);
-                        break loop;
+                        Logger.retval(frame, cur.peek());
+                        returnValue(threadStack, cur.peekTag(), cur.popRaw());
+                        return false;
                     }
                     case RETURN -> {
+                        exitMethodMonitor(frame);
                         threadStack.pop();
                         Logger.ret(frame);
-                        break loop;
+                        return false;
                     }
-                    case GETSTATIC -> getStatic(frame, instruction, threadStack);
-                    case PUTSTATIC -> putStatic(frame, instruction, threadStack);
-                    case GETFIELD -> getField(threadStack, frame, instruction);
-                    case PUTFIELD -> putField(threadStack, frame, instruction);
+                    case GETSTATIC -> getStatic(frame, ip, threadStack);
+                    case PUTSTATIC -> putStatic(frame, ip, threadStack);
+                    case GETFIELD -> getField(threadStack, frame, ip);
+                    case PUTFIELD -> putField(threadStack, frame, ip);
+                    case GETSTATIC_QUICK -> getStaticQuick(frame, ip, code);
+                    case PUTSTATIC_QUICK -> putStaticQuick(frame, ip, code);
+                    case GETFIELD_QUICK -> getFieldQuick(frame, ip, code);
+                    case PUTFIELD_QUICK -> putFieldQuick(frame, ip, code);
                     case INVOKESTATIC -> {
-                        invoke(InvokeType.STATIC, threadStack, frame, instruction);
-                        break loop;
+                        invoke(InvokeType.STATIC, threadStack, frame, ip, code[ip + 1]);
+                        return false;
                     }
                     case INVOKESPECIAL -> {
-                        invoke(InvokeType.SPECIAL, threadStack, frame, instruction);
-                        break loop;
+                        invoke(InvokeType.SPECIAL, threadStack, frame, ip, code[ip + 1]);
+                        return false;
                     }
                     case INVOKEVIRTUAL -> {
-                        invoke(InvokeType.VIRTUAL, threadStack, frame, instruction);
-                        break loop;
+                        invokeVirtual(threadStack, frame, ip, code[ip + 1]);
+                        return false;
                     }
                     case INVOKEINTERFACE -> {
-                        invoke(InvokeType.INTERFACE, threadStack, frame, instruction);
-                        break loop;
+                        invokeInterface(threadStack, frame, ip, code[ip + 1]);
+                        return false;
+                    }
+                    case INVOKEDYNAMIC -> {
+                        invokeDynamic(threadStack, frame, ip, code[ip + 1]);
+                        return false;
+                    }
+                    case INVOKEDYNAMIC_QUICK -> {
+                        callDynamic(threadStack, frame, ip, method.callSite(ip));
+                        return false;
+                    }
+                    case INVOKESTATIC_QUICK, INVOKESPECIAL_QUICK -> {
+                        InlineCache.Target target = method.inlineCache(ip).getBound();
+                        call(threadStack, frame, ip, target.klass(), target.method());
+                        return false;
+                    }
+                    case INVOKEVIRTUAL_QUICK -> {
+                        dispatch(threadStack, frame, ip, code, method.inlineCache(ip));
+                        return false;
+                    }
+                    case INVOKEINTERFACE_QUICK -> {
+                        dispatchInterface(threadStack, frame, ip, code, method.inlineCache(ip));
+                        return false;
                     }
                     case DUP -> {
-                        frame.inc();
-
-                        Value poped = frame.pop();
-
-                        frame.push(poped);
-                        frame.push(poped);
+                        frame.dup();
+                        frame.ip = ip + 1;
                     }
                     case POP -> {
-                        frame.inc();
-                        frame.pop();
-                    }
-                    case NEW -> newObject(threadStack, frame, instruction);
-                    case NEWARRAY -> newArray(frame, instruction);
-                    case ANEWARRAY -> newReferenceArray(threadStack, frame, instruction);
-                    case BIPUSH -> {
-                        frame.inc();
-                        frame.push(new Value.Byte((byte) instruction.firstOperand()));
-                    }
-                    case ASTORE_0 -> {
-                        frame.inc();
-                        frame.popAndStoreTo(0);
-                    }
-                    case ASTORE_1 -> {
-                        frame.inc();
-                        frame.popAndStoreTo(1);
-                    }
-                    case ASTORE_2 -> {
-                        frame.inc();
-                        frame.popAndStoreTo(2);
-                    }
-                    case ASTORE_3 -> {
-                        frame.inc();
-                        frame.popAndStoreTo(3);
-                    }
-                    case ASTORE -> {
-                        frame.inc();
-                        short localId = instruction.firstOperand();
-                        frame.popAndStoreTo(localId);
-                    }
-                    case ALOAD -> {
-                        frame.inc();
-
-                        short operand = instruction.firstOperand();
-
-                        frame.push(frame.load(operand));
-                    }
-                    case ALOAD_0 -> {
-                        frame.inc();
-
-                        frame.push(frame.load(0));
-                    }
-                    case ALOAD_1 -> {
-                        frame.inc();
-
-                        frame.push(frame.load(1));
-                    }
-                    case IASTORE -> storeArrayElement(frame, Jtype.Primitive.INT);
-                    case BASTORE -> storeArrayElement(frame, Jtype.Primitive.BYTE);
-                    case FASTORE -> storeArrayElement(frame, Jtype.Primitive.FLOAT);
-                    case DASTORE -> storeArrayElement(frame, Jtype.Primitive.DOUBLE);
-                    case CASTORE -> storeArrayElement(frame, Jtype.Primitive.CHAR);
-                    case SASTORE -> storeArrayElement(frame, Jtype.Primitive.SHORT);
-                    case LASTORE -> storeArrayElement(frame, Jtype.Primitive.LONG);
-                    case AASTORE -> storeArrayElement(frame, Jtype.Primitive.REFERENCE);
-                    case IALOAD -> loadArrayElement(frame, Jtype.Primitive.INT);
-                    case BALOAD -> loadArrayElement(frame, Jtype.Primitive.BYTE);
-                    case FALOAD -> loadArrayElement(frame, Jtype.Primitive.FLOAT);
-                    case DALOAD -> loadArrayElement(frame, Jtype.Primitive.DOUBLE);
-                    case CALOAD -> loadArrayElement(frame, Jtype.Primitive.CHAR);
-                    case SALOAD -> loadArrayElement(frame, Jtype.Primitive.SHORT);
-                    case LALOAD -> loadArrayElement(frame, Jtype.Primitive.LONG);
-                    case AALOAD -> loadArrayElement(frame, Jtype.Primitive.REFERENCE);
-
-                    case IF_ICMPEQ -> {
-                        if (icmp(CmpType.EQ, frame, instruction)) {
-                            break loop;
-                        }
+                        frame.drop();
+                        frame.ip = ip + 1;
                     }
-                    case IF_ICMPNE -> {
-                        if (icmp(CmpType.NE, frame, instruction)) {
-                            break loop;
-                        }
+                    case POP_2 -> {
+                        frame.drop2();
+                        frame.ip = ip + 1;
                     }
-                    case IF_ICMPLT -> {
-                        if (icmp(CmpType.LT, frame, instruction)) {
-                            break loop;
-                        }
+                    case DUP_X_1 -> {
+                        frame.dupX1();
+                        frame.ip = ip + 1;
+                    }
+                    case DUP_X_2 -> {
+                        frame.dupX2();
+                        frame.ip = ip + 1;
+                    }
+                    case DUP_2 -> {
+                        frame.dup2();
+                        frame.ip = ip + 1;
+                    }
+                    case DUP_2_X_1 -> {
+                        frame.dup2X1();
+                        frame.ip = ip + 1;
+                    }
+                    case DUP_2_X_2 -> {
+                        frame.dup2X2();
+                        frame.ip = ip + 1;
+                    }
+                    case SWAP -> {
+                        frame.swap();
+                        frame.ip = ip + 1;
                     }
-                    case IF_ICMPGE -> {
-                        if (icmp(CmpType.GE, frame, instruction)) {
-                            break loop;
+                    case NEW -> newObject(threadStack, frame, ip, code[ip + 1]);
+                    case NEWARRAY -> newArray(frame, ip, code[ip + 1]);
+                    case ANEWARRAY -> newReferenceArray(threadStack, frame, ip, code[ip + 1]);
+                    case IASTORE -> storeArrayElement(frame, ip, Jtype.Primitive.INT);
+                    case BASTORE -> storeArrayElement(frame, ip, Jtype.Primitive.BYTE);
+                    case FASTORE -> storeArrayElement(frame, ip, Jtype.Primitive.FLOAT);
+                    case DASTORE -> storeArrayElement(frame, ip, Jtype.Primitive.DOUBLE);
+                    case CASTORE -> storeArrayElement(frame, ip, Jtype.Primitive.CHAR);
+                    case SASTORE -> storeArrayElement(frame, ip, Jtype.Primitive.SHORT);
+                    case LASTORE -> storeArrayElement(frame, ip, Jtype.Primitive.LONG);
+                    case AASTORE -> storeArrayElement(frame, ip, Jtype.Primitive.REFERENCE);
+                    case IALOAD -> loadArrayElement(frame, ip, Jtype.Primitive.INT);
+                    case BALOAD -> loadArrayElement(frame, ip, Jtype.Primitive.BYTE);
+                    case FALOAD -> loadArrayElement(frame, ip, Jtype.Primitive.FLOAT);
+                    case DALOAD -> loadArrayElement(frame, ip, Jtype.Primitive.DOUBLE);
+                    case CALOAD -> loadArrayElement(frame, ip, Jtype.Primitive.CHAR);
+                    case SALOAD -> loadArrayElement(frame, ip, Jtype.Primitive.SHORT);
+                    case LALOAD -> loadArrayElement(frame, ip, Jtype.Primitive.LONG);
+                    case AALOAD -> loadArrayElement(frame, ip, Jtype.Primitive.REFERENCE);
+                    case IFEQ -> ifZero(CmpType.EQ, frame, ip, code[ip + 1]);
+                    case IFNE -> ifZero(CmpType.NE, frame, ip, code[ip + 1]);
+                    case IFLT -> ifZero(CmpType.LT, frame, ip, code[ip + 1]);
+                    case IFGE -> ifZero(CmpType.GE, frame, ip, code[ip + 1]);
+                    case IFGT -> ifZero(CmpType.GT, frame, ip, code[ip + 1]);
+                    case IFLE -> ifZero(CmpType.LE, frame, ip, code[ip + 1]);
+                    case IF_ICMPEQ -> icmp(CmpType.EQ, frame, ip, code[ip + 1]);
+                    case IF_ICMPNE -> icmp(CmpType.NE, frame, ip, code[ip + 1]);
+                    case IF_ICMPLT -> icmp(CmpType.LT, frame, ip, code[ip + 1]);
+                    case IF_ICMPGE -> icmp(CmpType.GE, frame, ip, code[ip + 1]);
+                    case IF_ICMPGT -> icmp(CmpType.GT, frame, ip, code[ip + 1]);
+                    case IF_ICMPLE -> icmp(CmpType.LE, frame, ip, code[ip + 1]);
+                    case IF_ACMPEQ -> acmp(frame, ip, code[ip + 1], true);
+                    case IF_ACMPNE -> acmp(frame, ip, code[ip + 1], false);
+                    case IFNULL -> ifNullable(frame, ip, code[ip + 1], true);
+                    case IFNONNULL -> ifNullable(frame, ip, code[ip + 1], false);
+                    case GOTO -> frame.goTo(code[ip + 1]);
+                    case TABLESWITCH -> frame.goTo(tableSwitch(code, ip, frame.popInt()));
+                    case LOOKUPSWITCH -> frame.goTo(lookupSwitch(code, ip, frame.popInt()));
+                    case ILOAD_ILOAD_IADD_ISTORE -> {
+                        if (Superinstructions.REPORT) Superinstructions.fired(ILOAD_ILOAD_IADD_ISTORE);
+                        frame.storeInt(code[ip + 6], frame.loadInt(code[ip + 1]) + frame.loadInt(code[ip + 3]));
+                        frame.ip = ip + 7;
+                    }
+                    case ALOAD_GETFIELD -> {
+                        if (Superinstructions.REPORT) Superinstructions.fired(ALOAD_GETFIELD);
+                        frame.load(code[ip + 1]);
+                        frame.ip = ip + 2;
+                        if (Bytecodes.opcode(code, ip + 2) == GETFIELD_QUICK) {
+                            getFieldQuick(frame, ip + 2, code);
+                        } else {
+                            getField(threadStack, frame, ip + 2);
                         }
                     }
-                    case IF_ICMPGT -> {
-                        if (icmp(CmpType.GT, frame, instruction)) {
-                            break loop;
+                    case ILOAD_IF_ICMP -> {
+                        if (Superinstructions.REPORT) Superinstructions.fired(ILOAD_IF_ICMP);
+                        int b = frame.loadInt(code[ip + 1]);
+                        int a = frame.popInt();
+                        if (compare(CMP_TYPES[code[ip + 2] - IF_ICMPEQ], a, b)) {
+                            frame.goTo(code[ip + 3]);
+                        } else {
+                            frame.ip = ip + 4;
                         }
                     }
-                    case IF_ICMPLE -> {
-                        if (icmp(CmpType.LE, frame, instruction)) {
-                            break loop;
+                    case ARRAYLENGTH -> arrayLength(frame, ip);
+                    case ATHROW -> {
+                        throwException(threadStack, nonNull(frame.popRef()));
+                        return false;
+                    }
+                    case MONITORENTER -> {
+                        long object = nonNull(frame.popRef());
+                        frame.ip = ip + 1;
+                        if (!monitors.enter(currentThread.get(), object)) {
+                            // parked until the monitor is handed over
+                            return false;
                         }
                     }
-                    case IFNULL -> ifNullable(frame, instruction, true);
-                    case IFNONNULL -> ifNullable(frame, instruction, false);
-                    case I_2_L -> {
-                        frame.inc();
-                        Value.Int v = frame.popInt();
-
-                        frame.push(new Value.Long(v.value()));
+                    case MONITOREXIT -> {
+                        monitors.exit(currentThread.get(), nonNull(frame.popRef()));
+                        frame.ip = ip + 1;
                     }
-                    case ARRAYLENGTH -> arrayLength(frame);
-                    case ATHROW -> aThrow(frame);
-                    case INSTANCEOF -> instanceOf(frame, instruction, threadStack);
-                    case CHECKCAST -> checkCast(frame, instruction, threadStack);
-                    default -> throw StackFrame.Exception.create("Unrecognized operation %s".formatted(opCode), frame);
+                    case INSTANCEOF -> instanceOf(frame, ip, code);
+                    case CHECKCAST -> checkCast(frame, ip, code);
+                    default -> throw StackFrame.Exception.create("Unrecognized operation %s".formatted(Bytecodes.name(code[ip])), frame);
+                }
+
+                // Only a taken branch moves the frame back, a thread which has used up its quantum yields here and
+                // one with a safepoint operation pending polls once it re-enters the method
+                if (frame.ip <= ip && (safepoints.isArmed() || backedge(threadStack, frame) || threadStack.tick())) {
+                    return false;
                 }
             }
+        } catch (ImplicitException e) {
+            throwImplicit(threadStack, e.getKind());
+            return false;
+        } catch (GuestException e) {
+            // left the frames of this loop or thrown by an instruction of the top frame, e.g. by the initializer
+            // of the class it refers to
+            if (threadStack.isAtBase()) {
+                throw e;
+            }
+            throwException(threadStack, e.getException());
             return false;
         } catch (ThreadStack.Exception e) {
             throw e;
@@ -314,466 +817,1087 @@ public class ExecutionEngine {
         }
     }
 
-    private boolean hasTargetSuperKlass(KlassDesc targetKlass, KlassDesc refKlass) {
-        KlassDesc superKlassDesc = refKlass.superKlass();
-        while (superKlassDesc != null) {
-            if (superKlassDesc.id() == targetKlass.id()) {
-                return true;
-            }
-            superKlassDesc = superKlassDesc.superKlass();
+    /**
+     * Stops the running thread at a safepoint if an operation is pending, see {@link Safepoints}.
+     */
+    private void poll() {
+        if (safepoints.isArmed()) {
+            safepoints.poll(currentThread.get());
         }
-
-        return false;
     }
 
-    private boolean hasTargetInterface(KlassDesc target, KlassDesc[] interfaces) {
-        if (interfaces.length == 0) {
+    /**
+     * Counts a taken backward branch and, once the loop is hot, continues the frame in the code compiled for the
+     * loop (on-stack replacement). Only a frame with an empty operand stack is replaced.
+     *
+     * @return whether the frame has been completed by compiled code and popped or left by an exception, a frame
+     * which ran into an uncommon trap is left at the trap instead
+     */
+    private boolean backedge(ThreadStack threadStack, StackFrame frame) {
+        if (!frame.isStackEmpty()) {
             return false;
         }
 
-        ArrayDeque<KlassDesc> queue = new ArrayDeque<>();
-        Collections.addAll(queue, interfaces);
+        CompiledCode osr = jit.osrCode(frame.getKlass(), frame.getMethod(), frame.ip);
 
-        while (!queue.isEmpty()) {
-            KlassDesc klassDesc = queue.pollFirst();
-            if (klassDesc.id() == target.id()) {
-                return true;
-            }
-
-            Collections.addAll(queue, klassDesc.interfaces());
+        if (osr == null) {
+            return false;
         }
 
-        return false;
-    }
-
-    private boolean hasTargetInterface(KlassDesc target, KlassDesc ref) {
-        KlassDesc[] interfaces = ref.interfaces();
-        if (hasTargetInterface(target, interfaces)) {
+        long result;
+        try {
+            result = osr.run(jitRuntime, frame.getLocals());
+        } catch (Deoptimization deopt) {
+            jit.invalidateOsr(frame.getKlass(), frame.getMethod(), frame.ip, deopt);
+            frame.restore(deopt.getIp(), deopt.getTags(), deopt.getValues());
+            return false;
+        } catch (GuestException e) {
+            throwException(threadStack, e.getException());
+            return true;
+        } catch (ImplicitException e) {
+            throwImplicit(threadStack, e.getKind());
             return true;
         }
+        threadStack.pop();
 
-        KlassDesc superKlassDesc = ref.superKlass();
-        if (superKlassDesc != null) {
-            return hasTargetInterface(target, superKlassDesc);
+        Jtype.Primitive returnType = frame.getMethod().descriptor().returnType().primitive();
+        if (returnType != Jtype.Primitive.VOID) {
+            returnValue(threadStack, Slot.tagOf(returnType), result);
         }
+        Logger.ret(frame);
 
-        return false;
+        return true;
     }
 
-    private static void ldc(StackFrame frame, Instruction instruction) {
-        frame.inc();
-        short cpRef = instruction.firstOperand();
+    /**
+     * Enters the monitor a synchronized method holds while it runs, of its receiver or of its class. The frame
+     * holds the monitor from now on, a thread which is parked to wait for it is resumed as its owner.
+     *
+     * @return whether the thread owns the monitor
+     */
+    private boolean enterMethodMonitor(StackFrame frame) {
+        long object = frame.getMethod().fStatic() ? mirror(frame.getKlass()) : frame.loadRef(0);
+
+        frame.monitor = object;
+        return monitors.enter(currentThread.get(), object);
+    }
 
+    /**
+     * Leaves the monitor the frame of a synchronized method holds, if any, before the frame is popped.
+     */
+    private void exitMethodMonitor(StackFrame frame) {
+        if (frame.monitor != 0) {
+            monitors.exit(currentThread.get(), frame.monitor);
+            frame.monitor = 0;
+        }
+    }
+
+    /**
+     * Hands the value returned by the popped frame to its caller, or to the thread if there is no caller.
+     */
+    private static void returnValue(ThreadStack threadStack, byte tag, long bits) {
+        if (threadStack.isEmpty()) {
+            threadStack.setResult(bits);
+        } else {
+            threadStack.top().push(tag, bits);
+        }
+    }
+
+    private void ldc(StackFrame frame, int ip, int cpRef) {
         Constant constant = frame.getPool().get(cpRef);
 
-        if (constant instanceof IntoValue i) {
+        if (constant instanceof Constant.ConstantInteger i) {
+            frame.pushInt(i.value());
+        } else if (constant instanceof Constant.ConstantFloat f) {
+            frame.pushFloat(f.value());
+        } else if (constant instanceof Constant.ConstantLong l) {
+            frame.pushLong(l.value());
+        } else if (constant instanceof Constant.ConstantDouble d) {
+            frame.pushDouble(d.value());
+        } else if (constant instanceof Constant.ConstantStringRef) {
+            frame.pushRef(resolveString(frame.getPool(), cpRef));
+        } else if (constant instanceof Constant.Class) {
+            // array types have no classes yet, their mirror is the one getClass() returns for an array
+            frame.pushRef(mirror(loadMethodClass(frame.getPool(), cpRef)));
+        } else if (constant instanceof IntoValue i) {
             frame.push(i.into());
         } else {
             throw StackFrame.Exception.create("Cannot operate LDC with CP value that is not IntoValue [%s]".formatted(constant), frame);
         }
+
+        frame.ip = ip + 2;
     }
 
-    private static void iconst(StackFrame frame, int number) {
-        frame.push(new Value.Int(number));
+    private static void iconst(StackFrame frame, int ip, int number) {
+        frame.pushInt(number);
+        frame.ip = ip + 1;
     }
 
-    private void arrayLength(StackFrame frame) {
-        frame.inc();
+    private static long nonNull(long ref) {
+        if (ref == 0) {
+            throw ImplicitException.of(ImplicitException.Kind.NULL_POINTER);
+        }
+        return ref;
+    }
+
+    private long checkIndex(long arrayRef, int index) {
+        if (index < 0 || index >= memoryManager.arrayLength(arrayRef)) {
+            throw ImplicitException.of(ImplicitException.Kind.ARRAY_INDEX_OUT_OF_BOUNDS);
+        }
+        return arrayRef;
+    }
 
-        long ref = frame.pop().asRef();
+    private void arrayLength(StackFrame frame, int ip) {
+        long ref = nonNull(frame.popRef());
 
         int size = memoryManager.arrayLength(ref);
 
-        frame.push(new Value.Int(size));
+        frame.pushInt(size);
+        frame.ip = ip + 1;
     }
 
-    private void loadArrayElement(StackFrame frame, Jtype.Primitive primitive) {
-        frame.inc();
+    private void loadArrayElement(StackFrame frame, int ip, Jtype.Primitive primitive) {
+        var index = frame.popInt();
+        var arrRef = checkIndex(nonNull(frame.popRef()), index);
+
+        long res = memoryManager.getArrayElementRaw(arrRef, index, primitive);
+
+        frame.push(Slot.tagOf(primitive), res);
+        frame.ip = ip + 1;
+    }
 
-        var index = frame.pop().asInt();
-        var arrRef = frame.pop().asRef();
 
-        Value res = memoryManager.getArrayElement(arrRef, index, primitive);
+    private void storeArrayElement(StackFrame frame, int ip, Jtype.Primitive type) {
+        var value = frame.popRaw();
+        var index = frame.popInt();
+        var arrRef = checkIndex(nonNull(frame.popRef()), index);
 
-        frame.push(res);
+        memoryManager.setArrayElementRaw(arrRef, index, type, value);
+        frame.ip = ip + 1;
     }
 
+    private void icmp(CmpType cmpType, StackFrame frame, int ip, int jumpIp) {
+        var b = frame.popInt();
+        var a = frame.popInt();
 
-    private void storeArrayElement(StackFrame frame, Jtype.Primitive type) {
-        frame.inc();
+        if (compare(cmpType, a, b)) {
+            frame.goTo(jumpIp);
+        } else {
+            frame.ip = ip + 2;
+        }
+    }
 
-        var value = frame.pop();
-        var index = frame.pop().asInt();
-        var arrRef = frame.pop().asRef();
+    private void ifZero(CmpType cmpType, StackFrame frame, int ip, int jumpIp) {
+        if (compare(cmpType, frame.popInt(), 0)) {
+            frame.goTo(jumpIp);
+        } else {
+            frame.ip = ip + 2;
+        }
+    }
+
+    /**
+     * @return target of the table switch at the index for the key, the table is indexed directly
+     */
+    static int tableSwitch(int[] code, int ip, int key) {
+        int low = code[ip + 2];
+        int high = code[ip + 3];
 
-        memoryManager.setArrayElement(arrRef, index, type, value.asNumber());
+        if (key < low || key > high) {
+            return code[ip + 1];
+        }
+        return code[ip + 4 + key - low];
     }
 
-    private boolean icmp(CmpType cmpType, StackFrame frame, Instruction instruction) {
-        frame.inc();
-        var jumpIp = instruction.firstOperand();
+    /**
+     * @return target of the lookup switch at the index for the key, found by a binary search over the keys which
+     * the class file keeps sorted
+     */
+    static int lookupSwitch(int[] code, int ip, int key) {
+        int from = 0;
+        int to = code[ip + 2] - 1;
+
+        while (from <= to) {
+            int middle = (from + to) >>> 1;
+            int match = code[ip + 3 + 2 * middle];
+
+            if (match < key) {
+                from = middle + 1;
+            } else if (match > key) {
+                to = middle - 1;
+            } else {
+                return code[ip + 4 + 2 * middle];
+            }
+        }
+        return code[ip + 1];
+    }
+
+    private void acmp(StackFrame frame, int ip, int jumpIp, boolean mustBeSame) {
+        long b = frame.popRef();
+        long a = frame.popRef();
+
+        if ((a == b) == mustBeSame) {
+            frame.goTo(jumpIp);
+        } else {
+            frame.ip = ip + 2;
+        }
+    }
 
-        var b = frame.pop().asInt();
-        var a = frame.pop().asInt();
+    private static boolean compare(CmpType cmpType, int a, int b) {
+        return switch (cmpType) {
+            case EQ -> a == b;
+            case NE -> a != b;
+            case LT -> a < b;
+            case GE -> a >= b;
+            case GT -> a > b;
+            case LE -> a <= b;
+        };
+    }
 
-        boolean condRes = (cmpType == CmpType.EQ && a == b)
-                || (cmpType == CmpType.NE && a != b)
-                || (cmpType == CmpType.LT && a < b)
-                || (cmpType == CmpType.GE && a >= b)
-                || (cmpType == CmpType.GT && a > b)
-                || (cmpType == CmpType.LE && a <= b);
+    private void ifNullable(StackFrame frame, int ip, int jumpIp, boolean mustBeNull) {
+        var isNull = frame.popRef() == 0;
 
-        if (condRes) {
+        if (mustBeNull == isNull) {
             frame.goTo(jumpIp);
+        } else {
+            frame.ip = ip + 2;
+        }
+    }
+
+    enum NullDir {
+
+    }
+
+    private void putStatic(StackFrame frame, int ip, ThreadStack threadStack) {
+        ClassAndFieldDesc cnf = quickenStatic(frame, ip, threadStack, PUTSTATIC);
+
+        if (cnf == null) {
+            putStaticQuick(frame, ip, frame.getMethod().code());
+        } else {
+            memoryManager.putRaw(staticAddress(cnf), cnf.field().type().primitive(), frame.popRaw(), cnf.field().accessMode());
+            frame.ip = ip + 4;
+        }
+    }
+
+    private void putStaticQuick(StackFrame frame, int ip, int[] code) {
+        long address = staticAddress(code, ip);
+        int access = code[ip + 3];
+
+        memoryManager.putRaw(address, accessType(access), frame.popRaw(), accessMode(access));
+        frame.ip = ip + 4;
+    }
+
+    private void checkCast(StackFrame frame, int ip, int[] code) {
+        long refAddress = frame.peekRef();
+        if (refAddress != 0 && !isInstance(frame.getPool(), code, ip, refAddress)) {
+            throw ImplicitException.of(ImplicitException.Kind.CLASS_CAST);
+        }
+        frame.ip = ip + 3;
+    }
+
+    private void instanceOf(StackFrame frame, int ip, int[] code) {
+        long objAddress = frame.popRef();
+        frame.pushInt(objAddress != 0 && isInstance(frame.getPool(), code, ip, objAddress) ? 1 : 0);
+        frame.ip = ip + 3;
+    }
+
+    /**
+     * Checks the object against the class of a type check instruction. The class id of the last object that passed
+     * is kept in the instruction, so a site which sees one class over and over skips the check.
+     * <p>
+     * Array types have no classes yet, they are checked by {@link ArrayTypes} on every execution.
+     */
+    private boolean isInstance(ConstantPool cp, int[] code, int ip, long objAddress) {
+        int classId = memoryManager.getClassId(objAddress);
+        if (classId == code[ip + 2]) {
+            return true;
+        }
+
+        if (cp.resolved(code[ip + 1]) == null && cp.resolveClassRef(code[ip + 1]).startsWith("[")) {
+            return ArrayTypes.isInstance(memoryManager, classLoader, objAddress, cp.resolveClassRef(code[ip + 1]));
+        }
+
+        KlassDesc targetKlass = loadClass(cp, code[ip + 1]);
+        if (classLoader.load(classId).isSubtypeOf(targetKlass)) {
+            code[ip + 2] = classId;
             return true;
         }
         return false;
     }
 
-    private boolean ifNullable(StackFrame frame, Instruction instruction, boolean mustBeNull) {
-        frame.inc();
-        var jumpIp = instruction.firstOperand();
-
-        var value = frame.pop();
+    private void getStatic(StackFrame frame, int ip, ThreadStack threadStack) {
+        ClassAndFieldDesc cnf = quickenStatic(frame, ip, threadStack, GETSTATIC);
 
-        if (value instanceof Value.Ref ref) {
-            if (mustBeNull == ref.isNull()) {
-                frame.goTo(jumpIp);
-                return true;
-            } else {
-                return false;
-            }
+        if (cnf == null) {
+            getStaticQuick(frame, ip, frame.getMethod().code());
+        } else {
+            Jtype.Primitive type = cnf.field().type().primitive();
+            frame.push(Slot.tagOf(type), memoryManager.getRaw(staticAddress(cnf), type, cnf.field().accessMode()));
+            frame.ip = ip + 4;
         }
-        throw new IllegalStateException("Value %s is not a reference".formatted(value));
     }
 
-    enum NullDir {
+    private void getStaticQuick(StackFrame frame, int ip, int[] code) {
+        long address = staticAddress(code, ip);
+        Jtype.Primitive type = accessType(code[ip + 3]);
 
+        frame.push(Slot.tagOf(type), memoryManager.getRaw(address, type, accessMode(code[ip + 3])));
+        frame.ip = ip + 4;
     }
 
-    private void putStatic(StackFrame frame, Instruction instruction, ThreadStack threadStack) {
-        frame.inc();
+    private void putField(ThreadStack threadStack, StackFrame frame, int ip) {
+        quickenField(frame, ip, threadStack, PUTFIELD, PUTFIELD_QUICK);
+        putFieldQuick(frame, ip, frame.getMethod().code());
+    }
 
-        ClassAndFieldDesc cnf = obtainField(frame, instruction, threadStack);
-        KlassDesc klass = cnf.klass();
-        FieldDesc field = cnf.field();
-        long address = klass.staticAddress() + field.offset();
-        Jtype.Primitive type = field.type().primitive();
+    private void putFieldQuick(StackFrame frame, int ip, int[] code) {
+        long value = frame.popRaw();
+        long objRef = nonNull(frame.popRef());
 
-        var value = (Number) frame.pop().getVal();
+        int access = code[ip + 2];
 
-        memoryManager.putWithType(address, type, value);
+        memoryManager.putRaw(memoryManager.fieldAddress(objRef, code[ip + 1]), accessType(access), value, accessMode(access));
+        frame.ip = ip + 4;
     }
 
-    private void checkCast(StackFrame frame, Instruction instruction, ThreadStack threadStack) {
-        frame.inc();
+    private void getField(ThreadStack threadStack, StackFrame frame, int ip) {
+        quickenField(frame, ip, threadStack, GETFIELD, GETFIELD_QUICK);
+        getFieldQuick(frame, ip, frame.getMethod().code());
+    }
 
-        Value peekedValue = frame.peek();
-        if (peekedValue instanceof Value.Ref ref && !ref.isNull()) {
-            short operand = instruction.firstOperand();
-            ConstantPool cp = frame.getPool();
-            String targetClassName = cp.resolveClassRef(operand);
-            KlassDesc targetKlassDesc = getClass(targetClassName, threadStack);
+    private void getFieldQuick(StackFrame frame, int ip, int[] code) {
+        long objRef = nonNull(frame.popRef());
+        Jtype.Primitive type = accessType(code[ip + 2]);
 
-            long refAddress = peekedValue.asRef();
-            int refClassId = memoryManager.getClassId(refAddress);
-            KlassDesc refKlassDesc = classLoader.load(refClassId);
+        long value = memoryManager.getRaw(memoryManager.fieldAddress(objRef, code[ip + 1]), type, accessMode(code[ip + 2]));
 
-            boolean castable = false;
-            if (targetKlassDesc.id() == refKlassDesc.id()) {
-                castable = true;
-            } else {
-                if (targetKlassDesc.isInterface() && hasTargetInterface(targetKlassDesc, refKlassDesc)) {
-                    castable = true;
-                } else {
-                    if (hasTargetSuperKlass(targetKlassDesc, refKlassDesc)) {
-                        castable = true;
-                    }
-                }
-            }
+        frame.push(Slot.tagOf(type), value);
+        frame.ip = ip + 4;
+    }
 
-            if (!castable) {
-                throw new ClassCastException("Class %s cannot cast to class %s.".formatted(refKlassDesc.name(), targetKlassDesc.name()));
+    /**
+     * Quickens the field instruction. Its constant pool index is overwritten by the field offset, so the index is
+     * read while holding the code stream. Resolution may initialize a class and run guest code, so it is done
+     * without holding it.
+     */
+    private void quickenField(StackFrame frame, int ip, ThreadStack threadStack, int op, int quickOp) {
+        int[] code = frame.getMethod().code();
+        int fieldId = fieldOperand(code, ip, op);
+
+        if (fieldId == NOT_FIELD_OPERAND) {
+            return;
+        }
+
+        FieldDesc field = obtainField(frame, fieldId, threadStack).field();
+        synchronized (code) {
+            if (code[ip] == op) {
+                quicken(code, ip, quickOp, (int) field.offset(), fieldAccess(field.type().primitive(), field.accessMode()), 0);
             }
         }
     }
 
-    private void instanceOf(StackFrame frame, Instruction instruction, ThreadStack threadStack) {
-        frame.inc();
-        Value val = frame.pop();
-        if (val instanceof Value.Ref ref) {
-            if (ref.isNull()) {
-                frame.push(new Value.Bool(false));
-            } else {
-                long objAddress = val.asRef();
-                int classId = memoryManager.getClassId(objAddress);
-                KlassDesc refKlass = classLoader.load(classId);
+    /**
+     * Resolves the static field instruction and quickens it if the class of the field is initialized, see
+     * {@link #quickenField}.
+     *
+     * @return the field if the instruction is not quickened and has to be executed by this slow path, {@code null}
+     * if it is quickened
+     */
+    private ClassAndFieldDesc quickenStatic(StackFrame frame, int ip, ThreadStack threadStack, int op) {
+        int[] code = frame.getMethod().code();
+        int fieldId = fieldOperand(code, ip, op);
+
+        if (fieldId == NOT_FIELD_OPERAND) {
+            return null;
+        }
 
-                short operand = instruction.firstOperand();
-                ConstantPool cp = frame.getPool();
-                String className = cp.resolveClassRef(operand);
-                KlassDesc targetClass = getClass(className, threadStack);
+        ClassAndFieldDesc cnf = obtainField(frame, fieldId, threadStack);
+        initialized(cnf.klass(), threadStack);
 
-                if (targetClass.id() == refKlass.id()) {
-                    frame.push(new Value.Bool(true));
-                } else {
-                    if (targetClass.isInterface() && hasTargetInterface(targetClass, refKlass)) {
-                        frame.push(new Value.Bool(true));
-                    } else {
-                        if (hasTargetSuperKlass(targetClass, refKlass)) {
-                            frame.push(new Value.Bool(true));
-                        } else {
-                            frame.push(new Value.Bool(false));
-                        }
-                    }
-                }
+        if (!cnf.klass().isInit()) {
+            return cnf;
+        }
+
+        long address = staticAddress(cnf);
+        synchronized (code) {
+            if (code[ip] == op) {
+                quicken(code, ip, op == GETSTATIC ? GETSTATIC_QUICK : PUTSTATIC_QUICK,
+                        (int) address, (int) (address >>> 32), fieldAccess(cnf.field().type().primitive(), cnf.field().accessMode()));
             }
         }
+        return null;
     }
 
-    private void getStatic(StackFrame frame, Instruction instruction, ThreadStack threadStack) {
-        frame.inc();
+    /**
+     * @return constant pool index of the field instruction or {@link #NOT_FIELD_OPERAND} if another thread has
+     * quickened it meanwhile
+     */
+    private static int fieldOperand(int[] code, int ip, int op) {
+        synchronized (code) {
+            return code[ip] == op ? code[ip + 1] : NOT_FIELD_OPERAND;
+        }
+    }
 
-        ClassAndFieldDesc cnf = obtainField(frame, instruction, threadStack);
+    private long staticAddress(ClassAndFieldDesc cnf) {
+        return memoryManager.fieldAddress(cnf.klass().staticAddress(), cnf.field().offset());
+    }
 
-        var address = cnf.klass().staticAddress() + cnf.field().offset();
-        var type = cnf.field().type().primitive();
+    private static long staticAddress(int[] code, int ip) {
+        return ((long) code[ip + 2] << 32) | (code[ip + 1] & 0xFFFFFFFFL);
+    }
 
-        Value value = memoryManager.getWithType(address, type);
+    /**
+     * Rewrites a resolved instruction into its quickened form. Operands are written before the opcode, which is
+     * stored with release semantics, and every reader takes the opcode with {@link Bytecodes#opcode}, so the
+     * instruction is never seen with the new opcode and the old operands.
+     */
+    private static void quicken(int[] code, int ip, int quickOp, int... operands) {
+        System.arraycopy(operands, 0, code, ip + 1, operands.length);
+        CODE.setRelease(code, ip, quickOp);
+    }
 
-        frame.push(value);
+    private record ClassAndFieldDesc(@NonNull KlassDesc klass, @NonNull FieldDesc field) {
+    }
+
+    /**
+     * Resolves a static or special call and quickens it. A static call is quickened only once the class declaring
+     * the method is initialized.
+     */
+    public void invoke(InvokeType invokeType, ThreadStack threadStack, StackFrame frame, int ip, int methodIdx) {
+        ClassAndMethodDesc cnm = obtainMethodDesc(methodIdx, invokeType, threadStack, frame.getPool());
+        MethodDesc caller = frame.getMethod();
+
+        if (invokeType != InvokeType.STATIC || initialized(cnm.klass(), threadStack).isInit()) {
+            caller.setInlineCache(ip, InlineCache.bound(new InlineCache.Target(cnm.klass(), cnm.method())));
+            quicken(caller.code(), ip, invokeType == InvokeType.STATIC ? INVOKESTATIC_QUICK : INVOKESPECIAL_QUICK);
+        }
+
+        call(threadStack, frame, ip, cnm.klass(), cnm.method());
     }
 
-    private void putField(ThreadStack threadStack, StackFrame frame, Instruction instruction) {
-        frame.inc();
+    /**
+     * Invokes an instance method selected by the class of the receiver through the inline cache of the call site.
+     */
+    public void invokeVirtual(ThreadStack threadStack, StackFrame frame, int ip, int methodIdx) {
+        MethodDesc caller = frame.getMethod();
 
-        ClassAndFieldDesc classAndField = obtainField(frame, instruction, threadStack);
-        FieldDesc targetField = classAndField.field();
+        InlineCache cache = createInlineCache(frame.getPool(), methodIdx);
+        KlassDesc owner = methodOwner(frame.getPool(), methodIdx, cache.getSignature());
 
-        Object value = frame.pop().getVal();
-        long objRef = frame.pop().asRef();
+        // default methods have no vtable slot
+        int slot = owner.isInterface() ? MethodDesc.NO_SLOT : owner.methods().get(cache.getSignature()).slot();
 
-        memoryManager.putWithType(
-                objRef + targetField.offset(),
-                targetField.type().primitive(),
-                (Number) value
-        );
+        caller.setInlineCache(ip, cache);
+        quicken(caller.code(), ip, INVOKEVIRTUAL_QUICK, methodIdx, slot);
+
+        dispatch(threadStack, frame, ip, caller.code(), cache);
     }
 
-    private void getField(ThreadStack threadStack, StackFrame frame, Instruction instruction) {
-        frame.inc();
+    /**
+     * Invokes an interface method. The call site is quickened with the id of the interface declaring the method and
+     * the slot of the method, receiver classes missing in the inline cache are looked up in their itables.
+     */
+    public void invokeInterface(ThreadStack threadStack, StackFrame frame, int ip, int methodIdx) {
+        MethodDesc caller = frame.getMethod();
+        ConstantPool cp = frame.getPool();
 
-        ClassAndFieldDesc classAndField = obtainField(frame, instruction, threadStack);
-        FieldDesc targetField = classAndField.field();
+        InlineCache cache = createInlineCache(cp, methodIdx);
+        KlassDesc owner = methodOwner(cp, methodIdx, cache.getSignature());
 
-        long objRef = frame.pop().asRef();
+        int interfaceId = owner.isInterface() ? owner.id() : 0;
 
-        Value value = memoryManager.getWithType(
-                objRef + targetField.offset(),
-                targetField.type().primitive()
-        );
+        caller.setInlineCache(ip, cache);
+        quicken(caller.code(), ip, INVOKEINTERFACE_QUICK, methodIdx, interfaceId, owner.methods().get(cache.getSignature()).slot());
 
-        frame.push(value);
+        dispatchInterface(threadStack, frame, ip, caller.code(), cache);
     }
 
+    private void dispatchInterface(ThreadStack threadStack, StackFrame frame, int ip, int[] code, InlineCache cache) {
+        long receiver = nonNull(frame.peekRef(cache.getArgumentsCount()));
+        int classId = memoryManager.getClassId(receiver);
 
-    private record ClassAndFieldDesc(@NonNull KlassDesc klass, @NonNull FieldDesc field) {
+        InlineCache.Target target = cache.lookup(classId);
+
+        if (target == null) {
+            target = InlineCache.select(classLoader.load(classId), code[ip + 2], code[ip + 3], cache.getSignature());
+            cache.update(classId, target);
+        }
+
+        call(threadStack, frame, ip, target.klass(), target.method());
     }
 
-    public void invoke(InvokeType invokeType, ThreadStack threadStack, StackFrame frame, Instruction instruction) {
-        var methodIdx = instruction.firstOperand();
+    /**
+     * Links the {@code invokedynamic} on its first execution and quickens it, the target stays in the caller.
+     */
+    private void invokeDynamic(ThreadStack threadStack, StackFrame frame, int ip, int indyIndex) {
+        MethodDesc caller = frame.getMethod();
+        DynamicCallSite callSite = callSites.link(frame.getKlass(), indyIndex);
 
-        ClassAndMethodDesc cnm = obtainMethodDesc(methodIdx, invokeType, threadStack, frame.getPool());
-        MethodDesc method = cnm.method();
-        KlassDesc klass = cnm.klass();
+        caller.linkCallSite(ip, callSite);
+        quicken(caller.code(), ip, INVOKEDYNAMIC_QUICK, indyIndex);
 
-        if (method.fNative()) {
-            System.out.printf("Call native method %s%n", method.name());
-            frame.inc();
+        callDynamic(threadStack, frame, ip, callSite);
+    }
 
-        } else {
-            StackFrame stackFrame = frame.fork(klass, method);
+    private void callDynamic(ThreadStack threadStack, StackFrame frame, int ip, DynamicCallSite callSite) {
+        MethodDescriptor type = callSite.type();
+        long[] args = frame.popArguments(Bytecodes.name(INVOKEDYNAMIC), type.paarameterTypes().length);
 
-            threadStack.push(stackFrame);
+        try {
+            long result = callSite.invoke(args);
+            Jtype.Primitive returnType = type.returnType().primitive();
 
-            frame.inc();
+            if (returnType != Jtype.Primitive.VOID) {
+                frame.push(Slot.tagOf(returnType), result);
+            }
+            frame.ip = ip + 2;
+        } catch (GuestException e) {
+            throwException(threadStack, e.getException());
         }
+    }
+
+    private KlassDesc methodOwner(ConstantPool cp, int methodIdx, String signature) {
+        KlassDesc refKlass = loadMethodClass(cp, cp.resolveMemberRef(methodIdx).classIndex());
+        KlassDesc owner = refKlass.findMethodOwner(signature);
 
+        if (owner == null) {
+            throw new IllegalStateException("Method %s is not found in %s".formatted(signature, refKlass.name()));
+        }
+        return owner;
     }
 
-    public void newObject(ThreadStack threadStack, StackFrame frame, Instruction instruction) {
-        frame.inc();
+    private void dispatch(ThreadStack threadStack, StackFrame frame, int ip, int[] code, InlineCache cache) {
+        long receiver = nonNull(frame.peekRef(cache.getArgumentsCount()));
+        int classId = memoryManager.getClassId(receiver);
 
-        ConstantPool cp = frame.getPool();
+        InlineCache.Target target = cache.lookup(classId);
+
+        if (target == null) {
+            target = InlineCache.select(classLoader.load(classId), code[ip + 2], cache.getSignature());
+            cache.update(classId, target);
+        }
+
+        call(threadStack, frame, ip, target.klass(), target.method());
+    }
+
+    private void call(ThreadStack threadStack, StackFrame frame, int ip, KlassDesc klass, MethodDesc method) {
+        int next = ip + Bytecodes.length(frame.getMethod().code()[ip]);
+
+        if (method.fNative() || method.nativeCode() != null) {
+            long result;
+            try {
+                result = callNative(klass, method, frame.popArguments(method));
+            } catch (GuestException e) {
+                // thrown by guest code the native has called back, e.g. the action of doPrivileged()
+                frame.ip = ip;
+                throwException(threadStack, e.getException());
+                return;
+            }
+            Jtype.Primitive returnType = method.descriptor().returnType().primitive();
+            if (returnType != Jtype.Primitive.VOID) {
+                frame.push(Slot.tagOf(returnType), result);
+            }
+            frame.ip = next;
+            return;
+        }
+
+        CompiledCode compiled = jit.compiledCode(klass, method);
+
+        frame.ip = next;
+
+        if (compiled == null) {
+            threadStack.push(frame.fork(klass, method));
+            return;
+        }
+
+        try {
+            long result = compiled.run(jitRuntime, frame.popArguments(method));
+            Jtype.Primitive returnType = method.descriptor().returnType().primitive();
+
+            if (returnType != Jtype.Primitive.VOID) {
+                frame.push(Slot.tagOf(returnType), result);
+            }
+        } catch (Deoptimization deopt) {
+            jit.invalidate(klass, method, deopt);
+            threadStack.push(deoptimized(klass, method, deopt));
+        } catch (GuestException e) {
+            frame.ip = ip;
+            throwException(threadStack, e.getException());
+        } catch (ImplicitException e) {
+            frame.ip = ip;
+            throwImplicit(threadStack, e.getKind());
+        }
+    }
 
-        var classConstId = instruction.firstOperand();
+    /**
+     * Rebuilds the frame of compiled code which ran into an uncommon trap.
+     */
+    private static StackFrame deoptimized(KlassDesc klass, MethodDesc method, Deoptimization deopt) {
+        StackFrame frame = StackFrame.create(klass, method);
+        frame.restore(deopt.getIp(), deopt.getTags(), deopt.getValues());
+        return frame;
+    }
 
-        String className = cp.resolveClassRef(classConstId);
+    private InlineCache createInlineCache(ConstantPool cp, int methodIdx) {
+        var methodRef = cp.resolveMemberRef(methodIdx);
+        var nameAndTypeInfo = cp.resolveNameAndTypeInfo(methodRef.nameAndTypeIndex());
+        var methodName = cp.resolveUtf8Ref(nameAndTypeInfo.nameIndex());
+        var methodDescriptor = cp.resolveUtf8Ref(nameAndTypeInfo.descriptorIndex());
+        var signature = methodName + methodDescriptor;
 
-        KlassDesc newInstanceClassInfo = getClass(className, threadStack);
+        KlassDesc refKlass = loadMethodClass(cp, methodRef.classIndex());
+        MethodDesc refMethod = refKlass.methods().get(signature);
 
-        Collection<FieldDesc> values = newInstanceClassInfo.fieldGroup().fields().values().stream().filter(a -> !a.accStatic()).toList();
+        InlineCache.Target bound = null;
+        if (refMethod != null && !refMethod.fStatic() && (refMethod.access() == Access.PRIVATE || refMethod.fFinal())) {
+            bound = new InlineCache.Target(refKlass, refMethod);
+        }
 
-        long address = memoryManager.allocateObject(
-                newInstanceClassInfo.id(),
-                values,
-                newInstanceClassInfo.fieldGroup().instanceSize());
+        int argumentsCount = DescriptorResolver.resolveMethodDescriptor(methodDescriptor).paarameterTypes().length;
 
-        frame.push(Value.Ref.from(address));
+        return new InlineCache(signature, argumentsCount, bound);
     }
 
-    private void newArray(StackFrame frame, Instruction instruction) {
-        frame.inc();
+    public void newObject(ThreadStack threadStack, StackFrame frame, int ip, int classConstId) {
+        KlassDesc newInstanceClassInfo = resolveClass(frame.getPool(), classConstId, threadStack);
+
+        frame.pushRef(allocateObject(newInstanceClassInfo));
+        frame.ip = ip + 2;
+    }
 
-        byte typeCode = (byte) instruction.firstOperand();
+    /**
+     * The {@code java/lang/Class} instance of the class. Mirrors carry no state yet, every field keeps its default
+     * value.
+     */
+    private long mirror(KlassDesc klass) {
+        long mirror = klass.mirror();
+
+        if (mirror == 0) {
+            synchronized (mirroredClasses) {
+                if (klass.mirror() == 0) {
+                    long created = allocateObject(classLoader.load(CLASS_CLASS_NAME));
+                    mirroredClasses.put(created, klass);
+                    klass.setMirror(created);
+                }
+                mirror = klass.mirror();
+            }
+        }
+        return mirror;
+    }
 
-        var s = frame.pop();
+    /**
+     * The {@code java/lang/Thread} instance of the running guest thread. The one of the main thread is created on
+     * the first request, the way HotSpot creates it: in the {@code main} group of the {@code system} group, with the
+     * normal priority set before the constructor reads it from the current thread, i.e. from itself.
+     */
+    private long currentThread() {
+        VmThread thread = currentThread.get();
+
+        if (thread.threadObject() == 0) {
+            var threadStack = new ThreadStack();
+            KlassDesc groupKlass = getClass(THREAD_GROUP_CLASS_NAME, threadStack);
+            KlassDesc threadKlass = getClass(THREAD_CLASS_NAME, threadStack);
+            long mainName = intern(MAIN_THREAD_NAME);
+
+            long systemGroup = allocateObject(groupKlass);
+            callFromCompiled(groupKlass, groupKlass.methods().get(INIT_METH_FULL_NAME), new long[]{systemGroup});
+            long mainGroup = allocateObject(groupKlass);
+            callFromCompiled(groupKlass, groupKlass.methods().get("<init>(Ljava/lang/ThreadGroup;Ljava/lang/String;)V"),
+                    new long[]{mainGroup, systemGroup, mainName});
+
+            long threadObject = allocateObject(threadKlass);
+            putField(threadObject, threadKlass, "priority", NORM_PRIORITY);
+            putField(threadObject, threadKlass, "threadStatus", VmThread.RUNNABLE);
+            putField(threadObject, threadKlass, "eetop", threadObject);
+            thread.setThreadObject(threadObject);
+
+            callFromCompiled(threadKlass, threadKlass.methods().get("<init>(Ljava/lang/ThreadGroup;Ljava/lang/String;)V"),
+                    new long[]{threadObject, mainGroup, mainName});
+        }
+        return thread.threadObject();
+    }
 
-        int size = s instanceof Value.Byte b
-                ? b.value()
-                : s.asInt();
+    private KlassDesc klassOf(long objectRef) {
+        return classLoader.load(memoryManager.getClassId(objectRef));
+    }
 
+    private long allocateObject(KlassDesc klass) {
+        Collection<FieldDesc> values = klass.fieldGroup().fields().values().stream().filter(a -> !a.accStatic()).toList();
+
+        return memoryManager.allocateObject(klass.id(), values, klass.fieldGroup().instanceSize());
+    }
+
+    private void newArray(StackFrame frame, int ip, int typeCode) {
+        int size = frame.popInt();
 
         if (size < 0) {
-            throw new NegativeArraySizeException();
+            throw ImplicitException.of(ImplicitException.Kind.NEGATIVE_ARRAY_SIZE);
         }
 
-        ArrayType arrayType = ArrayType.byCode(typeCode);
+        ArrayType arrayType = ArrayType.byCode((byte) typeCode);
 
         long arrayRef = memoryManager.allocateArray(arrayType.getPrimitive(), size);
 
-        frame.push(Value.Ref.from(arrayRef));
+        frame.pushRef(arrayRef);
+        frame.ip = ip + 2;
+    }
 
+    private void newReferenceArray(ThreadStack threadStack, StackFrame frame, int ip, int operand) {
+        int size = frame.popInt();
+
+        if (size < 0) {
+            throw ImplicitException.of(ImplicitException.Kind.NEGATIVE_ARRAY_SIZE);
+        }
+
+        KlassDesc klassDesc = resolveClass(frame.getPool(), operand, threadStack);
+        long arrayRef = memoryManager.allocateArray(klassDesc.id(), size);
+
+        frame.pushRef(arrayRef);
+        frame.ip = ip + 2;
     }
 
-    private void newReferenceArray(ThreadStack threadStack, StackFrame frame, Instruction instruction) {
-        frame.inc();
+    /**
+     * Unwinds the thread stack to the closest handler of the exception. The top frame is at the throwing
+     * instruction, the frames below are right after their calls. Frames without a handler are popped, releasing
+     * the monitors of synchronized methods, if none is left the exception is thrown on to the host code which runs
+     * the thread.
+     */
+    private void throwException(ThreadStack threadStack, long exception) {
+        KlassDesc exceptionKlass = classLoader.load(memoryManager.getClassId(exception));
+
+        StackFrame frame = threadStack.top();
+        int ip = frame.ip;
 
-        var s = frame.pop();
+        for (; ; ) {
+            int handlerIp = findHandler(frame, ip, exceptionKlass);
 
-        int size = s instanceof Value.Byte b ? b.value() : s.asInt();
+            if (handlerIp != NO_HANDLER) {
+                frame.catchException(handlerIp, exception);
+                return;
+            }
 
-        if (size < 0) {
-            throw new NegativeArraySizeException();
+            exitMethodMonitor(frame);
+            threadStack.pop();
+
+            if (threadStack.isAtBase()) {
+                throw new GuestException(exception);
+            }
+
+            frame = threadStack.top();
+            ip = frame.ip - 1;
         }
+    }
 
-        short operand = instruction.firstOperand();
-        var cp = frame.getPool();
-        var classRef = cp.resolveClassRef(operand);
-        KlassDesc klassDesc = getClass(classRef, threadStack);
-        Collection<FieldDesc> fieldDescValues = klassDesc.fieldGroup().fields().values().stream().filter(a -> !a.accStatic()).toList();
+    /**
+     * Throws the guest exception of an implicit exception raised by the instruction the top frame is at.
+     */
+    private void throwImplicit(ThreadStack threadStack, ImplicitException.Kind kind) {
+        StackFrame frame = threadStack.top();
+        long exception = fastThrow.exception(frame.getKlass(), frame.getMethod(), frame.ip, kind,
+                k -> newImplicitException(threadStack, k));
 
-        long arrayRef = memoryManager.allocateArray(
-                klassDesc.id(),
-                fieldDescValues,
-                klassDesc.fieldGroup().instanceSize(),
-                size
-        );
+        throwException(threadStack, exception);
+    }
+
+    /**
+     * Allocates the guest exception of the kind and runs its no-arg constructor to the end.
+     */
+    private long newImplicitException(ThreadStack threadStack, ImplicitException.Kind kind) {
+        KlassDesc klass = getClass(kind.getClassName(), threadStack);
+        long exception = allocateObject(klass);
 
-        frame.push(Value.Ref.from(arrayRef));
+        callFromCompiled(klass, klass.methods().get(INIT_METH_FULL_NAME), new long[]{exception});
+        return exception;
     }
 
-    private void aThrow(StackFrame frame) {
-        frame.inc();
+    /**
+     * Allocates a guest throwable and runs its constructor taking one reference.
+     */
+    private long newThrowable(String className, String constructor, long argument, ThreadStack threadStack) {
+        KlassDesc klass = getClass(className, threadStack);
+        long throwable = allocateObject(klass);
+
+        callFromCompiled(klass, klass.methods().get(constructor), new long[]{throwable, argument});
+        return throwable;
+    }
+
+    private int findHandler(StackFrame frame, int ip, KlassDesc exceptionKlass) {
+        ExceptionHandlers handlers = frame.getMethod().exceptionHandlers();
+
+        for (int handler : handlers.candidatesAt(ip)) {
+            int catchType = handlers.catchType(handler);
+
+            if (catchType == ExceptionHandlers.ANY) {
+                return handlers.handlerIp(handler);
+            }
+
+            KlassDesc catchClass = handlers.catchClass(handler);
+            if (catchClass == null) {
+                catchClass = loadClass(frame.getPool(), catchType);
+                handlers.resolveCatchClass(handler, catchClass);
+            }
 
-        ExceptionTable[] exceptionTables = frame.getMethod().exceptionTable();
+            if (exceptionKlass.isSubtypeOf(catchClass)) {
+                return handlers.handlerIp(handler);
+            }
+        }
+        return NO_HANDLER;
     }
 
     private KlassDesc getClass(String className, ThreadStack threadStack) {
+        return initialized(classLoader.load(className), threadStack);
+    }
+
+    /**
+     * Initializes the class unless it is initialized already. A thread which finds another one running the
+     * initializer waits for it to complete and is safe meanwhile, the thread running it goes on at once, e.g. when
+     * the initializer refers to its own class.
+     */
+    private KlassDesc initialized(KlassDesc klass, ThreadStack threadStack) {
+        if (!klass.isInit() && safepoints.block(currentThread.get(), klass::beginInitialization)) {
+            boolean initialized = false;
+            try {
+                initClass(threadStack, klass);
+                initialized = true;
+            } finally {
+                if (initialized) {
+                    klass.finishInitialization();
+                } else {
+                    klass.failInitialization();
+                }
+            }
+        }
+        if (klass.isErroneous()) {
+            throw new GuestException(newThrowable(NO_CLASS_DEF_FOUND_ERROR_CLASS_NAME, STRING_INIT_METH_FULL_NAME,
+                    intern("Could not initialize class " + klass.name().replace('/', '.')), threadStack));
+        }
+
+        return klass;
+    }
 
-        KlassDesc loaded = classLoader.load(className);
+    /**
+     * Resolves the class constant into a loaded and initialized class.
+     */
+    private KlassDesc resolveClass(ConstantPool cp, int classIndex, ThreadStack threadStack) {
+        return initialized(loadClass(cp, classIndex), threadStack);
+    }
 
-        if (!loaded.isInit()) {
-            loaded.setInit(true);
-            initClass(threadStack, loaded);
+    /**
+     * The class a method reference names. The methods of an array type, such as {@code clone()}, are those of
+     * {@code java/lang/Object}.
+     */
+    private KlassDesc loadMethodClass(ConstantPool cp, int classIndex) {
+        if (cp.resolved(classIndex) == null && cp.resolveClassRef(classIndex).startsWith("[")) {
+            return classLoader.load(OBJECT_CLASS_NAME);
         }
+        return loadClass(cp, classIndex);
+    }
 
-        return loaded;
+    /**
+     * Resolves the class constant into a loaded class, which is not initialized on the way.
+     */
+    private KlassDesc loadClass(ConstantPool cp, int classIndex) {
+        KlassDesc klass = cp.resolved(classIndex);
+
+        if (klass == null) {
+            klass = cp.publishResolved(classIndex, classLoader.load(cp.resolveClassRef(classIndex)));
+        }
+
+        return klass;
     }
 
-    private void initClass(ThreadStack threadStack, KlassDesc klass) {
-        MethodDesc clinit = klass.getClinit();
+    /**
+     * Resolves the string constant into a reference to an interned {@code java/lang/String} instance.
+     */
+    private long resolveString(ConstantPool cp, int stringIndex) {
+        Long address = cp.resolved(stringIndex);
 
-        if (clinit != null) {
-            System.out.printf("  Init    %s%n", klass.name());
+        if (address == null) {
+            var stringRef = (Constant.ConstantStringRef) cp.get(stringIndex);
+            address = cp.publishResolved(stringIndex, intern(cp.resolveUtf8Ref(stringRef.index())));
+        }
+
+        return address;
+    }
+
+    private long intern(String text) {
+        return internedStrings.computeIfAbsent(text, this::allocateString);
+    }
 
-            var staticFields = new ArrayList<>(klass.fieldGroup().fields().values());
+    /**
+     * Lays a string out the way {@code java/lang/String} keeps it: a byte array of Latin-1 chars if possible,
+     * otherwise of UTF-16 chars in the native byte order, and the coder telling which one it is.
+     */
+    private long allocateString(String text) {
+        KlassDesc stringKlass = classLoader.load(STRING_CLASS_NAME);
+
+        boolean latin1 = text.chars().allMatch(c -> c <= 0xFF);
+        byte[] bytes = latin1
+                ? text.getBytes(StandardCharsets.ISO_8859_1)
+                : text.getBytes(ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? StandardCharsets.UTF_16BE : StandardCharsets.UTF_16LE);
+
+        long valueAddress = memoryManager.allocateArray(Jtype.Primitive.BYTE, bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            memoryManager.setArrayElementRaw(valueAddress, i, Jtype.Primitive.BYTE, bytes[i]);
+        }
+
+        long address = allocateObject(stringKlass);
+
+        putField(address, stringKlass, STRING_VALUE_FIELD_NAME, valueAddress);
+        putField(address, stringKlass, STRING_CODER_FIELD_NAME, latin1 ? 0 : 1);
+
+        return address;
+    }
+
+    /**
+     * Copies the guest string into a host one, see {@link #allocateString(String)}.
+     */
+    private String hostString(long address) {
+        KlassDesc stringKlass = classLoader.load(STRING_CLASS_NAME);
+
+        long valueAddress = getField(address, stringKlass, STRING_VALUE_FIELD_NAME);
+        boolean latin1 = getField(address, stringKlass, STRING_CODER_FIELD_NAME) == 0;
+
+        byte[] bytes = new byte[memoryManager.arrayLength(valueAddress)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) memoryManager.getArrayElementRaw(valueAddress, i, Jtype.Primitive.BYTE);
+        }
+
+        return latin1
+                ? new String(bytes, StandardCharsets.ISO_8859_1)
+                : new String(bytes, ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? StandardCharsets.UTF_16BE : StandardCharsets.UTF_16LE);
+    }
+
+    private long getField(long objectAddress, KlassDesc klass, String fieldName) {
+        FieldDesc field = klass.fieldGroup().fields().get(klass.name() + "." + fieldName);
+        return memoryManager.getRaw(memoryManager.fieldAddress(objectAddress, field.offset()), field.type().primitive());
+    }
 
+    private void putField(long objectAddress, KlassDesc klass, String fieldName, long raw) {
+        FieldDesc field = klass.fieldGroup().fields().get(klass.name() + "." + fieldName);
+        memoryManager.putRaw(memoryManager.fieldAddress(objectAddress, field.offset()), field.type().primitive(), raw);
+    }
+
+    private void initClass(ThreadStack threadStack, KlassDesc klass) {
+        natives.bindIntrinsics(klass);
+
+        var staticFields = klass.fieldGroup().fields().values().stream().filter(FieldDesc::accStatic).toList();
+
+        if (!staticFields.isEmpty()) {
             long classObjectAddress = memoryManager.allocateObject(klass.id(), staticFields, klass.fieldGroup().staticSize());
             klass.setStaticAddress(classObjectAddress);
+        }
+
+        MethodDesc clinit = klass.getClinit();
+
+        if (clinit != null) {
+            System.out.printf("  Init    %s%n", klass.name());
 
             StackFrame clinitFrame = StackFrame.create(klass, clinit);
 
+            // the initializer runs to its end before the instruction which triggered it goes on, an exception
+            // escaping it is thrown by that instruction once this loop is left
+            int base = threadStack.getBase();
+            threadStack.setBase(threadStack.size());
             threadStack.push(clinitFrame);
 
-            executeMethod(threadStack);
+            VmThread thread = currentThread.get();
+            thread.enterStack(threadStack);
+            try {
+                while (!threadStack.isAtBase()) {
+                    executeMethod(threadStack);
+                }
+            } catch (GuestException e) {
+                throw new GuestException(initializerError(e.getException(), threadStack));
+            } finally {
+                thread.exitStack();
+                threadStack.setBase(base);
+            }
+        }
+    }
+
+    /**
+     * An exception escaping a class initializer is thrown as is if it is an error, any other is wrapped in an
+     * {@code ExceptionInInitializerError}.
+     */
+    private long initializerError(long exception, ThreadStack threadStack) {
+        if (klassOf(exception).isSubtypeOf(classLoader.load(ERROR_CLASS_NAME))) {
+            return exception;
         }
+        return newThrowable(EXCEPTION_IN_INITIALIZER_ERROR_CLASS_NAME, THROWABLE_INIT_METH_FULL_NAME, exception, threadStack);
     }
 
     record ClassAndMethodDesc(@NonNull KlassDesc klass, @NonNull MethodDesc method) {
     }
 
-    private ClassAndMethodDesc obtainMethodDesc(short methodIdx, InvokeType invokeType, ThreadStack threadStack, ConstantPool cp) {
-
-        var methodRefInfo = cp.resolveMethorRefInfo(methodIdx);
+    private ClassAndMethodDesc obtainMethodDesc(int methodIdx, InvokeType invokeType, ThreadStack threadStack, ConstantPool cp) {
 
-        ClassAndMethodDesc cnm = methodDescriptors.get(methodRefInfo);
+        ClassAndMethodDesc cnm = cp.resolved(methodIdx);
 
         if (cnm != null) {
             return cnm;
         }
 
-        var className = cp.resolveClassRef(methodRefInfo.classIndex());
+        var methodRef = cp.resolveMemberRef(methodIdx);
 
-        var nameAndTypeInfo = cp.resolveNameAndTypeInfo(methodRefInfo.nameAndTypeIndex());
+        var nameAndTypeInfo = cp.resolveNameAndTypeInfo(methodRef.nameAndTypeIndex());
 
         var methodName = cp.resolveUtf8Ref(nameAndTypeInfo.nameIndex());
 
         var methodDescriptor = cp.resolveUtf8Ref(nameAndTypeInfo.descriptorIndex());
 
-        // PROCESSING REFERENCES OF CLASS RECEIVING OBJECTS AND COMPARING THE CLASS WITH A VALID ONE
+        var signature = methodName + methodDescriptor;
 
-        KlassDesc targetClass = getClass(className, threadStack);
+        KlassDesc targetClass = invokeType == InvokeType.STATIC
+                ? resolveClass(cp, methodRef.classIndex(), threadStack)
+                : loadClass(cp, methodRef.classIndex());
 
-        MethodDesc method = targetClass.findMethod(methodName, methodDescriptor, invokeType);
+        KlassDesc owner = targetClass.findMethodOwner(signature);
 
-        cnm = new ClassAndMethodDesc(targetClass, method);
+        if (owner == null) {
+            throw new IllegalStateException("Method %s is not found in %s".formatted(signature, targetClass.name()));
+        }
 
-//        if (cnm.method.fStatic() || cnm.method.)
+        if (invokeType == InvokeType.STATIC) {
+            owner = initialized(owner, threadStack);
+        }
 
-        methodDescriptors.put(methodRefInfo, cnm);
+        cnm = new ClassAndMethodDesc(owner, owner.methods().get(signature));
 
-        return cnm;
+        return cp.publishResolved(methodIdx, cnm);
     }
 
-    private ClassAndFieldDesc obtainField(StackFrame frame, Instruction instruction, ThreadStack threadStack) {
-        var fieldId = instruction.firstOperand();
-
+    private ClassAndFieldDesc obtainField(StackFrame frame, int fieldId, ThreadStack threadStack) {
         ConstantPool cp = frame.getPool();
 
-        Constant.FieldInfo fieldInfo = cp.resolveFieldInfo(fieldId);
-
-        ClassAndFieldDesc cnf = fieldDescriptors.get(fieldInfo);
+        ClassAndFieldDesc cnf = cp.resolved(fieldId);
 
         if (cnf != null) {
             return cnf;
         }
 
-        String className = cp.resolveClassRef(fieldInfo.classIndex());
+        Constant.MemberRef fieldRef = cp.resolveMemberRef(fieldId);
 
-        Constant.NameAndTypeInfo nameAndTypeInfo = cp.resolveNameAndTypeInfo(fieldInfo.nameAndTypeIndex());
+        Constant.NameAndTypeInfo nameAndTypeInfo = cp.resolveNameAndTypeInfo(fieldRef.nameAndTypeIndex());
 
         String fieldName = cp.resolveUtf8Ref(nameAndTypeInfo.nameIndex());
 
-        KlassDesc klass = getClass(className, threadStack);
+        KlassDesc klass = resolveClass(cp, fieldRef.classIndex(), threadStack);
+
+        KlassDesc owner = klass.findFieldOwner(fieldName);
 
-        FieldDesc targetField = klass.fieldGroup().fields().get(className + "." + fieldName);
+        if (owner == null) {
+            throw new IllegalStateException("Field %s is not found in %s".formatted(fieldName, klass.name()));
+        }
+
+        FieldDesc targetField = owner.fieldGroup().fields().get(owner.name() + "." + fieldName);
 
-        cnf = new ClassAndFieldDesc(klass, targetField);
+        if (targetField.accStatic()) {
+            owner = initialized(owner, threadStack);
+        }
 
-        fieldDescriptors.put(fieldInfo, cnf);
+        cnf = new ClassAndFieldDesc(owner, targetField);
 
-        return cnf;
+        return cp.publishResolved(fieldId, cnf);
     }
 
 }
@@ -0,0 +1,119 @@
+package com.lewigh.xsjvm.engine;
+
+import com.lewigh.xsjvm.engine.runtime.ImplicitException;
+import com.lewigh.xsjvm.engine.runtime.KlassDesc;
+import com.lewigh.xsjvm.engine.runtime.MethodDesc;
+import com.lewigh.xsjvm.support.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.ToLongFunction;
+
+/**
+ * Selects the guest objects thrown for implicit exceptions, the way {@code -XX:+OmitStackTraceInFastThrow} does in
+ * HotSpot.
+ * <p>
+ * An implicit exception is a new object built by the no-arg constructor of its class. Once an instruction has thrown
+ * {@link #THRESHOLD} of them it is switched: from then on it throws an object of the kind which is preallocated once
+ * and shared by all switched instructions, so a hot throw caught by a handler costs neither an allocation nor a
+ * constructor call. The shared object tells nothing about the instruction which threw it.
+ * <p>
+ * Switching is turned off with {@code -Dxsjvm.fastthrow=false}, the threshold is set by
+ * {@code -Dxsjvm.fastthrow.threshold=<throws>}. With {@code -Dxsjvm.fastthrow.report=true} the switched
+ * instructions and the number of exceptions of every kind are printed at the end of the thread.
+ * <p>
+ * The preallocated object of a kind is built lazily by the first thread to need it and published with a CAS, so
+ * threads racing to build it all throw the object which won. The objects of the losers are never thrown.
+ */
+final class FastThrow {
+
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("xsjvm.fastthrow", "true"));
+    static final int THRESHOLD = Integer.getInteger("xsjvm.fastthrow.threshold", 100);
+    static final boolean REPORT = Boolean.getBoolean("xsjvm.fastthrow.report");
+
+    private static final ImplicitException.Kind[] KINDS = ImplicitException.Kind.values();
+
+    /**
+     * Instruction which throws the preallocated object of the kind.
+     */
+    record Site(String className, String methodName, int ip, ImplicitException.Kind kind) {
+
+        @Override
+        public String toString() {
+            return "%s.%s@%d %s".formatted(className, methodName, ip, kind);
+        }
+    }
+
+    private final boolean enabled;
+    private final int threshold;
+    private final AtomicLongArray preallocated = new AtomicLongArray(KINDS.length);
+    private final AtomicLongArray created = new AtomicLongArray(KINDS.length);
+    private final AtomicLongArray reused = new AtomicLongArray(KINDS.length);
+    private final List<Site> switchedSites = Collections.synchronizedList(new ArrayList<>());
+
+    FastThrow() {
+        this(ENABLED, THRESHOLD);
+    }
+
+    FastThrow(boolean enabled, int threshold) {
+        this.enabled = enabled;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Counts an implicit exception thrown by the instruction of the method.
+     *
+     * @param construct builds a new guest exception of the kind
+     * @return reference to the guest object to throw
+     */
+    long exception(KlassDesc klass, MethodDesc method, int ip, ImplicitException.Kind kind, ToLongFunction<ImplicitException.Kind> construct) {
+        int throwsAtSite = method.countImplicitThrow(ip);
+
+        if (!enabled || throwsAtSite <= threshold) {
+            created.incrementAndGet(kind.ordinal());
+            return construct.applyAsLong(kind);
+        }
+
+        if (throwsAtSite == threshold + 1) {
+            switchedSites.add(new Site(klass.name(), method.name(), ip, kind));
+        }
+        long exception = preallocated.get(kind.ordinal());
+        if (exception == 0) {
+            long constructed = construct.applyAsLong(kind);
+            long witness = preallocated.compareAndExchange(kind.ordinal(), 0, constructed);
+            exception = witness == 0 ? constructed : witness;
+        }
+
+        reused.incrementAndGet(kind.ordinal());
+        return exception;
+    }
+
+    /**
+     * Instructions switched to the preallocated objects so far, in the order they were switched.
+     */
+    List<Site> switchedSites() {
+        synchronized (switchedSites) {
+            return List.copyOf(switchedSites);
+        }
+    }
+
+    long created(ImplicitException.Kind kind) {
+        return created.get(kind.ordinal());
+    }
+
+    long reused(ImplicitException.Kind kind) {
+        return reused.get(kind.ordinal());
+    }
+
+    void report() {
+        Logger.debug("Implicit exceptions:%n");
+        for (ImplicitException.Kind kind : KINDS) {
+            Logger.debug("  %-26s created: %8d reused: %10d%n", kind, created(kind), reused(kind));
+        }
+        for (Site site : switchedSites()) {
+            Logger.debug("  switched %s%n", site);
+        }
+    }
+}
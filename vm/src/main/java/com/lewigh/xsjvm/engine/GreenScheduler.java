@@ -0,0 +1,168 @@
+package com.lewigh.xsjvm.engine;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs guest threads as green threads: many of them share a fixed pool of host carrier threads. A carrier takes the
+ * thread at the head of the run queue and runs it for a slice, until it has taken {@link #QUANTUM} backward branches
+ * and calls, parks or terminates. A thread which is still runnable goes to the tail of the queue, so the threads
+ * take turns in the order they became runnable.
+ * <p>
+ * A thread yields only between two instructions of the interpreter on its bottom thread stack. Compiled code and
+ * calls the host makes into the interpreter, e.g. to initialize a class, run to their end on the carrier. A thread
+ * which has to block in such a call pins its carrier, another carrier is started for the time it blocks, see
+ * {@link #blockCarrier(Runnable)}.
+ * <p>
+ * Green threads are enabled by {@code -Dxsjvm.threads=green}, the pool size is set by
+ * {@code -Dxsjvm.threads.carriers=<threads>} and the quantum by {@code -Dxsjvm.threads.quantum=<ticks>}. The main
+ * thread always runs on the host thread which starts the engine.
+ */
+final class GreenScheduler {
+
+    static final boolean ENABLED = "green".equals(System.getProperty("xsjvm.threads", "host"));
+    static final int CARRIERS = Integer.getInteger("xsjvm.threads.carriers", Runtime.getRuntime().availableProcessors());
+    static final int QUANTUM = Integer.getInteger("xsjvm.threads.quantum", 10_000);
+
+    /**
+     * The part of the engine the scheduler needs.
+     */
+    interface Host {
+
+        /**
+         * Runs the thread on the current carrier until its quantum is used up, it requests a park or it terminates.
+         *
+         * @return whether the thread has terminated
+         */
+        boolean runSlice(VmThread thread);
+    }
+
+    private final Host host;
+    private final BlockingQueue<VmThread> runQueue = new LinkedBlockingQueue<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(task -> daemon(task, "xsjvm-timer"));
+    private boolean started;
+    /**
+     * Running carriers and those of them pinned by a blocked thread.
+     */
+    private int carriers;
+    private int blocked;
+
+    GreenScheduler(Host host) {
+        this.host = host;
+    }
+
+    /**
+     * Makes the new thread runnable, the carriers are started with the first one.
+     */
+    void submit(VmThread thread) {
+        startCarriers();
+        runQueue.add(thread);
+    }
+
+    /**
+     * Wakes the thread up from the park of the ticket.
+     */
+    void unpark(VmThread thread, long ticket) {
+        if (thread.unpark(ticket)) {
+            runQueue.add(thread);
+        }
+    }
+
+    /**
+     * Wakes the thread up from the park of the ticket once the milliseconds have passed.
+     */
+    void unparkAfter(VmThread thread, long ticket, long millis) {
+        schedule(() -> unpark(thread, ticket), millis);
+    }
+
+    /**
+     * Runs the action on the timer thread once the milliseconds have passed.
+     */
+    void schedule(Runnable action, long millis) {
+        timer.schedule(action, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Blocks the current carrier, which runs a thread that cannot park, and keeps {@link #CARRIERS} others running
+     * meanwhile.
+     */
+    void blockCarrier(Runnable blocking) {
+        synchronized (this) {
+            blocked++;
+            if (carriers - blocked < CARRIERS) {
+                startCarrier();
+            }
+        }
+        try {
+            blocking.run();
+        } finally {
+            synchronized (this) {
+                blocked--;
+            }
+        }
+    }
+
+    private synchronized void startCarriers() {
+        if (started) {
+            return;
+        }
+        started = true;
+        for (int i = 0; i < CARRIERS; i++) {
+            startCarrier();
+        }
+    }
+
+    private void startCarrier() {
+        daemon(this::carry, "xsjvm-carrier-" + carriers).start();
+        carriers++;
+    }
+
+    /**
+     * Leaves the carrier if more than {@link #CARRIERS} are running unblocked, e.g. once the thread which made
+     * another one start has unblocked.
+     */
+    private synchronized boolean retire() {
+        if (carriers - blocked > CARRIERS) {
+            carriers--;
+            return true;
+        }
+        return false;
+    }
+
+    private void carry() {
+        for (; ; ) {
+            if (retire()) {
+                return;
+            }
+
+            VmThread thread;
+            try {
+                thread = runQueue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            boolean terminated;
+            try {
+                terminated = host.runSlice(thread);
+            } catch (RuntimeException | Error e) {
+                Thread carrier = Thread.currentThread();
+                carrier.getUncaughtExceptionHandler().uncaughtException(carrier, e);
+                terminated = true;
+            }
+
+            if (!terminated && !thread.park()) {
+                runQueue.add(thread);
+            }
+        }
+    }
+
+    private static Thread daemon(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,22 @@
+package com.lewigh.xsjvm.engine;
+
+import lombok.Getter;
+
+/**
+ * Carries a guest exception through host frames: out of a thread stack which has no handler for it, through
+ * compiled code, up to the interpreted frame which goes on with the unwinding. Like a guest throw it builds no
+ * stack trace and no message.
+ */
+@Getter
+public final class GuestException extends RuntimeException {
+
+    /**
+     * Reference to the thrown guest object.
+     */
+    private final long exception;
+
+    public GuestException(long exception) {
+        super(null, null, false, false);
+        this.exception = exception;
+    }
+}
@@ -0,0 +1,453 @@
+package com.lewigh.xsjvm.engine;
+
+import com.lewigh.xsjvm.engine.runtime.ImplicitException;
+import com.lewigh.xsjvm.mem.VmMemoryManager;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Guest monitors, kept in the mark word of the object:
+ * <ul>
+ *     <li>{@code 0}: nobody owns the monitor,</li>
+ *     <li>a thin lock: the id of the owning thread and how often it has re-entered the monitor. It is taken and
+ *     released by a single compare-and-set of the mark word,</li>
+ *     <li>{@link #INFLATED}: the state is kept by the {@link Monitor} of the object.</li>
+ * </ul>
+ * A thin lock is inflated once another thread contends for it, its owner re-enters it too often or waits on it.
+ * An inflated monitor is handed from its owner to the thread which has waited for it the longest, so a green thread
+ * parks while it waits and is resumed as the owner. A released monitor nobody waits for is deflated to an unlocked
+ * mark word again.
+ * <p>
+ * A thread is safe while it blocks for a monitor, see {@link Safepoints}. It goes on once it has left the host
+ * monitor, so a safepoint in progress never keeps others from entering it.
+ */
+final class Monitors {
+
+    private static final int TAG_MASK = 0b11;
+    private static final int THIN = 0b01;
+    private static final int INFLATED = 0b10;
+    /**
+     * A thin lock keeps the re-entries of its owner in the bits {@code 2..7} and the id of the owner above them.
+     */
+    private static final int REENTRY = 1 << 2;
+    private static final int REENTRIES = 0b111111 * REENTRY;
+    private static final int OWNER_SHIFT = 8;
+    /**
+     * Ticket of a waiter which blocks its host thread instead of parking.
+     */
+    private static final long NO_TICKET = 0;
+
+    private final VmMemoryManager memoryManager;
+    private final GreenScheduler scheduler;
+    private final Safepoints safepoints;
+    /**
+     * Monitors of the inflated objects by their addresses.
+     */
+    private final Map<Long, Monitor> monitors = new ConcurrentHashMap<>();
+
+    Monitors(VmMemoryManager memoryManager, GreenScheduler scheduler, Safepoints safepoints) {
+        this.memoryManager = memoryManager;
+        this.scheduler = scheduler;
+        this.safepoints = safepoints;
+    }
+
+    /**
+     * Enters the monitor of the object. A thread which {@linkplain VmThread#canPark() can park} does not wait for a
+     * monitor owned by another thread, it requests a park instead.
+     *
+     * @return whether the thread owns the monitor, otherwise it owns the monitor once it is woken up
+     */
+    boolean enter(VmThread thread, long objectRef) {
+        return enter(thread, objectRef, thread.canPark());
+    }
+
+    /**
+     * Enters the monitor of the object, blocking the host thread while another thread owns it.
+     */
+    void lock(VmThread thread, long objectRef) {
+        enter(thread, objectRef, false);
+    }
+
+    private boolean enter(VmThread thread, long objectRef, boolean mayPark) {
+        int locked = thin(thread);
+
+        for (; ; ) {
+            int mark = memoryManager.getMarkWord(objectRef);
+
+            if (mark == 0) {
+                if (memoryManager.compareAndSetMarkWord(objectRef, 0, locked)) {
+                    return true;
+                }
+            } else if ((mark & ~REENTRIES) == locked && (mark & REENTRIES) != REENTRIES) {
+                if (memoryManager.compareAndSetMarkWord(objectRef, mark, mark + REENTRY)) {
+                    return true;
+                }
+            } else {
+                Monitor monitor = inflate(objectRef);
+                Entry entry = monitor == null ? Entry.RETRY : monitor.enter(thread, mayPark);
+
+                if (entry == Entry.BLOCKED) {
+                    safepoints.resume(thread);
+                }
+                if (entry != Entry.RETRY) {
+                    return entry != Entry.PARKED;
+                }
+            }
+        }
+    }
+
+    /**
+     * Leaves the monitor of the object once, it is released when the thread has left it as often as it has entered.
+     */
+    void exit(VmThread thread, long objectRef) {
+        int locked = thin(thread);
+
+        for (; ; ) {
+            int mark = memoryManager.getMarkWord(objectRef);
+
+            if ((mark & ~REENTRIES) == locked) {
+                int released = (mark & REENTRIES) == 0 ? 0 : mark - REENTRY;
+                if (memoryManager.compareAndSetMarkWord(objectRef, mark, released)) {
+                    return;
+                }
+            } else if (mark != INFLATED) {
+                throw ImplicitException.of(ImplicitException.Kind.ILLEGAL_MONITOR_STATE);
+            } else {
+                Monitor monitor = monitors.get(objectRef);
+                if (monitor != null && monitor.exit(thread)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases the monitor of the object the thread owns and waits until it is notified or the milliseconds have
+     * passed, unless they are {@code 0}. Then the thread owns the monitor again as often as it has before. A thread
+     * which can park requests a park and owns the monitor again once it is woken up.
+     */
+    void await(VmThread thread, long objectRef, long millis) {
+        boolean mayPark = thread.canPark();
+
+        while (!owned(thread, objectRef).await(thread, mayPark, millis)) {
+            Thread.onSpinWait();
+        }
+        if (!mayPark) {
+            safepoints.resume(thread);
+        }
+    }
+
+    /**
+     * Moves one or all threads waiting on the monitor of the object, which the thread owns, to its entrants.
+     */
+    void signal(VmThread thread, long objectRef, boolean all) {
+        if ((memoryManager.getMarkWord(objectRef) & ~REENTRIES) == thin(thread)) {
+            // nobody waits on a thin lock
+            return;
+        }
+
+        while (!owned(thread, objectRef).signal(thread, all)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * @return whether the thread owns the monitor of the object
+     */
+    boolean holds(VmThread thread, long objectRef) {
+        int mark = memoryManager.getMarkWord(objectRef);
+
+        if (mark == INFLATED) {
+            Monitor monitor = monitors.get(objectRef);
+            return monitor != null && monitor.isOwnedBy(thread);
+        }
+        return (mark & ~REENTRIES) == thin(thread);
+    }
+
+    /**
+     * @return the monitor of an object the thread owns, inflated if it is thin locked
+     */
+    private Monitor owned(VmThread thread, long objectRef) {
+        for (; ; ) {
+            int mark = memoryManager.getMarkWord(objectRef);
+
+            if (mark != INFLATED && (mark & ~REENTRIES) != thin(thread)) {
+                throw ImplicitException.of(ImplicitException.Kind.ILLEGAL_MONITOR_STATE);
+            }
+
+            Monitor monitor = inflate(objectRef);
+            if (monitor != null) {
+                return monitor;
+            }
+        }
+    }
+
+    /**
+     * Moves the lock state of the object into its monitor.
+     *
+     * @return the monitor or {@code null} if the mark word has changed meanwhile
+     */
+    private Monitor inflate(long objectRef) {
+        Monitor monitor = monitors.computeIfAbsent(objectRef, Monitor::new);
+
+        synchronized (monitor) {
+            if (monitor.deflated) {
+                return null;
+            }
+
+            int mark = memoryManager.getMarkWord(objectRef);
+            if (mark == INFLATED) {
+                return monitor;
+            }
+            if (!memoryManager.compareAndSetMarkWord(objectRef, mark, INFLATED)) {
+                return null;
+            }
+
+            if ((mark & TAG_MASK) == THIN) {
+                monitor.owner = mark >>> OWNER_SHIFT;
+                monitor.count = (mark & REENTRIES) / REENTRY + 1;
+            }
+            return monitor;
+        }
+    }
+
+    private static int thin(VmThread thread) {
+        return thread.id() << OWNER_SHIFT | THIN;
+    }
+
+    private enum Entry {
+        ACQUIRED,
+        /**
+         * The thread has blocked until the monitor was handed to it.
+         */
+        BLOCKED,
+        PARKED,
+        /**
+         * The monitor has been deflated meanwhile.
+         */
+        RETRY
+    }
+
+    /**
+     * A thread which waits to own a monitor, either after it has tried to enter it or after it has been notified.
+     */
+    private static final class Waiter {
+        private final VmThread thread;
+        /**
+         * Entries of the monitor the thread has once it owns it.
+         */
+        private final int count;
+        /**
+         * Ticket of the park of a green thread, {@link #NO_TICKET} for a thread which blocks its host thread.
+         */
+        private final long ticket;
+        /**
+         * Whether the thread is in the wait set and has been neither notified nor timed out yet.
+         */
+        private boolean waiting;
+        private boolean granted;
+
+        private Waiter(VmThread thread, int count, boolean park) {
+            this.thread = thread;
+            this.count = count;
+            this.ticket = park ? thread.requestPark() : NO_TICKET;
+        }
+    }
+
+    /**
+     * State of an inflated monitor, guarded by its host monitor. The host monitor is also what threads which cannot
+     * park block on.
+     */
+    private final class Monitor {
+        private final long objectRef;
+        /**
+         * Id of the owning thread, {@code 0} if nobody owns the monitor.
+         */
+        private int owner;
+        private int count;
+        private boolean deflated;
+        private final Queue<Waiter> entrants = new ArrayDeque<>();
+        private final Queue<Waiter> waitSet = new ArrayDeque<>();
+
+        private Monitor(long objectRef) {
+            this.objectRef = objectRef;
+        }
+
+        private synchronized boolean isOwnedBy(VmThread thread) {
+            return owner == thread.id();
+        }
+
+        private synchronized Entry enter(VmThread thread, boolean mayPark) {
+            if (deflated) {
+                return Entry.RETRY;
+            }
+            if (owner == 0) {
+                owner = thread.id();
+                count = 1;
+                return Entry.ACQUIRED;
+            }
+            if (owner == thread.id()) {
+                count++;
+                return Entry.ACQUIRED;
+            }
+
+            Waiter waiter = new Waiter(thread, 1, mayPark);
+            entrants.add(waiter);
+
+            if (mayPark) {
+                return Entry.PARKED;
+            }
+            block(waiter, 0);
+            return Entry.BLOCKED;
+        }
+
+        /**
+         * @return whether the monitor has been left, {@code false} if it has been deflated meanwhile
+         */
+        private synchronized boolean exit(VmThread thread) {
+            if (deflated) {
+                return false;
+            }
+            checkOwner(thread);
+
+            if (--count == 0) {
+                release();
+            }
+            return true;
+        }
+
+        private synchronized boolean await(VmThread thread, boolean mayPark, long millis) {
+            if (deflated) {
+                return false;
+            }
+            checkOwner(thread);
+
+            Waiter waiter = new Waiter(thread, count, mayPark);
+            waiter.waiting = true;
+            waitSet.add(waiter);
+            release();
+
+            if (!mayPark) {
+                block(waiter, millis);
+            } else if (millis > 0) {
+                scheduler.schedule(() -> timeOut(waiter), millis);
+            }
+            return true;
+        }
+
+        private synchronized boolean signal(VmThread thread, boolean all) {
+            if (deflated) {
+                return false;
+            }
+            checkOwner(thread);
+
+            Waiter waiter;
+            while ((waiter = waitSet.poll()) != null) {
+                waiter.waiting = false;
+                entrants.add(waiter);
+                if (!all) {
+                    break;
+                }
+            }
+            return true;
+        }
+
+        private synchronized void timeOut(Waiter waiter) {
+            if (!waiter.waiting) {
+                return;
+            }
+            waiter.waiting = false;
+            waitSet.remove(waiter);
+
+            if (owner == 0) {
+                grant(waiter);
+            } else {
+                entrants.add(waiter);
+            }
+        }
+
+        private void checkOwner(VmThread thread) {
+            if (owner != thread.id()) {
+                throw ImplicitException.of(ImplicitException.Kind.ILLEGAL_MONITOR_STATE);
+            }
+        }
+
+        /**
+         * Hands the monitor to the entrant which has waited the longest or, if there is none, leaves it unowned.
+         * A monitor nobody waits on is deflated.
+         */
+        private void release() {
+            Waiter next = entrants.poll();
+
+            if (next != null) {
+                grant(next);
+                return;
+            }
+
+            owner = 0;
+            if (waitSet.isEmpty()) {
+                deflated = true;
+                memoryManager.compareAndSetMarkWord(objectRef, INFLATED, 0);
+                monitors.remove(objectRef, this);
+            }
+        }
+
+        private void grant(Waiter waiter) {
+            owner = waiter.thread.id();
+            count = waiter.count;
+            waiter.granted = true;
+
+            if (waiter.ticket == NO_TICKET) {
+                notifyAll();
+            } else {
+                scheduler.unpark(waiter.thread, waiter.ticket);
+            }
+        }
+
+        /**
+         * Blocks the host thread until the monitor is granted to the waiter, a waiter in the wait set moves to the
+         * entrants once the milliseconds have passed unless they are {@code 0}. A green thread blocks its carrier.
+         * The thread is safe from now on, it {@linkplain Safepoints#resume(VmThread) resumes} once it has left the
+         * host monitor.
+         */
+        private void block(Waiter waiter, long millis) {
+            safepoints.stop(waiter.thread);
+            if (waiter.thread.isGreen()) {
+                scheduler.blockCarrier(() -> awaitGrant(waiter, millis));
+            } else {
+                awaitGrant(waiter, millis);
+            }
+        }
+
+        private void awaitGrant(Waiter waiter, long millis) {
+            long start = System.nanoTime();
+            long timeout = TimeUnit.MILLISECONDS.toNanos(millis);
+            boolean interrupted = false;
+
+            while (!waiter.granted) {
+                try {
+                    if (waiter.waiting && millis > 0) {
+                        long left = timeout - (System.nanoTime() - start);
+                        if (left <= 0) {
+                            timeOut(waiter);
+                        } else {
+                            TimeUnit.NANOSECONDS.timedWait(this, left);
+                        }
+                    } else {
+                        wait();
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
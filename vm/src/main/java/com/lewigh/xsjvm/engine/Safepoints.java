@@ -0,0 +1,441 @@
+package com.lewigh.xsjvm.engine;
+
+import com.lewigh.xsjvm.support.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Stops guest threads at safepoints, where the interpreter state of a thread is complete: the thread is between two
+ * instructions and every reference its frames hold is tagged, see {@link VmThread#visitReferences}. The interpreter
+ * polls on method entries and taken backward branches, compiled code on its backward branches. A poll reads one
+ * volatile flag, which is raised only while an operation is pending.
+ * <p>
+ * A thread is safe while it is stopped at a poll, but also while it blocks, e.g. for a monitor, a class initialized
+ * by another thread or a sleep, and while a green thread is parked or waits in the run queue: its frames do not
+ * change meanwhile. A thread which leaves such a state while an operation on its behalf is in progress waits for the
+ * operation to end first.
+ * <p>
+ * A handshake runs an operation for one thread: the thread runs it itself at its next poll or, if it is safe, the
+ * requesting thread runs it meanwhile. A safepoint operation runs on the requesting thread once every thread is safe,
+ * none of them goes on before it ends. A requesting guest thread is safe while it waits, so two threads may request
+ * operations on each other.
+ * <p>
+ * Operations see the frames of the interpreter only, compiled code keeps its values in host locals. An operation
+ * must not request another one.
+ * <p>
+ * The time to safepoint, from the request until the last thread is safe, and the pause of the threads are recorded,
+ * see {@link Statistics}. With {@code -Dxsjvm.safepoints.interval=<millis>} the threads are stopped periodically and
+ * with {@code -Dxsjvm.safepoints.report=true} the statistics are printed at the end of the thread.
+ */
+final class Safepoints {
+
+    static final long INTERVAL = Long.getLong("xsjvm.safepoints.interval", 0);
+    static final boolean REPORT = Boolean.getBoolean("xsjvm.safepoints.report");
+
+    /**
+     * Counters of the operations run so far, times in nanoseconds.
+     *
+     * @param handshakeLatency time from the request of a handshake until the operation starts
+     */
+    record Statistics(long safepoints, long timeToSafepoint, long maxTimeToSafepoint, long pause, long maxPause,
+                      long handshakes, long handshakeLatency, long maxHandshakeLatency) {
+    }
+
+    /**
+     * Safepoint state of an attached thread, guarded by the {@link Safepoints}.
+     */
+    private static final class State {
+        private boolean safe = true;
+        /**
+         * Whether another thread runs an operation for the thread, which does not leave its safe state meanwhile.
+         */
+        private boolean busy;
+        private final Queue<Handshake> handshakes = new ArrayDeque<>();
+    }
+
+    private static final class Handshake {
+        private final VmThread target;
+        private final Consumer<VmThread> operation;
+        private final long requested = System.nanoTime();
+        private boolean claimed;
+        private boolean done;
+        /**
+         * Whether the target has terminated before the operation could run.
+         */
+        private boolean skipped;
+
+        private Handshake(VmThread target, Consumer<VmThread> operation) {
+            this.target = target;
+            this.operation = operation;
+        }
+    }
+
+    private final Map<VmThread, State> states = new HashMap<>();
+    private volatile boolean armed;
+    /**
+     * Whether a safepoint operation is in progress, no thread leaves its safe state meanwhile.
+     */
+    private boolean stopping;
+    private int pendingHandshakes;
+
+    private long safepoints;
+    private long timeToSafepoint;
+    private long maxTimeToSafepoint;
+    private long pause;
+    private long maxPause;
+    private long handshakes;
+    private long handshakeLatency;
+    private long maxHandshakeLatency;
+
+    /**
+     * Stops the threads every {@link #INTERVAL} milliseconds, if it is set, on a daemon thread of its own.
+     */
+    void startPeriodic() {
+        if (INTERVAL <= 0) {
+            return;
+        }
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "xsjvm-safepoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleAtFixedRate(() -> synchronize(null, () -> {
+        }), INTERVAL, INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Registers the thread before it runs guest code, it is safe until it {@linkplain #resume(VmThread) resumes}.
+     */
+    synchronized void attach(VmThread thread) {
+        states.put(thread, new State());
+    }
+
+    /**
+     * Unregisters the terminated thread, the handshakes still pending for it are skipped.
+     */
+    synchronized void detach(VmThread thread) {
+        State state = states.remove(thread);
+        if (state == null) {
+            return;
+        }
+
+        Handshake handshake;
+        while ((handshake = state.handshakes.poll()) != null) {
+            handshake.skipped = true;
+            complete(handshake);
+        }
+        notifyAll();
+    }
+
+    /**
+     * @return whether a thread reaching a poll has to call {@link #poll(VmThread)}
+     */
+    boolean isArmed() {
+        return armed;
+    }
+
+    /**
+     * Runs the handshakes pending for the thread and, if a safepoint operation is in progress, stops the thread
+     * until it ends.
+     */
+    void poll(VmThread thread) {
+        Handshake handshake;
+        while ((handshake = claimOwn(thread)) != null) {
+            run(handshake);
+        }
+
+        synchronized (this) {
+            State state = states.get(thread);
+            if (state != null && stopping) {
+                state.safe = true;
+                notifyAll();
+                awaitResume(state);
+            }
+        }
+    }
+
+    /**
+     * The thread stops running guest code, e.g. its slice ends.
+     */
+    synchronized void stop(VmThread thread) {
+        State state = states.get(thread);
+        if (state != null && !state.safe) {
+            state.safe = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * The thread goes on running guest code, once no operation for it is in progress.
+     */
+    synchronized void resume(VmThread thread) {
+        State state = states.get(thread);
+        if (state != null) {
+            awaitResume(state);
+        }
+    }
+
+    /**
+     * Runs the blocking action, the thread is safe meanwhile. A thread which is not attached, e.g. a host thread,
+     * just runs it.
+     */
+    <T> T block(VmThread thread, Supplier<T> blocking) {
+        stop(thread);
+        try {
+            return blocking.get();
+        } finally {
+            resume(thread);
+        }
+    }
+
+    void block(VmThread thread, Runnable blocking) {
+        block(thread, () -> {
+            blocking.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs the operation for the thread once it is safe and waits for it. The requesting thread runs an operation
+     * for itself at once.
+     *
+     * @param requester running guest thread, {@code null} for a host thread
+     * @return whether the operation has run, it has not if the thread terminated first
+     */
+    boolean handshake(VmThread requester, VmThread target, Consumer<VmThread> operation) {
+        return handshake(requester, List.of(target), operation) == 1;
+    }
+
+    /**
+     * Runs the operation for every attached thread, see {@link #handshake(VmThread, VmThread, Consumer)}. The
+     * threads are not stopped at the same time.
+     *
+     * @return number of threads the operation has run for
+     */
+    int handshakeAll(VmThread requester, Consumer<VmThread> operation) {
+        List<VmThread> targets;
+        synchronized (this) {
+            targets = new ArrayList<>(states.keySet());
+        }
+        return handshake(requester, targets, operation);
+    }
+
+    private int handshake(VmThread requester, Collection<VmThread> targets, Consumer<VmThread> operation) {
+        int count = 0;
+        if (requester != null && targets.contains(requester)) {
+            operation.accept(requester);
+            count++;
+        }
+
+        List<Handshake> requested = new ArrayList<>();
+        synchronized (this) {
+            for (VmThread target : targets) {
+                State state = states.get(target);
+                if (target != requester && state != null) {
+                    Handshake handshake = new Handshake(target, operation);
+                    state.handshakes.add(handshake);
+                    requested.add(handshake);
+                    pendingHandshakes++;
+                }
+            }
+            arm();
+        }
+
+        stop(requester);
+        try {
+            Handshake proxied;
+            while ((proxied = claimSafe(requested)) != null) {
+                run(proxied);
+            }
+        } finally {
+            resume(requester);
+        }
+
+        for (Handshake handshake : requested) {
+            if (!handshake.skipped) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Stops every attached thread and runs the operation, the requesting thread is safe meanwhile. Safepoint
+     * operations run one at a time.
+     *
+     * @param requester running guest thread, {@code null} for a host thread
+     */
+    void synchronize(VmThread requester, Runnable operation) {
+        block(requester, () -> {
+            long start;
+            long reached;
+            synchronized (this) {
+                await(() -> !stopping);
+                start = System.nanoTime();
+                stopping = true;
+                arm();
+                await(() -> states.values().stream().allMatch(state -> state.safe));
+                reached = System.nanoTime();
+            }
+
+            try {
+                operation.run();
+            } finally {
+                synchronized (this) {
+                    long end = System.nanoTime();
+                    safepoints++;
+                    timeToSafepoint += reached - start;
+                    maxTimeToSafepoint = Math.max(maxTimeToSafepoint, reached - start);
+                    pause += end - start;
+                    maxPause = Math.max(maxPause, end - start);
+
+                    stopping = false;
+                    arm();
+                    notifyAll();
+                }
+            }
+        });
+    }
+
+    synchronized Statistics statistics() {
+        return new Statistics(safepoints, timeToSafepoint, maxTimeToSafepoint, pause, maxPause,
+                handshakes, handshakeLatency, maxHandshakeLatency);
+    }
+
+    void report() {
+        Statistics statistics = statistics();
+        Logger.debug("Safepoints: %d, time to safepoint: %d us total, %d us max, pause: %d us total, %d us max%n",
+                statistics.safepoints(), micros(statistics.timeToSafepoint()), micros(statistics.maxTimeToSafepoint()),
+                micros(statistics.pause()), micros(statistics.maxPause()));
+        Logger.debug("Handshakes: %d, latency: %d us total, %d us max%n",
+                statistics.handshakes(), micros(statistics.handshakeLatency()), micros(statistics.maxHandshakeLatency()));
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    /**
+     * @return a pending handshake of the thread, claimed for it to run
+     */
+    private synchronized Handshake claimOwn(VmThread thread) {
+        State state = states.get(thread);
+        Handshake handshake = state == null ? null : state.handshakes.poll();
+        if (handshake != null) {
+            claim(handshake);
+        }
+        return handshake;
+    }
+
+    /**
+     * Waits until one of the handshakes is pending for a safe thread, outside of a safepoint operation, or every
+     * one has completed.
+     *
+     * @return the handshake, claimed for the requesting thread to run, or {@code null} once every one has completed
+     */
+    private synchronized Handshake claimSafe(List<Handshake> requested) {
+        boolean interrupted = false;
+        try {
+            for (; ; ) {
+                boolean completed = true;
+                for (Handshake handshake : requested) {
+                    if (handshake.claimed) {
+                        completed &= handshake.done;
+                        continue;
+                    }
+                    completed = false;
+                    State state = states.get(handshake.target);
+                    if (state.safe && !state.busy && !stopping) {
+                        state.handshakes.remove(handshake);
+                        state.busy = true;
+                        claim(handshake);
+                        return handshake;
+                    }
+                }
+                if (completed) {
+                    return null;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void claim(Handshake handshake) {
+        handshake.claimed = true;
+        long latency = System.nanoTime() - handshake.requested;
+        handshakes++;
+        handshakeLatency += latency;
+        maxHandshakeLatency = Math.max(maxHandshakeLatency, latency);
+    }
+
+    private void run(Handshake handshake) {
+        try {
+            handshake.operation.accept(handshake.target);
+        } finally {
+            synchronized (this) {
+                State state = states.get(handshake.target);
+                if (state != null) {
+                    state.busy = false;
+                }
+                complete(handshake);
+                notifyAll();
+            }
+        }
+    }
+
+    private void complete(Handshake handshake) {
+        handshake.done = true;
+        handshake.claimed = true;
+        pendingHandshakes--;
+        arm();
+    }
+
+    private void arm() {
+        armed = stopping || pendingHandshakes > 0;
+    }
+
+    /**
+     * Waits until neither a safepoint operation nor an operation for the thread is in progress and marks it unsafe.
+     */
+    private void awaitResume(State state) {
+        await(() -> !stopping && !state.busy);
+        state.safe = false;
+    }
+
+    /**
+     * Waits on the monitor until the condition holds. An interrupt does not end the wait, it stays pending.
+     */
+    private void await(BooleanSupplier condition) {
+        boolean interrupted = false;
+        while (!condition.getAsBoolean()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
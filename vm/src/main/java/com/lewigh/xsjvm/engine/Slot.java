@@ -0,0 +1,97 @@
+package com.lewigh.xsjvm.engine;
+
+import com.lewigh.xsjvm.engine.runtime.Jtype;
+import com.lewigh.xsjvm.engine.runtime.Value;
+import lombok.NoArgsConstructor;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Tags of the raw {@code long} slots of a {@link StackFrame}.
+ * <p>
+ * A slot keeps a value in its computational type: every int-like value (boolean, byte, char, short, int) is an
+ * int, floats and doubles are kept as their raw bits and references as heap addresses. The tag says how the bits
+ * have to be read, which is enough to find every reference of a frame and to print it while debugging.
+ */
+@NoArgsConstructor(access = PRIVATE)
+public final class Slot {
+
+    public static final byte EMPTY = 0;
+    public static final byte INT = 1;
+    public static final byte LONG = 2;
+    public static final byte FLOAT = 3;
+    public static final byte DOUBLE = 4;
+    public static final byte REF = 5;
+    /**
+     * Second local of a long or double value.
+     */
+    public static final byte TOP = 6;
+    /**
+     * Not a tag of a live slot: marks a local of compiled code state which still holds the value the frame had when
+     * it entered the compiled code, so a restored frame keeps the tag it already has there.
+     */
+    public static final byte UNCHANGED = -1;
+
+    public static byte tagOf(Jtype.Primitive type) {
+        return switch (type) {
+            case BYTE, BOOL, SHORT, CHAR, INT -> INT;
+            case LONG -> LONG;
+            case FLOAT -> FLOAT;
+            case DOUBLE -> DOUBLE;
+            case REFERENCE, ARRAY -> REF;
+            case VOID -> EMPTY;
+        };
+    }
+
+    public static byte tagOf(Value value) {
+        if (value instanceof Value.Long) {
+            return LONG;
+        } else if (value instanceof Value.Float) {
+            return FLOAT;
+        } else if (value instanceof Value.Double) {
+            return DOUBLE;
+        } else if (value instanceof Value.Ref) {
+            return REF;
+        }
+        return INT;
+    }
+
+    public static boolean isWide(byte tag) {
+        return tag == LONG || tag == DOUBLE;
+    }
+
+    public static boolean isWide(Jtype type) {
+        return type == Jtype.Primitive.LONG || type == Jtype.Primitive.DOUBLE;
+    }
+
+    public static long toBits(Value value) {
+        if (value instanceof Value.Float f) {
+            return Float.floatToRawIntBits(f.value());
+        } else if (value instanceof Value.Double d) {
+            return Double.doubleToRawLongBits(d.value());
+        }
+        return value.asNumber().longValue();
+    }
+
+    /**
+     * Boxes a slot. Only slow paths (logging, diagnostics, natives) should need it.
+     */
+    public static Value toValue(byte tag, long bits) {
+        return switch (tag) {
+            case INT -> new Value.Int((int) bits);
+            case LONG -> new Value.Long(bits);
+            case FLOAT -> new Value.Float(Float.intBitsToFloat((int) bits));
+            case DOUBLE -> new Value.Double(Double.longBitsToDouble(bits));
+            case REF -> Value.Ref.from(bits);
+            default -> throw new IllegalArgumentException("Slot with tag %d has no value".formatted(tag));
+        };
+    }
+
+    public static String toString(byte tag, long bits) {
+        return switch (tag) {
+            case EMPTY -> "null!";
+            case TOP -> "top";
+            default -> toValue(tag, bits).toString();
+        };
+    }
+}
@@ -1,98 +1,328 @@
 package com.lewigh.xsjvm.engine;
 
 import com.lewigh.xsjvm.VmException;
+import com.lewigh.xsjvm.engine.runtime.Bytecodes;
 import com.lewigh.xsjvm.engine.runtime.Jtype;
 import com.lewigh.xsjvm.engine.runtime.KlassDesc;
 import com.lewigh.xsjvm.engine.runtime.MethodDesc;
 import com.lewigh.xsjvm.engine.runtime.Value;
-import com.lewigh.xsjvm.classloader.reader.info.attribute.Instruction;
-import com.lewigh.xsjvm.classloader.reader.info.attribute.OpCode;
 import com.lewigh.xsjvm.classloader.reader.pool.ConstantPool;
 import lombok.*;
 
 import java.util.*;
+import java.util.function.LongConsumer;
 
 import static java.util.stream.Collectors.joining;
 
+/**
+ * Frame of a method call.
+ * <p>
+ * Locals and the operand stack share one preallocated array of raw {@code long} slots: locals occupy
+ * {@code [0, maxLocals)} and are indexed exactly like in the class file (long and double take two locals),
+ * the operand stack grows right after them and keeps every value, long and double included, in a single slot.
+ * The parallel {@link Slot} tag array tells what every slot holds, so primitives never have to be boxed and all
+ * references of the frame can still be enumerated.
+ */
 @Data
-@RequiredArgsConstructor
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 public class StackFrame {
     private final KlassDesc klass;
     private final MethodDesc method;
     @Getter(AccessLevel.PRIVATE)
-    private final Queue<Value> stack;
+    private final long[] slots;
     @Getter(AccessLevel.PRIVATE)
-    private final Value[] localTable;
+    private final byte[] tags;
     private final int paramLen;
 
-    short ip = 0;
+    int ip = 0;
+    /**
+     * Object whose monitor the frame of a synchronized method holds, {@code 0} until it has entered the monitor.
+     */
+    long monitor;
 
-    public void setIp(short ip) {
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private int sp;
+
+    public void setIp(int ip) {
         this.ip = ip;
     }
 
     public static StackFrame create(@NonNull KlassDesc klass, @NonNull MethodDesc methodMeta) {
-        Value[] locals = new Value[methodMeta.maxLocals()];
+        return create(klass, methodMeta, 0);
+    }
+
+    /**
+     * Creates the frame of a call whose arguments, the receiver included, are given as raw slot bits.
+     */
+    public static StackFrame create(@NonNull KlassDesc klass, @NonNull MethodDesc methodMeta, long[] args) {
+        Jtype[] methodParamTypes = methodMeta.descriptor().paarameterTypes();
+
+        int argSlots = methodMeta.fStatic() ? 0 : 1;
+        for (var type : methodParamTypes) {
+            argSlots += Slot.isWide(type) ? 2 : 1;
+        }
+
+        StackFrame frame = create(klass, methodMeta, argSlots);
+
+        int arg = 0;
+        int local = 0;
+        if (!methodMeta.fStatic()) {
+            frame.slots[local] = args[arg++];
+            frame.tags[local++] = Slot.REF;
+        }
+        for (var type : methodParamTypes) {
+            frame.slots[local] = args[arg++];
+            frame.tags[local] = Slot.tagOf(type.primitive());
+            if (Slot.isWide(type)) {
+                frame.tags[++local] = Slot.TOP;
+            }
+            local++;
+        }
+
+        return frame;
+    }
+
+    public void pushInt(int value) {
+        push(Slot.INT, value);
+    }
+
+    public void pushLong(long value) {
+        push(Slot.LONG, value);
+    }
 
-        return create(klass, methodMeta, locals, 0);
+    public void pushFloat(float value) {
+        push(Slot.FLOAT, Float.floatToRawIntBits(value));
+    }
+
+    public void pushDouble(double value) {
+        push(Slot.DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
+    public void pushRef(long address) {
+        push(Slot.REF, address);
+    }
+
+    public void push(byte tag, long bits) {
+        slots[sp] = bits;
+        tags[sp] = tag;
+        sp++;
+    }
+
+    public int popInt() {
+        assert checkTop(Slot.INT);
+        return (int) slots[--sp];
+    }
+
+    public long popLong() {
+        assert checkTop(Slot.LONG);
+        return slots[--sp];
+    }
+
+    public float popFloat() {
+        assert checkTop(Slot.FLOAT);
+        return Float.intBitsToFloat((int) slots[--sp]);
+    }
+
+    public double popDouble() {
+        assert checkTop(Slot.DOUBLE);
+        return Double.longBitsToDouble(slots[--sp]);
+    }
+
+    /**
+     * @return address of the popped reference, {@code 0} for null
+     */
+    public long popRef() {
+        assert checkTop(Slot.REF);
+        return slots[--sp];
+    }
+
+    /**
+     * Pops the raw bits of the top value whatever its type is.
+     */
+    public long popRaw() {
+        checkNotEmpty();
+        return slots[--sp];
+    }
+
+    public long peekRef() {
+        assert checkTop(Slot.REF);
+        return slots[sp - 1];
+    }
+
+    /**
+     * Peeks the reference lying {@code depth} values below the top, e.g. the receiver of a call.
+     */
+    public long peekRef(int depth) {
+        int idx = sp - 1 - depth;
+        assert idx >= method.maxLocals() && tags[idx] == Slot.REF;
+        return slots[idx];
+    }
+
+    public byte peekTag() {
+        checkNotEmpty();
+        return tags[sp - 1];
+    }
+
+    /**
+     * Drops the top value whatever its type is.
+     */
+    public void drop() {
+        checkNotEmpty();
+        sp--;
+    }
+
+    public void dup() {
+        checkNotEmpty();
+        slots[sp] = slots[sp - 1];
+        tags[sp] = tags[sp - 1];
+        sp++;
+    }
+
+    /**
+     * {@code POP2}: drops a long or double, otherwise the two top values.
+     */
+    public void drop2() {
+        drop();
+        if (!Slot.isWide(tags[sp])) {
+            drop();
+        }
+    }
+
+    public void swap() {
+        checkNotEmpty();
+        long slot = slots[sp - 1];
+        byte tag = tags[sp - 1];
+        slots[sp - 1] = slots[sp - 2];
+        tags[sp - 1] = tags[sp - 2];
+        slots[sp - 2] = slot;
+        tags[sp - 2] = tag;
+    }
+
+    public void dupX1() {
+        dupX(1, 1);
+    }
+
+    /**
+     * {@code DUP_X2}: the copy goes below a long or double, otherwise below two values.
+     */
+    public void dupX2() {
+        dupX(1, isWide(1) ? 1 : 2);
+    }
+
+    /**
+     * {@code DUP2}: duplicates a long or double, otherwise the two top values.
+     */
+    public void dup2() {
+        dupX(isWide(0) ? 1 : 2, 0);
+    }
+
+    public void dup2X1() {
+        dupX(isWide(0) ? 1 : 2, 1);
+    }
+
+    public void dup2X2() {
+        int count = isWide(0) ? 1 : 2;
+        dupX(count, isWide(count) ? 1 : 2);
+    }
+
+    /**
+     * Copies the top values and inserts the copies below the values under them. The class file counts a long or
+     * double as two values, here it takes a single slot, which is why the {@code DUP} family is resolved by the
+     * tags of the values.
+     *
+     * @param count number of values to copy
+     * @param skip  number of values the copies go below
+     */
+    private void dupX(int count, int skip) {
+        int base = sp - count - skip;
+        if (base < method.maxLocals()) {
+            throw Exception.create("Stack value can not be null", this);
+        }
+        System.arraycopy(slots, base, slots, base + count, count + skip);
+        System.arraycopy(tags, base, tags, base + count, count + skip);
+        System.arraycopy(slots, sp, slots, base, count);
+        System.arraycopy(tags, sp, tags, base, count);
+        sp += count;
+    }
+
+    private boolean isWide(int depth) {
+        return Slot.isWide(tags[sp - 1 - depth]);
     }
 
     public void push(Value value) {
         if (value == null) {
             throw Exception.create("push operation can not consume null", this);
         }
-        stack.offer(value);
+        push(Slot.tagOf(value), Slot.toBits(value));
     }
 
+    /**
+     * Boxes the top value. Handlers should prefer the typed pops.
+     */
     @NonNull
     public Value pop() {
-        Value poll = stack.poll();
-
-        if (poll == null) {
-            throw Exception.create("Stack value can not be null", this);
-        }
-
-        return poll;
+        checkNotEmpty();
+        sp--;
+        return Slot.toValue(tags[sp], slots[sp]);
     }
 
     @NonNull
     public Value peek() {
-        Value peeked = stack.peek();
+        checkNotEmpty();
+        return Slot.toValue(tags[sp - 1], slots[sp - 1]);
+    }
 
-        if (peeked == null) {
-            throw Exception.create("Stack value can not be null", this);
+    public void goTo(int newIp) {
+        int codeLength = method.code().length;
+        if (newIp >= codeLength) {
+            throw new VmException("Unable to go to specify instruction %d. Out of range %d".formatted(newIp, codeLength - 1));
         }
+        ip = newIp;
+    }
 
-        return peeked;
+    /**
+     * Pushes a local onto the operand stack without looking at its type.
+     */
+    public void load(int idx) {
+        slots[sp] = slots[idx];
+        tags[sp] = tags[idx];
+        sp++;
     }
 
-    public Value.Int popInt() {
-        Value popped = pop();
-        if (popped instanceof Value.Int i) {
-            return i;
+    /**
+     * Pops the top value into a local. Long and double values also occupy the next local.
+     */
+    public void store(int idx) {
+        sp--;
+        slots[idx] = slots[sp];
+        byte tag = tags[sp];
+        tags[idx] = tag;
+        if (Slot.isWide(tag)) {
+            tags[idx + 1] = Slot.TOP;
         }
-        throw Exception.create("Ошибка приведения типа %s к Int".formatted(popped), this);
     }
 
-    public void inc() {
-        ip++;
+    public int loadInt(int idx) {
+        return (int) slots[idx];
     }
 
-    public void goTo(short newIp) {
-        int instructionLength = method.instructions().length;
-        if (newIp >= instructionLength) {
-            throw new VmException("Unable to go to specify instruction %d. Out of range %d".formatted(newIp, instructionLength - 1));
-        }
-        ip = newIp;
+    public long loadRef(int idx) {
+        return slots[idx];
     }
 
-    public void popAndStoreTo(int index) {
-        localTable[index] = pop();
+    public void storeInt(int idx, int value) {
+        slots[idx] = value;
+        tags[idx] = Slot.INT;
     }
 
-    @NonNull
-    public Value load(int idx) {
-        return localTable[idx];
+    /**
+     * Moves the top value of this frame onto the operand stack of the given frame.
+     */
+    public void transferTopTo(StackFrame target) {
+        checkNotEmpty();
+        sp--;
+        target.push(tags[sp], slots[sp]);
     }
 
     @NonNull
@@ -101,53 +331,164 @@ public class StackFrame {
     }
 
     public Value[] getParameters() {
-        Value[] params = new Value[paramLen];
+        ArrayList<Value> params = new ArrayList<>(paramLen);
+
+        for (int i = 0; i < paramLen; i++) {
+            if (tags[i] != Slot.TOP && tags[i] != Slot.EMPTY) {
+                params.add(Slot.toValue(tags[i], slots[i]));
+            }
+        }
+
+        return params.toArray(Value[]::new);
+    }
+
+    /**
+     * Visits the address of every non-null reference held by the locals and the operand stack.
+     */
+    public void visitReferences(LongConsumer visitor) {
+        for (int i = 0; i < sp; i++) {
+            if (tags[i] == Slot.REF && slots[i] != 0) {
+                visitor.accept(slots[i]);
+            }
+        }
+    }
+
+    /**
+     * Overwrites the locals and the operand stack, e.g. with the state compiled code left at an uncommon trap.
+     * A local tagged {@link Slot#UNCHANGED} keeps its tag.
+     *
+     * @param tags   tags of the locals followed by tags of the stack values
+     * @param values raw bits in the same order
+     */
+    public void restore(int ip, byte[] tags, long[] values) {
+        for (int i = 0; i < tags.length; i++) {
+            this.slots[i] = values[i];
+            if (tags[i] != Slot.UNCHANGED) {
+                this.tags[i] = tags[i];
+            }
+        }
+        this.sp = tags.length;
+        this.ip = ip;
+    }
+
+    /**
+     * Continues the frame at the exception handler with only the caught exception on the operand stack.
+     */
+    public void catchException(int handlerIp, long exception) {
+        sp = method.maxLocals();
+        pushRef(exception);
+        ip = handlerIp;
+    }
+
+    public boolean isStackEmpty() {
+        return sp == method.maxLocals();
+    }
+
+    /**
+     * Raw bits of every local, long and double values are in the first of their two locals.
+     */
+    public long[] getLocals() {
+        return Arrays.copyOf(slots, method.maxLocals());
+    }
+
+    /**
+     * Pops the arguments of a call, the receiver included, as raw slot bits in the order they were pushed.
+     */
+    public long[] popArguments(@NonNull MethodDesc methodDesc) {
+        return popArguments(methodDesc.name(), methodDesc.descriptor().paarameterTypes().length + (methodDesc.fStatic() ? 0 : 1));
+    }
 
-        System.arraycopy(localTable, 0, params, 0, paramLen);
+    /**
+     * Pops the given number of values as raw slot bits in the order they were pushed.
+     *
+     * @param target name of the callee the values are passed to
+     */
+    public long[] popArguments(@NonNull String target, int count) {
+        if (sp - method.maxLocals() < count) {
+            throw Exception.create("Method %s expects %d arguments".formatted(target, count), this);
+        }
 
-        return params;
+        sp -= count;
+        return Arrays.copyOfRange(slots, sp, sp + count);
     }
 
     public StackFrame fork(@NonNull KlassDesc klass, @NonNull MethodDesc methodDesc) {
-        Value[] locals = new Value[methodDesc.maxLocals()];
         Jtype[] methodParamTypes = methodDesc.descriptor().paarameterTypes();
 
         int expected = methodParamTypes.length;
+        int argSlots = 0;
         if (!methodDesc.fStatic()) {
             expected++;
+            argSlots++;
         }
-        int passed = 0;
-
-        for (int i = expected - 1; i >= 0 && !stack.isEmpty(); i--) {
-            locals[i] = this.pop();
-            passed++;
+        for (var type : methodParamTypes) {
+            argSlots += Slot.isWide(type) ? 2 : 1;
         }
 
+        int passed = Math.min(expected, sp - method.maxLocals());
+
         if (passed != expected) {
             throw StackFrame.Exception.create(
-                    "Error while preraring method call arguments for method %s%s%nExpected %d arguments%n%s%nbut passed %d%n%s%n%n".formatted(
+                    "Error while preraring method call arguments for method %s%s%nExpected %d arguments%n%s%nbut passed %d%n".formatted(
                             klass.name(),
                             methodDesc.name(),
                             methodParamTypes.length,
                             Arrays.stream(methodParamTypes).map(a -> " " + a.toString()).collect(joining("\n")),
-                            passed,
-                            Arrays.stream(locals).filter(Objects::nonNull).limit(passed).map(a -> " " + a.toString()).collect(joining("\n"))
+                            passed
                     ),
                     this);
         }
 
-        return create(klass, methodDesc, locals, passed);
+        StackFrame callee = create(klass, methodDesc, argSlots);
+
+        int local = argSlots;
+        for (int i = methodParamTypes.length - 1; i >= 0; i--) {
+            local -= Slot.isWide(methodParamTypes[i]) ? 2 : 1;
+            sp--;
+            callee.slots[local] = slots[sp];
+            callee.tags[local] = tags[sp];
+            if (Slot.isWide(methodParamTypes[i])) {
+                callee.tags[local + 1] = Slot.TOP;
+            }
+        }
+        if (!methodDesc.fStatic()) {
+            sp--;
+            callee.slots[0] = slots[sp];
+            callee.tags[0] = tags[sp];
+        }
+
+        return callee;
     }
 
 
-    private static StackFrame create(@NonNull KlassDesc klass, @NonNull MethodDesc method, @NonNull Value[] locals, int paramsLen) {
-        return new StackFrame(
+    private static StackFrame create(@NonNull KlassDesc klass, @NonNull MethodDesc method, int paramsLen) {
+        int maxLocals = method.maxLocals();
+        int size = maxLocals + method.maxStack();
+
+        StackFrame frame = new StackFrame(
                 klass,
                 method,
-                Collections.asLifoQueue(new ArrayDeque<>(method.maxStack())),
-                locals,
+                new long[size],
+                new byte[size],
                 paramsLen
         );
+        frame.sp = maxLocals;
+
+        return frame;
+    }
+
+    private void checkNotEmpty() {
+        if (sp <= method.maxLocals()) {
+            throw Exception.create("Stack value can not be null", this);
+        }
+    }
+
+    private boolean checkTop(byte tag) {
+        checkNotEmpty();
+        if (tags[sp - 1] != tag) {
+            throw Exception.create("Wrong type of the stack value %s, expected tag %d".formatted(Slot.toString(tags[sp - 1], slots[sp - 1]), tag), this);
+        }
+        return true;
     }
 
     public static class Exception extends VmException {
@@ -169,44 +510,42 @@ public class StackFrame {
         public static Exception create(@NonNull String message, @NonNull StackFrame frame) {
             String klassName = frame.getKlass().name();
             String methodName = frame.getMethod().name();
-            Map<Short, Short> lineMapping = frame.getMethod().lineNumberMapping();
+            Map<Integer, Integer> lineMapping = frame.getMethod().lineNumberMapping();
 
-            Instruction[] instructions = frame.getMethod().instructions();
+            int[] code = frame.getMethod().code();
 
             var codeLine = getCodeLine(frame, lineMapping);
 
             StringBuilder sb = new StringBuilder();
 
-            int curIp = frame.getIp() - 1;
+            int curIp = frame.getIp();
 
-            for (int i = 0; i < instructions.length; i++) {
+            for (int i = 0; i < code.length; i += Bytecodes.length(code, i)) {
                 if (i == curIp) {
                     sb.append("  ->");
                 } else {
                     sb.append("    ");
                 }
-                OpCode opCode = instructions[i].opCode();
 
-                sb.append(opCode);
-                if (i < instructions.length - 1) {
+                sb.append(Bytecodes.name(code[i]));
+                for (int j = 1; j < Bytecodes.length(code, i); j++) {
+                    sb.append(' ').append(code[i + j]);
+                }
+                if (i + Bytecodes.length(code, i) < code.length) {
                     sb.append('\n');
                 }
             }
 
-            String stackParams = frame.stack.stream()
-                    .map(a -> a.toString())
-                    .collect(joining(", ", "", "  "));
+            StringJoiner stackJoiner = new StringJoiner(", ", "", "  ");
+            int maxLocals = frame.getMethod().maxLocals();
+            for (int i = frame.sp - 1; i >= maxLocals; i--) {
+                stackJoiner.add(Slot.toString(frame.tags[i], frame.slots[i]));
+            }
+            String stackParams = stackJoiner.toString();
 
             StringJoiner joiner = new StringJoiner(", ", "", "  ");
-            Value[] table = frame.localTable;
-            for (int i = 0; i < table.length; i++) {
-                Value a = table[i];
-                if (a != null) {
-                    String string = a.toString();
-                    joiner.add("%d:%s".formatted(i, string));
-                } else {
-                    joiner.add("%d:null!".formatted(i));
-                }
+            for (int i = 0; i < maxLocals; i++) {
+                joiner.add("%d:%s".formatted(i, Slot.toString(frame.tags[i], frame.slots[i])));
             }
             String locals = joiner.toString();
 
@@ -217,17 +556,15 @@ public class StackFrame {
             return new Exception(formatted);
         }
 
-        private static int getCodeLine(StackFrame frame, Map<Short, Short> lineMapping) {
-            var ln = 0;
-
-            for (short i = frame.getIp(); i >= 0; i--) {
-                Short i1 = lineMapping.get(i);
+        private static int getCodeLine(StackFrame frame, Map<Integer, Integer> lineMapping) {
+            for (int i = frame.getIp(); i >= 0; i--) {
+                Integer line = lineMapping.get(i);
 
-                if (i1 != null) {
-                    ln = i1;
+                if (line != null) {
+                    return line;
                 }
             }
-            return ln;
+            return 0;
         }
     }
 
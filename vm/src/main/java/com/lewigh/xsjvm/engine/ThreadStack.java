@@ -6,9 +6,26 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Queue;
+import java.util.function.LongConsumer;
 
 public class ThreadStack {
     private final Queue<StackFrame> frames;
+    /**
+     * Raw bits of the value returned by the bottom frame, which has no caller to receive it.
+     */
+    private long result;
+    /**
+     * Backward branches and calls a preemptible thread may take before it yields its carrier, {@code 0} if the
+     * thread is never preempted.
+     */
+    private int quantum;
+    private int ticksLeft = Integer.MAX_VALUE;
+    private boolean yieldRequested;
+    /**
+     * Number of frames which belong to an interpreter loop further out, e.g. the frames below a class initializer
+     * running on the same stack. An exception is not unwound into them.
+     */
+    private int base;
 
     public ThreadStack() {
         this.frames = Collections.asLifoQueue(new ArrayDeque<>());
@@ -34,6 +51,85 @@ public class ThreadStack {
         return frames.size();
     }
 
+    public int getBase() {
+        return base;
+    }
+
+    public void setBase(int base) {
+        this.base = base;
+    }
+
+    /**
+     * @return whether every frame above the base has been popped
+     */
+    public boolean isAtBase() {
+        return frames.size() <= base;
+    }
+
+    public long getResult() {
+        return result;
+    }
+
+    public void setResult(long result) {
+        this.result = result;
+    }
+
+    /**
+     * @return frame lying {@code depth} frames below the top, {@code null} if the stack has fewer
+     */
+    public StackFrame frame(int depth) {
+        for (StackFrame frame : frames) {
+            if (depth-- == 0) {
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Visits the address of every non-null reference held by the frames, see {@link StackFrame#visitReferences}.
+     */
+    public void visitReferences(LongConsumer visitor) {
+        for (StackFrame frame : frames) {
+            frame.visitReferences(visitor);
+        }
+    }
+
+    /**
+     * Makes the thread preemptible, it yields once it has taken the number of backward branches and calls.
+     */
+    public void setQuantum(int quantum) {
+        this.quantum = quantum;
+        this.ticksLeft = quantum;
+    }
+
+    /**
+     * Counts a backward branch or a call.
+     *
+     * @return whether the quantum is used up and the thread should yield at the next safe point
+     */
+    public boolean tick() {
+        if (--ticksLeft > 0) {
+            return false;
+        }
+        if (quantum == 0) {
+            ticksLeft = Integer.MAX_VALUE;
+            return false;
+        }
+        ticksLeft = quantum;
+        yieldRequested = true;
+        return true;
+    }
+
+    /**
+     * @return whether the thread has used up its quantum since the last call
+     */
+    public boolean takeYieldRequest() {
+        boolean requested = yieldRequested;
+        yieldRequested = false;
+        return requested;
+    }
+
     public static class Exception extends VmException {
 
         private Exception() {
@@ -51,6 +147,13 @@ public class ThreadStack {
             super(cause);
         }
 
+        /**
+         * A guest exception escaped the bottom frame of the thread.
+         */
+        public static Exception uncaught(String className) {
+            return new Exception("Uncaught exception %s".formatted(className));
+        }
+
         public static Exception create(ThreadStack stack, java.lang.Exception e) {
 
             ArrayList<StackFrame> stackFrames = new ArrayList<>(stack.frames);
@@ -0,0 +1,241 @@
+package com.lewigh.xsjvm.engine;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * A guest thread: its {@code java/lang/Thread} instance and the host thread which runs it. Each host thread
+ * interprets the guest code on thread stacks of its own, classes, the heap and the profile of methods are shared.
+ * <p>
+ * A green thread has no host thread of its own, see {@link GreenScheduler}. It keeps its bottom thread stack
+ * between the slices it runs for and parks instead of blocking its carrier: a native which would block requests a
+ * park and returns, once the slice ends the thread is parked until the wake-up of the request arrives. A request
+ * is identified by a ticket, so a late wake-up of an earlier request, e.g. of a timed wait, is ignored.
+ */
+final class VmThread {
+
+    /**
+     * Values of {@code Thread.threadStatus}, as in {@code jdk.internal.misc.VM#toThreadState}.
+     */
+    static final int RUNNABLE = 0x0005;
+    static final int TERMINATED = 0x0002;
+
+    private enum ParkState {
+        RUNNING,
+        PARK_REQUESTED,
+        PARKED
+    }
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    /**
+     * Positive number of the thread, which the mark word of an object it has locked keeps, see {@link Monitors}.
+     */
+    private final int id = NEXT_ID.incrementAndGet();
+    private final boolean daemon;
+    /**
+     * Reference to the {@code java/lang/Thread} instance, the one of the main thread is created on the first
+     * request.
+     */
+    private long threadObject;
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    /**
+     * Bottom thread stack of a green thread, {@code null} for a thread with a host thread of its own.
+     */
+    private final ThreadStack greenStack;
+    /**
+     * Thread stacks the thread runs on, the innermost first: the bottom one and one for every host call into the
+     * interpreter the thread is in, e.g. from compiled code or to initialize a class. Such a call cannot be left for
+     * the scheduler, so a green thread in one never parks. A class initialized on the stack of the instruction which
+     * triggered it enters that stack once more.
+     */
+    private final Deque<ThreadStack> stacks = new ArrayDeque<>();
+    private ParkState parkState = ParkState.RUNNING;
+    private long parkTicket;
+    /**
+     * Copy of a pending park request for the carrier running the thread, which checks it after every call.
+     */
+    private boolean parkRequested;
+
+    private VmThread(boolean daemon, long threadObject, ThreadStack greenStack) {
+        this.daemon = daemon;
+        this.threadObject = threadObject;
+        this.greenStack = greenStack;
+        if (greenStack != null) {
+            stacks.push(greenStack);
+        }
+    }
+
+    /**
+     * The thread which runs the {@code main} method, on the host thread calling the engine.
+     */
+    static VmThread main() {
+        return new VmThread(false, 0, null);
+    }
+
+    /**
+     * A guest thread which is not started yet.
+     */
+    static VmThread of(long threadObject, boolean daemon) {
+        return new VmThread(daemon, threadObject, null);
+    }
+
+    /**
+     * A guest thread which runs on the stack, multiplexed with the other green threads over the carriers.
+     */
+    static VmThread green(long threadObject, boolean daemon, ThreadStack stack) {
+        return new VmThread(daemon, threadObject, stack);
+    }
+
+    /**
+     * Starts a host thread named after the guest one which runs the body.
+     */
+    void start(String name, Consumer<VmThread> body) {
+        Thread thread = new Thread(() -> body.accept(this), name);
+        thread.setDaemon(daemon);
+        thread.start();
+    }
+
+    int id() {
+        return id;
+    }
+
+    boolean isDaemon() {
+        return daemon;
+    }
+
+    long threadObject() {
+        return threadObject;
+    }
+
+    void setThreadObject(long threadObject) {
+        this.threadObject = threadObject;
+    }
+
+    ThreadStack greenStack() {
+        return greenStack;
+    }
+
+    boolean isGreen() {
+        return greenStack != null;
+    }
+
+    void enterStack(ThreadStack stack) {
+        stacks.push(stack);
+    }
+
+    void exitStack() {
+        stacks.pop();
+    }
+
+    /**
+     * Whether a blocking native may park the thread instead of blocking the host thread running it.
+     */
+    boolean canPark() {
+        return isGreen() && stacks.size() == 1;
+    }
+
+    /**
+     * Frame of the interpreted method lying {@code depth} frames below the innermost one, {@code null} if the thread
+     * is in fewer. Compiled methods have no frames, so they are not counted.
+     */
+    StackFrame frame(int depth) {
+        ThreadStack previous = null;
+        for (ThreadStack stack : stacks) {
+            if (stack != previous) {
+                if (depth < stack.size()) {
+                    return stack.frame(depth);
+                }
+                depth -= stack.size();
+            }
+            previous = stack;
+        }
+        return null;
+    }
+
+    /**
+     * Visits the address of every non-null reference held by the frames of the thread, see
+     * {@link StackFrame#visitReferences}. Only the thread itself or a thread running an operation for it at a
+     * safepoint may call it, see {@link Safepoints}.
+     */
+    void visitReferences(LongConsumer visitor) {
+        ThreadStack previous = null;
+        for (ThreadStack stack : stacks) {
+            if (stack != previous) {
+                stack.visitReferences(visitor);
+            }
+            previous = stack;
+        }
+    }
+
+    /**
+     * Requests the thread to be parked once its slice ends.
+     *
+     * @return ticket to {@linkplain #unpark(long) wake} the thread up with
+     */
+    synchronized long requestPark() {
+        parkState = ParkState.PARK_REQUESTED;
+        parkRequested = true;
+        return ++parkTicket;
+    }
+
+    boolean isParkRequested() {
+        return parkRequested;
+    }
+
+    /**
+     * Parks the thread at the end of its slice if it has requested it and no wake-up has arrived meanwhile.
+     *
+     * @return whether the thread is parked, otherwise it stays runnable
+     */
+    synchronized boolean park() {
+        parkRequested = false;
+        if (parkState == ParkState.PARK_REQUESTED) {
+            parkState = ParkState.PARKED;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Wakes the thread up from the park of the ticket.
+     *
+     * @return whether the thread was parked and is runnable now, a thread which has not finished its slice yet is
+     * left running instead
+     */
+    synchronized boolean unpark(long ticket) {
+        if (ticket != parkTicket || parkState == ParkState.RUNNING) {
+            return false;
+        }
+        boolean parked = parkState == ParkState.PARKED;
+        parkState = ParkState.RUNNING;
+        return parked;
+    }
+
+    void terminate() {
+        terminated.countDown();
+    }
+
+    /**
+     * Blocks the host thread until the thread terminates, at most the milliseconds unless they are {@code 0}. An
+     * interrupt of the waiting thread ends the wait and stays pending. Guest threads join through the monitor of
+     * the {@code java/lang/Thread} instance instead.
+     */
+    void join(long millis) {
+        try {
+            if (millis == 0) {
+                terminated.await();
+            } else {
+                terminated.await(millis, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
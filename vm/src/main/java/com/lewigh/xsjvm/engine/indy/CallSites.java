@@ -0,0 +1,150 @@
+package com.lewigh.xsjvm.engine.indy;
+
+import com.lewigh.xsjvm.VmException;
+import com.lewigh.xsjvm.classloader.reader.info.ClassFile;
+import com.lewigh.xsjvm.classloader.reader.info.attribute.BootstrapMethodsAttribute;
+import com.lewigh.xsjvm.classloader.reader.pool.Constant;
+import com.lewigh.xsjvm.classloader.reader.pool.ConstantPool;
+import com.lewigh.xsjvm.classloader.reader.resolvers.DescriptorResolver;
+import com.lewigh.xsjvm.engine.runtime.DynamicCallSite;
+import com.lewigh.xsjvm.engine.runtime.KlassDesc;
+import com.lewigh.xsjvm.engine.runtime.MethodDesc;
+import com.lewigh.xsjvm.engine.runtime.MethodDescriptor;
+import com.lewigh.xsjvm.mem.VmMemoryManager;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Links {@code invokedynamic} call sites. Bootstrap methods are not run in the guest: the linker recognizes the
+ * bootstrap methods the VM implements, string concatenation and lambdas, and builds their targets directly from the
+ * static arguments.
+ * <p>
+ * Call sites are linked by one thread at a time. Two threads reaching the same site before it is quickened both
+ * link it and one of the targets is kept.
+ */
+public final class CallSites {
+
+    /**
+     * The part of the engine call sites need.
+     */
+    public interface Host {
+
+        /**
+         * @return the loaded class of the name
+         */
+        KlassDesc klass(@NonNull String className);
+
+        /**
+         * @return class of the object
+         */
+        KlassDesc klassOf(long objectRef);
+
+        /**
+         * Runs the guest method to completion.
+         *
+         * @return the result as raw slot bits
+         */
+        long call(@NonNull KlassDesc klass, @NonNull MethodDesc method, long[] args);
+
+        /**
+         * Allocates an instance of the class with every field set to its default value.
+         */
+        long allocate(@NonNull KlassDesc klass);
+
+        /**
+         * Links a class spun by the VM, see {@link com.lewigh.xsjvm.classloader.AppClassLoader#define(ClassFile)}.
+         */
+        KlassDesc define(@NonNull ClassFile classFile);
+    }
+
+    public static class Exception extends VmException {
+
+        public Exception(String message) {
+            super(message);
+        }
+    }
+
+    private static final String STRING_CONCAT_FACTORY = "java/lang/invoke/StringConcatFactory";
+
+    private final VmMemoryManager memoryManager;
+    private final Host host;
+    private GuestStrings strings;
+    private Lambdas lambdas;
+
+    public CallSites(@NonNull VmMemoryManager memoryManager, @NonNull Host host) {
+        this.memoryManager = memoryManager;
+        this.host = host;
+    }
+
+    /**
+     * @param indyIndex index of the {@code CONSTANT_InvokeDynamic} in the constant pool of the caller
+     * @throws Exception if the bootstrap method is not one the VM implements
+     */
+    public synchronized DynamicCallSite link(@NonNull KlassDesc caller, int indyIndex) {
+        ConstantPool cp = caller.constantPool();
+        var indy = (Constant.InvokeDynamicInfo) cp.get(indyIndex);
+        var nameAndType = cp.resolveNameAndTypeInfo(indy.nameAndTypeIndex());
+        MethodDescriptor type = DescriptorResolver.resolveMethodDescriptor(cp.resolveUtf8Ref(nameAndType.descriptorIndex()));
+
+        BootstrapMethodsAttribute.BootstrapMethod bootstrap = caller.bootstrapMethods()[indy.bootstrapMethodAttrIndex() & 0xFFFF];
+        var handle = (Constant.MethodHandleInfo) cp.get(bootstrap.methodRefIndex());
+        var bootstrapRef = cp.resolveMemberRef(handle.referenceIndex());
+        String owner = cp.resolveClassRef(bootstrapRef.classIndex());
+        String name = cp.resolveUtf8Ref(cp.resolveNameAndTypeInfo(bootstrapRef.nameAndTypeIndex()).nameIndex());
+
+        List<Object> arguments = new ArrayList<>(bootstrap.arguments().length);
+        for (short argument : bootstrap.arguments()) {
+            arguments.add(staticArgument(cp, argument));
+        }
+
+        if (owner.equals(STRING_CONCAT_FACTORY)) {
+            switch (name) {
+                case "makeConcatWithConstants" -> {
+                    return StringConcat.of(type, (String) arguments.get(0), arguments.subList(1, arguments.size()), memoryManager, strings());
+                }
+                case "makeConcat" -> {
+                    return StringConcat.of(type, "\1".repeat(type.paarameterTypes().length), List.of(), memoryManager, strings());
+                }
+                default -> {
+                }
+            }
+        } else if (owner.equals(Lambdas.LAMBDA_METAFACTORY)) {
+            return lambdas().link(caller, name, cp.resolveUtf8Ref(nameAndType.nameIndex()), type, arguments);
+        }
+        throw new Exception("Bootstrap method %s.%s of the call site %s in %s is not supported"
+                .formatted(owner, name, cp.resolveUtf8Ref(nameAndType.nameIndex()), caller.name()));
+    }
+
+    private static Object staticArgument(ConstantPool cp, int index) {
+        Constant constant = cp.get(index);
+
+        if (constant instanceof Constant.ConstantStringRef string) {
+            return cp.resolveUtf8Ref(string.index());
+        } else if (constant instanceof Constant.ConstantInteger i) {
+            return i.value();
+        } else if (constant instanceof Constant.ConstantFloat f) {
+            return f.value();
+        } else if (constant instanceof Constant.ConstantLong l) {
+            return l.value();
+        } else if (constant instanceof Constant.ConstantDouble d) {
+            return d.value();
+        }
+        return constant;
+    }
+
+    private Lambdas lambdas() {
+        if (lambdas == null) {
+            lambdas = new Lambdas(memoryManager, host);
+        }
+        return lambdas;
+    }
+
+    private GuestStrings strings() {
+        if (strings == null) {
+            strings = new GuestStrings(memoryManager, host);
+        }
+        return strings;
+    }
+}
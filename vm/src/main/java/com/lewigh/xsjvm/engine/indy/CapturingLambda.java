@@ -0,0 +1,50 @@
+package com.lewigh.xsjvm.engine.indy;
+
+import com.lewigh.xsjvm.engine.runtime.DynamicCallSite;
+import com.lewigh.xsjvm.engine.runtime.FieldDesc;
+import com.lewigh.xsjvm.engine.runtime.KlassDesc;
+import com.lewigh.xsjvm.engine.runtime.MethodDescriptor;
+import com.lewigh.xsjvm.mem.VmMemoryManager;
+import lombok.NonNull;
+
+/**
+ * Call site of a lambda which captures values. Every evaluation allocates one instance of the lambda class and
+ * stores the arguments of the call site into its fields, nothing else is allocated.
+ */
+public final class CapturingLambda implements DynamicCallSite {
+
+    private final MethodDescriptor type;
+    private final KlassDesc klass;
+    /**
+     * Fields of the lambda class in the order of the captured values.
+     */
+    private final FieldDesc[] fields;
+    private final VmMemoryManager memoryManager;
+    private final CallSites.Host host;
+
+    CapturingLambda(@NonNull MethodDescriptor type, @NonNull KlassDesc klass, @NonNull FieldDesc[] fields,
+                    @NonNull VmMemoryManager memoryManager, @NonNull CallSites.Host host) {
+        this.type = type;
+        this.klass = klass;
+        this.fields = fields;
+        this.memoryManager = memoryManager;
+        this.host = host;
+    }
+
+    @NonNull
+    @Override
+    public MethodDescriptor type() {
+        return type;
+    }
+
+    @Override
+    public long invoke(long[] args) {
+        long lambda = host.allocate(klass);
+
+        for (int i = 0; i < fields.length; i++) {
+            FieldDesc field = fields[i];
+            memoryManager.putRaw(memoryManager.fieldAddress(lambda, field.offset()), field.type().primitive(), args[i]);
+        }
+        return lambda;
+    }
+}
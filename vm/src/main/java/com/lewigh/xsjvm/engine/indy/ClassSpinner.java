@@ -0,0 +1,154 @@
+package com.lewigh.xsjvm.engine.indy;
+
+import com.lewigh.xsjvm.classloader.reader.flag.ClassAccessFlag;
+import com.lewigh.xsjvm.classloader.reader.info.ClassFile;
+import com.lewigh.xsjvm.classloader.reader.info.FieldInfo;
+import com.lewigh.xsjvm.classloader.reader.info.MethodInfo;
+import com.lewigh.xsjvm.classloader.reader.info.attribute.AttributeInfo;
+import com.lewigh.xsjvm.classloader.reader.info.attribute.CodeAttribute;
+import com.lewigh.xsjvm.classloader.reader.info.attribute.ExceptionTable;
+import com.lewigh.xsjvm.classloader.reader.info.attribute.Instruction;
+import com.lewigh.xsjvm.classloader.reader.info.attribute.OpCode;
+import com.lewigh.xsjvm.classloader.reader.pool.Constant;
+import com.lewigh.xsjvm.classloader.reader.pool.ConstantPool;
+import com.lewigh.xsjvm.engine.runtime.Jtype;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the {@link ClassFile} of a class the VM spins at run time. The result is what the class reader would
+ * return for an equivalent class file, so the class is linked and executed like any loaded one.
+ */
+final class ClassSpinner {
+
+    private static final short MAJOR_VERSION = 61;
+    private static final AttributeInfo[] NO_ATTRIBUTES = new AttributeInfo[0];
+
+    private final String name;
+    private final String superName;
+    private final String[] interfaces;
+    private final ArrayList<Constant> constants = new ArrayList<>();
+    private final Map<Constant, Short> indexes = new HashMap<>();
+    private final List<FieldInfo> fields = new ArrayList<>();
+    private final List<MethodInfo> methods = new ArrayList<>();
+
+    ClassSpinner(@NonNull String name, @NonNull String superName, @NonNull String[] interfaces) {
+        this.name = name;
+        this.superName = superName;
+        this.interfaces = interfaces;
+        constants.add(null);
+    }
+
+    /**
+     * @return descriptor of the type as written in class files
+     */
+    static String descriptor(@NonNull Jtype type) {
+        if (type instanceof Jtype.Reference reference) {
+            return "L" + reference.className() + ";";
+        } else if (type instanceof Jtype.Array array) {
+            return "[" + descriptor(array.jtype());
+        }
+        return String.valueOf(((Jtype.Primitive) type).getCode());
+    }
+
+    static String descriptor(@NonNull Jtype[] parameterTypes, @NonNull Jtype returnType) {
+        var descriptor = new StringBuilder("(");
+        for (Jtype type : parameterTypes) {
+            descriptor.append(descriptor(type));
+        }
+        return descriptor.append(')').append(descriptor(returnType)).toString();
+    }
+
+    void addField(int accessFlags, @NonNull String fieldName, @NonNull String descriptor) {
+        fields.add(new FieldInfo((short) accessFlags, fieldName, descriptor, NO_ATTRIBUTES));
+    }
+
+    /**
+     * Starts a method, it is added to the class once its code is {@linkplain Code#end(int, int) ended}.
+     */
+    Code addMethod(int accessFlags, @NonNull String methodName, @NonNull String descriptor) {
+        return new Code(accessFlags, methodName, descriptor);
+    }
+
+    short classRef(@NonNull String className) {
+        return constant(new Constant.Class(utf8(className)));
+    }
+
+    short fieldRef(@NonNull String owner, @NonNull String fieldName, @NonNull String descriptor) {
+        return constant(new Constant.FieldInfo(classRef(owner), nameAndType(fieldName, descriptor)));
+    }
+
+    short methodRef(@NonNull String owner, @NonNull String methodName, @NonNull String descriptor, boolean isInterface) {
+        short classIndex = classRef(owner);
+        short nameAndType = nameAndType(methodName, descriptor);
+
+        return constant(isInterface
+                ? new Constant.InterfaceMethodRef(classIndex, nameAndType)
+                : new Constant.MethodRefInfo(classIndex, nameAndType));
+    }
+
+    ClassFile toClassFile() {
+        return new ClassFile(
+                MAJOR_VERSION,
+                (short) 0,
+                new ClassAccessFlag[]{ClassAccessFlag.ACC_FINAL, ClassAccessFlag.ACC_SUPER, ClassAccessFlag.ACC_SYNTHETIC},
+                new ConstantPool(constants),
+                name,
+                superName,
+                interfaces,
+                fields.toArray(FieldInfo[]::new),
+                methods.toArray(MethodInfo[]::new),
+                NO_ATTRIBUTES
+        );
+    }
+
+    private short utf8(String text) {
+        return constant(new Constant.Utf8(text));
+    }
+
+    private short nameAndType(String memberName, String descriptor) {
+        return constant(new Constant.NameAndTypeInfo(utf8(memberName), utf8(descriptor)));
+    }
+
+    private short constant(Constant constant) {
+        return indexes.computeIfAbsent(constant, c -> {
+            constants.add(c);
+            return (short) (constants.size() - 1);
+        });
+    }
+
+    /**
+     * Instructions of a method being spun, their pcs are those the instructions would have in a class file.
+     */
+    final class Code {
+
+        private final int accessFlags;
+        private final String methodName;
+        private final String descriptor;
+        private final List<Instruction> instructions = new ArrayList<>();
+        private int pc;
+
+        private Code(int accessFlags, String methodName, String descriptor) {
+            this.accessFlags = accessFlags;
+            this.methodName = methodName;
+            this.descriptor = descriptor;
+        }
+
+        Code op(@NonNull OpCode opCode, int... operands) {
+            instructions.add(new Instruction(pc, opCode, operands));
+            pc += 1 + opCode.getOperandsType().getBytesLen();
+            return this;
+        }
+
+        void end(int maxStack, int maxLocals) {
+            var code = new CodeAttribute("Code", 0, (short) maxStack, (short) maxLocals, pc,
+                    instructions.toArray(Instruction[]::new), (short) 0, new ExceptionTable[0], (short) 0, NO_ATTRIBUTES);
+
+            methods.add(new MethodInfo((short) accessFlags, methodName, descriptor, 1, new AttributeInfo[]{code}));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.lewigh.xsjvm.engine.indy;
+
+import com.lewigh.xsjvm.engine.runtime.FieldDesc;
+import com.lewigh.xsjvm.engine.runtime.Jtype;
+import com.lewigh.xsjvm.engine.runtime.KlassDesc;
+import com.lewigh.xsjvm.mem.VmMemoryManager;
+
+import static com.lewigh.xsjvm.SymbolTable.STRING_CLASS_NAME;
+import static com.lewigh.xsjvm.SymbolTable.STRING_CODER_FIELD_NAME;
+import static com.lewigh.xsjvm.SymbolTable.STRING_VALUE_FIELD_NAME;
+
+/**
+ * Direct access to guest {@code java/lang/String} instances: the {@code byte[]} value and the coder, which is
+ * {@link #LATIN1} with one byte per char or {@link #UTF16} with two bytes per char in the native byte order.
+ */
+final class GuestStrings {
+
+    static final byte LATIN1 = 0;
+    static final byte UTF16 = 1;
+
+    private static final String TO_STRING = "toString()Ljava/lang/String;";
+
+    private final VmMemoryManager memoryManager;
+    private final CallSites.Host host;
+    private final KlassDesc stringKlass;
+    private final FieldDesc value;
+    private final FieldDesc coder;
+    private long nullString;
+
+    GuestStrings(VmMemoryManager memoryManager, CallSites.Host host) {
+        this.memoryManager = memoryManager;
+        this.host = host;
+        this.stringKlass = host.klass(STRING_CLASS_NAME);
+        this.value = field(stringKlass, STRING_VALUE_FIELD_NAME);
+        this.coder = field(stringKlass, STRING_CODER_FIELD_NAME);
+    }
+
+    /**
+     * The guest {@code String.valueOf(Object)}: a string is returned as it is, {@code null} and a {@code toString()}
+     * returning {@code null} become {@code "null"}.
+     */
+    long valueOf(long objectRef) {
+        if (objectRef != 0 && memoryManager.getClassId(objectRef) != stringKlass.id()) {
+            KlassDesc klass = host.klassOf(objectRef);
+            KlassDesc owner = klass.selectMethodOwner(TO_STRING);
+            objectRef = host.call(owner, owner.methods().get(TO_STRING), new long[]{objectRef});
+        }
+        return objectRef != 0 ? objectRef : nullString();
+    }
+
+    long value(long stringRef) {
+        return memoryManager.getRaw(memoryManager.fieldAddress(stringRef, value.offset()), Jtype.Primitive.REFERENCE);
+    }
+
+    byte coder(long stringRef) {
+        return (byte) memoryManager.getRaw(memoryManager.fieldAddress(stringRef, coder.offset()), Jtype.Primitive.BYTE);
+    }
+
+    int length(long stringRef) {
+        return memoryManager.arrayLength(value(stringRef)) >> coder(stringRef);
+    }
+
+    /**
+     * @return new string of the value, which it takes over without a copy
+     */
+    long create(long valueRef, byte coderValue) {
+        long stringRef = host.allocate(stringKlass);
+
+        memoryManager.putRaw(memoryManager.fieldAddress(stringRef, value.offset()), Jtype.Primitive.REFERENCE, valueRef);
+        memoryManager.putRaw(memoryManager.fieldAddress(stringRef, coder.offset()), Jtype.Primitive.BYTE, coderValue);
+
+        return stringRef;
+    }
+
+    /**
+     * @return value of the text in the coder, {@link #LATIN1} requires every char of the text to fit a byte
+     */
+    long encode(String text, byte coderValue) {
+        long valueRef = memoryManager.allocateArray(Jtype.Primitive.BYTE, text.length() << coderValue);
+        write(text, valueRef, coderValue, 0);
+        return valueRef;
+    }
+
+    /**
+     * Writes the chars of the text into the value from the char index on.
+     */
+    void write(String text, long valueRef, byte coderValue, int index) {
+        Jtype.Primitive charType = coderValue == LATIN1 ? Jtype.Primitive.BYTE : Jtype.Primitive.SHORT;
+
+        for (int i = 0; i < text.length(); i++) {
+            memoryManager.setArrayElementRaw(valueRef, index + i, charType, text.charAt(i));
+        }
+    }
+
+    /**
+     * Copies the chars of the string into the value from the char index on, a {@link #LATIN1} string is inflated
+     * into a {@link #UTF16} value.
+     */
+    void copy(long stringRef, long valueRef, byte coderValue, int index) {
+        long source = value(stringRef);
+        int length = memoryManager.arrayLength(source);
+
+        if (coder(stringRef) == coderValue) {
+            memoryManager.copyArray(source, 0, valueRef, index << coderValue, length);
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            long latin1 = memoryManager.getArrayElementRaw(source, i, Jtype.Primitive.BYTE) & 0xFF;
+            memoryManager.setArrayElementRaw(valueRef, index + i, Jtype.Primitive.SHORT, latin1);
+        }
+    }
+
+    static boolean isLatin1(String text) {
+        return text.chars().allMatch(c -> c <= 0xFF);
+    }
+
+    private long nullString() {
+        if (nullString == 0) {
+            nullString = create(encode("null", LATIN1), LATIN1);
+        }
+        return nullString;
+    }
+
+    private static FieldDesc field(KlassDesc klass, String name) {
+        return klass.fieldGroup().fields().get(klass.name() + "." + name);
+    }
+}
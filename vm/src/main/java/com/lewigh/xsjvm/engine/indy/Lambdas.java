@@ -0,0 +1,345 @@
+package com.lewigh.xsjvm.engine.indy;
+
+import com.lewigh.xsjvm.classloader.reader.info.attribute.OpCode;
+import com.lewigh.xsjvm.classloader.reader.pool.Constant;
+import com.lewigh.xsjvm.classloader.reader.pool.ConstantPool;
+import com.lewigh.xsjvm.classloader.reader.resolvers.DescriptorResolver;
+import com.lewigh.xsjvm.engine.runtime.DynamicCallSite;
+import com.lewigh.xsjvm.engine.runtime.FieldDesc;
+import com.lewigh.xsjvm.engine.runtime.Jtype;
+import com.lewigh.xsjvm.engine.runtime.KlassDesc;
+import com.lewigh.xsjvm.engine.runtime.MethodDescriptor;
+import com.lewigh.xsjvm.mem.VmMemoryManager;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.lewigh.xsjvm.SymbolTable.OBJECT_CLASS_NAME;
+import static com.lewigh.xsjvm.classloader.reader.info.attribute.OpCode.*;
+
+/**
+ * Links call sites bootstrapped by {@code java/lang/invoke/LambdaMetafactory}.
+ * <p>
+ * Like the metafactory of the JDK, the linker spins a class per call site: it implements the functional interface,
+ * keeps the captured values in fields and has a method that loads them, adapts the arguments, calls the
+ * implementation method and adapts its result. A non-capturing call site is linked to the single instance of its
+ * class, a capturing one allocates an instance per evaluation, see {@link CapturingLambda}.
+ * <p>
+ * A serializable lambda implements {@code java/io/Serializable} but has no {@code writeReplace()}, the VM does not
+ * serialize lambdas.
+ */
+final class Lambdas {
+
+    static final String LAMBDA_METAFACTORY = "java/lang/invoke/LambdaMetafactory";
+
+    private static final String ALT_METAFACTORY = "altMetafactory";
+    private static final int FLAG_SERIALIZABLE = 1;
+    private static final int FLAG_MARKERS = 1 << 1;
+    private static final int FLAG_BRIDGES = 1 << 2;
+
+    private static final int REF_INVOKE_VIRTUAL = 5;
+    private static final int REF_INVOKE_STATIC = 6;
+    private static final int REF_INVOKE_SPECIAL = 7;
+    private static final int REF_NEW_INVOKE_SPECIAL = 8;
+    private static final int REF_INVOKE_INTERFACE = 9;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_BRIDGE = 0x0040;
+    private static final int ACC_SYNTHETIC = 0x1000;
+
+    private static final String SERIALIZABLE = "java/io/Serializable";
+    private static final String CAPTURED_FIELD_PREFIX = "arg$";
+    private static final String LAMBDA_CLASS_INFIX = "$$Lambda$";
+
+    private final VmMemoryManager memoryManager;
+    private final CallSites.Host host;
+    private int lambdaClasses;
+
+    Lambdas(@NonNull VmMemoryManager memoryManager, @NonNull CallSites.Host host) {
+        this.memoryManager = memoryManager;
+        this.host = host;
+    }
+
+    /**
+     * Method the lambda calls: the class declaring it, its name and descriptor and how it is invoked.
+     */
+    private record Implementation(int kind, String owner, String name, String descriptor, boolean isInterface) {
+
+        /**
+         * Types of the values the implementation takes, the receiver of an instance method included.
+         */
+        List<Jtype> parameterTypes() {
+            List<Jtype> types = new ArrayList<>();
+            if (kind == REF_INVOKE_VIRTUAL || kind == REF_INVOKE_INTERFACE || kind == REF_INVOKE_SPECIAL) {
+                types.add(new Jtype.Reference(owner));
+            }
+            types.addAll(List.of(DescriptorResolver.resolveMethodDescriptor(descriptor).paarameterTypes()));
+            return types;
+        }
+
+        Jtype returnType() {
+            return kind == REF_NEW_INVOKE_SPECIAL
+                    ? new Jtype.Reference(owner)
+                    : DescriptorResolver.resolveMethodDescriptor(descriptor).returnType();
+        }
+    }
+
+    /**
+     * @param samName   name of the functional interface method, the name of the call site
+     * @param type      type of the call site: the captured values and the functional interface
+     * @param arguments static arguments of the bootstrap method
+     */
+    DynamicCallSite link(@NonNull KlassDesc caller, @NonNull String bootstrapName, @NonNull String samName,
+                         @NonNull MethodDescriptor type, @NonNull List<Object> arguments) {
+        ConstantPool cp = caller.constantPool();
+        String samDescriptor = methodType(cp, arguments.get(0));
+        Implementation implementation = implementation(cp, (Constant.MethodHandleInfo) arguments.get(1));
+        MethodDescriptor instantiated = DescriptorResolver.resolveMethodDescriptor(methodType(cp, arguments.get(2)));
+
+        String functionalInterface = ((Jtype.Reference) type.returnType()).className();
+        Set<String> interfaces = new LinkedHashSet<>(List.of(functionalInterface));
+        Set<String> descriptors = new LinkedHashSet<>(List.of(samDescriptor));
+
+        if (bootstrapName.equals(ALT_METAFACTORY)) {
+            int flags = (Integer) arguments.get(3);
+            int next = 4;
+            if ((flags & FLAG_SERIALIZABLE) != 0) {
+                interfaces.add(SERIALIZABLE);
+            }
+            if ((flags & FLAG_MARKERS) != 0) {
+                int count = (Integer) arguments.get(next++);
+                for (int i = 0; i < count; i++) {
+                    interfaces.add(cp.resolveUtf8Ref(((Constant.Class) arguments.get(next++)).nameIndex()));
+                }
+            }
+            if ((flags & FLAG_BRIDGES) != 0) {
+                int count = (Integer) arguments.get(next++);
+                for (int i = 0; i < count; i++) {
+                    descriptors.add(methodType(cp, arguments.get(next++)));
+                }
+            }
+        }
+
+        String className = caller.name() + LAMBDA_CLASS_INFIX + ++lambdaClasses;
+        var spinner = new ClassSpinner(className, OBJECT_CLASS_NAME, interfaces.toArray(String[]::new));
+
+        Jtype[] captured = type.paarameterTypes();
+        for (int i = 0; i < captured.length; i++) {
+            spinner.addField(ACC_PRIVATE | ACC_FINAL, capturedField(i), ClassSpinner.descriptor(captured[i]));
+        }
+
+        for (String descriptor : descriptors) {
+            int bridge = descriptor.equals(samDescriptor) ? 0 : ACC_BRIDGE | ACC_SYNTHETIC;
+            spinForwarder(spinner.addMethod(ACC_PUBLIC | ACC_FINAL | bridge, samName, descriptor),
+                    spinner, className, captured, DescriptorResolver.resolveMethodDescriptor(descriptor), instantiated, implementation);
+        }
+
+        KlassDesc klass = host.define(spinner.toClassFile());
+
+        if (captured.length == 0) {
+            return new DynamicCallSite.Constant(type, host.allocate(klass));
+        }
+
+        FieldDesc[] fields = new FieldDesc[captured.length];
+        for (int i = 0; i < captured.length; i++) {
+            fields[i] = klass.fieldGroup().fields().get(klass.name() + "." + capturedField(i));
+        }
+        return new CapturingLambda(type, klass, fields, memoryManager, host);
+    }
+
+    /**
+     * Spins the method implementing the functional interface method with the given descriptor: the captured values
+     * and the arguments, adapted to the parameters of the implementation, are passed to it and its result is adapted
+     * to the return type of the method.
+     */
+    private static void spinForwarder(ClassSpinner.Code code, ClassSpinner spinner, String className, Jtype[] captured,
+                                      MethodDescriptor method, MethodDescriptor instantiated, Implementation implementation) {
+        List<Jtype> implParameters = implementation.parameterTypes();
+        Jtype[] parameters = method.paarameterTypes();
+
+        if (implParameters.size() != captured.length + parameters.length) {
+            throw new CallSites.Exception("Implementation %s.%s%s does not take %d captured values and %d arguments"
+                    .formatted(implementation.owner(), implementation.name(), implementation.descriptor(), captured.length, parameters.length));
+        }
+
+        if (implementation.kind() == REF_NEW_INVOKE_SPECIAL) {
+            code.op(NEW, spinner.classRef(implementation.owner()));
+            code.op(DUP);
+        }
+
+        for (int i = 0; i < captured.length; i++) {
+            code.op(ALOAD, 0);
+            code.op(GETFIELD, spinner.fieldRef(className, capturedField(i), ClassSpinner.descriptor(captured[i])));
+            convert(code, spinner, captured[i], implParameters.get(i));
+        }
+
+        int local = 1;
+        for (int i = 0; i < parameters.length; i++) {
+            Jtype parameter = parameters[i];
+            code.op(loadOp(parameter), local);
+            local += isWide(parameter) ? 2 : 1;
+
+            Jtype precise = instantiated.paarameterTypes()[i];
+            convert(code, spinner, parameter.isPrimitive() || precise.isPrimitive() ? parameter : precise, implParameters.get(captured.length + i));
+        }
+
+        short implRef = spinner.methodRef(implementation.owner(), implementation.name(), implementation.descriptor(), implementation.isInterface());
+        switch (implementation.kind()) {
+            case REF_INVOKE_STATIC -> code.op(INVOKESTATIC, implRef);
+            case REF_INVOKE_VIRTUAL -> code.op(INVOKEVIRTUAL, implRef);
+            case REF_INVOKE_INTERFACE -> code.op(INVOKEINTERFACE, implRef, implParameters.size());
+            case REF_INVOKE_SPECIAL, REF_NEW_INVOKE_SPECIAL -> code.op(INVOKESPECIAL, implRef);
+            default -> throw new CallSites.Exception("Method handle kind %d can not implement a lambda".formatted(implementation.kind()));
+        }
+
+        convert(code, spinner, implementation.returnType(), method.returnType());
+        code.op(returnOp(method.returnType()));
+
+        int values = 2;
+        for (Jtype type : implParameters) {
+            values += isWide(type) ? 2 : 1;
+        }
+        code.end(values + 2, local);
+    }
+
+    /**
+     * Adapts the value on top of the stack like a method handle of the metafactory does: primitives are widened,
+     * boxed and unboxed, a discarded result is popped. References are passed as they are.
+     */
+    private static void convert(ClassSpinner.Code code, ClassSpinner spinner, Jtype from, Jtype to) {
+        if (to == Jtype.Primitive.VOID) {
+            if (from != Jtype.Primitive.VOID) {
+                code.op(isWide(from) ? POP_2 : POP);
+            }
+        } else if (from == Jtype.Primitive.VOID) {
+            throw new CallSites.Exception("A void implementation can not return %s".formatted(to));
+        } else if (from.isPrimitive() && to.isPrimitive()) {
+            widen(code, (Jtype.Primitive) from, (Jtype.Primitive) to);
+        } else if (from.isPrimitive()) {
+            String box = Box.of((Jtype.Primitive) from).getClassName();
+            code.op(INVOKESTATIC, spinner.methodRef(box, "valueOf", "(" + ClassSpinner.descriptor(from) + ")L" + box + ";", false));
+        } else if (to.isPrimitive()) {
+            Box box = from instanceof Jtype.Reference reference ? Box.of(reference.className()) : null;
+            if (box == null) {
+                box = Box.of((Jtype.Primitive) to);
+                code.op(CHECKCAST, spinner.classRef(box.getClassName()));
+            }
+            code.op(INVOKEVIRTUAL, spinner.methodRef(box.getClassName(), box.getUnboxName(), "()" + box.getPrimitive().getCode(), false));
+            widen(code, box.getPrimitive(), (Jtype.Primitive) to);
+        }
+    }
+
+    private static void widen(ClassSpinner.Code code, Jtype.Primitive from, Jtype.Primitive to) {
+        Jtype.Primitive source = intLike(from) ? Jtype.Primitive.INT : from;
+        Jtype.Primitive target = intLike(to) ? Jtype.Primitive.INT : to;
+
+        if (source == target) {
+            return;
+        }
+        switch (source) {
+            case INT -> code.op(target == Jtype.Primitive.LONG ? I_2_L : target == Jtype.Primitive.FLOAT ? I_2_F : I_2_D);
+            case LONG -> code.op(target == Jtype.Primitive.FLOAT ? L_2_F : L_2_D);
+            case FLOAT -> code.op(F_2_D);
+            default -> throw new CallSites.Exception("%s can not be widened to %s".formatted(from, to));
+        }
+    }
+
+    private static Implementation implementation(ConstantPool cp, Constant.MethodHandleInfo handle) {
+        Constant.MemberRef ref = cp.resolveMemberRef(handle.referenceIndex());
+        var nameAndType = cp.resolveNameAndTypeInfo(ref.nameAndTypeIndex());
+
+        return new Implementation(
+                handle.referenceKind(),
+                cp.resolveClassRef(ref.classIndex()),
+                cp.resolveUtf8Ref(nameAndType.nameIndex()),
+                cp.resolveUtf8Ref(nameAndType.descriptorIndex()),
+                ref instanceof Constant.InterfaceMethodRef
+        );
+    }
+
+    private static String methodType(ConstantPool cp, Object argument) {
+        return cp.resolveUtf8Ref(((Constant.MethodTypeInfo) argument).descriptorIndex());
+    }
+
+    private static String capturedField(int index) {
+        return CAPTURED_FIELD_PREFIX + (index + 1);
+    }
+
+    private static boolean intLike(Jtype.Primitive type) {
+        return type == Jtype.Primitive.INT || type == Jtype.Primitive.SHORT || type == Jtype.Primitive.CHAR
+                || type == Jtype.Primitive.BYTE || type == Jtype.Primitive.BOOL;
+    }
+
+    private static boolean isWide(Jtype type) {
+        return type == Jtype.Primitive.LONG || type == Jtype.Primitive.DOUBLE;
+    }
+
+    private static OpCode loadOp(Jtype type) {
+        return switch (type.primitive()) {
+            case LONG -> LLOAD;
+            case FLOAT -> FLOAD;
+            case DOUBLE -> DLOAD;
+            case REFERENCE, ARRAY -> ALOAD;
+            default -> ILOAD;
+        };
+    }
+
+    private static OpCode returnOp(Jtype type) {
+        return switch (type.primitive()) {
+            case VOID -> RETURN;
+            case LONG -> LRETURN;
+            case FLOAT -> FRETURN;
+            case DOUBLE -> DRETURN;
+            case REFERENCE, ARRAY -> ARETURN;
+            default -> IRETURN;
+        };
+    }
+
+    /**
+     * Wrapper classes of primitives and the methods unboxing them.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    private enum Box {
+        BOOLEAN(Jtype.Primitive.BOOL, "java/lang/Boolean", "booleanValue"),
+        BYTE(Jtype.Primitive.BYTE, "java/lang/Byte", "byteValue"),
+        SHORT(Jtype.Primitive.SHORT, "java/lang/Short", "shortValue"),
+        CHARACTER(Jtype.Primitive.CHAR, "java/lang/Character", "charValue"),
+        INTEGER(Jtype.Primitive.INT, "java/lang/Integer", "intValue"),
+        LONG(Jtype.Primitive.LONG, "java/lang/Long", "longValue"),
+        FLOAT(Jtype.Primitive.FLOAT, "java/lang/Float", "floatValue"),
+        DOUBLE(Jtype.Primitive.DOUBLE, "java/lang/Double", "doubleValue");
+
+        private final Jtype.Primitive primitive;
+        private final String className;
+        private final String unboxName;
+
+        static Box of(Jtype.Primitive primitive) {
+            for (Box box : values()) {
+                if (box.primitive == primitive) {
+                    return box;
+                }
+            }
+            throw new CallSites.Exception("%s has no wrapper class".formatted(primitive));
+        }
+
+        /**
+         * @return the wrapper class of the name or {@code null} if the class is not a wrapper
+         */
+        static Box of(String className) {
+            for (Box box : values()) {
+                if (box.className.equals(className)) {
+                    return box;
+                }
+            }
+            return null;
+        }
+    }
+}
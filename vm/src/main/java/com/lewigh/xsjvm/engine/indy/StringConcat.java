@@ -0,0 +1,171 @@
+package com.lewigh.xsjvm.engine.indy;
+
+import com.lewigh.xsjvm.engine.runtime.DynamicCallSite;
+import com.lewigh.xsjvm.engine.runtime.Jtype;
+import com.lewigh.xsjvm.engine.runtime.MethodDescriptor;
+import com.lewigh.xsjvm.mem.VmMemoryManager;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.lewigh.xsjvm.engine.indy.GuestStrings.LATIN1;
+import static com.lewigh.xsjvm.engine.indy.GuestStrings.UTF16;
+
+/**
+ * Call site linked by {@code java/lang/invoke/StringConcatFactory}. The recipe is parsed once into a plan: the
+ * constant text around the arguments, kept as guest values in both coders, and the types of the arguments.
+ * <p>
+ * A concatenation turns every argument into a piece first: a string is used as it is, other objects through their
+ * {@code toString()}, primitives are formatted by the host. The length and the coder of the result are summed up
+ * from the pieces, then the value is allocated once and the pieces are copied into it.
+ */
+public final class StringConcat implements DynamicCallSite {
+
+    private static final char TAG_ARGUMENT = '\1';
+    private static final char TAG_CONSTANT = '\2';
+
+    private final MethodDescriptor type;
+    private final VmMemoryManager memoryManager;
+    private final GuestStrings strings;
+    private final Jtype.Primitive[] argumentTypes;
+    /**
+     * Constant text before every argument and after the last one.
+     */
+    private final String[] texts;
+    private final long[] latin1Texts;
+    private final long[] utf16Texts;
+    private final int textsLength;
+    private final byte textsCoder;
+
+    private StringConcat(MethodDescriptor type, VmMemoryManager memoryManager, GuestStrings strings, String[] texts) {
+        this.type = type;
+        this.memoryManager = memoryManager;
+        this.strings = strings;
+        this.texts = texts;
+
+        Jtype[] parameterTypes = type.paarameterTypes();
+        this.argumentTypes = new Jtype.Primitive[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            argumentTypes[i] = parameterTypes[i].primitive();
+        }
+
+        int length = 0;
+        byte coder = LATIN1;
+        this.latin1Texts = new long[texts.length];
+        this.utf16Texts = new long[texts.length];
+
+        for (int i = 0; i < texts.length; i++) {
+            length += texts[i].length();
+            if (!texts[i].isEmpty()) {
+                utf16Texts[i] = strings.encode(texts[i], UTF16);
+                if (GuestStrings.isLatin1(texts[i])) {
+                    latin1Texts[i] = strings.encode(texts[i], LATIN1);
+                } else {
+                    coder = UTF16;
+                }
+            }
+        }
+        this.textsLength = length;
+        this.textsCoder = coder;
+    }
+
+    /**
+     * @param recipe    {@code \1} stands for the next argument, {@code \2} for the next constant
+     * @param constants values of the {@code \2} tags
+     */
+    static StringConcat of(@NonNull MethodDescriptor type, @NonNull String recipe, @NonNull List<Object> constants,
+                           @NonNull VmMemoryManager memoryManager, @NonNull GuestStrings strings) {
+        List<String> texts = new ArrayList<>();
+        var text = new StringBuilder();
+        int constant = 0;
+
+        for (int i = 0; i < recipe.length(); i++) {
+            char c = recipe.charAt(i);
+            if (c == TAG_ARGUMENT) {
+                texts.add(text.toString());
+                text.setLength(0);
+            } else if (c == TAG_CONSTANT) {
+                text.append(constants.get(constant++));
+            } else {
+                text.append(c);
+            }
+        }
+        texts.add(text.toString());
+
+        if (texts.size() - 1 != type.paarameterTypes().length) {
+            throw new CallSites.Exception("Recipe takes %d arguments, the call site passes %d".formatted(texts.size() - 1, type.paarameterTypes().length));
+        }
+        return new StringConcat(type, memoryManager, strings, texts.toArray(String[]::new));
+    }
+
+    @NonNull
+    @Override
+    public MethodDescriptor type() {
+        return type;
+    }
+
+    @Override
+    public long invoke(long[] args) {
+        long[] pieces = new long[args.length];
+        int[] lengths = new int[args.length];
+        String[] formatted = new String[args.length];
+        int length = textsLength;
+        byte coder = textsCoder;
+
+        for (int i = 0; i < args.length; i++) {
+            Jtype.Primitive argumentType = argumentTypes[i];
+
+            if (argumentType == Jtype.Primitive.REFERENCE || argumentType == Jtype.Primitive.ARRAY) {
+                pieces[i] = strings.valueOf(args[i]);
+                lengths[i] = strings.length(pieces[i]);
+                coder |= strings.coder(pieces[i]);
+            } else {
+                formatted[i] = format(argumentType, args[i]);
+                lengths[i] = formatted[i].length();
+                if (argumentType == Jtype.Primitive.CHAR && !GuestStrings.isLatin1(formatted[i])) {
+                    coder = UTF16;
+                }
+            }
+            length += lengths[i];
+        }
+
+        long value = memoryManager.allocateArray(Jtype.Primitive.BYTE, length << coder);
+        int index = 0;
+
+        for (int i = 0; i < args.length; i++) {
+            index = writeText(i, value, coder, index);
+            if (formatted[i] == null) {
+                strings.copy(pieces[i], value, coder, index);
+            } else {
+                strings.write(formatted[i], value, coder, index);
+            }
+            index += lengths[i];
+        }
+        writeText(args.length, value, coder, index);
+
+        return strings.create(value, coder);
+    }
+
+    private int writeText(int text, long value, byte coder, int index) {
+        int length = texts[text].length();
+
+        if (length > 0) {
+            long source = coder == LATIN1 ? latin1Texts[text] : utf16Texts[text];
+            memoryManager.copyArray(source, 0, value, index << coder, length << coder);
+        }
+        return index + length;
+    }
+
+    private static String format(Jtype.Primitive type, long raw) {
+        return switch (type) {
+            case BOOL -> String.valueOf(raw != 0);
+            case CHAR -> String.valueOf((char) raw);
+            case BYTE, SHORT, INT -> String.valueOf((int) raw);
+            case LONG -> String.valueOf(raw);
+            case FLOAT -> String.valueOf(Float.intBitsToFloat((int) raw));
+            case DOUBLE -> String.valueOf(Double.longBitsToDouble(raw));
+            default -> throw new CallSites.Exception("Unable to concatenate a value of type %s".formatted(type));
+        };
+    }
+}
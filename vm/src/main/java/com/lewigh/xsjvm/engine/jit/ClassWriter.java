@@ -0,0 +1,174 @@
+package com.lewigh.xsjvm.engine.jit;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal writer of the host class files produced by the {@link JitCompiler}.
+ * <p>
+ * Classes are written with version 49, which is verified by type inference and therefore needs no
+ * {@code StackMapTable}. Only the constant kinds the compiler emits are supported.
+ */
+final class ClassWriter {
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int VERSION = 49;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    record Field(int access, String name, String descriptor) {
+    }
+
+    record Method(int access, String name, String descriptor, int maxStack, int maxLocals, byte[] code) {
+    }
+
+    private final CodeBuffer pool = new CodeBuffer();
+    private final Map<String, Integer> entries = new HashMap<>();
+    private int poolCount = 1;
+
+    private final List<Field> fields = new ArrayList<>();
+    private final List<Method> methods = new ArrayList<>();
+
+    int utf8(String value) {
+        return entry("U" + value, () -> {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            pool.u1(CONSTANT_UTF8);
+            pool.u2(bytes.length);
+            pool.bytes(bytes);
+        }, 1);
+    }
+
+    int classRef(String internalName) {
+        int name = utf8(internalName);
+        return entry("C" + internalName, () -> {
+            pool.u1(CONSTANT_CLASS);
+            pool.u2(name);
+        }, 1);
+    }
+
+    int integer(int value) {
+        return entry("I" + value, () -> {
+            pool.u1(CONSTANT_INTEGER);
+            pool.u4(value);
+        }, 1);
+    }
+
+    int longConstant(long value) {
+        return entry("J" + value, () -> {
+            pool.u1(CONSTANT_LONG);
+            pool.u8(value);
+        }, 2);
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_FIELDREF, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+    }
+
+    void addField(Field field) {
+        fields.add(field);
+    }
+
+    void addMethod(Method method) {
+        methods.add(method);
+    }
+
+    byte[] toByteArray(String name, String superName, String interfaceName) {
+        int thisClass = classRef(name);
+        int superClass = classRef(superName);
+        int iface = classRef(interfaceName);
+
+        var body = new CodeBuffer();
+
+        body.u2(fields.size());
+        for (var field : fields) {
+            body.u2(field.access());
+            body.u2(utf8(field.name()));
+            body.u2(utf8(field.descriptor()));
+            body.u2(0);
+        }
+
+        int codeAttribute = utf8("Code");
+        body.u2(methods.size());
+        for (var method : methods) {
+            body.u2(method.access());
+            body.u2(utf8(method.name()));
+            body.u2(utf8(method.descriptor()));
+            body.u2(1);
+            body.u2(codeAttribute);
+            body.u4(12 + method.code().length);
+            body.u2(method.maxStack());
+            body.u2(method.maxLocals());
+            body.u4(method.code().length);
+            body.bytes(method.code());
+            body.u2(0);
+            body.u2(0);
+        }
+        body.u2(0);
+
+        var out = new CodeBuffer();
+        out.u4(MAGIC);
+        out.u2(0);
+        out.u2(VERSION);
+        out.u2(poolCount);
+        out.bytes(pool.toByteArray());
+        out.u2(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+        out.u2(thisClass);
+        out.u2(superClass);
+        out.u2(1);
+        out.u2(iface);
+        out.bytes(body.toByteArray());
+
+        return out.toByteArray();
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int klass = classRef(owner);
+        int nameAndType = nameAndType(name, descriptor);
+        return entry(tag + owner + "." + name + descriptor, () -> {
+            pool.u1(tag);
+            pool.u2(klass);
+            pool.u2(nameAndType);
+        }, 1);
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        return entry("N" + name + ":" + descriptor, () -> {
+            pool.u1(CONSTANT_NAME_AND_TYPE);
+            pool.u2(nameIndex);
+            pool.u2(descriptorIndex);
+        }, 1);
+    }
+
+    private int entry(String key, Runnable writer, int slots) {
+        Integer index = entries.get(key);
+
+        if (index == null) {
+            index = poolCount;
+            writer.run();
+            poolCount += slots;
+            entries.put(key, index);
+        }
+
+        return index;
+    }
+}
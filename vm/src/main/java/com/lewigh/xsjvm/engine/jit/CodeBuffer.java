@@ -0,0 +1,63 @@
+package com.lewigh.xsjvm.engine.jit;
+
+import java.util.Arrays;
+
+/**
+ * Growable big-endian byte buffer the class file and the bytecode of its methods are written into.
+ */
+final class CodeBuffer {
+
+    private byte[] bytes = new byte[256];
+    private int size;
+
+    void u1(int value) {
+        ensureCapacity(1);
+        bytes[size++] = (byte) value;
+    }
+
+    void u2(int value) {
+        ensureCapacity(2);
+        bytes[size++] = (byte) (value >>> 8);
+        bytes[size++] = (byte) value;
+    }
+
+    void u4(int value) {
+        u2(value >>> 16);
+        u2(value);
+    }
+
+    void u8(long value) {
+        u4((int) (value >>> 32));
+        u4((int) value);
+    }
+
+    void bytes(byte[] value) {
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, bytes, size, value.length);
+        size += value.length;
+    }
+
+    void patchU2(int position, int value) {
+        bytes[position] = (byte) (value >>> 8);
+        bytes[position + 1] = (byte) value;
+    }
+
+    void patchU4(int position, int value) {
+        patchU2(position, value >>> 16);
+        patchU2(position + 2, value);
+    }
+
+    int position() {
+        return size;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+        }
+    }
+}
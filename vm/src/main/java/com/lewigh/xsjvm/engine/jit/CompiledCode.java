@@ -0,0 +1,17 @@
+package com.lewigh.xsjvm.engine.jit;
+
+/**
+ * Guest method compiled to host bytecode by the {@link JitCompiler}.
+ * <p>
+ * Values cross the boundary as raw slot bits, the same way a {@link com.lewigh.xsjvm.engine.StackFrame} keeps them.
+ */
+public interface CompiledCode {
+
+    /**
+     * Runs the compiled method.
+     *
+     * @param args arguments of the call, the receiver included
+     * @return raw bits of the returned value, {@code 0} for a void method
+     */
+    long run(JitRuntime runtime, long[] args);
+}
@@ -0,0 +1,28 @@
+package com.lewigh.xsjvm.engine.jit;
+
+import lombok.Getter;
+
+/**
+ * Thrown by compiled code which reached an uncommon trap. Carries the state of the guest frame at the trap, the
+ * interpreter rebuilds the frame from it and goes on with the trapping instruction.
+ */
+@Getter
+public final class Deoptimization extends RuntimeException {
+
+    private final int ip;
+    /**
+     * Slot tags of the locals followed by the tags of the operand stack values.
+     */
+    private final byte[] tags;
+    /**
+     * Raw bits of the locals followed by the operand stack values.
+     */
+    private final long[] values;
+
+    Deoptimization(int ip, byte[] tags, long[] values) {
+        super(null, null, false, false);
+        this.ip = ip;
+        this.tags = tags;
+        this.values = values;
+    }
+}
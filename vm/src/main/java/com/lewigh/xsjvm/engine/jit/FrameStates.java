@@ -0,0 +1,566 @@
+package com.lewigh.xsjvm.engine.jit;
+
+import com.lewigh.xsjvm.classloader.reader.pool.Constant;
+import com.lewigh.xsjvm.classloader.reader.pool.ConstantPool;
+import com.lewigh.xsjvm.classloader.reader.resolvers.DescriptorResolver;
+import com.lewigh.xsjvm.engine.Slot;
+import com.lewigh.xsjvm.engine.runtime.Bytecodes;
+import com.lewigh.xsjvm.engine.runtime.InlineCache;
+import com.lewigh.xsjvm.engine.runtime.Jtype;
+import com.lewigh.xsjvm.engine.runtime.KlassDesc;
+import com.lewigh.xsjvm.engine.runtime.MethodDesc;
+import com.lewigh.xsjvm.engine.runtime.MethodDescriptor;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+import static com.lewigh.xsjvm.engine.runtime.Bytecodes.*;
+
+/**
+ * Slot tags of the locals and the operand stack before every instruction reachable from the entry of the compiled
+ * code, computed by abstract interpretation of the instructions the {@link JitCompiler} translates.
+ * <p>
+ * An instruction which can not be translated, because it is not supported or its site is not resolved yet, becomes
+ * an uncommon trap: the flow ends there and the compiled code hands its state over to the interpreter, which goes on
+ * with the instruction. The tags are what the interpreter needs to rebuild the frame.
+ */
+final class FrameStates {
+
+    private static final byte[] NUMERIC_TAGS = {Slot.INT, Slot.LONG, Slot.FLOAT, Slot.DOUBLE};
+    /**
+     * Tags of the operands and the result of the arithmetic, conversion and compare instructions, see
+     * {@link #operationTags(int)}.
+     */
+    private static final byte[][] OPERATION_TAGS = new byte[256][];
+
+    static {
+        for (int i = 0; i < 4; i++) {
+            byte tag = NUMERIC_TAGS[i];
+            for (int op : new int[]{IADD, ISUB, IMUL, IDIV, IREM}) {
+                OPERATION_TAGS[op + i] = new byte[]{tag, tag, tag};
+            }
+            OPERATION_TAGS[INEG + i] = new byte[]{tag, tag};
+        }
+        for (int i = 0; i < 2; i++) {
+            byte tag = NUMERIC_TAGS[i];
+            for (int op : new int[]{ISHL, ISHR, IUSHR}) {
+                OPERATION_TAGS[op + i] = new byte[]{tag, Slot.INT, tag};
+            }
+            for (int op : new int[]{IAND, IOR, IXOR}) {
+                OPERATION_TAGS[op + i] = new byte[]{tag, tag, tag};
+            }
+        }
+
+        // I2L, I2F, I2D, L2I, L2F, L2D, F2I, F2L, F2D, D2I, D2L, D2F
+        for (int from = 0; from < 4; from++) {
+            int op = I_2_L + 3 * from;
+            for (int to = 0; to < 4; to++) {
+                if (to != from) {
+                    OPERATION_TAGS[op++] = new byte[]{NUMERIC_TAGS[from], NUMERIC_TAGS[to]};
+                }
+            }
+        }
+        for (int op : new int[]{I_2_B, I_2_C, I_2_S}) {
+            OPERATION_TAGS[op] = new byte[]{Slot.INT, Slot.INT};
+        }
+
+        OPERATION_TAGS[LCMP] = new byte[]{Slot.LONG, Slot.LONG, Slot.INT};
+        OPERATION_TAGS[FCMPL] = OPERATION_TAGS[FCMPG] = new byte[]{Slot.FLOAT, Slot.FLOAT, Slot.INT};
+        OPERATION_TAGS[DCMPL] = OPERATION_TAGS[DCMPG] = new byte[]{Slot.DOUBLE, Slot.DOUBLE, Slot.INT};
+    }
+
+    private final KlassDesc klass;
+    private final MethodDesc method;
+    private final int[] code;
+    private final int maxLocals;
+
+    /**
+     * Tags of the locals followed by tags of the stack values, {@code null} for an unreachable instruction.
+     */
+    private final byte[][] states;
+    private final boolean[] traps;
+    private final ArrayDeque<Integer> pending = new ArrayDeque<>();
+
+    private FrameStates(KlassDesc klass, MethodDesc method) {
+        this.klass = klass;
+        this.method = method;
+        this.code = method.code();
+        this.maxLocals = method.maxLocals();
+        this.states = new byte[code.length][];
+        this.traps = new boolean[code.length];
+    }
+
+    /**
+     * Computes the states of code entered at the start of the method.
+     */
+    static FrameStates ofMethod(KlassDesc klass, MethodDesc method) {
+        var states = new FrameStates(klass, method);
+        byte[] entry = new byte[method.maxLocals()];
+
+        int local = 0;
+        if (!method.fStatic()) {
+            entry[local++] = Slot.REF;
+        }
+        for (var type : method.descriptor().paarameterTypes()) {
+            entry[local] = Slot.tagOf(type.primitive());
+            if (Slot.isWide(type)) {
+                entry[++local] = Slot.TOP;
+            }
+            local++;
+        }
+
+        states.run(0, entry);
+        return states;
+    }
+
+    /**
+     * Computes the states of code entered at a loop header with an empty operand stack, every local keeps the value
+     * of the replaced frame until it is stored to.
+     * <p>
+     * A local which is stored to in the loop takes the stored tag at the header too: if it is live at the header,
+     * the value it entered with has the same type, as the class-file verifier requires.
+     */
+    static FrameStates ofLoop(KlassDesc klass, MethodDesc method, int headerIp) {
+        var states = new FrameStates(klass, method);
+        byte[] entry = new byte[method.maxLocals()];
+        Arrays.fill(entry, Slot.UNCHANGED);
+
+        states.run(headerIp, entry);
+        return states;
+    }
+
+    boolean isReachable(int ip) {
+        return states[ip] != null;
+    }
+
+    boolean isTrap(int ip) {
+        return traps[ip];
+    }
+
+    /**
+     * Tags of the locals and the stack before the instruction.
+     */
+    byte[] stateAt(int ip) {
+        return states[ip];
+    }
+
+    int depthAt(int ip) {
+        return states[ip].length - maxLocals;
+    }
+
+    /**
+     * @return the class if the constant is resolved to an initialized class, otherwise {@code null}
+     */
+    static KlassDesc initializedClass(ConstantPool cp, int index) {
+        return cp.resolved(index) instanceof KlassDesc resolved && resolved.isInit() ? resolved : null;
+    }
+
+    /**
+     * @return the class if the constant is resolved to a class, otherwise {@code null}
+     */
+    static KlassDesc loadedClass(ConstantPool cp, int index) {
+        return cp.resolved(index) instanceof KlassDesc resolved ? resolved : null;
+    }
+
+    /**
+     * @return the name of the array type the class constant stands for, otherwise {@code null}; array types are
+     * never resolved as they have no classes yet
+     */
+    static String arrayType(ConstantPool cp, int index) {
+        if (cp.resolved(index) != null) {
+            return null;
+        }
+        String name = cp.resolveClassRef(index);
+
+        return name.startsWith("[") ? name : null;
+    }
+
+    /**
+     * @return whether an {@code LDC} or {@code LDC2_W} of the constant can be compiled to a constant
+     */
+    static boolean isConstant(ConstantPool cp, int index) {
+        Constant constant = cp.get(index);
+
+        return constant instanceof Constant.ConstantInteger
+                || constant instanceof Constant.ConstantFloat
+                || constant instanceof Constant.ConstantLong
+                || constant instanceof Constant.ConstantDouble
+                || constant instanceof Constant.ConstantStringRef && cp.resolved(index) instanceof Long;
+    }
+
+    /**
+     * Tags of the operands of an arithmetic, conversion or compare instruction, the deepest first, followed by the
+     * tag of its result.
+     *
+     * @return the tags or {@code null} if the instruction is none of them
+     */
+    static byte[] operationTags(int op) {
+        return OPERATION_TAGS[op];
+    }
+
+    /**
+     * Resolves a stack instruction whose operands depend on the category of the values: the class file counts a
+     * long or double as two values, a frame keeps it in one.
+     *
+     * @param state tags of the locals and the stack before the instruction
+     * @return number of top values the instruction copies or, for {@code POP2}, drops, followed by the number of
+     * values the copies go below; {@code null} if the category of a value it depends on is not known
+     */
+    static int[] stackShape(int op, byte[] state) {
+        int top = state.length - 1;
+        byte first = state[top];
+        if (!isValue(first)) {
+            return null;
+        }
+        if (op == DUP_X_1) {
+            return new int[]{1, 1};
+        }
+        int count = op == DUP_X_2 || Slot.isWide(first) ? 1 : 2;
+
+        if (op == POP_2 || op == DUP_2) {
+            return new int[]{count, 0};
+        }
+        if (op == DUP_2_X_1) {
+            return new int[]{count, 1};
+        }
+        byte below = state[top - count];
+        if (!isValue(below)) {
+            return null;
+        }
+        return new int[]{count, Slot.isWide(below) ? 1 : 2};
+    }
+
+    private static boolean isValue(byte tag) {
+        return tag >= Slot.INT && tag <= Slot.REF;
+    }
+
+    /**
+     * Number of values a quickened call pops, the receiver included.
+     */
+    static int argumentsCount(int op, InlineCache cache) {
+        if (op == INVOKEVIRTUAL_QUICK || op == INVOKEINTERFACE_QUICK) {
+            return cache.getArgumentsCount() + 1;
+        }
+        MethodDesc target = cache.getBound().method();
+        return target.descriptor().paarameterTypes().length + (target.fStatic() ? 0 : 1);
+    }
+
+    static Jtype returnType(InlineCache cache) {
+        if (cache.getBound() != null) {
+            return cache.getBound().method().descriptor().returnType();
+        }
+        String signature = cache.getSignature();
+        MethodDescriptor descriptor = DescriptorResolver.resolveMethodDescriptor(signature.substring(signature.indexOf('(')));
+        return descriptor.returnType();
+    }
+
+    private void run(int entryIp, byte[] entry) {
+        merge(entryIp, entry);
+
+        while (!pending.isEmpty()) {
+            int ip = pending.poll();
+            step(ip, states[ip]);
+        }
+    }
+
+    private void step(int ip, byte[] in) {
+        int op = Bytecodes.unfused(Bytecodes.opcode(code, ip));
+        var frame = new Frame(in);
+        byte[] operationTags = OPERATION_TAGS[op];
+
+        if (operationTags != null) {
+            for (int i = operationTags.length - 2; i >= 0; i--) {
+                frame.pop(ip, operationTags[i]);
+            }
+            frame.push(operationTags[operationTags.length - 1]);
+            merge(ip + Bytecodes.length(code, ip), frame.state());
+            return;
+        }
+
+        switch (op) {
+            case NOP -> {
+            }
+            case ACONST_NULL -> frame.push(Slot.REF);
+            case ICONST_M_1, ICONST_0, ICONST_1, ICONST_2, ICONST_3, ICONST_4, ICONST_5, BIPUSH, SIPUSH -> frame.push(Slot.INT);
+            case LCONST_0, LCONST_1 -> frame.push(Slot.LONG);
+            case FCONST_0, FCONST_1, FCONST_2 -> frame.push(Slot.FLOAT);
+            case DCONST_0, DCONST_1 -> frame.push(Slot.DOUBLE);
+            case LDC, LDC2_W -> {
+                if (!isConstant(klass.constantPool(), code[ip + 1])) {
+                    traps[ip] = true;
+                    return;
+                }
+                Constant constant = klass.constantPool().get(code[ip + 1]);
+                frame.push(constant instanceof Constant.ConstantInteger ? Slot.INT
+                        : constant instanceof Constant.ConstantFloat ? Slot.FLOAT
+                        : constant instanceof Constant.ConstantLong ? Slot.LONG
+                        : constant instanceof Constant.ConstantDouble ? Slot.DOUBLE
+                        : Slot.REF);
+            }
+            case IINC -> frame.storeInt(code[ip + 1]);
+            case ILOAD -> frame.push(Slot.INT);
+            case LLOAD -> frame.push(Slot.LONG);
+            case FLOAD -> frame.push(Slot.FLOAT);
+            case DLOAD -> frame.push(Slot.DOUBLE);
+            case ALOAD -> frame.push(Slot.REF);
+            case ISTORE, LSTORE, FSTORE, DSTORE, ASTORE -> frame.store(code[ip + 1]);
+            case IRETURN, LRETURN, FRETURN, DRETURN, ARETURN, RETURN, ATHROW -> {
+                return;
+            }
+            case GETSTATIC_QUICK -> frame.push(Slot.tagOf(accessType(code[ip + 3])));
+            case PUTSTATIC_QUICK -> frame.pop(1);
+            case GETFIELD_QUICK -> {
+                frame.pop(1);
+                frame.push(Slot.tagOf(accessType(code[ip + 2])));
+            }
+            case PUTFIELD_QUICK -> frame.pop(2);
+            case INVOKESTATIC_QUICK, INVOKESPECIAL_QUICK, INVOKEVIRTUAL_QUICK, INVOKEINTERFACE_QUICK -> {
+                InlineCache cache = method.inlineCache(ip);
+                frame.pop(argumentsCount(op, cache));
+                Jtype returnType = returnType(cache);
+                if (returnType != Jtype.Primitive.VOID) {
+                    frame.push(Slot.tagOf(returnType.primitive()));
+                }
+            }
+            case INVOKEDYNAMIC_QUICK -> {
+                MethodDescriptor type = method.callSite(ip).type();
+                frame.pop(type.paarameterTypes().length);
+                if (type.returnType() != Jtype.Primitive.VOID) {
+                    frame.push(Slot.tagOf(type.returnType().primitive()));
+                }
+            }
+            case DUP -> frame.push(frame.top());
+            case POP -> frame.pop(1);
+            case SWAP -> frame.swap();
+            case POP_2, DUP_X_1, DUP_X_2, DUP_2, DUP_2_X_1, DUP_2_X_2 -> {
+                int[] shape = stackShape(op, in);
+                if (shape == null) {
+                    traps[ip] = true;
+                    return;
+                }
+                if (op == POP_2) {
+                    frame.pop(shape[0]);
+                } else {
+                    frame.dupX(shape[0], shape[1]);
+                }
+            }
+            case NEW -> {
+                if (initializedClass(klass.constantPool(), code[ip + 1]) == null) {
+                    traps[ip] = true;
+                    return;
+                }
+                frame.push(Slot.REF);
+            }
+            case ANEWARRAY -> {
+                if (initializedClass(klass.constantPool(), code[ip + 1]) == null) {
+                    traps[ip] = true;
+                    return;
+                }
+                frame.pop(1);
+                frame.push(Slot.REF);
+            }
+            case NEWARRAY -> {
+                frame.pop(1);
+                frame.push(Slot.REF);
+            }
+            case IASTORE, BASTORE, FASTORE, DASTORE, CASTORE, SASTORE, LASTORE, AASTORE -> frame.pop(3);
+            case IALOAD, BALOAD, CALOAD, SALOAD -> loadElement(frame, Slot.INT);
+            case FALOAD -> loadElement(frame, Slot.FLOAT);
+            case DALOAD -> loadElement(frame, Slot.DOUBLE);
+            case LALOAD -> loadElement(frame, Slot.LONG);
+            case AALOAD -> loadElement(frame, Slot.REF);
+            case ARRAYLENGTH -> {
+                frame.pop(1);
+                frame.push(Slot.INT);
+            }
+            case CHECKCAST, INSTANCEOF -> {
+                if (loadedClass(klass.constantPool(), code[ip + 1]) == null && arrayType(klass.constantPool(), code[ip + 1]) == null) {
+                    traps[ip] = true;
+                    return;
+                }
+                frame.pop(1);
+                frame.push(op == CHECKCAST ? Slot.REF : Slot.INT);
+            }
+            case IF_ICMPEQ, IF_ICMPNE, IF_ICMPLT, IF_ICMPGE, IF_ICMPGT, IF_ICMPLE -> {
+                frame.pop(2);
+                merge(code[ip + 1], frame.state());
+            }
+            case IFEQ, IFNE, IFLT, IFGE, IFGT, IFLE -> {
+                frame.pop(ip, Slot.INT);
+                merge(code[ip + 1], frame.state());
+            }
+            case IF_ACMPEQ, IF_ACMPNE -> {
+                frame.pop(2);
+                merge(code[ip + 1], frame.state());
+            }
+            case IFNULL, IFNONNULL -> {
+                frame.pop(1);
+                merge(code[ip + 1], frame.state());
+            }
+            case GOTO -> {
+                merge(code[ip + 1], frame.state());
+                return;
+            }
+            case TABLESWITCH, LOOKUPSWITCH -> {
+                frame.pop(ip, Slot.INT);
+                for (int target : switchTargets(code, ip)) {
+                    merge(target, frame.state());
+                }
+                return;
+            }
+            default -> {
+                traps[ip] = true;
+                return;
+            }
+        }
+
+        merge(ip + Bytecodes.length(code, ip), frame.state());
+    }
+
+    /**
+     * @return default target of the switch at the index followed by the targets of its cases
+     */
+    static int[] switchTargets(int[] code, int ip) {
+        if (code[ip] == TABLESWITCH) {
+            int count = code[ip + 3] - code[ip + 2] + 1;
+            int[] targets = new int[1 + count];
+            targets[0] = code[ip + 1];
+            System.arraycopy(code, ip + 4, targets, 1, count);
+            return targets;
+        }
+
+        int count = code[ip + 2];
+        int[] targets = new int[1 + count];
+        targets[0] = code[ip + 1];
+        for (int i = 0; i < count; i++) {
+            targets[1 + i] = code[ip + 4 + 2 * i];
+        }
+        return targets;
+    }
+
+    private static void loadElement(Frame frame, byte tag) {
+        frame.pop(2);
+        frame.push(tag);
+    }
+
+    private void merge(int ip, byte[] state) {
+        byte[] current = states[ip];
+
+        if (current == null) {
+            states[ip] = state;
+            pending.add(ip);
+            return;
+        }
+        if (current.length != state.length) {
+            throw new JitCompiler.Exception("stack depth differs at %d".formatted(ip));
+        }
+
+        boolean changed = false;
+        for (int i = 0; i < current.length; i++) {
+            byte merged = mergeTags(current[i], state[i]);
+            if (merged != current[i]) {
+                current[i] = merged;
+                changed = true;
+            }
+        }
+        if (changed) {
+            pending.add(ip);
+        }
+    }
+
+    private static byte mergeTags(byte current, byte incoming) {
+        if (current == incoming || incoming == Slot.UNCHANGED) {
+            return current;
+        }
+        if (current == Slot.UNCHANGED) {
+            return incoming;
+        }
+        return Slot.EMPTY;
+    }
+
+    /**
+     * Working copy of a state while an instruction is interpreted.
+     */
+    private final class Frame {
+        private final byte[] tags;
+        private int size;
+
+        private Frame(byte[] state) {
+            this.tags = Arrays.copyOf(state, maxLocals + method.maxStack());
+            this.size = state.length;
+        }
+
+        void push(byte tag) {
+            tags[size++] = tag;
+        }
+
+        void pop(int count) {
+            if (size - count < maxLocals) {
+                throw new JitCompiler.Exception("stack underflow");
+            }
+            size -= count;
+        }
+
+        /**
+         * Pops a value which has to have the tag, a value entered with a loop is not checked.
+         */
+        void pop(int ip, byte tag) {
+            byte popped = tags[size - 1];
+            if (popped != tag && popped != Slot.UNCHANGED) {
+                throw new JitCompiler.Exception("%s at %d expects tag %d, found %d".formatted(Bytecodes.name(code[ip]), ip, tag, popped));
+            }
+            pop(1);
+        }
+
+        byte top() {
+            return tags[size - 1];
+        }
+
+        /**
+         * Copies the top {@code count} values below the {@code skip} values under them.
+         */
+        void dupX(int count, int skip) {
+            pop(count + skip);
+            byte[] taken = Arrays.copyOfRange(tags, size, size + count + skip);
+
+            for (int i = skip; i < taken.length; i++) {
+                push(taken[i]);
+            }
+            for (byte tag : taken) {
+                push(tag);
+            }
+        }
+
+        void swap() {
+            byte top = tags[size - 1];
+            tags[size - 1] = tags[size - 2];
+            tags[size - 2] = top;
+        }
+
+        void storeInt(int local) {
+            if (local > 0 && Slot.isWide(tags[local - 1])) {
+                tags[local - 1] = Slot.EMPTY;
+            }
+            tags[local] = Slot.INT;
+        }
+
+        /**
+         * Pops the top value into a local. A long or double takes the next local too, and a local overwriting the
+         * second half of a long or double kills it.
+         */
+        void store(int local) {
+            byte tag = tags[--size];
+            if (local > 0 && Slot.isWide(tags[local - 1])) {
+                tags[local - 1] = Slot.EMPTY;
+            }
+            tags[local] = tag;
+            if (Slot.isWide(tag)) {
+                tags[local + 1] = Slot.TOP;
+            }
+        }
+
+        byte[] state() {
+            return Arrays.copyOf(tags, size);
+        }
+    }
+}
@@ -0,0 +1,924 @@
+package com.lewigh.xsjvm.engine.jit;
+
+import com.lewigh.xsjvm.VmException;
+import com.lewigh.xsjvm.classloader.reader.pool.Constant;
+import com.lewigh.xsjvm.engine.ArrayType;
+import com.lewigh.xsjvm.engine.Slot;
+import com.lewigh.xsjvm.engine.runtime.Bytecodes;
+import com.lewigh.xsjvm.engine.runtime.DynamicCallSite;
+import com.lewigh.xsjvm.engine.runtime.InlineCache;
+import com.lewigh.xsjvm.engine.runtime.Jtype;
+import com.lewigh.xsjvm.engine.runtime.KlassDesc;
+import com.lewigh.xsjvm.engine.runtime.MethodDesc;
+import com.lewigh.xsjvm.engine.runtime.MethodDescriptor;
+import com.lewigh.xsjvm.support.Logger;
+import lombok.NonNull;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.lewigh.xsjvm.engine.runtime.Bytecodes.*;
+
+/**
+ * Second execution tier: translates a hot guest method into a host hidden class, so the host JIT compilers
+ * optimize the guest code like any other Java code.
+ * <p>
+ * The compiled method keeps every guest value in a host {@code long} holding the raw slot bits, the same form the
+ * interpreter frames use: guest local {@code i} lives in the host local {@code 3 + 2 * i} and every operand stack
+ * value takes one long of the host stack. Int-like values are kept sign-extended, which lets int compares run as
+ * {@code lcmp}. Heap access, allocation and calls go through the {@link JitRuntime}.
+ * <p>
+ * An instruction which is not supported or whose site is not resolved yet becomes an uncommon trap, see
+ * {@link FrameStates}: compiled code reaching it throws a {@link Deoptimization} and the interpreter goes on with the
+ * frame. The code is dropped then and the method is compiled again once it gets hot again, with the sites the
+ * interpreter has resolved meanwhile. A method which fails to compile or deoptimizes {@link #MAX_ATTEMPTS} times
+ * stays interpreted.
+ * <p>
+ * A frame stuck in a long-running loop does not have to wait for the next invocation: once the backward branches
+ * to a loop header cross {@link #OSR_THRESHOLD}, the method is compiled once more with its entry at the header and
+ * the interpreter moves the frame into it (on-stack replacement). The locals of the frame become the arguments of
+ * that code, which is why it is entered only while the operand stack is empty.
+ * <p>
+ * Compiled code polls for safepoints on its backward branches, see {@link JitRuntime#poll()}. A thread stopped in
+ * compiled code is safe, though its frame is not visible to the operations.
+ * <p>
+ * Tiering is controlled by {@code -Dxsjvm.jit=false}, {@code -Dxsjvm.jit.threshold=<invocations>},
+ * {@code -Dxsjvm.jit.osr.threshold=<backward branches>} and {@code -Dxsjvm.jit.log=true}, which prints every
+ * compiled or rejected method.
+ */
+public class JitCompiler {
+
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("xsjvm.jit", "true"));
+    public static final int THRESHOLD = Integer.getInteger("xsjvm.jit.threshold", 1000);
+    public static final int OSR_THRESHOLD = Integer.getInteger("xsjvm.jit.osr.threshold", 10_000);
+    public static final boolean LOG = Boolean.getBoolean("xsjvm.jit.log");
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final String HOST_CLASS_NAME = "com/lewigh/xsjvm/engine/jit/Compiled";
+    private static final String OBJECT = "java/lang/Object";
+    private static final String COMPILED_CODE = "com/lewigh/xsjvm/engine/jit/CompiledCode";
+    private static final String RUNTIME = "com/lewigh/xsjvm/engine/jit/JitRuntime";
+    private static final String RUN_DESCRIPTOR = "(L" + RUNTIME + ";[J)J";
+    private static final String CONSTRUCTOR_DESCRIPTOR = "([Ljava/lang/Object;)V";
+
+    /**
+     * Host locals of {@code run} in front of the guest locals: {@code this}, the runtime and the arguments.
+     */
+    private static final int FIRST_GUEST_LOCAL = 3;
+
+    private static final int T_LONG = 11;
+    /**
+     * Entry of the code compiled for regular invocations.
+     */
+    private static final int METHOD_ENTRY = -1;
+
+    private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    /**
+     * Counts an invocation of the method and compiles it once it gets hot.
+     *
+     * @return code to run instead of interpreting the method or {@code null}
+     */
+    public CompiledCode compiledCode(@NonNull KlassDesc klass, @NonNull MethodDesc method) {
+        CompiledCode code = method.compiledCode();
+
+        if (code != null || !ENABLED || method.failedCompilations() >= MAX_ATTEMPTS) {
+            return code;
+        }
+        if (method.countInvocation() < THRESHOLD) {
+            return null;
+        }
+
+        method.resetInvocations();
+
+        code = compile(klass, method, METHOD_ENTRY);
+        if (code != null) {
+            method.installCompiledCode(code);
+        }
+
+        return code;
+    }
+
+    /**
+     * Counts a taken backward branch to the loop header and compiles the method with its entry at the header once
+     * the loop gets hot. The code takes the locals of the frame as arguments.
+     *
+     * @return code to continue the frame in or {@code null}
+     */
+    public CompiledCode osrCode(@NonNull KlassDesc klass, @NonNull MethodDesc method, int headerIp) {
+        CompiledCode code = method.osrCode(headerIp);
+
+        if (code != null || !ENABLED || method.failedCompilations() >= MAX_ATTEMPTS) {
+            return code;
+        }
+        if (method.countBackedge(headerIp) < OSR_THRESHOLD) {
+            return null;
+        }
+
+        method.resetBackedges(headerIp);
+
+        code = compile(klass, method, headerIp);
+        if (code != null) {
+            method.installOsrCode(headerIp, code);
+        }
+
+        return code;
+    }
+
+    /**
+     * Drops the code of the method which reached an uncommon trap.
+     */
+    public void invalidate(@NonNull KlassDesc klass, @NonNull MethodDesc method, @NonNull Deoptimization deopt) {
+        method.installCompiledCode(null);
+        method.failCompilation();
+        logDeoptimization(klass, method, deopt);
+    }
+
+    /**
+     * Drops the code of the loop which reached an uncommon trap.
+     */
+    public void invalidateOsr(@NonNull KlassDesc klass, @NonNull MethodDesc method, int headerIp, @NonNull Deoptimization deopt) {
+        method.installOsrCode(headerIp, null);
+        method.failCompilation();
+        logDeoptimization(klass, method, deopt);
+    }
+
+    private static void logDeoptimization(KlassDesc klass, MethodDesc method, Deoptimization deopt) {
+        if (LOG) {
+            Logger.debug("Deopt     %s.%s at %s %d%n", klass.name(), method.name(), Bytecodes.name(method.code()[deopt.getIp()]), deopt.getIp());
+        }
+    }
+
+    private CompiledCode compile(KlassDesc klass, MethodDesc method, int entryIp) {
+        String entry = entryIp == METHOD_ENTRY ? "" : " @ " + entryIp;
+        try {
+            var translator = new Translator(klass, method, entryIp);
+            byte[] bytes = translator.translate();
+
+            Class<?> hostClass = lookup.defineHiddenClass(bytes, true).lookupClass();
+            var code = (CompiledCode) hostClass.getConstructor(Object[].class).newInstance((Object) translator.constants());
+
+            if (LOG) {
+                Logger.debug("Compiled  %s.%s%s%n", klass.name(), method.name(), entry);
+            }
+
+            return code;
+        } catch (java.lang.Exception | LinkageError e) {
+            method.failCompilation();
+
+            if (LOG) {
+                Logger.debug("Rejected  %s.%s%s: %s%n", klass.name(), method.name(), entry, e.getMessage());
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * Translation of a single guest method.
+     */
+    private static final class Translator {
+
+        private final KlassDesc klass;
+        private final MethodDesc method;
+        private final int[] code;
+        private final int entryIp;
+        private final FrameStates states;
+
+        private final ClassWriter cw = new ClassWriter();
+        private final CodeBuffer out = new CodeBuffer();
+
+        private final Map<Object, Integer> constantIndexes = new IdentityHashMap<>();
+        private final List<Object> constants = new ArrayList<>();
+        private final List<String> constantTypes = new ArrayList<>();
+
+        /**
+         * Host pc of every guest instruction, indexed by its position in the code stream.
+         */
+        private final int[] hostPcs;
+        /**
+         * Pairs of a host pc of a jump and the guest target it has to be patched with.
+         */
+        private final List<int[]> jumps = new ArrayList<>();
+        /**
+         * Triples of a host pc of a switch, the host pc of one of its four byte offsets and the guest target the
+         * offset has to be patched with.
+         */
+        private final List<int[]> switchJumps = new ArrayList<>();
+
+        private final int scratchBase;
+        private int scratchCount;
+
+        private Translator(KlassDesc klass, MethodDesc method, int entryIp) {
+            this.klass = klass;
+            this.method = method;
+            this.code = method.code();
+            this.entryIp = entryIp;
+            this.states = entryIp == METHOD_ENTRY ? FrameStates.ofMethod(klass, method) : FrameStates.ofLoop(klass, method, entryIp);
+            this.hostPcs = new int[code.length];
+            this.scratchBase = FIRST_GUEST_LOCAL + 2 * method.maxLocals();
+        }
+
+        private Object[] constants() {
+            return constants.toArray();
+        }
+
+        private byte[] translate() {
+            if (method.fNative() || method.fAbstract()) {
+                throw new Exception("method has no code");
+            }
+            if (!method.exceptionHandlers().isEmpty()) {
+                throw new Exception("exception handlers are not supported");
+            }
+            if (method.fSynchronized()) {
+                throw new Exception("synchronized methods are not supported");
+            }
+
+            if (entryIp == METHOD_ENTRY) {
+                prologue();
+            } else {
+                osrPrologue();
+            }
+
+            for (int ip = 0; ip < code.length; ip += Bytecodes.length(code, ip)) {
+                hostPcs[ip] = out.position();
+                if (!states.isReachable(ip)) {
+                    continue;
+                }
+                if (states.isTrap(ip)) {
+                    trap(ip);
+                } else {
+                    if (isBackwardBranch(ip)) {
+                        loadRuntime();
+                        callRuntime("poll", "()V");
+                    }
+                    instruction(ip, Bytecodes.unfused(Bytecodes.opcode(code, ip)));
+                }
+            }
+
+            byte[] run = patchJumps();
+
+            cw.addMethod(new ClassWriter.Method(
+                    ClassWriter.ACC_PUBLIC,
+                    "run",
+                    RUN_DESCRIPTOR,
+                    2 * method.maxStack() + 16,
+                    scratchBase + 2 * scratchCount,
+                    run));
+
+            constructor();
+
+            return cw.toByteArray(HOST_CLASS_NAME, OBJECT, COMPILED_CODE);
+        }
+
+        /**
+         * Moves the arguments into the guest locals, long and double arguments take two guest locals. The other
+         * locals, the second halves of long and double arguments included, are zeroed: an uncommon trap copies
+         * every local.
+         */
+        private void prologue() {
+            Jtype[] parameterTypes = method.descriptor().paarameterTypes();
+            boolean[] assigned = new boolean[method.maxLocals()];
+
+            int arg = 0;
+            int local = 0;
+            if (!method.fStatic()) {
+                assigned[local] = true;
+                loadArgument(arg++, local++);
+            }
+            for (var type : parameterTypes) {
+                assigned[local] = true;
+                loadArgument(arg++, local);
+                local += Slot.isWide(type) ? 2 : 1;
+            }
+            for (local = 0; local < method.maxLocals(); local++) {
+                if (!assigned[local]) {
+                    out.u1(LCONST_0);
+                    store(guestLocal(local));
+                }
+            }
+        }
+
+        /**
+         * Moves the locals of the replaced frame into the guest locals and jumps to the loop header.
+         */
+        private void osrPrologue() {
+            for (int local = 0; local < method.maxLocals(); local++) {
+                loadArgument(local, local);
+            }
+            jump(Bytecodes.GOTO, entryIp);
+        }
+
+        private boolean isBackwardBranch(int ip) {
+            return switch (Bytecodes.unfused(code[ip])) {
+                case IFEQ, IFNE, IFLT, IFGE, IFGT, IFLE, IF_ICMPEQ, IF_ICMPNE, IF_ICMPLT, IF_ICMPGE, IF_ICMPGT, IF_ICMPLE,
+                        IF_ACMPEQ, IF_ACMPNE, IFNULL, IFNONNULL, GOTO -> code[ip + 1] <= ip;
+                case TABLESWITCH, LOOKUPSWITCH -> Arrays.stream(FrameStates.switchTargets(code, ip)).anyMatch(target -> target <= ip);
+                default -> false;
+            };
+        }
+
+        private void loadArgument(int arg, int local) {
+            out.u1(ALOAD_2);
+            pushInt(arg);
+            out.u1(LALOAD);
+            store(guestLocal(local));
+        }
+
+        private void instruction(int ip, int op) {
+            switch (op) {
+                case NOP -> {
+                }
+                case ACONST_NULL -> out.u1(LCONST_0);
+                case ICONST_M_1, ICONST_0, ICONST_1, ICONST_2, ICONST_3, ICONST_4, ICONST_5 -> pushLong(op - ICONST_0);
+                case LCONST_0, LCONST_1 -> out.u1(op);
+                case FCONST_0, FCONST_1, FCONST_2 -> pushLong(Float.floatToRawIntBits(op - FCONST_0));
+                case DCONST_0, DCONST_1 -> pushLong(Double.doubleToRawLongBits(op - DCONST_0));
+                case BIPUSH, SIPUSH -> pushLong(code[ip + 1]);
+                case LDC, LDC2_W -> ldc(code[ip + 1]);
+                case ILOAD, LLOAD, FLOAD, DLOAD, ALOAD -> load(guestLocal(code[ip + 1]));
+                case ISTORE, LSTORE, FSTORE, DSTORE, ASTORE -> store(guestLocal(code[ip + 1]));
+                // int-like values are kept sign-extended: the long operation gives the same low 32 bits
+                case IADD, ISUB, IMUL, INEG -> {
+                    out.u1(op + 1);
+                    normalizeInt();
+                }
+                case IAND, IOR, IXOR -> out.u1(op + 1);
+                case I_2_L -> {
+                }
+                case LADD, LSUB, LMUL, LNEG, LAND, LOR, LXOR -> out.u1(op);
+                case IINC -> {
+                    load(guestLocal(code[ip + 1]));
+                    pushLong(code[ip + 2]);
+                    out.u1(LADD);
+                    normalizeInt();
+                    store(guestLocal(code[ip + 1]));
+                }
+                case IRETURN, LRETURN, FRETURN, DRETURN, ARETURN -> out.u1(Bytecodes.LRETURN);
+                case RETURN -> {
+                    out.u1(LCONST_0);
+                    out.u1(Bytecodes.LRETURN);
+                }
+                case GETSTATIC_QUICK -> {
+                    loadRuntime();
+                    pushLong(((long) code[ip + 2] << 32) | (code[ip + 1] & 0xFFFFFFFFL));
+                    pushInt(code[ip + 3]);
+                    callRuntime("getStatic", "(JI)J");
+                }
+                case PUTSTATIC_QUICK -> {
+                    spill(1);
+                    loadRuntime();
+                    pushLong(((long) code[ip + 2] << 32) | (code[ip + 1] & 0xFFFFFFFFL));
+                    pushInt(code[ip + 3]);
+                    unspill(0);
+                    callRuntime("putStatic", "(JIJ)V");
+                }
+                case GETFIELD_QUICK -> {
+                    spill(1);
+                    loadRuntime();
+                    unspill(0);
+                    pushInt(code[ip + 1]);
+                    pushInt(code[ip + 2]);
+                    callRuntime("getField", "(JII)J");
+                }
+                case PUTFIELD_QUICK -> {
+                    spill(2);
+                    loadRuntime();
+                    unspill(0);
+                    pushInt(code[ip + 1]);
+                    pushInt(code[ip + 2]);
+                    unspill(1);
+                    callRuntime("putField", "(JIIJ)V");
+                }
+                case INVOKESTATIC_QUICK, INVOKESPECIAL_QUICK -> {
+                    InlineCache cache = method.inlineCache(ip);
+
+                    call(cache, FrameStates.argumentsCount(op, cache), "callBound", FrameStates.returnType(cache));
+                }
+                case INVOKEVIRTUAL_QUICK -> {
+                    InlineCache cache = method.inlineCache(ip);
+
+                    call(cache, FrameStates.argumentsCount(op, cache), "callVirtual", FrameStates.returnType(cache), code[ip + 2]);
+                }
+                case INVOKEINTERFACE_QUICK -> {
+                    InlineCache cache = method.inlineCache(ip);
+
+                    call(cache, FrameStates.argumentsCount(op, cache), "callInterface", FrameStates.returnType(cache), code[ip + 2], code[ip + 3]);
+                }
+                case INVOKEDYNAMIC_QUICK -> callDynamic(method.callSite(ip));
+                case DUP -> out.u1(DUP_2);
+                case POP -> out.u1(POP_2);
+                case SWAP -> {
+                    spill(2);
+                    unspill(1);
+                    unspill(0);
+                }
+                case POP_2, DUP_X_1, DUP_X_2, DUP_2, DUP_2_X_1, DUP_2_X_2 -> stackOperation(op, FrameStates.stackShape(op, states.stateAt(ip)));
+                case NEW -> {
+                    loadRuntime();
+                    loadConstant(initializedClass(code[ip + 1]));
+                    callRuntime("newObject", "(Lcom/lewigh/xsjvm/engine/runtime/KlassDesc;)J");
+                }
+                case NEWARRAY -> {
+                    spill(1);
+                    loadRuntime();
+                    unspill(0);
+                    pushInt(ArrayType.byCode((byte) code[ip + 1]).getPrimitive().ordinal());
+                    callRuntime("newArray", "(JI)J");
+                }
+                case ANEWARRAY -> {
+                    spill(1);
+                    loadRuntime();
+                    loadConstant(initializedClass(code[ip + 1]));
+                    unspill(0);
+                    callRuntime("newReferenceArray", "(Lcom/lewigh/xsjvm/engine/runtime/KlassDesc;J)J");
+                }
+                case IASTORE -> storeElement(Jtype.Primitive.INT);
+                case BASTORE -> storeElement(Jtype.Primitive.BYTE);
+                case FASTORE -> storeElement(Jtype.Primitive.FLOAT);
+                case DASTORE -> storeElement(Jtype.Primitive.DOUBLE);
+                case CASTORE -> storeElement(Jtype.Primitive.CHAR);
+                case SASTORE -> storeElement(Jtype.Primitive.SHORT);
+                case LASTORE -> storeElement(Jtype.Primitive.LONG);
+                case AASTORE -> storeElement(Jtype.Primitive.REFERENCE);
+                case IALOAD -> loadElement(Jtype.Primitive.INT);
+                case BALOAD -> loadElement(Jtype.Primitive.BYTE);
+                case FALOAD -> loadElement(Jtype.Primitive.FLOAT);
+                case DALOAD -> loadElement(Jtype.Primitive.DOUBLE);
+                case CALOAD -> loadElement(Jtype.Primitive.CHAR);
+                case SALOAD -> loadElement(Jtype.Primitive.SHORT);
+                case LALOAD -> loadElement(Jtype.Primitive.LONG);
+                case AALOAD -> loadElement(Jtype.Primitive.REFERENCE);
+                case ARRAYLENGTH -> {
+                    spill(1);
+                    loadRuntime();
+                    unspill(0);
+                    callRuntime("arrayLength", "(J)J");
+                }
+                case CHECKCAST, INSTANCEOF -> {
+                    String arrayType = FrameStates.arrayType(klass.constantPool(), code[ip + 1]);
+                    spill(1);
+                    loadRuntime();
+                    unspill(0);
+                    if (arrayType != null) {
+                        loadConstant(arrayType);
+                        callRuntime(op == CHECKCAST ? "checkCastArray" : "instanceOfArray", "(JLjava/lang/String;)J");
+                    } else {
+                        loadConstant(FrameStates.loadedClass(klass.constantPool(), code[ip + 1]));
+                        callRuntime(op == CHECKCAST ? "checkCast" : "instanceOf", "(JLcom/lewigh/xsjvm/engine/runtime/KlassDesc;)J");
+                    }
+                }
+                case IF_ICMPEQ, IF_ICMPNE, IF_ICMPLT, IF_ICMPGE, IF_ICMPGT, IF_ICMPLE -> {
+                    out.u1(LCMP);
+                    jump(IFEQ + (op - IF_ICMPEQ), code[ip + 1]);
+                }
+                case IFEQ, IFNE, IFLT, IFGE, IFGT, IFLE -> {
+                    out.u1(LCONST_0);
+                    out.u1(LCMP);
+                    jump(op, code[ip + 1]);
+                }
+                case IF_ACMPEQ, IF_ACMPNE -> {
+                    out.u1(LCMP);
+                    jump(op == IF_ACMPEQ ? IFEQ : IFNE, code[ip + 1]);
+                }
+                case IFNULL, IFNONNULL -> {
+                    out.u1(LCONST_0);
+                    out.u1(LCMP);
+                    jump(op == IFNULL ? IFEQ : IFNE, code[ip + 1]);
+                }
+                case ATHROW -> {
+                    spill(1);
+                    loadRuntime();
+                    unspill(0);
+                    callRuntime("throwException", "(J)Lcom/lewigh/xsjvm/engine/GuestException;");
+                    out.u1(ATHROW);
+                }
+                case GOTO -> jump(Bytecodes.GOTO, code[ip + 1]);
+                case TABLESWITCH, LOOKUPSWITCH -> {
+                    out.u1(L_2_I);
+                    switchInstruction(ip, op);
+                }
+                default -> {
+                    byte[] operationTags = FrameStates.operationTags(op);
+                    if (operationTags == null) {
+                        throw new Exception("%s is neither translated nor a trap".formatted(Bytecodes.name(code[ip])));
+                    }
+                    operation(op, operationTags);
+                }
+            }
+        }
+
+        /**
+         * Translates an arithmetic, conversion or compare instruction to the host instruction with the same opcode:
+         * the operands are converted from raw slot bits to their host types and the result back.
+         */
+        private void operation(int op, byte[] tags) {
+            int count = tags.length - 1;
+            boolean division = op == IDIV || op == LDIV || op == IREM || op == LREM;
+
+            if (count == 1) {
+                fromBits(tags[0]);
+            } else {
+                spill(count);
+                unspill(0);
+                fromBits(tags[0]);
+                if (division) {
+                    loadRuntime();
+                    unspill(1);
+                    callRuntime("checkDivisor", "(J)J");
+                } else {
+                    unspill(1);
+                }
+                fromBits(tags[1]);
+            }
+            out.u1(op);
+            toBits(tags[count]);
+        }
+
+        /**
+         * Converts the raw slot bits on top of the host stack to a value of the host type of the tag.
+         */
+        private void fromBits(byte tag) {
+            switch (tag) {
+                case Slot.INT -> out.u1(L_2_I);
+                case Slot.FLOAT -> {
+                    out.u1(L_2_I);
+                    callStatic("java/lang/Float", "intBitsToFloat", "(I)F");
+                }
+                case Slot.DOUBLE -> callStatic("java/lang/Double", "longBitsToDouble", "(J)D");
+                default -> {
+                }
+            }
+        }
+
+        /**
+         * Converts a value of the host type of the tag on top of the host stack to raw slot bits.
+         */
+        private void toBits(byte tag) {
+            switch (tag) {
+                case Slot.INT -> out.u1(I_2_L);
+                case Slot.FLOAT -> {
+                    callStatic("java/lang/Float", "floatToRawIntBits", "(F)I");
+                    out.u1(I_2_L);
+                }
+                case Slot.DOUBLE -> callStatic("java/lang/Double", "doubleToRawLongBits", "(D)J");
+                default -> {
+                }
+            }
+        }
+
+        /**
+         * Translates {@code POP2} and the {@code DUP} family by their shape, see {@link FrameStates#stackShape}.
+         */
+        private void stackOperation(int op, int[] shape) {
+            int count = shape[0];
+            int skip = shape[1];
+
+            spill(count + skip);
+            if (op == POP_2) {
+                return;
+            }
+            for (int i = skip; i < count + skip; i++) {
+                unspill(i);
+            }
+            for (int i = 0; i < count + skip; i++) {
+                unspill(i);
+            }
+        }
+
+        private void ldc(int index) {
+            Constant constant = klass.constantPool().get(index);
+
+            if (constant instanceof Constant.ConstantInteger i) {
+                pushLong(i.value());
+            } else if (constant instanceof Constant.ConstantFloat f) {
+                pushLong(Float.floatToRawIntBits(f.value()));
+            } else if (constant instanceof Constant.ConstantLong l) {
+                pushLong(l.value());
+            } else if (constant instanceof Constant.ConstantDouble d) {
+                pushLong(Double.doubleToRawLongBits(d.value()));
+            } else if (klass.constantPool().resolved(index) instanceof Long address) {
+                pushLong(address);
+            } else {
+                throw new Exception("LDC of %s is not supported".formatted(constant));
+            }
+        }
+
+        private KlassDesc initializedClass(int index) {
+            return FrameStates.initializedClass(klass.constantPool(), index);
+        }
+
+        /**
+         * Leaves the compiled code with the state of the frame before the instruction: every local, then the values
+         * of the operand stack.
+         */
+        private void trap(int ip) {
+            byte[] tags = states.stateAt(ip);
+            int depth = states.depthAt(ip);
+            int maxLocals = method.maxLocals();
+
+            spill(depth);
+            loadRuntime();
+            pushInt(ip);
+            loadConstant(tags);
+            pushInt(tags.length);
+            out.u1(NEWARRAY);
+            out.u1(T_LONG);
+            for (int i = 0; i < tags.length; i++) {
+                out.u1(Bytecodes.DUP);
+                pushInt(i);
+                if (i < maxLocals) {
+                    load(guestLocal(i));
+                } else {
+                    unspill(i - maxLocals);
+                }
+                out.u1(Bytecodes.LASTORE);
+            }
+            callRuntime("deoptimize", "(I[B[J)Lcom/lewigh/xsjvm/engine/jit/Deoptimization;");
+            out.u1(ATHROW);
+        }
+
+        private void storeElement(Jtype.Primitive type) {
+            spill(3);
+            loadRuntime();
+            unspill(0);
+            unspill(1);
+            pushInt(type.ordinal());
+            unspill(2);
+            callRuntime("storeElement", "(JJIJ)V");
+        }
+
+        private void loadElement(Jtype.Primitive type) {
+            spill(2);
+            loadRuntime();
+            unspill(0);
+            unspill(1);
+            pushInt(type.ordinal());
+            callRuntime("loadElement", "(JJI)J");
+        }
+
+        /**
+         * Calls the runtime entry with the inline cache, the given selector operands and the arguments in an array.
+         */
+        private void call(InlineCache cache, int count, String entry, Jtype returnType, int... selector) {
+            spill(count);
+            loadRuntime();
+            loadConstant(cache);
+            for (int operand : selector) {
+                pushInt(operand);
+            }
+            arguments(count);
+            callRuntime(entry, "(Lcom/lewigh/xsjvm/engine/runtime/InlineCache;" + "I".repeat(selector.length) + "[J)J");
+
+            if (returnType == Jtype.Primitive.VOID) {
+                out.u1(POP_2);
+            }
+        }
+
+        private void callDynamic(DynamicCallSite callSite) {
+            MethodDescriptor type = callSite.type();
+
+            if (callSite instanceof DynamicCallSite.Constant constant) {
+                pushLong(constant.value());
+                return;
+            }
+            int count = type.paarameterTypes().length;
+
+            spill(count);
+            loadRuntime();
+            loadConstant(callSite);
+            arguments(count);
+            callRuntime("callDynamic", "(Lcom/lewigh/xsjvm/engine/runtime/DynamicCallSite;[J)J");
+
+            if (type.returnType() == Jtype.Primitive.VOID) {
+                out.u1(POP_2);
+            }
+        }
+
+        /**
+         * Pushes a new {@code long[]} with the spilled values.
+         */
+        private void arguments(int count) {
+            pushInt(count);
+            out.u1(NEWARRAY);
+            out.u1(T_LONG);
+            for (int i = 0; i < count; i++) {
+                out.u1(Bytecodes.DUP);
+                pushInt(i);
+                unspill(i);
+                out.u1(Bytecodes.LASTORE);
+            }
+        }
+
+        /**
+         * Re-extends the low 32 bits of the top value, the form every int-like value is kept in.
+         */
+        private void normalizeInt() {
+            out.u1(L_2_I);
+            out.u1(I_2_L);
+        }
+
+        private void loadRuntime() {
+            out.u1(ALOAD_1);
+        }
+
+        private void callRuntime(String name, String descriptor) {
+            out.u1(INVOKEVIRTUAL);
+            out.u2(cw.methodRef(RUNTIME, name, descriptor));
+        }
+
+        private void callStatic(String owner, String name, String descriptor) {
+            out.u1(INVOKESTATIC);
+            out.u2(cw.methodRef(owner, name, descriptor));
+        }
+
+        /**
+         * Pops the given number of values into scratch locals, the deepest one goes to scratch local 0.
+         */
+        private void spill(int count) {
+            scratchCount = Math.max(scratchCount, count);
+            for (int i = count - 1; i >= 0; i--) {
+                store(scratchBase + 2 * i);
+            }
+        }
+
+        private void unspill(int index) {
+            load(scratchBase + 2 * index);
+        }
+
+        private void loadConstant(Object constant) {
+            Integer index = constantIndexes.get(constant);
+
+            if (index == null) {
+                index = constants.size();
+                constants.add(constant);
+                constantTypes.add(constant.getClass().getName().replace('.', '/'));
+                constantIndexes.put(constant, index);
+                cw.addField(new ClassWriter.Field(ClassWriter.ACC_PRIVATE | ClassWriter.ACC_FINAL, constantName(index), constantDescriptor(index)));
+            }
+
+            out.u1(ALOAD_0);
+            out.u1(Bytecodes.GETFIELD);
+            out.u2(cw.fieldRef(HOST_CLASS_NAME, constantName(index), constantDescriptor(index)));
+        }
+
+        /**
+         * Constructor taking the constants of the compiled code, every constant gets its own final field, which the
+         * host compiler trusts in a hidden class.
+         */
+        private void constructor() {
+            var init = new CodeBuffer();
+
+            init.u1(ALOAD_0);
+            init.u1(INVOKESPECIAL);
+            init.u2(cw.methodRef(OBJECT, "<init>", "()V"));
+
+            for (int i = 0; i < constants.size(); i++) {
+                init.u1(ALOAD_0);
+                init.u1(ALOAD_1);
+                pushInt(init, i);
+                init.u1(AALOAD);
+                init.u1(CHECKCAST);
+                init.u2(cw.classRef(constantTypes.get(i)));
+                init.u1(PUTFIELD);
+                init.u2(cw.fieldRef(HOST_CLASS_NAME, constantName(i), constantDescriptor(i)));
+            }
+            init.u1(Bytecodes.RETURN);
+
+            cw.addMethod(new ClassWriter.Method(ClassWriter.ACC_PUBLIC, "<init>", CONSTRUCTOR_DESCRIPTOR, 4, 2, init.toByteArray()));
+        }
+
+        private static String constantName(int index) {
+            return "c" + index;
+        }
+
+        private String constantDescriptor(int index) {
+            String type = constantTypes.get(index);
+            return type.startsWith("[") ? type : "L" + type + ";";
+        }
+
+        private void jump(int op, int guestTarget) {
+            jumps.add(new int[]{out.position(), guestTarget});
+            out.u1(op);
+            out.u2(0);
+        }
+
+        /**
+         * Copies the guest switch into a host switch of the same kind, so the host picks the dispatch: a jump table
+         * for a table switch and a search over the sorted keys for a lookup switch.
+         */
+        private void switchInstruction(int ip, int op) {
+            int switchPc = out.position();
+            out.u1(op);
+            while (out.position() % 4 != 0) {
+                out.u1(0);
+            }
+
+            switchJump(switchPc, code[ip + 1]);
+            if (op == TABLESWITCH) {
+                out.u4(code[ip + 2]);
+                out.u4(code[ip + 3]);
+                for (int i = ip + 4; i < ip + Bytecodes.length(code, ip); i++) {
+                    switchJump(switchPc, code[i]);
+                }
+            } else {
+                out.u4(code[ip + 2]);
+                for (int i = ip + 3; i < ip + Bytecodes.length(code, ip); i += 2) {
+                    out.u4(code[i]);
+                    switchJump(switchPc, code[i + 1]);
+                }
+            }
+        }
+
+        private void switchJump(int switchPc, int guestTarget) {
+            switchJumps.add(new int[]{switchPc, out.position(), guestTarget});
+            out.u4(0);
+        }
+
+        private byte[] patchJumps() {
+            if (out.position() > 0xFFFF) {
+                throw new Exception("compiled code is too large");
+            }
+            for (int[] jump : jumps) {
+                int offset = hostPcs[jump[1]] - jump[0];
+                if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                    throw new Exception("jump is too far");
+                }
+                out.patchU2(jump[0] + 1, offset);
+            }
+            for (int[] jump : switchJumps) {
+                out.patchU4(jump[1], hostPcs[jump[2]] - jump[0]);
+            }
+            return out.toByteArray();
+        }
+
+        private static int guestLocal(int local) {
+            return FIRST_GUEST_LOCAL + 2 * local;
+        }
+
+        private void load(int hostLocal) {
+            localInstruction(LLOAD, hostLocal);
+        }
+
+        private void store(int hostLocal) {
+            localInstruction(LSTORE, hostLocal);
+        }
+
+        private void localInstruction(int op, int hostLocal) {
+            if (hostLocal <= 0xFF) {
+                out.u1(op);
+                out.u1(hostLocal);
+            } else {
+                out.u1(WIDE);
+                out.u1(op);
+                out.u2(hostLocal);
+            }
+        }
+
+        private void pushInt(int value) {
+            pushInt(out, value);
+        }
+
+        private void pushInt(CodeBuffer buffer, int value) {
+            if (value >= -1 && value <= 5) {
+                buffer.u1(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                buffer.u1(BIPUSH);
+                buffer.u1(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                buffer.u1(SIPUSH);
+                buffer.u2(value);
+            } else {
+                buffer.u1(LDC_W);
+                buffer.u2(cw.integer(value));
+            }
+        }
+
+        private void pushLong(long value) {
+            if (value == 0 || value == 1) {
+                out.u1(LCONST_0 + (int) value);
+            } else if (value == (int) value) {
+                pushInt((int) value);
+                out.u1(I_2_L);
+            } else {
+                out.u1(LDC2_W);
+                out.u2(cw.longConstant(value));
+            }
+        }
+    }
+
+    /**
+     * Reason a method can not be compiled, the method keeps being interpreted.
+     */
+    public static class Exception extends VmException {
+
+        Exception(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.lewigh.xsjvm.engine.jit;
+
+import com.lewigh.xsjvm.classloader.AppClassLoader;
+import com.lewigh.xsjvm.engine.GuestException;
+import com.lewigh.xsjvm.engine.runtime.ArrayTypes;
+import com.lewigh.xsjvm.engine.runtime.Bytecodes;
+import com.lewigh.xsjvm.engine.runtime.DynamicCallSite;
+import com.lewigh.xsjvm.engine.runtime.ImplicitException;
+import com.lewigh.xsjvm.engine.runtime.InlineCache;
+import com.lewigh.xsjvm.engine.runtime.Jtype;
+import com.lewigh.xsjvm.engine.runtime.KlassDesc;
+import com.lewigh.xsjvm.engine.runtime.MethodDesc;
+import com.lewigh.xsjvm.mem.VmMemoryManager;
+import lombok.NonNull;
+
+import static com.lewigh.xsjvm.engine.runtime.Bytecodes.accessMode;
+import static com.lewigh.xsjvm.engine.runtime.Bytecodes.accessType;
+
+/**
+ * Entry points compiled code calls for everything which is not plain arithmetic and control flow: heap access,
+ * allocation and calls of other guest methods.
+ * <p>
+ * Every value is passed as raw slot bits, primitive types as ordinals of {@link Jtype.Primitive}.
+ */
+public final class JitRuntime {
+
+    private static final Jtype.Primitive[] PRIMITIVES = Jtype.Primitive.values();
+
+    /**
+     * The part of the engine compiled code needs.
+     */
+    public interface Host {
+
+        /**
+         * Calls the method either through its compiled code or through the interpreter.
+         */
+        long call(@NonNull KlassDesc klass, @NonNull MethodDesc method, long[] args);
+
+        /**
+         * Allocates an instance of the class with every field set to its default value.
+         */
+        long allocate(@NonNull KlassDesc klass);
+
+        /**
+         * Stops the running thread at a safepoint if an operation is pending.
+         */
+        void poll();
+    }
+
+    private final VmMemoryManager memoryManager;
+    private final AppClassLoader classLoader;
+    private final Host host;
+
+    public JitRuntime(@NonNull VmMemoryManager memoryManager, @NonNull AppClassLoader classLoader, @NonNull Host host) {
+        this.memoryManager = memoryManager;
+        this.classLoader = classLoader;
+        this.host = host;
+    }
+
+    /**
+     * Polled on every backward branch.
+     */
+    public void poll() {
+        host.poll();
+    }
+
+    /**
+     * Field accesses take the access operand of the quickened instruction, see {@link Bytecodes#fieldAccess}.
+     */
+    public long getField(long objectRef, int offset, int access) {
+        return memoryManager.getRaw(memoryManager.fieldAddress(nonNull(objectRef), offset), accessType(access), accessMode(access));
+    }
+
+    public void putField(long objectRef, int offset, int access, long value) {
+        memoryManager.putRaw(memoryManager.fieldAddress(nonNull(objectRef), offset), accessType(access), value, accessMode(access));
+    }
+
+    public long getStatic(long address, int access) {
+        return memoryManager.getRaw(address, accessType(access), accessMode(access));
+    }
+
+    public void putStatic(long address, int access, long value) {
+        memoryManager.putRaw(address, accessType(access), value, accessMode(access));
+    }
+
+    public long loadElement(long arrayRef, long index, int type) {
+        return memoryManager.getArrayElementRaw(checkIndex(nonNull(arrayRef), index), (int) index, PRIMITIVES[type]);
+    }
+
+    public void storeElement(long arrayRef, long index, int type, long value) {
+        memoryManager.setArrayElementRaw(checkIndex(nonNull(arrayRef), index), (int) index, PRIMITIVES[type], value);
+    }
+
+    /**
+     * @return the divisor of an integer division, which must not be zero
+     */
+    public long checkDivisor(long divisor) {
+        if (divisor == 0) {
+            throw ImplicitException.of(ImplicitException.Kind.ARITHMETIC);
+        }
+        return divisor;
+    }
+
+    public long arrayLength(long arrayRef) {
+        return memoryManager.arrayLength(nonNull(arrayRef));
+    }
+
+    public long checkCast(long objectRef, KlassDesc klass) {
+        if (objectRef != 0 && !isInstance(objectRef, klass)) {
+            throw ImplicitException.of(ImplicitException.Kind.CLASS_CAST);
+        }
+        return objectRef;
+    }
+
+    public long instanceOf(long objectRef, KlassDesc klass) {
+        return objectRef != 0 && isInstance(objectRef, klass) ? 1 : 0;
+    }
+
+    /**
+     * Checks the object against an array type, see {@link ArrayTypes}.
+     */
+    public long checkCastArray(long objectRef, String arrayClassName) {
+        if (objectRef != 0 && !ArrayTypes.isInstance(memoryManager, classLoader, objectRef, arrayClassName)) {
+            throw ImplicitException.of(ImplicitException.Kind.CLASS_CAST);
+        }
+        return objectRef;
+    }
+
+    public long instanceOfArray(long objectRef, String arrayClassName) {
+        return objectRef != 0 && ArrayTypes.isInstance(memoryManager, classLoader, objectRef, arrayClassName) ? 1 : 0;
+    }
+
+    private boolean isInstance(long objectRef, KlassDesc klass) {
+        return classLoader.load(memoryManager.getClassId(objectRef)).isSubtypeOf(klass);
+    }
+
+    public long newObject(KlassDesc klass) {
+        return host.allocate(klass);
+    }
+
+    public long newArray(long size, int type) {
+        return memoryManager.allocateArray(PRIMITIVES[type], checkSize(size));
+    }
+
+    public long newReferenceArray(KlassDesc klass, long size) {
+        return memoryManager.allocateArray(klass.id(), checkSize(size));
+    }
+
+    /**
+     * Calls the target the call site was bound to when quickened.
+     */
+    public long callBound(InlineCache cache, long[] args) {
+        InlineCache.Target target = cache.getBound();
+
+        return host.call(target.klass(), target.method(), args);
+    }
+
+    /**
+     * Calls the target the {@code invokedynamic} call site was linked to.
+     */
+    public long callDynamic(DynamicCallSite callSite, long[] args) {
+        return callSite.invoke(args);
+    }
+
+    /**
+     * Calls the implementation selected by the class of the receiver, which is the first argument.
+     */
+    public long callVirtual(InlineCache cache, int slot, long[] args) {
+        int classId = memoryManager.getClassId(nonNull(args[0]));
+
+        InlineCache.Target target = cache.lookup(classId);
+
+        if (target == null) {
+            target = InlineCache.select(classLoader.load(classId), slot, cache.getSignature());
+            cache.update(classId, target);
+        }
+
+        return host.call(target.klass(), target.method(), args);
+    }
+
+    /**
+     * Calls the implementation of the interface method selected by the class of the receiver, which is the first
+     * argument.
+     */
+    public long callInterface(InlineCache cache, int interfaceId, int slot, long[] args) {
+        int classId = memoryManager.getClassId(nonNull(args[0]));
+
+        InlineCache.Target target = cache.lookup(classId);
+
+        if (target == null) {
+            target = InlineCache.select(classLoader.load(classId), interfaceId, slot, cache.getSignature());
+            cache.update(classId, target);
+        }
+
+        return host.call(target.klass(), target.method(), args);
+    }
+
+    /**
+     * Throws the guest exception out of compiled code, the caller throws the returned exception. Compiled methods
+     * have no exception handlers, the interpreter unwinds the frames which called them.
+     */
+    public GuestException throwException(long exceptionRef) {
+        return new GuestException(nonNull(exceptionRef));
+    }
+
+    /**
+     * Leaves compiled code at an uncommon trap, the caller throws the returned exception.
+     */
+    public Deoptimization deoptimize(int ip, byte[] tags, long[] values) {
+        return new Deoptimization(ip, tags, values);
+    }
+
+    private static long nonNull(long ref) {
+        if (ref == 0) {
+            throw ImplicitException.of(ImplicitException.Kind.NULL_POINTER);
+        }
+        return ref;
+    }
+
+    private long checkIndex(long arrayRef, long index) {
+        if (index < 0 || index >= memoryManager.arrayLength(arrayRef)) {
+            throw ImplicitException.of(ImplicitException.Kind.ARRAY_INDEX_OUT_OF_BOUNDS);
+        }
+        return arrayRef;
+    }
+
+    private static int checkSize(long size) {
+        if (size < 0) {
+            throw ImplicitException.of(ImplicitException.Kind.NEGATIVE_ARRAY_SIZE);
+        }
+        return (int) size;
+    }
+}
@@ -0,0 +1,117 @@
+package com.lewigh.xsjvm.engine.natives;
+
+import com.lewigh.xsjvm.engine.runtime.ImplicitException;
+import com.lewigh.xsjvm.engine.runtime.Jtype;
+import com.lewigh.xsjvm.mem.VmMemoryManager;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * {@code System.arraycopy} and the intrinsics of {@code java/util/Arrays}. They work on whole ranges through the
+ * bulk operations of the heap instead of element by element.
+ * <p>
+ * Like {@code AASTORE}, a copy between arrays of references does not check the class of the elements.
+ */
+final class ArrayNatives {
+
+    private static final String ARRAYS = "java/util/Arrays";
+
+    private static final String[] PRIMITIVE_DESCRIPTORS = {"I", "J", "B", "C", "S", "Z", "F", "D"};
+    private static final Class<?>[] PRIMITIVE_TYPES = {int.class, long.class, byte.class, char.class, short.class, boolean.class, float.class, double.class};
+
+    private final VmMemoryManager memoryManager;
+    private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    ArrayNatives(VmMemoryManager memoryManager) {
+        this.memoryManager = memoryManager;
+    }
+
+    void registerTo(Natives natives) {
+        natives.register("java/lang/System", "arraycopy", "(Ljava/lang/Object;ILjava/lang/Object;II)V",
+                own("arraycopy", void.class, long.class, int.class, long.class, int.class, int.class));
+
+        MethodHandle fill = own("fill", void.class, long.class, long.class);
+        MethodHandle equals = own("equals", boolean.class, long.class, long.class);
+
+        for (int i = 0; i < PRIMITIVE_DESCRIPTORS.length; i++) {
+            String type = PRIMITIVE_DESCRIPTORS[i];
+            natives.register(ARRAYS, "fill", "([" + type + type + ")V", Natives.fromRaw(fill, 1, PRIMITIVE_TYPES[i]));
+            natives.register(ARRAYS, "equals", "([" + type + "[" + type + ")Z", equals);
+        }
+        natives.register(ARRAYS, "fill", "([Ljava/lang/Object;Ljava/lang/Object;)V", fill);
+    }
+
+    private void arraycopy(long from, int fromIndex, long to, int toIndex, int length) {
+        if (from == 0 || to == 0) {
+            throw ImplicitException.of(ImplicitException.Kind.NULL_POINTER);
+        }
+        if (!memoryManager.isArray(from) || !memoryManager.isArray(to)
+                || memoryManager.arrayElementType(from) != memoryManager.arrayElementType(to)) {
+            throw ImplicitException.of(ImplicitException.Kind.ARRAY_STORE);
+        }
+        if (fromIndex < 0 || toIndex < 0 || length < 0
+                || fromIndex > memoryManager.arrayLength(from) - length
+                || toIndex > memoryManager.arrayLength(to) - length) {
+            throw ImplicitException.of(ImplicitException.Kind.ARRAY_INDEX_OUT_OF_BOUNDS);
+        }
+
+        memoryManager.copyArray(from, fromIndex, to, toIndex, length);
+    }
+
+    private void fill(long array, long raw) {
+        if (array == 0) {
+            throw ImplicitException.of(ImplicitException.Kind.NULL_POINTER);
+        }
+        memoryManager.fillArray(array, 0, memoryManager.arrayLength(array), raw);
+    }
+
+    /**
+     * Arrays are compared bit by bit, except that floating point elements which differ only in the bits of a NaN
+     * are equal, the way {@code Float.floatToIntBits} and {@code Double.doubleToLongBits} compare them.
+     */
+    private boolean equals(long first, long second) {
+        if (first == second) {
+            return true;
+        }
+        if (first == 0 || second == 0) {
+            return false;
+        }
+
+        int length = memoryManager.arrayLength(first);
+        if (memoryManager.arrayLength(second) != length) {
+            return false;
+        }
+
+        Jtype.Primitive type = memoryManager.arrayElementType(first);
+        int index = 0;
+
+        while (index < length) {
+            int mismatch = memoryManager.mismatchArrays(first, index, second, index, length - index);
+            if (mismatch < 0) {
+                return true;
+            }
+
+            index += mismatch;
+            if (!isNaN(type, memoryManager.getArrayElementRaw(first, index, type))
+                    || !isNaN(type, memoryManager.getArrayElementRaw(second, index, type))) {
+                return false;
+            }
+            index++;
+        }
+        return true;
+    }
+
+    private static boolean isNaN(Jtype.Primitive type, long raw) {
+        return switch (type) {
+            case FLOAT -> Float.isNaN(Float.intBitsToFloat((int) raw));
+            case DOUBLE -> Double.isNaN(Double.longBitsToDouble(raw));
+            default -> false;
+        };
+    }
+
+    private MethodHandle own(String name, Class<?> returnType, Class<?>... parameterTypes) {
+        return Natives.own(lookup, this, name, MethodType.methodType(returnType, parameterTypes));
+    }
+}
@@ -0,0 +1,303 @@
+package com.lewigh.xsjvm.engine.natives;
+
+import com.lewigh.xsjvm.engine.runtime.ImplicitException;
+import com.lewigh.xsjvm.engine.runtime.KlassDesc;
+import com.lewigh.xsjvm.engine.runtime.MethodDesc;
+import com.lewigh.xsjvm.mem.VmMemoryManager;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteOrder;
+
+import static com.lewigh.xsjvm.SymbolTable.CLASS_CLASS_NAME;
+import static com.lewigh.xsjvm.SymbolTable.CLONEABLE_CLASS_NAME;
+import static com.lewigh.xsjvm.SymbolTable.FIELD_CLASS_NAME;
+import static com.lewigh.xsjvm.SymbolTable.FIELD_CLAZZ_FIELD_NAME;
+import static com.lewigh.xsjvm.SymbolTable.FIELD_NAME_FIELD_NAME;
+import static com.lewigh.xsjvm.engine.runtime.Jtype.Primitive.REFERENCE;
+
+/**
+ * Natives of {@code java.lang} and of the VM services it calls. Those with a host counterpart of the same contract
+ * are bound to it directly.
+ */
+final class LangNatives {
+
+    private static final String[] UNARY_MATH = {"sin", "cos", "tan", "asin", "acos", "atan", "exp", "log", "log10", "sqrt", "cbrt", "sinh", "cosh", "tanh", "expm1", "log1p"};
+    private static final String PRIVILEGED_RUN = "run()Ljava/lang/Object;";
+    private static final String[] BINARY_MATH = {"atan2", "pow", "IEEEremainder", "hypot"};
+
+    private final VmMemoryManager memoryManager;
+    private final Natives.Host host;
+    private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    LangNatives(VmMemoryManager memoryManager, Natives.Host host) {
+        this.memoryManager = memoryManager;
+        this.host = host;
+    }
+
+    void registerTo(Natives natives) {
+        natives.register("java/lang/Object", "hashCode", "()I", own("identityHashCode", int.class, long.class));
+        natives.register("java/lang/Object", "getClass", "()Ljava/lang/Class;", own("getClass", long.class, long.class));
+        natives.register("java/lang/Object", "clone", "()Ljava/lang/Object;", own("clone", long.class, long.class));
+        natives.register("java/lang/Object", "wait", "(J)V", own("monitorWait", void.class, long.class, long.class));
+        natives.register("java/lang/Object", "notify", "()V", own("monitorNotify", void.class, long.class));
+        natives.register("java/lang/Object", "notifyAll", "()V", own("monitorNotifyAll", void.class, long.class));
+
+        natives.register("java/lang/System", "identityHashCode", "(Ljava/lang/Object;)I", own("identityHashCode", int.class, long.class));
+        natives.register("java/lang/System", "currentTimeMillis", "()J", hostStatic(System.class, "currentTimeMillis", long.class));
+        natives.register("java/lang/System", "nanoTime", "()J", hostStatic(System.class, "nanoTime", long.class));
+        natives.register("java/lang/System", "getProperty", "(Ljava/lang/String;)Ljava/lang/String;", own("savedProperty", long.class, long.class));
+
+        natives.register("java/lang/Float", "floatToRawIntBits", "(F)I", hostStatic(Float.class, "floatToRawIntBits", int.class, float.class));
+        natives.register("java/lang/Float", "intBitsToFloat", "(I)F", hostStatic(Float.class, "intBitsToFloat", float.class, int.class));
+        natives.register("java/lang/Double", "doubleToRawLongBits", "(D)J", hostStatic(Double.class, "doubleToRawLongBits", long.class, double.class));
+        natives.register("java/lang/Double", "longBitsToDouble", "(J)D", hostStatic(Double.class, "longBitsToDouble", double.class, long.class));
+
+        for (String name : UNARY_MATH) {
+            natives.register("java/lang/StrictMath", name, "(D)D", hostStatic(StrictMath.class, name, double.class, double.class));
+        }
+        for (String name : BINARY_MATH) {
+            natives.register("java/lang/StrictMath", name, "(DD)D", hostStatic(StrictMath.class, name, double.class, double.class, double.class));
+        }
+
+        natives.register("java/lang/Throwable", "fillInStackTrace", "(I)Ljava/lang/Throwable;", own("fillInStackTrace", long.class, long.class, int.class));
+        natives.register("java/lang/Class", "desiredAssertionStatus0", "(Ljava/lang/Class;)Z", own("desiredAssertionStatus", boolean.class, long.class));
+        natives.register(CLASS_CLASS_NAME, "getDeclaredField", "(Ljava/lang/String;)Ljava/lang/reflect/Field;", own("getDeclaredField", long.class, long.class, long.class));
+        natives.register(CLASS_CLASS_NAME, "getPrimitiveClass", "(Ljava/lang/String;)Ljava/lang/Class;", own("primitiveClass", long.class, long.class));
+        natives.register(CLASS_CLASS_NAME, "getSuperclass", "()Ljava/lang/Class;", own("superclass", long.class, long.class));
+        natives.register("java/util/EnumMap", "getKeyUniverse", "(Ljava/lang/Class;)[Ljava/lang/Enum;", own("enumConstants", long.class, long.class));
+        natives.register("java/util/EnumSet", "getUniverse", "(Ljava/lang/Class;)[Ljava/lang/Enum;", own("enumConstants", long.class, long.class));
+        natives.register("java/lang/StringUTF16", "isBigEndian", "()Z", own("isBigEndian", boolean.class));
+        natives.register("java/util/concurrent/atomic/AtomicLong", "VMSupportsCS8", "()Z", own("supportsCS8", boolean.class));
+
+        natives.register("java/lang/Thread", "currentThread", "()Ljava/lang/Thread;", own("currentThread", long.class));
+        natives.register("java/lang/Thread", "yield", "()V", hostStatic(Thread.class, "yield", void.class));
+        natives.register("java/lang/Thread", "sleep", "(J)V", own("sleep", void.class, long.class));
+        natives.register("java/lang/Thread", "start0", "()V", own("start", void.class, long.class));
+        natives.register("java/lang/Thread", "setPriority0", "(I)V", own("setPriority", void.class, long.class, int.class));
+        natives.register("java/lang/Thread", "holdsLock", "(Ljava/lang/Object;)Z", own("holdsLock", boolean.class, long.class));
+        natives.register("java/lang/Runtime", "availableProcessors", "()I", own("availableProcessors", int.class, long.class));
+
+        natives.register("java/security/AccessController", "executePrivileged",
+                "(Ljava/security/PrivilegedAction;Ljava/security/AccessControlContext;Ljava/lang/Class;)Ljava/lang/Object;",
+                own("executePrivileged", long.class, long.class, long.class, long.class));
+
+        natives.register("java/security/AccessController", "getStackAccessControlContext", "()Ljava/security/AccessControlContext;",
+                own("stackAccessControlContext", long.class));
+
+        natives.register("jdk/internal/reflect/Reflection", "getCallerClass", "()Ljava/lang/Class;", own("callerClass", long.class));
+
+        natives.register("jdk/internal/misc/VM", "getSavedProperty", "(Ljava/lang/String;)Ljava/lang/String;", own("savedProperty", long.class, long.class));
+        natives.register("jdk/internal/misc/VM", "initialize", "()V", own("initializeVm", void.class));
+        natives.register("jdk/internal/misc/CDS", "isDumpingClassList0", "()Z", own("noArchive", boolean.class));
+        natives.register("jdk/internal/misc/CDS", "isDumpingArchive0", "()Z", own("noArchive", boolean.class));
+        natives.register("jdk/internal/misc/CDS", "isSharingEnabled0", "()Z", own("noArchive", boolean.class));
+        natives.register("jdk/internal/misc/CDS", "getRandomSeedForDumping", "()J", own("randomSeedForDumping", long.class));
+        natives.register("jdk/internal/misc/CDS", "initializeFromArchive", "(Ljava/lang/Class;)V", own("initializeFromArchive", void.class, long.class));
+    }
+
+    /**
+     * The heap never moves an object, so the hash is derived from its address. It is non-negative like the identity
+     * hash of HotSpot.
+     */
+    private int identityHashCode(long objectRef) {
+        return (int) ((objectRef * 0x9E3779B97F4A7C15L) >>> 33);
+    }
+
+    private long getClass(long objectRef) {
+        return host.mirror(host.klassOf(objectRef));
+    }
+
+    /**
+     * Arrays are always cloneable, other objects only if their class implements {@code java/lang/Cloneable}.
+     */
+    private long clone(long objectRef) {
+        if (memoryManager.isArray(objectRef)) {
+            return memoryManager.cloneArray(objectRef);
+        }
+
+        KlassDesc klass = host.klassOf(objectRef);
+        if (!klass.isSubtypeOf(host.klass(CLONEABLE_CLASS_NAME))) {
+            throw ImplicitException.of(ImplicitException.Kind.CLONE_NOT_SUPPORTED);
+        }
+        return memoryManager.cloneObject(objectRef, klass.fieldGroup().instanceSize());
+    }
+
+    private void monitorWait(long objectRef, long millis) {
+        host.monitorWait(objectRef, millis);
+    }
+
+    private void monitorNotify(long objectRef) {
+        host.monitorNotify(objectRef, false);
+    }
+
+    private void monitorNotifyAll(long objectRef) {
+        host.monitorNotify(objectRef, true);
+    }
+
+    /**
+     * Guest stack traces are not recorded, the throwable keeps the empty one it is created with.
+     */
+    private long fillInStackTrace(long throwableRef, int dummy) {
+        return throwableRef;
+    }
+
+    private boolean desiredAssertionStatus(long classRef) {
+        return false;
+    }
+
+    /**
+     * Reflection covers only what {@code Unsafe} asks of a field, its declaring class and name. The
+     * {@code java/lang/reflect/Field} carries nothing else, none of its constructors is run.
+     */
+    private long getDeclaredField(long classRef, long nameRef) {
+        KlassDesc klass = host.mirrored(classRef);
+        String name = host.string(nameRef);
+
+        if (klass == null || !klass.fieldGroup().fields().containsKey(klass.name() + "." + name)) {
+            throw new Natives.Exception("Unable to find the field %s of %s".formatted(name, klass == null ? classRef : klass.name()));
+        }
+
+        KlassDesc fieldKlass = host.klass(FIELD_CLASS_NAME);
+        long fieldRef = host.allocate(fieldKlass);
+        memoryManager.putRaw(fieldAddress(fieldKlass, fieldRef, FIELD_CLAZZ_FIELD_NAME), REFERENCE, classRef);
+        memoryManager.putRaw(fieldAddress(fieldKlass, fieldRef, FIELD_NAME_FIELD_NAME), REFERENCE, nameRef);
+        return fieldRef;
+    }
+
+    /**
+     * Interfaces, like {@code java/lang/Object}, have no superclass.
+     */
+    private long superclass(long classRef) {
+        KlassDesc klass = host.mirrored(classRef);
+        if (klass == null || klass.isInterface() || klass.superKlass() == null) {
+            return 0;
+        }
+        return host.mirror(klass.superKlass());
+    }
+
+    /**
+     * Intrinsic of {@code EnumMap.getKeyUniverse} and {@code EnumSet.getUniverse}, which ask {@code JavaLangAccess}
+     * for the constants. The guest is
+     * not booted through {@code System.initPhase1}, which sets the access up, so the constants come from the
+     * {@code values()} method of the enum instead, as a copy rather than the shared array.
+     */
+    private long enumConstants(long classRef) {
+        KlassDesc klass = host.mirrored(classRef);
+        MethodDesc values = klass.methods().get("values()[L%s;".formatted(klass.name()));
+        return host.call(klass, values, new long[0]);
+    }
+
+    /**
+     * Primitive types have no classes, so {@code int.class} and the like are null.
+     */
+    private long primitiveClass(long nameRef) {
+        return 0;
+    }
+
+    /**
+     * The guest heap is accessed in the byte order of the host.
+     */
+    private boolean isBigEndian() {
+        return ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
+    }
+
+    /**
+     * {@code Unsafe} compares and sets longs atomically.
+     */
+    private boolean supportsCS8() {
+        return true;
+    }
+
+    private long fieldAddress(KlassDesc klass, long objectRef, String name) {
+        return memoryManager.fieldAddress(objectRef, klass.fieldGroup().fields().get(klass.name() + "." + name).offset());
+    }
+
+    private long currentThread() {
+        return host.currentThread();
+    }
+
+    private void sleep(long millis) {
+        host.sleep(millis);
+    }
+
+    private void start(long threadRef) {
+        host.startThread(threadRef);
+    }
+
+    /**
+     * Host threads keep their default priority, the guest one is only recorded in the {@code Thread} instance.
+     */
+    private void setPriority(long threadRef, int priority) {
+    }
+
+    private boolean holdsLock(long objectRef) {
+        if (objectRef == 0) {
+            throw ImplicitException.of(ImplicitException.Kind.NULL_POINTER);
+        }
+        return host.holdsMonitor(objectRef);
+    }
+
+    private int availableProcessors(long runtimeRef) {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * There is no security manager, so a privileged action just runs. The code it replaces keeps the context
+     * reachable through {@code java/lang/ref/Reference}, whose initializer needs a booted guest.
+     */
+    private long executePrivileged(long actionRef, long contextRef, long callerRef) {
+        KlassDesc owner = host.klassOf(actionRef).selectMethodOwner(PRIVILEGED_RUN);
+        return host.call(owner, owner.methods().get(PRIVILEGED_RUN), new long[]{actionRef});
+    }
+
+    /**
+     * The method calling {@code getCallerClass} is the innermost frame, the class asked for is the one below it.
+     * Frames of reflection are not skipped, as there is no reflective call yet.
+     */
+    private long callerClass() {
+        KlassDesc caller = host.callerClass();
+        return caller == null ? 0 : host.mirror(caller);
+    }
+
+    /**
+     * Without a security manager no stack frame restricts the access, which the null context stands for.
+     */
+    private long stackAccessControlContext() {
+        return 0;
+    }
+
+    /**
+     * The guest is not booted through {@code System.initPhase1}, so there are no system properties and no saved
+     * ones, the classes asking for them, e.g. the cache of boxed integers, keep their defaults.
+     */
+    private long savedProperty(long nameRef) {
+        return 0;
+    }
+
+    private void initializeVm() {
+    }
+
+    /**
+     * There is no class data sharing archive, neither to dump to nor to load classes from.
+     */
+    private boolean noArchive() {
+        return false;
+    }
+
+    private long randomSeedForDumping() {
+        return 0;
+    }
+
+    private void initializeFromArchive(long classRef) {
+    }
+
+    private MethodHandle own(String name, Class<?> returnType, Class<?>... parameterTypes) {
+        return Natives.own(lookup, this, name, MethodType.methodType(returnType, parameterTypes));
+    }
+
+    private MethodHandle hostStatic(Class<?> owner, String name, Class<?> returnType, Class<?>... parameterTypes) {
+        return Natives.host(owner, name, MethodType.methodType(returnType, parameterTypes));
+    }
+}
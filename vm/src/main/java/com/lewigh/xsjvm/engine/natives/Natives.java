@@ -0,0 +1,325 @@
+package com.lewigh.xsjvm.engine.natives;
+
+import com.lewigh.xsjvm.VmException;
+import com.lewigh.xsjvm.classloader.reader.resolvers.DescriptorResolver;
+import com.lewigh.xsjvm.engine.runtime.ImplicitException;
+import com.lewigh.xsjvm.engine.runtime.Jtype;
+import com.lewigh.xsjvm.engine.runtime.KlassDesc;
+import com.lewigh.xsjvm.engine.runtime.MethodDesc;
+import com.lewigh.xsjvm.engine.runtime.MethodDescriptor;
+import com.lewigh.xsjvm.mem.VmMemoryManager;
+import com.lewigh.xsjvm.support.Logger;
+import lombok.NonNull;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Registry of the host implementations of guest native methods, keyed by the class, the name and the descriptor of
+ * the method.
+ * <p>
+ * An implementation is a {@link MethodHandle} whose type follows the descriptor: a guest primitive is passed as the
+ * host primitive of the same type, a reference as the {@code long} address of the object, and an instance method
+ * takes its receiver as the first {@code long}. Host methods with the same contract, such as
+ * {@link Float#floatToRawIntBits(float)}, are registered as they are.
+ * <p>
+ * {@link #bind(KlassDesc, MethodDesc)} adapts the implementation to the form every call passes, raw slot bits in
+ * a {@code long[]} and the result as raw slot bits. The engine binds a method once and keeps the handle in the
+ * {@link MethodDesc}, so a call costs one {@link MethodHandle#invokeExact} of a ready handle.
+ * <p>
+ * An implementation registered for a method which has code makes it an intrinsic: once the class is initialized,
+ * {@link #bindIntrinsics(KlassDesc)} binds the method and calls run the implementation instead of the code.
+ * <p>
+ * The {@code registerNatives()V} and {@code initIDs()V} methods of every class do nothing. Any other native method
+ * without an implementation throws {@code java/lang/UnsatisfiedLinkError} when it is called.
+ */
+public final class Natives {
+
+    /**
+     * The part of the engine natives need.
+     */
+    public interface Host {
+
+        /**
+         * @return the {@code java/lang/Class} instance of the class
+         */
+        long mirror(@NonNull KlassDesc klass);
+
+        /**
+         * @return class of the {@code java/lang/Class} instance, {@code null} if it is not the mirror of a class
+         */
+        KlassDesc mirrored(long mirror);
+
+        /**
+         * @return the loaded class of the name
+         */
+        KlassDesc klass(@NonNull String className);
+
+        /**
+         * @return class of the object
+         */
+        KlassDesc klassOf(long objectRef);
+
+        /**
+         * Allocates an instance of the class with every field set to its default value.
+         */
+        long allocate(@NonNull KlassDesc klass);
+
+        /**
+         * Runs the guest method to completion.
+         *
+         * @return the result as raw slot bits
+         */
+        long call(@NonNull KlassDesc klass, @NonNull MethodDesc method, long[] args);
+
+        /**
+         * @return host copy of the guest {@code java/lang/String}
+         */
+        String string(long stringRef);
+
+        /**
+         * @return class of the method which called the method running the native, {@code null} at the bottom of
+         * the stack
+         */
+        KlassDesc callerClass();
+
+        /**
+         * @return the {@code java/lang/Thread} instance of the running guest thread
+         */
+        long currentThread();
+
+        /**
+         * Starts a host thread which runs the {@code run()} method of the guest thread.
+         */
+        void startThread(long threadRef);
+
+        /**
+         * Waits on the monitor of the object, see {@code Object.wait(long)}.
+         */
+        void monitorWait(long objectRef, long millis);
+
+        /**
+         * Notifies one or all threads waiting on the monitor of the object.
+         */
+        void monitorNotify(long objectRef, boolean all);
+
+        /**
+         * @return whether the running guest thread owns the monitor of the object
+         */
+        boolean holdsMonitor(long objectRef);
+
+        /**
+         * Suspends the running guest thread for the milliseconds.
+         */
+        void sleep(long millis);
+    }
+
+    private static final Set<String> NO_OP_NAMES = Set.of("registerNatives", "initIDs");
+    private static final MethodDescriptor NO_OP_DESCRIPTOR = DescriptorResolver.resolveMethodDescriptor("()V");
+
+    private static final MethodType CALL_TYPE = MethodType.methodType(long.class, long[].class);
+
+    private static final MethodHandle NOTHING = MethodHandles.dropArguments(MethodHandles.constant(long.class, 0L), 0, long[].class);
+    private static final MethodHandle FLOAT_OF_RAW;
+    private static final MethodHandle DOUBLE_OF_RAW;
+    private static final MethodHandle RAW_OF_FLOAT;
+    private static final MethodHandle RAW_OF_DOUBLE;
+    private static final MethodHandle UNBOUND;
+
+    static {
+        try {
+            var lookup = MethodHandles.lookup();
+            FLOAT_OF_RAW = lookup.findStatic(Natives.class, "floatOfRaw", MethodType.methodType(float.class, long.class));
+            DOUBLE_OF_RAW = lookup.findStatic(Double.class, "longBitsToDouble", MethodType.methodType(double.class, long.class));
+            RAW_OF_FLOAT = lookup.findStatic(Float.class, "floatToRawIntBits", MethodType.methodType(int.class, float.class))
+                    .asType(MethodType.methodType(long.class, float.class));
+            RAW_OF_DOUBLE = lookup.findStatic(Double.class, "doubleToRawLongBits", MethodType.methodType(long.class, double.class));
+            UNBOUND = lookup.findStatic(Natives.class, "unbound", MethodType.methodType(long.class, String.class, long[].class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    public static class Exception extends VmException {
+
+        public Exception(String message) {
+            super(message);
+        }
+    }
+
+    private record Key(String className, String name, MethodDescriptor descriptor) {
+    }
+
+    private final Map<Key, MethodHandle> implementations = new HashMap<>();
+
+    /**
+     * @return registry of the natives the engine implements
+     */
+    public static Natives create(@NonNull VmMemoryManager memoryManager, @NonNull Host host) {
+        var natives = new Natives();
+        new LangNatives(memoryManager, host).registerTo(natives);
+        new UnsafeNatives(memoryManager, host).registerTo(natives);
+        new ArrayNatives(memoryManager).registerTo(natives);
+        return natives;
+    }
+
+    /**
+     * @param className      internal name of the class declaring the native method
+     * @param implementation handle whose type follows the descriptor, see {@link Natives}
+     */
+    public void register(@NonNull String className, @NonNull String name, @NonNull String descriptor, @NonNull MethodHandle implementation) {
+        var key = new Key(className, name, DescriptorResolver.resolveMethodDescriptor(descriptor));
+        if (implementations.putIfAbsent(key, implementation) != null) {
+            throw new Exception("Native %s.%s%s is registered twice".formatted(className, name, descriptor));
+        }
+    }
+
+    /**
+     * Resolves the implementation of the native method.
+     *
+     * @return handle of type {@code (long[])long} taking the arguments and returning the result as raw slot bits
+     * @throws Exception if the implementation does not match the descriptor of the method
+     */
+    public MethodHandle bind(@NonNull KlassDesc klass, @NonNull MethodDesc method) {
+        String name = klass.name() + "." + method.name();
+        MethodHandle implementation = implementations.get(new Key(klass.name(), method.name(), method.descriptor()));
+
+        if (implementation == null) {
+            if (NO_OP_DESCRIPTOR.equals(method.descriptor()) && NO_OP_NAMES.contains(method.name())) {
+                return NOTHING;
+            }
+            return UNBOUND.bindTo(name);
+        }
+
+        return adapt(name, implementation, method);
+    }
+
+    /**
+     * Binds the methods of the class which have code and an implementation.
+     */
+    public void bindIntrinsics(@NonNull KlassDesc klass) {
+        for (MethodDesc method : klass.methods().values()) {
+            if (!method.fNative() && implementations.containsKey(new Key(klass.name(), method.name(), method.descriptor()))) {
+                method.bindNativeCode(bind(klass, method));
+            }
+        }
+    }
+
+    private static MethodHandle adapt(String name, MethodHandle implementation, MethodDesc method) {
+        Jtype[] parameterTypes = method.descriptor().paarameterTypes();
+        int receiver = method.fStatic() ? 0 : 1;
+        int count = receiver + parameterTypes.length;
+
+        Class<?>[] hostParameters = new Class<?>[count];
+        MethodHandle[] parameterFilters = new MethodHandle[count];
+        if (receiver == 1) {
+            hostParameters[0] = long.class;
+        }
+        for (int i = 0; i < parameterTypes.length; i++) {
+            Jtype.Primitive type = parameterTypes[i].primitive();
+            hostParameters[receiver + i] = hostType(type);
+            parameterFilters[receiver + i] = switch (type) {
+                case FLOAT -> FLOAT_OF_RAW;
+                case DOUBLE -> DOUBLE_OF_RAW;
+                default -> null;
+            };
+        }
+
+        Jtype.Primitive returnType = method.descriptor().returnType().primitive();
+        MethodType expected = MethodType.methodType(hostType(returnType), hostParameters);
+        if (!implementation.type().equals(expected)) {
+            throw new Exception("Native %s is implemented by %s, expected %s".formatted(name, implementation.type(), expected));
+        }
+
+        MethodHandle adapted = MethodHandles.filterArguments(implementation, 0, parameterFilters);
+        adapted = switch (returnType) {
+            case VOID -> MethodHandles.filterReturnValue(adapted, MethodHandles.constant(long.class, 0L));
+            case FLOAT -> MethodHandles.filterReturnValue(adapted, RAW_OF_FLOAT);
+            case DOUBLE -> MethodHandles.filterReturnValue(adapted, RAW_OF_DOUBLE);
+            default -> adapted;
+        };
+
+        Class<?>[] rawParameters = new Class<?>[count];
+        Arrays.fill(rawParameters, long.class);
+
+        return MethodHandles.explicitCastArguments(adapted, MethodType.methodType(long.class, rawParameters))
+                .asSpreader(long[].class, count)
+                .asType(CALL_TYPE);
+    }
+
+    private static Class<?> hostType(Jtype.Primitive type) {
+        return switch (type) {
+            case VOID -> void.class;
+            case BOOL -> boolean.class;
+            case BYTE -> byte.class;
+            case CHAR -> char.class;
+            case SHORT -> short.class;
+            case INT -> int.class;
+            case LONG, REFERENCE, ARRAY -> long.class;
+            case FLOAT -> float.class;
+            case DOUBLE -> double.class;
+        };
+    }
+
+    /**
+     * @param target handle taking a value in the raw slot form at the position
+     * @return handle taking the value as the host primitive type instead
+     */
+    static MethodHandle fromRaw(MethodHandle target, int position, Class<?> hostType) {
+        MethodHandle raw = switch (hostType.getName()) {
+            case "float" -> MethodHandles.filterArguments(target, position, RAW_OF_FLOAT);
+            case "double" -> MethodHandles.filterArguments(target, position, RAW_OF_DOUBLE);
+            default -> target;
+        };
+        return MethodHandles.explicitCastArguments(raw, raw.type().changeParameterType(position, hostType));
+    }
+
+    /**
+     * @param target handle returning a value in the raw slot form
+     * @return handle returning the value as the host primitive type instead
+     */
+    static MethodHandle returnFromRaw(MethodHandle target, Class<?> hostType) {
+        MethodHandle raw = switch (hostType.getName()) {
+            case "float" -> MethodHandles.filterReturnValue(target, FLOAT_OF_RAW);
+            case "double" -> MethodHandles.filterReturnValue(target, DOUBLE_OF_RAW);
+            default -> target;
+        };
+        return MethodHandles.explicitCastArguments(raw, raw.type().changeReturnType(hostType));
+    }
+
+    private static float floatOfRaw(long raw) {
+        return Float.intBitsToFloat((int) raw);
+    }
+
+    private static long unbound(String name, long[] args) {
+        Logger.debug("Unsatisfied link of native method %s%n", name);
+        throw ImplicitException.of(ImplicitException.Kind.UNSATISFIED_LINK);
+    }
+
+    /**
+     * @return handle of the instance method declared by the class of the lookup, bound to the receiver
+     */
+    static MethodHandle own(MethodHandles.Lookup lookup, Object receiver, String name, MethodType type) {
+        try {
+            return lookup.bind(receiver, name, type);
+        } catch (ReflectiveOperationException e) {
+            throw new Exception("Unable to find the native implementation %s.%s%s".formatted(lookup.lookupClass().getName(), name, type));
+        }
+    }
+
+    /**
+     * @return handle of the public static method of the host class
+     */
+    static MethodHandle host(Class<?> owner, String name, MethodType type) {
+        try {
+            return MethodHandles.publicLookup().findStatic(owner, name, type);
+        } catch (ReflectiveOperationException e) {
+            throw new Exception("Unable to find the native implementation %s.%s%s".formatted(owner.getName(), name, type));
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.lewigh.xsjvm.engine.natives;
+
+import com.lewigh.xsjvm.engine.runtime.FieldDesc;
+import com.lewigh.xsjvm.engine.runtime.Jtype;
+import com.lewigh.xsjvm.engine.runtime.KlassDesc;
+import com.lewigh.xsjvm.mem.AccessMode;
+import com.lewigh.xsjvm.mem.VmMemoryManager;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+
+import static com.lewigh.xsjvm.SymbolTable.FIELD_CLASS_NAME;
+import static com.lewigh.xsjvm.SymbolTable.FIELD_CLAZZ_FIELD_NAME;
+import static com.lewigh.xsjvm.SymbolTable.FIELD_NAME_FIELD_NAME;
+import static com.lewigh.xsjvm.engine.runtime.Jtype.Primitive.*;
+
+/**
+ * Natives of {@code jdk/internal/misc/Unsafe}. An object and an offset address the byte at the sum of both, so
+ * the offset of a field is its offset from the start of the object and a {@code null} object makes the offset an
+ * absolute address.
+ */
+final class UnsafeNatives {
+
+    private static final String UNSAFE = "jdk/internal/misc/Unsafe";
+
+    private final VmMemoryManager memoryManager;
+    private final Natives.Host host;
+    private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    UnsafeNatives(VmMemoryManager memoryManager, Natives.Host host) {
+        this.memoryManager = memoryManager;
+        this.host = host;
+    }
+
+    void registerTo(Natives natives) {
+        natives.register(UNSAFE, "addressSize0", "()I", own("addressSize", int.class, long.class));
+        natives.register(UNSAFE, "objectFieldOffset1", "(Ljava/lang/Class;Ljava/lang/String;)J", own("objectFieldOffset", long.class, long.class, long.class, long.class));
+        natives.register(UNSAFE, "objectFieldOffset0", "(Ljava/lang/reflect/Field;)J", own("objectFieldOffset", long.class, long.class, long.class));
+
+        access(natives, "Int", "I", int.class);
+        access(natives, "Long", "J", long.class);
+        access(natives, "Reference", "Ljava/lang/Object;", long.class);
+        access(natives, "Boolean", "Z", boolean.class);
+        access(natives, "Byte", "B", byte.class);
+        access(natives, "Short", "S", short.class);
+        access(natives, "Char", "C", char.class);
+        access(natives, "Float", "F", float.class);
+        access(natives, "Double", "D", double.class);
+
+        MethodHandle compareAndSet = own("compareAndSet", boolean.class, long.class, long.class, long.class, Jtype.Primitive.class, long.class, long.class);
+        MethodHandle compareAndExchange = own("compareAndExchange", long.class, long.class, long.class, long.class, Jtype.Primitive.class, long.class, long.class);
+        atomic(natives, "Int", "I", INT, compareAndSet, compareAndExchange);
+        atomic(natives, "Long", "J", LONG, compareAndSet, compareAndExchange);
+        atomic(natives, "Reference", "Ljava/lang/Object;", REFERENCE, compareAndSet, compareAndExchange);
+
+        MethodHandle getAndAdd = own("getAndAdd", long.class, long.class, long.class, long.class, Jtype.Primitive.class, long.class);
+        natives.register(UNSAFE, "getAndAddInt", "(Ljava/lang/Object;JI)I",
+                Natives.returnFromRaw(Natives.fromRaw(MethodHandles.insertArguments(getAndAdd, 3, INT), 3, int.class), int.class));
+        natives.register(UNSAFE, "getAndAddLong", "(Ljava/lang/Object;JJ)J", MethodHandles.insertArguments(getAndAdd, 3, LONG));
+
+        orderedAccess(natives, "Int", "I", INT, int.class);
+        orderedAccess(natives, "Long", "J", LONG, long.class);
+        orderedAccess(natives, "Reference", "Ljava/lang/Object;", REFERENCE, long.class);
+        orderedAccess(natives, "Boolean", "Z", BOOL, boolean.class);
+        orderedAccess(natives, "Byte", "B", BYTE, byte.class);
+        orderedAccess(natives, "Short", "S", SHORT, short.class);
+        orderedAccess(natives, "Char", "C", CHAR, char.class);
+        orderedAccess(natives, "Float", "F", FLOAT, float.class);
+        orderedAccess(natives, "Double", "D", DOUBLE, double.class);
+
+        natives.register(UNSAFE, "arrayBaseOffset0", "(Ljava/lang/Class;)I", own("arrayBaseOffset", int.class, long.class, long.class));
+        natives.register(UNSAFE, "arrayIndexScale0", "(Ljava/lang/Class;)I", own("arrayIndexScale", int.class, long.class, long.class));
+
+        natives.register(UNSAFE, "loadFence", "()V", fence("acquireFence"));
+        natives.register(UNSAFE, "storeFence", "()V", fence("releaseFence"));
+        natives.register(UNSAFE, "fullFence", "()V", fence("fullFence"));
+    }
+
+    private void access(Natives natives, String type, String descriptor, Class<?> hostType) {
+        natives.register(UNSAFE, "get" + type, "(Ljava/lang/Object;J)" + descriptor,
+                own("get" + type, hostType, long.class, long.class, long.class));
+        natives.register(UNSAFE, "put" + type, "(Ljava/lang/Object;J" + descriptor + ")V",
+                own("put" + type, void.class, long.class, long.class, long.class, hostType));
+    }
+
+    /**
+     * Registers the compare-and-set and the compare-and-exchange of a type, the remaining atomic operations of
+     * {@code Unsafe} are built on them.
+     */
+    private void atomic(Natives natives, String type, String descriptor, Jtype.Primitive primitive,
+                        MethodHandle compareAndSet, MethodHandle compareAndExchange) {
+        Class<?> hostType = primitive == INT ? int.class : long.class;
+        natives.register(UNSAFE, "compareAndSet" + type, "(Ljava/lang/Object;J" + descriptor + descriptor + ")Z",
+                Natives.fromRaw(Natives.fromRaw(MethodHandles.insertArguments(compareAndSet, 3, primitive), 3, hostType), 4, hostType));
+        natives.register(UNSAFE, "compareAndExchange" + type, "(Ljava/lang/Object;J" + descriptor + descriptor + ")" + descriptor,
+                Natives.returnFromRaw(Natives.fromRaw(Natives.fromRaw(MethodHandles.insertArguments(compareAndExchange, 3, primitive), 3, hostType), 4, hostType), hostType));
+    }
+
+    /**
+     * Registers the volatile natives of a type and its acquire, release and opaque accessors, whose code falls back
+     * on the volatile ones, as intrinsics of the weaker modes.
+     */
+    private void orderedAccess(Natives natives, String type, String descriptor, Jtype.Primitive primitive, Class<?> hostType) {
+        MethodHandle get = own("getOrdered", long.class, long.class, long.class, long.class, Jtype.Primitive.class, AccessMode.class);
+        MethodHandle put = own("putOrdered", void.class, long.class, long.class, long.class, Jtype.Primitive.class, AccessMode.class, long.class);
+
+        String getter = "(Ljava/lang/Object;J)" + descriptor;
+        String setter = "(Ljava/lang/Object;J" + descriptor + ")V";
+        natives.register(UNSAFE, "get" + type + "Volatile", getter, Natives.returnFromRaw(MethodHandles.insertArguments(get, 3, primitive, AccessMode.VOLATILE), hostType));
+        natives.register(UNSAFE, "put" + type + "Volatile", setter, Natives.fromRaw(MethodHandles.insertArguments(put, 3, primitive, AccessMode.VOLATILE), 3, hostType));
+        natives.register(UNSAFE, "get" + type + "Acquire", getter, Natives.returnFromRaw(MethodHandles.insertArguments(get, 3, primitive, AccessMode.ACQUIRE_RELEASE), hostType));
+        natives.register(UNSAFE, "put" + type + "Release", setter, Natives.fromRaw(MethodHandles.insertArguments(put, 3, primitive, AccessMode.ACQUIRE_RELEASE), 3, hostType));
+        natives.register(UNSAFE, "get" + type + "Opaque", getter, Natives.returnFromRaw(MethodHandles.insertArguments(get, 3, primitive, AccessMode.OPAQUE), hostType));
+        natives.register(UNSAFE, "put" + type + "Opaque", setter, Natives.fromRaw(MethodHandles.insertArguments(put, 3, primitive, AccessMode.OPAQUE), 3, hostType));
+    }
+
+    private int addressSize(long unsafeRef) {
+        return REFERENCE.getAlign().getTotal();
+    }
+
+    private long objectFieldOffset(long unsafeRef, long classRef, long nameRef) {
+        KlassDesc klass = host.mirrored(classRef);
+        String name = host.string(nameRef);
+        FieldDesc field = klass == null ? null : klass.fieldGroup().fields().get(klass.name() + "." + name);
+
+        if (field == null || field.accStatic()) {
+            throw new Natives.Exception("Unable to find the instance field %s of %s".formatted(name, klass == null ? classRef : klass.name()));
+        }
+        return memoryManager.fieldAddress(0, field.offset());
+    }
+
+    /**
+     * Array types have no classes of their own, the mirror of any array is the one of {@code Object}. The header
+     * of an array takes the same size for every element type, the scale is the one of the arrays the atomic
+     * operations are used on, arrays of references.
+     */
+    private int arrayBaseOffset(long unsafeRef, long classRef) {
+        return (int) memoryManager.arrayBaseOffset();
+    }
+
+    private int arrayIndexScale(long unsafeRef, long classRef) {
+        return REFERENCE.getAlign().getTotal();
+    }
+
+    private boolean compareAndSet(long unsafeRef, long objectRef, long offset, Jtype.Primitive type, long expected, long x) {
+        return memoryManager.compareAndSetRaw(objectRef + offset, type, expected, x);
+    }
+
+    /**
+     * @return the witness value, which is the expected one if the exchange took place
+     */
+    private long compareAndExchange(long unsafeRef, long objectRef, long offset, Jtype.Primitive type, long expected, long x) {
+        long address = objectRef + offset;
+        while (true) {
+            long witness = memoryManager.getRaw(address, type, AccessMode.VOLATILE);
+            if (witness != expected || memoryManager.compareAndSetRaw(address, type, expected, x)) {
+                return witness;
+            }
+        }
+    }
+
+    private long getAndAdd(long unsafeRef, long objectRef, long offset, Jtype.Primitive type, long delta) {
+        return memoryManager.getAndAddRaw(objectRef + offset, type, delta);
+    }
+
+    private long getOrdered(long unsafeRef, long objectRef, long offset, Jtype.Primitive type, AccessMode mode) {
+        return memoryManager.getRaw(objectRef + offset, type, mode);
+    }
+
+    private void putOrdered(long unsafeRef, long objectRef, long offset, Jtype.Primitive type, AccessMode mode, long value) {
+        memoryManager.putRaw(objectRef + offset, type, value, mode);
+    }
+
+    /**
+     * The field is one of {@code Class.getDeclaredField}, which keeps just its class and name.
+     */
+    private long objectFieldOffset(long unsafeRef, long fieldRef) {
+        KlassDesc fieldKlass = host.klass(FIELD_CLASS_NAME);
+        long classRef = memoryManager.getRaw(fieldAddress(fieldKlass, fieldRef, FIELD_CLAZZ_FIELD_NAME), REFERENCE);
+        long nameRef = memoryManager.getRaw(fieldAddress(fieldKlass, fieldRef, FIELD_NAME_FIELD_NAME), REFERENCE);
+        return objectFieldOffset(unsafeRef, classRef, nameRef);
+    }
+
+    private long fieldAddress(KlassDesc klass, long objectRef, String name) {
+        return memoryManager.fieldAddress(objectRef, klass.fieldGroup().fields().get(klass.name() + "." + name).offset());
+    }
+
+    private int getInt(long unsafeRef, long objectRef, long offset) {
+        return (int) memoryManager.getRaw(objectRef + offset, INT);
+    }
+
+    private void putInt(long unsafeRef, long objectRef, long offset, int value) {
+        memoryManager.putRaw(objectRef + offset, INT, value);
+    }
+
+    private long getLong(long unsafeRef, long objectRef, long offset) {
+        return memoryManager.getRaw(objectRef + offset, LONG);
+    }
+
+    private void putLong(long unsafeRef, long objectRef, long offset, long value) {
+        memoryManager.putRaw(objectRef + offset, LONG, value);
+    }
+
+    private long getReference(long unsafeRef, long objectRef, long offset) {
+        return memoryManager.getRaw(objectRef + offset, REFERENCE);
+    }
+
+    private void putReference(long unsafeRef, long objectRef, long offset, long value) {
+        memoryManager.putRaw(objectRef + offset, REFERENCE, value);
+    }
+
+    private boolean getBoolean(long unsafeRef, long objectRef, long offset) {
+        return memoryManager.getRaw(objectRef + offset, BOOL) != 0;
+    }
+
+    private void putBoolean(long unsafeRef, long objectRef, long offset, boolean value) {
+        memoryManager.putRaw(objectRef + offset, BOOL, value ? 1 : 0);
+    }
+
+    private byte getByte(long unsafeRef, long objectRef, long offset) {
+        return (byte) memoryManager.getRaw(objectRef + offset, BYTE);
+    }
+
+    private void putByte(long unsafeRef, long objectRef, long offset, byte value) {
+        memoryManager.putRaw(objectRef + offset, BYTE, value);
+    }
+
+    private short getShort(long unsafeRef, long objectRef, long offset) {
+        return (short) memoryManager.getRaw(objectRef + offset, SHORT);
+    }
+
+    private void putShort(long unsafeRef, long objectRef, long offset, short value) {
+        memoryManager.putRaw(objectRef + offset, SHORT, value);
+    }
+
+    private char getChar(long unsafeRef, long objectRef, long offset) {
+        return (char) memoryManager.getRaw(objectRef + offset, CHAR);
+    }
+
+    private void putChar(long unsafeRef, long objectRef, long offset, char value) {
+        memoryManager.putRaw(objectRef + offset, CHAR, value);
+    }
+
+    private float getFloat(long unsafeRef, long objectRef, long offset) {
+        return Float.intBitsToFloat((int) memoryManager.getRaw(objectRef + offset, FLOAT));
+    }
+
+    private void putFloat(long unsafeRef, long objectRef, long offset, float value) {
+        memoryManager.putRaw(objectRef + offset, FLOAT, Float.floatToRawIntBits(value));
+    }
+
+    private double getDouble(long unsafeRef, long objectRef, long offset) {
+        return Double.longBitsToDouble(memoryManager.getRaw(objectRef + offset, DOUBLE));
+    }
+
+    private void putDouble(long unsafeRef, long objectRef, long offset, double value) {
+        memoryManager.putRaw(objectRef + offset, DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
+    private MethodHandle own(String name, Class<?> returnType, Class<?>... parameterTypes) {
+        return Natives.own(lookup, this, name, MethodType.methodType(returnType, parameterTypes));
+    }
+
+    /**
+     * The fence of {@link VarHandle} taking the ignored receiver.
+     */
+    private MethodHandle fence(String name) {
+        MethodHandle fence = Natives.host(VarHandle.class, name, MethodType.methodType(void.class));
+        return MethodHandles.dropArguments(fence, 0, long.class);
+    }
+}
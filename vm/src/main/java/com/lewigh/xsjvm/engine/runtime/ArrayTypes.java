@@ -0,0 +1,50 @@
+package com.lewigh.xsjvm.engine.runtime;
+
+import com.lewigh.xsjvm.classloader.AppClassLoader;
+import com.lewigh.xsjvm.mem.VmMemoryManager;
+import lombok.NonNull;
+
+/**
+ * Type checks against array types, which have no classes yet. An array keeps the primitive type of its elements
+ * and, for references, the complement of the class id of its elements in the class word. Arrays have one
+ * dimension, as their elements never are arrays themselves.
+ */
+public final class ArrayTypes {
+
+    private ArrayTypes() {
+    }
+
+    /**
+     * Checks the object against an array type given by its name, e.g. {@code [Ljava/lang/String;}: an array of
+     * primitives matches the same primitive type, an array of references matches when its element class is a
+     * subtype of the element class of the type.
+     */
+    public static boolean isInstance(@NonNull VmMemoryManager memoryManager, @NonNull AppClassLoader classLoader,
+                                     long objectRef, @NonNull String arrayClassName) {
+        if (!memoryManager.isArray(objectRef)) {
+            return false;
+        }
+
+        int dimensions = 0;
+        while (arrayClassName.charAt(dimensions) == '[') {
+            dimensions++;
+        }
+        if (dimensions > 1) {
+            return false;
+        }
+
+        char elementCode = arrayClassName.charAt(1);
+        Jtype.Primitive elementType = memoryManager.arrayElementType(objectRef);
+        if (elementCode != 'L') {
+            return elementType == Jtype.Primitive.getTypeByCode(elementCode);
+        }
+
+        int elementClassId = ~memoryManager.getClassId(objectRef);
+        if (elementType != Jtype.Primitive.REFERENCE || elementClassId <= 0) {
+            return false;
+        }
+        String elementClassName = arrayClassName.substring(2, arrayClassName.length() - 1);
+
+        return classLoader.load(elementClassId).isSubtypeOf(classLoader.load(elementClassName));
+    }
+}
@@ -0,0 +1,471 @@
+package com.lewigh.xsjvm.engine.runtime;
+
+import com.lewigh.xsjvm.classloader.reader.info.attribute.OpCode;
+import com.lewigh.xsjvm.mem.AccessMode;
+import lombok.NoArgsConstructor;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Opcodes of the decoded code stream executed by the interpreter.
+ * <p>
+ * Values of the class-file opcodes are the same as in {@link OpCode}, so the stream can be produced
+ * without any translation tables. Every instruction occupies {@link #length(int)} ints of the stream:
+ * the opcode followed by its operands, already decoded into plain ints.
+ */
+@SuppressWarnings("SpellCheckingInspection")
+@NoArgsConstructor(access = PRIVATE)
+public final class Bytecodes {
+
+    public static final int NOP = 0;
+
+    // PUSH
+    public static final int ACONST_NULL = 1;
+    public static final int ICONST_M_1 = 2;
+    public static final int ICONST_0 = 3;
+    public static final int ICONST_1 = 4;
+    public static final int ICONST_2 = 5;
+    public static final int ICONST_3 = 6;
+    public static final int ICONST_4 = 7;
+    public static final int ICONST_5 = 8;
+    public static final int LCONST_0 = 9;
+    public static final int LCONST_1 = 10;
+    public static final int FCONST_0 = 11;
+    public static final int FCONST_1 = 12;
+    public static final int FCONST_2 = 13;
+    public static final int DCONST_0 = 14;
+    public static final int DCONST_1 = 15;
+    public static final int BIPUSH = 16;
+    public static final int SIPUSH = 17;
+    public static final int LDC = 18;
+    public static final int LDC_W = 19;
+    public static final int LDC2_W = 20;
+
+    // LOAD
+
+    public static final int ILOAD = 21;
+    public static final int LLOAD = 22;
+    public static final int FLOAD = 23;
+    public static final int DLOAD = 24;
+    public static final int ALOAD = 25;
+    public static final int ILOAD_0 = 26;
+    public static final int ILOAD_1 = 27;
+    public static final int ILOAD_2 = 28;
+    public static final int ILOAD_3 = 29;
+    public static final int LLOAD_0 = 30;
+    public static final int LLOAD_1 = 31;
+    public static final int LLOAD_2 = 32;
+    public static final int LLOAD_3 = 33;
+    public static final int FLOAD_0 = 34;
+    public static final int FLOAD_1 = 35;
+    public static final int FLOAD_2 = 36;
+    public static final int FLOAD_3 = 37;
+    public static final int DLOAD_0 = 38;
+    public static final int DLOAD_1 = 39;
+    public static final int DLOAD_2 = 40;
+    public static final int DLOAD_3 = 41;
+    public static final int ALOAD_0 = 42;
+    public static final int ALOAD_1 = 43;
+    public static final int ALOAD_2 = 44;
+    public static final int ALOAD_3 = 45;
+
+    // ARRAY LOAD
+    public static final int IALOAD = 46;
+    public static final int LALOAD = 47;
+    public static final int FALOAD = 48;
+    public static final int DALOAD = 49;
+    public static final int AALOAD = 50;
+    public static final int BALOAD = 51;
+    public static final int CALOAD = 52;
+    public static final int SALOAD = 53;
+
+    // STORE
+    public static final int ISTORE = 54;
+    public static final int LSTORE = 55;
+    public static final int FSTORE = 56;
+    public static final int DSTORE = 57;
+    public static final int ASTORE = 58;
+    public static final int ISTORE_0 = 59;
+    public static final int ISTORE_1 = 60;
+    public static final int ISTORE_2 = 61;
+    public static final int ISTORE_3 = 62;
+    public static final int LSTORE_0 = 63;
+    public static final int LSTORE_1 = 64;
+    public static final int LSTORE_2 = 65;
+    public static final int LSTORE_3 = 66;
+    public static final int FSTORE_0 = 67;
+    public static final int FSTORE_1 = 68;
+    public static final int FSTORE_2 = 69;
+    public static final int FSTORE_3 = 70;
+    public static final int DSTORE_0 = 71;
+    public static final int DSTORE_1 = 72;
+    public static final int DSTORE_2 = 73;
+    public static final int DSTORE_3 = 74;
+    public static final int ASTORE_0 = 75;
+    public static final int ASTORE_1 = 76;
+    public static final int ASTORE_2 = 77;
+    public static final int ASTORE_3 = 78;
+
+    // ARRAY STORE
+    public static final int IASTORE = 79;
+    public static final int LASTORE = 80;
+    public static final int FASTORE = 81;
+    public static final int DASTORE = 82;
+    public static final int AASTORE = 83;
+    public static final int BASTORE = 84;
+    public static final int CASTORE = 85;
+    public static final int SASTORE = 86;
+
+    // POP
+    public static final int POP = 87;
+    public static final int POP_2 = 88;
+
+    // DUP
+    public static final int DUP = 89;
+    public static final int DUP_X_1 = 90;
+    public static final int DUP_X_2 = 91;
+    public static final int DUP_2 = 92;
+    public static final int DUP_2_X_1 = 93;
+    public static final int DUP_2_X_2 = 94;
+
+    //SWAP
+    public static final int SWAP = 95;
+
+    // ADD
+    public static final int IADD = 96;
+    public static final int LADD = 97;
+    public static final int FADD = 98;
+    public static final int DADD = 99;
+
+    // SUB
+    public static final int ISUB = 100;
+    public static final int LSUB = 101;
+    public static final int FSUB = 102;
+    public static final int DSUB = 103;
+
+    // MUL
+    public static final int IMUL = 104;
+    public static final int LMUL = 105;
+    public static final int FMUL = 106;
+    public static final int DMUL = 107;
+
+    //DIV
+    public static final int IDIV = 108;
+    public static final int LDIV = 109;
+    public static final int FDIV = 110;
+    public static final int DDIV = 111;
+
+    // REM
+    public static final int IREM = 112;
+    public static final int LREM = 113;
+    public static final int FREM = 114;
+    public static final int DREM = 115;
+
+    // NEG
+    public static final int INEG = 116;
+    public static final int LNEG = 117;
+    public static final int FNEG = 118;
+    public static final int DNEG = 119;
+
+    public static final int ISHL = 120;
+    public static final int LSHL = 121;
+    public static final int ISHR = 122;
+    public static final int LSHR = 123;
+    public static final int IUSHR = 124;
+    public static final int LUSHR = 125;
+    public static final int IAND = 126;
+    public static final int LAND = 127;
+    public static final int IOR = 128;
+    public static final int LOR = 129;
+    public static final int IXOR = 130;
+    public static final int LXOR = 131;
+    public static final int IINC = 132;
+
+    // Convert
+    public static final int I_2_L = 133;
+    public static final int I_2_F = 134;
+    public static final int I_2_D = 135;
+    public static final int L_2_I = 136;
+    public static final int L_2_F = 137;
+    public static final int L_2_D = 138;
+    public static final int F_2_I = 139;
+    public static final int F_2_L = 140;
+    public static final int F_2_D = 141;
+    public static final int D_2_I = 142;
+    public static final int D_2_L = 143;
+    public static final int D_2_F = 144;
+    public static final int I_2_B = 145;
+    public static final int I_2_C = 146;
+    public static final int I_2_S = 147;
+
+    // Compare
+    public static final int LCMP = 148;
+    public static final int FCMPL = 149;
+    public static final int FCMPG = 150;
+    public static final int DCMPL = 151;
+    public static final int DCMPG = 152;
+
+    // BRANCH
+    public static final int IFEQ = 153;
+    public static final int IFNE = 154;
+    public static final int IFLT = 155;
+    public static final int IFGE = 156;
+    public static final int IFGT = 157;
+    public static final int IFLE = 158;
+    public static final int IF_ICMPEQ = 159;
+    public static final int IF_ICMPNE = 160;
+    public static final int IF_ICMPLT = 161;
+    public static final int IF_ICMPGE = 162;
+    public static final int IF_ICMPGT = 163;
+    public static final int IF_ICMPLE = 164;
+    public static final int IF_ACMPEQ = 165;
+    public static final int IF_ACMPNE = 166;
+
+    // JUMP
+    public static final int GOTO = 167;
+    public static final int JSR = 168;
+    public static final int RET = 169;
+    public static final int TABLESWITCH = 170;
+
+    public static final int LOOKUPSWITCH = 171;
+
+    //RETURN
+    public static final int IRETURN = 172;
+    public static final int LRETURN = 173;
+    public static final int FRETURN = 174;
+    public static final int DRETURN = 175;
+    public static final int ARETURN = 176;
+    public static final int RETURN = 177;
+
+    // FIELDS
+    public static final int GETSTATIC = 178;
+    public static final int PUTSTATIC = 179;
+    public static final int GETFIELD = 180;
+    public static final int PUTFIELD = 181;
+
+    // INVOKE
+    public static final int INVOKEVIRTUAL = 182;
+    public static final int INVOKESPECIAL = 183;
+    public static final int INVOKESTATIC = 184;
+    public static final int INVOKEINTERFACE = 185;
+    public static final int INVOKEDYNAMIC = 186;
+
+    // NEW
+    public static final int NEW = 187;
+    public static final int NEWARRAY = 188;
+    public static final int ANEWARRAY = 189;
+
+    // ARRAY
+    public static final int ARRAYLENGTH = 190;
+
+    // THROW
+    public static final int ATHROW = 191;
+
+    // CHECK TYPES
+    public static final int CHECKCAST = 192;
+    public static final int INSTANCEOF = 193;
+
+    // MONITORS
+    public static final int MONITORENTER = 194;
+    public static final int MONITOREXIT = 195;
+
+    public static final int WIDE = 196;
+
+    // MULTY ARRAY
+    public static final int MULTIANEWARRAY = 197;
+
+    public static final int GOTO_W = 200;
+    public static final int IFNONNULL = 199;
+    public static final int IFNULL = 198;
+    public static final int JSR_W = 201;
+    public static final int RESERVED_DEBUG = 202;
+    public static final int RESERVED_IMPDEP_1 = 254;
+    public static final int RESERVED_IMPDEP_2 = 255;
+
+    // QUICKENED. Internal opcodes never found in class files, an instruction is rewritten into one of them
+    // once its constant pool reference is resolved.
+    /**
+     * {@code [op, offset, access]}: field offset within the object payload and the {@linkplain #fieldAccess access}
+     * of the site.
+     */
+    public static final int GETFIELD_QUICK = 203;
+    public static final int PUTFIELD_QUICK = 204;
+    /**
+     * {@code [op, address low, address high, access]}: absolute address of the static field.
+     */
+    public static final int GETSTATIC_QUICK = 205;
+    public static final int PUTSTATIC_QUICK = 206;
+    /**
+     * {@code [op, cp]}: the target is bound in the inline cache of the call site.
+     */
+    public static final int INVOKESTATIC_QUICK = 207;
+    public static final int INVOKESPECIAL_QUICK = 208;
+    /**
+     * {@code [op, cp, slot]}: the inline cache of the call site is already created, the method is selected from the
+     * vtable of the receiver class, a negative slot stands for a method selected by its signature.
+     */
+    public static final int INVOKEVIRTUAL_QUICK = 209;
+
+    // FUSED. Superinstructions replacing the opcode of the first instruction of a sequence, the rest of the
+    // sequence stays in the stream, see Superinstructions.
+    /**
+     * {@code ILOAD a, ILOAD b, IADD, ISTORE c}
+     */
+    public static final int ILOAD_ILOAD_IADD_ISTORE = 210;
+    /**
+     * {@code ALOAD a, GETFIELD} or {@code ALOAD a, GETFIELD_QUICK}
+     */
+    public static final int ALOAD_GETFIELD = 211;
+    /**
+     * {@code ILOAD a, IF_ICMPxx}
+     */
+    public static final int ILOAD_IF_ICMP = 212;
+
+    /**
+     * {@code [op, cp, interface id, slot]}: the method is selected from the itable of the receiver class, an
+     * interface id of {@code 0} stands for a method of {@code java/lang/Object} selected from the vtable.
+     */
+    public static final int INVOKEINTERFACE_QUICK = 213;
+    /**
+     * {@code [op, cp]}: the call site is linked, its target is kept in the {@link MethodDesc} of the caller.
+     */
+    public static final int INVOKEDYNAMIC_QUICK = 214;
+
+    private static final String[] INTERNAL_NAMES = {
+            "GETFIELD_QUICK", "PUTFIELD_QUICK", "GETSTATIC_QUICK", "PUTSTATIC_QUICK",
+            "INVOKESTATIC_QUICK", "INVOKESPECIAL_QUICK", "INVOKEVIRTUAL_QUICK",
+            "ILOAD_ILOAD_IADD_ISTORE", "ALOAD_GETFIELD", "ILOAD_IF_ICMP",
+            "INVOKEINTERFACE_QUICK", "INVOKEDYNAMIC_QUICK"
+    };
+
+    private static final VarHandle CODE = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final int[] LENGTHS = new int[256];
+    private static final Jtype.Primitive[] PRIMITIVES = Jtype.Primitive.values();
+    private static final AccessMode[] ACCESS_MODES = AccessMode.values();
+
+    static {
+        Arrays.fill(LENGTHS, 1);
+
+        for (int op : new int[]{
+                BIPUSH, SIPUSH, LDC, LDC_W, LDC2_W,
+                ILOAD, LLOAD, FLOAD, DLOAD, ALOAD,
+                ISTORE, LSTORE, FSTORE, DSTORE, ASTORE,
+                IFEQ, IFNE, IFLT, IFGE, IFGT, IFLE,
+                IF_ICMPEQ, IF_ICMPNE, IF_ICMPLT, IF_ICMPGE, IF_ICMPGT, IF_ICMPLE, IF_ACMPEQ, IF_ACMPNE,
+                IFNULL, IFNONNULL, GOTO, GOTO_W, JSR, JSR_W, RET,
+                INVOKESPECIAL, INVOKESTATIC, INVOKEDYNAMIC,
+                INVOKESTATIC_QUICK, INVOKESPECIAL_QUICK, INVOKEDYNAMIC_QUICK,
+                ILOAD_ILOAD_IADD_ISTORE, ALOAD_GETFIELD, ILOAD_IF_ICMP,
+                NEW, NEWARRAY, ANEWARRAY
+        }) {
+            LENGTHS[op] = 2;
+        }
+
+        // field instructions reserve room for their quickened operands
+        for (int op : new int[]{
+                GETSTATIC, PUTSTATIC, GETFIELD, PUTFIELD,
+                GETFIELD_QUICK, PUTFIELD_QUICK, GETSTATIC_QUICK, PUTSTATIC_QUICK
+        }) {
+            LENGTHS[op] = 4;
+        }
+
+        // virtual calls reserve room for the slot of the method, interface calls for the interface id too
+        LENGTHS[INVOKEVIRTUAL] = 3;
+        LENGTHS[INVOKEVIRTUAL_QUICK] = 3;
+        LENGTHS[INVOKEINTERFACE] = 4;
+        LENGTHS[INVOKEINTERFACE_QUICK] = 4;
+
+        // type checks cache the class id of the last successful check
+        LENGTHS[CHECKCAST] = 3;
+        LENGTHS[INSTANCEOF] = 3;
+
+        LENGTHS[IINC] = 3;
+        LENGTHS[MULTIANEWARRAY] = 3;
+    }
+
+    /**
+     * The access operand of a quickened field instruction: ordinal of the {@link Jtype.Primitive} of the field in
+     * the low byte, ordinal of the {@link AccessMode} the site uses above it.
+     */
+    public static int fieldAccess(Jtype.Primitive type, AccessMode mode) {
+        return type.ordinal() | mode.ordinal() << 8;
+    }
+
+    public static Jtype.Primitive accessType(int access) {
+        return PRIMITIVES[access & 0xFF];
+    }
+
+    public static AccessMode accessMode(int access) {
+        return ACCESS_MODES[access >>> 8];
+    }
+
+    /**
+     * Reads the opcode at the index of the stream with acquire semantics. It pairs with the release store which
+     * quickens an instruction after its operands, so the operands read afterwards are never older than the opcode.
+     */
+    public static int opcode(int[] code, int ip) {
+        return (int) CODE.getAcquire(code, ip);
+    }
+
+    /**
+     * @return number of stream ints occupied by an instruction with the given opcode, switches excluded
+     */
+    public static int length(int op) {
+        return LENGTHS[op];
+    }
+
+    /**
+     * Length of the instruction at the index of the stream. Unlike {@link #length(int)} it knows switches, whose
+     * length depends on their jump tables: {@code [op, default, low, high, targets...]} for {@code TABLESWITCH}
+     * and {@code [op, default, npairs, key, target...]} for {@code LOOKUPSWITCH}.
+     */
+    public static int length(int[] code, int ip) {
+        return switch (code[ip]) {
+            case TABLESWITCH -> 4 + code[ip + 3] - code[ip + 2] + 1;
+            case LOOKUPSWITCH -> 3 + 2 * code[ip + 2];
+            default -> LENGTHS[code[ip]];
+        };
+    }
+
+    /**
+     * Length of the whole sequence covered by the superinstruction at the index of the stream.
+     */
+    public static int fusedLength(int[] code, int ip) {
+        return switch (code[ip]) {
+            case ILOAD_ILOAD_IADD_ISTORE -> 7;
+            case ALOAD_GETFIELD -> 2 + LENGTHS[GETFIELD];
+            case ILOAD_IF_ICMP -> 4;
+            default -> throw new IllegalArgumentException("%s is not a superinstruction".formatted(name(code[ip])));
+        };
+    }
+
+    /**
+     * @return the opcode a superinstruction replaced, any other opcode is returned as is
+     */
+    public static int unfused(int op) {
+        return switch (op) {
+            case ILOAD_ILOAD_IADD_ISTORE, ILOAD_IF_ICMP -> ILOAD;
+            case ALOAD_GETFIELD -> ALOAD;
+            default -> op;
+        };
+    }
+
+    public static boolean isBranch(int op) {
+        return (op >= IFEQ && op <= JSR) || op == IFNULL || op == IFNONNULL || op == GOTO_W || op == JSR_W;
+    }
+
+    public static String name(int op) {
+        if (op >= GETFIELD_QUICK && op < GETFIELD_QUICK + INTERNAL_NAMES.length) {
+            return INTERNAL_NAMES[op - GETFIELD_QUICK];
+        }
+        try {
+            return OpCode.byCode(op).name();
+        } catch (IllegalArgumentException e) {
+            return "UNKNOWN_" + op;
+        }
+    }
+}
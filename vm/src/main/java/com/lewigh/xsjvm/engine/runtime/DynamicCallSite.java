@@ -0,0 +1,33 @@
+package com.lewigh.xsjvm.engine.runtime;
+
+import lombok.NonNull;
+
+/**
+ * Target an {@code invokedynamic} call site is linked to. A call site is linked once, on its first execution, and
+ * is kept in the {@link MethodDesc} of the caller under the index of the instruction.
+ */
+public interface DynamicCallSite {
+
+    /**
+     * Type of the call site: the values it pops and the value it pushes.
+     */
+    @NonNull
+    MethodDescriptor type();
+
+    /**
+     * @param args arguments of the call as raw slot bits in the order they were pushed
+     * @return the result as raw slot bits, {@code 0} for a {@code void} call site
+     */
+    long invoke(long[] args);
+
+    /**
+     * Call site which always returns the same value, compiled code pushes the value without calling the site.
+     */
+    record Constant(@NonNull MethodDescriptor type, long value) implements DynamicCallSite {
+
+        @Override
+        public long invoke(long[] args) {
+            return value;
+        }
+    }
+}
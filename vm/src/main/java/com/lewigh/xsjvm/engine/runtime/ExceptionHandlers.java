@@ -0,0 +1,114 @@
+package com.lewigh.xsjvm.engine.runtime;
+
+import com.lewigh.xsjvm.classloader.reader.info.attribute.ExceptionTable;
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Exception handlers of a method, computed when the method is decoded.
+ * <p>
+ * Handlers keep the order of the exception table. For every index of the code stream the candidates are the
+ * handlers whose range covers the index, in that order, so finding the handler of a throw is a walk over a short
+ * array without any range checks. Indexes covered by the same handlers share one array. The catch type of a handler
+ * is resolved to its class the first time the handler is tried.
+ */
+public final class ExceptionHandlers {
+
+    public static final ExceptionHandlers NONE = new ExceptionHandlers(new int[0], new int[0], new int[0][]);
+
+    /**
+     * Catch type of a handler which catches any exception, e.g. the handler of a {@code finally} block.
+     */
+    public static final int ANY = 0;
+
+    private static final int[] NO_CANDIDATES = new int[0];
+
+    private final int[] handlerIps;
+    /**
+     * Constant pool index of the caught class or {@link #ANY}.
+     */
+    private final int[] catchTypes;
+    private final KlassDesc[] catchClasses;
+    private final int[][] candidates;
+
+    private ExceptionHandlers(int[] handlerIps, int[] catchTypes, int[][] candidates) {
+        this.handlerIps = handlerIps;
+        this.catchTypes = catchTypes;
+        this.catchClasses = new KlassDesc[handlerIps.length];
+        this.candidates = candidates;
+    }
+
+    /**
+     * @param indexOf maps a pc of the bytecode to the index of the code stream
+     */
+    public static ExceptionHandlers of(@NonNull ExceptionTable[] table, @NonNull IntUnaryOperator indexOf, int codeLength) {
+        if (table.length == 0) {
+            return NONE;
+        }
+
+        int[] handlerIps = new int[table.length];
+        int[] catchTypes = new int[table.length];
+        int[] starts = new int[table.length];
+        int[] ends = new int[table.length];
+
+        for (int i = 0; i < table.length; i++) {
+            starts[i] = indexOf.applyAsInt(table[i].start_pc() & 0xFFFF);
+            ends[i] = indexOf.applyAsInt(table[i].end_pc() & 0xFFFF);
+            handlerIps[i] = indexOf.applyAsInt(table[i].handler_pc() & 0xFFFF);
+            catchTypes[i] = table[i].catch_type() & 0xFFFF;
+        }
+
+        int[][] candidates = new int[codeLength][];
+        int[] previous = NO_CANDIDATES;
+
+        for (int ip = 0; ip < codeLength; ip++) {
+            int[] covering = new int[table.length];
+            int count = 0;
+            for (int i = 0; i < table.length; i++) {
+                if (ip >= starts[i] && ip < ends[i]) {
+                    covering[count++] = i;
+                }
+            }
+            covering = Arrays.copyOf(covering, count);
+
+            if (!Arrays.equals(covering, previous)) {
+                previous = covering;
+            }
+            candidates[ip] = previous;
+        }
+
+        return new ExceptionHandlers(handlerIps, catchTypes, candidates);
+    }
+
+    /**
+     * Handlers whose range covers the index of the code stream, innermost first.
+     */
+    public int[] candidatesAt(int ip) {
+        return ip >= 0 && ip < candidates.length ? candidates[ip] : NO_CANDIDATES;
+    }
+
+    public int handlerIp(int handler) {
+        return handlerIps[handler];
+    }
+
+    public int catchType(int handler) {
+        return catchTypes[handler];
+    }
+
+    /**
+     * @return the resolved class caught by the handler, {@code null} while the catch type is not resolved
+     */
+    public KlassDesc catchClass(int handler) {
+        return catchClasses[handler];
+    }
+
+    public void resolveCatchClass(int handler, @NonNull KlassDesc klass) {
+        catchClasses[handler] = klass;
+    }
+
+    public boolean isEmpty() {
+        return handlerIps.length == 0;
+    }
+}
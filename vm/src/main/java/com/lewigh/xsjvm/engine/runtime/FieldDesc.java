@@ -1,5 +1,7 @@
 package com.lewigh.xsjvm.engine.runtime;
 
+import com.lewigh.xsjvm.mem.AccessMode;
+
 public record FieldDesc(
         String name,
         Jtype type,
@@ -12,4 +14,11 @@ public record FieldDesc(
         boolean accEnum,
         long offset
 ) {
+
+    /**
+     * @return ordering of the accesses to the field, volatile fields are sequentially consistent
+     */
+    public AccessMode accessMode() {
+        return accVolatile ? AccessMode.VOLATILE : AccessMode.PLAIN;
+    }
 }
@@ -0,0 +1,55 @@
+package com.lewigh.xsjvm.engine.runtime;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Host signal of an exception the virtual machine throws on its own: a null dereference, an array index out of
+ * bounds, a failed cast, a negative array size, an integer division by zero, an array copy or a clone the
+ * arguments do not allow, a monitor operation of a thread which does not own the monitor, or a call of a native
+ * method without an implementation. The engine throws the matching guest exception at the instruction which raised
+ * the signal.
+ * <p>
+ * There is one shared signal of every kind, it builds no stack trace and no message.
+ */
+@Getter
+public final class ImplicitException extends RuntimeException {
+
+    @Getter
+    @RequiredArgsConstructor
+    public enum Kind {
+        NULL_POINTER("java/lang/NullPointerException"),
+        ARRAY_INDEX_OUT_OF_BOUNDS("java/lang/ArrayIndexOutOfBoundsException"),
+        CLASS_CAST("java/lang/ClassCastException"),
+        NEGATIVE_ARRAY_SIZE("java/lang/NegativeArraySizeException"),
+        ARITHMETIC("java/lang/ArithmeticException"),
+        ARRAY_STORE("java/lang/ArrayStoreException"),
+        CLONE_NOT_SUPPORTED("java/lang/CloneNotSupportedException"),
+        ILLEGAL_MONITOR_STATE("java/lang/IllegalMonitorStateException"),
+        UNSATISFIED_LINK("java/lang/UnsatisfiedLinkError");
+
+        /**
+         * Guest class of the thrown exception.
+         */
+        private final String className;
+    }
+
+    private static final ImplicitException[] SIGNALS = new ImplicitException[Kind.values().length];
+
+    static {
+        for (Kind kind : Kind.values()) {
+            SIGNALS[kind.ordinal()] = new ImplicitException(kind);
+        }
+    }
+
+    private final Kind kind;
+
+    private ImplicitException(Kind kind) {
+        super(null, null, false, false);
+        this.kind = kind;
+    }
+
+    public static ImplicitException of(Kind kind) {
+        return SIGNALS[kind.ordinal()];
+    }
+}
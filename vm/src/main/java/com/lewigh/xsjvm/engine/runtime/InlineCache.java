@@ -0,0 +1,176 @@
+package com.lewigh.xsjvm.engine.runtime;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Inline cache of a single {@code invokevirtual} or {@code invokeinterface} call site.
+ * Quickened {@code invokestatic} and {@code invokespecial} sites keep their resolved target here as well, see
+ * {@link #bound(Target)}.
+ * <p>
+ * The cache maps the class id of the receiver to the selected implementation. It starts empty, becomes monomorphic
+ * after the first call, polymorphic after the second receiver class and megamorphic once more than
+ * {@link #POLYMORPHIC_LIMIT} receiver classes have been seen. A megamorphic site keeps the entries it already has but
+ * stops learning, calls with any other receiver class go through the full method selection.
+ * <p>
+ * Lookups take no lock: an entry is complete before the size which makes it visible is published. Updates are
+ * serialized, the hit and miss counters are not and may miss a count.
+ */
+public final class InlineCache {
+
+    public static final int POLYMORPHIC_LIMIT = 4;
+
+    public enum State {
+        UNINITIALIZED,
+        MONOMORPHIC,
+        POLYMORPHIC,
+        MEGAMORPHIC
+    }
+
+    public record Target(@NonNull KlassDesc klass, @NonNull MethodDesc method) {
+    }
+
+    /**
+     * Method name followed by its descriptor, the key of {@link KlassDesc#methods()}.
+     */
+    @Getter
+    private final String signature;
+    /**
+     * Number of arguments of the call without the receiver, i.e. the depth of the receiver in the operand stack.
+     */
+    @Getter
+    private final int argumentsCount;
+    /**
+     * Target of a call which needs no selection: static and special calls or calls of private and final methods.
+     */
+    @Getter
+    private final Target bound;
+
+    private final int[] classIds = new int[POLYMORPHIC_LIMIT];
+    private final Target[] targets = new Target[POLYMORPHIC_LIMIT];
+    private volatile int size;
+    private boolean megamorphic;
+
+    @Getter
+    private long hits;
+    @Getter
+    private long misses;
+
+    public InlineCache(@NonNull String signature, int argumentsCount, Target bound) {
+        this.signature = signature;
+        this.argumentsCount = argumentsCount;
+        this.bound = bound;
+    }
+
+    /**
+     * Cache of a call site whose target is known once resolved.
+     */
+    public static InlineCache bound(@NonNull Target target) {
+        MethodDesc method = target.method();
+        return new InlineCache(method.name(), method.descriptor().paarameterTypes().length, target);
+    }
+
+    /**
+     * Selects the implementation of the method for a receiver of the given class, used on a cache miss.
+     */
+    public static Target select(@NonNull KlassDesc receiverKlass, @NonNull String signature) {
+        KlassDesc owner = receiverKlass.selectMethodOwner(signature);
+
+        if (owner == null) {
+            throw new IllegalStateException("Method %s is not implemented by %s".formatted(signature, receiverKlass.name()));
+        }
+
+        return new Target(owner, owner.methods().get(signature));
+    }
+
+    /**
+     * Selects the implementation of a virtual method for a receiver of the given class through its vtable, a
+     * method without a slot is selected by the signature.
+     */
+    public static Target select(@NonNull KlassDesc receiverKlass, int slot, @NonNull String signature) {
+        if (slot == MethodDesc.NO_SLOT) {
+            return select(receiverKlass, signature);
+        }
+        return receiverKlass.vtable()[slot];
+    }
+
+    /**
+     * Selects the implementation of an interface method for a receiver of the given class through its itable, see
+     * {@link Bytecodes#INVOKEINTERFACE_QUICK} for the operands.
+     */
+    public static Target select(@NonNull KlassDesc receiverKlass, int interfaceId, int slot, @NonNull String signature) {
+        if (interfaceId == 0 || slot == MethodDesc.NO_SLOT) {
+            return select(receiverKlass, slot, signature);
+        }
+
+        Target target = receiverKlass.itable().select(interfaceId, slot);
+
+        if (target == null) {
+            throw new IllegalStateException("Method %s is not implemented by %s".formatted(signature, receiverKlass.name()));
+        }
+
+        return target;
+    }
+
+    /**
+     * Returns the cached target for the receiver class or {@code null} on a miss.
+     */
+    public Target lookup(int classId) {
+        if (bound != null) {
+            hits++;
+            return bound;
+        }
+        int entries = size;
+        for (int i = 0; i < entries; i++) {
+            if (classIds[i] == classId) {
+                hits++;
+                return targets[i];
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Remembers the target selected for the receiver class after a miss.
+     */
+    public synchronized void update(int classId, @NonNull Target target) {
+        if (megamorphic) {
+            return;
+        }
+        int entries = size;
+        for (int i = 0; i < entries; i++) {
+            if (classIds[i] == classId) {
+                // another thread has missed with the same class
+                return;
+            }
+        }
+        if (entries == POLYMORPHIC_LIMIT) {
+            megamorphic = true;
+            return;
+        }
+        classIds[entries] = classId;
+        targets[entries] = target;
+        size = entries + 1;
+    }
+
+    public synchronized State state() {
+        if (megamorphic) {
+            return State.MEGAMORPHIC;
+        }
+        if (bound != null || size == 1) {
+            return State.MONOMORPHIC;
+        }
+        return size == 0 ? State.UNINITIALIZED : State.POLYMORPHIC;
+    }
+
+    @Override
+    public String toString() {
+        return "InlineCache{" +
+                "signature='" + signature + '\'' +
+                ", state=" + state() +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                '}';
+    }
+}
@@ -0,0 +1,77 @@
+package com.lewigh.xsjvm.engine.runtime;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Interface method table of a class, built when the class is linked.
+ * <p>
+ * Methods of an interface are numbered by {@link MethodDesc#slot()}. For every interface the class implements,
+ * directly or through its superclasses and superinterfaces, the table keeps the implementations selected for the
+ * class in slot order, so an interface call is dispatched by the id of the interface and the slot of the method.
+ */
+public final class Itable {
+
+    public static final Itable EMPTY = new Itable(new int[0], new InlineCache.Target[0][]);
+
+    /**
+     * Sorted ids of the implemented interfaces.
+     */
+    private final int[] interfaceIds;
+    /**
+     * Implementations for the interface at the same index, {@code null} for a method the class does not implement.
+     */
+    private final InlineCache.Target[][] targets;
+
+    private Itable(int[] interfaceIds, InlineCache.Target[][] targets) {
+        this.interfaceIds = interfaceIds;
+        this.targets = targets;
+    }
+
+    public static Itable of(@NonNull KlassDesc klass, @NonNull IntFunction<KlassDesc> classById) {
+        if (klass.isInterface()) {
+            return EMPTY;
+        }
+
+        int[] interfaceIds = klass.supertypes().secondary();
+        var targets = new InlineCache.Target[interfaceIds.length][];
+
+        for (int i = 0; i < interfaceIds.length; i++) {
+            KlassDesc iface = classById.apply(interfaceIds[i]);
+            targets[i] = new InlineCache.Target[slotsCount(iface)];
+
+            for (Map.Entry<String, MethodDesc> entry : iface.methods().entrySet()) {
+                int slot = entry.getValue().slot();
+                if (slot == MethodDesc.NO_SLOT) {
+                    continue;
+                }
+
+                KlassDesc owner = klass.selectMethodOwner(entry.getKey());
+                if (owner != null) {
+                    targets[i][slot] = new InlineCache.Target(owner, owner.methods().get(entry.getKey()));
+                }
+            }
+        }
+
+        return new Itable(interfaceIds, targets);
+    }
+
+    private static int slotsCount(KlassDesc iface) {
+        return iface.methods().values().stream()
+                .mapToInt(MethodDesc::slot)
+                .max()
+                .orElse(MethodDesc.NO_SLOT) + 1;
+    }
+
+    /**
+     * @return the implementation of the interface method or {@code null} if the class does not implement it
+     */
+    public InlineCache.Target select(int interfaceId, int slot) {
+        int index = Arrays.binarySearch(interfaceIds, interfaceId);
+
+        return index >= 0 ? targets[index][slot] : null;
+    }
+}
@@ -48,7 +48,7 @@ public sealed interface Jtype {
         DOUBLE('D', Size.B8, Size.B8),
         REFERENCE('L', Size.B8, Size.B8),
         VOID('V', Size.ZERO, Size.ZERO),
-        ARRAY('[', Size.UNKNOWN, Size.UNKNOWN);
+        ARRAY('[', Size.B8, Size.B8);
 
         private final char code;
         private final Size size;
@@ -1,16 +1,17 @@
 package com.lewigh.xsjvm.engine.runtime;
 
 import com.lewigh.xsjvm.classloader.reader.flag.ClassAccessFlag;
+import com.lewigh.xsjvm.classloader.reader.info.attribute.BootstrapMethodsAttribute;
 import com.lewigh.xsjvm.classloader.reader.pool.ConstantPool;
 import com.lewigh.xsjvm.engine.InvokeType;
 
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Stream;
+import java.util.function.Predicate;
 
 import static com.lewigh.xsjvm.SymbolTable.CLINIT_METH_FULL_NAME;
-import static com.lewigh.xsjvm.classloader.reader.flag.ClassAccessFlag.ACC_INTERFACE;
 
 public record KlassDesc(
         int id,
@@ -20,23 +21,96 @@ public record KlassDesc(
         KlassDesc[] interfaces,
         FieldDescGroup fieldGroup,
         Map<String, MethodDesc> methods,
-        Map<String, MethodDesc> vtable,
         ConstantPool constantPool,
+        BootstrapMethodsAttribute.BootstrapMethod[] bootstrapMethods,
+        Supertypes supertypes,
         State state
 ) {
 
     public static class State {
-        private boolean init;
+        private volatile boolean init;
+        /**
+         * Whether the initializer completed abruptly, the class is never initialized then.
+         */
+        private volatile boolean erroneous;
+        /**
+         * Host thread running the initializer, {@code null} unless the class is being initialized.
+         */
+        private Thread initializingThread;
         private long staticAddress;
+        private InlineCache.Target[] vtable = new InlineCache.Target[0];
+        private Itable itable = Itable.EMPTY;
+        private volatile long mirror;
     }
 
 
+    /**
+     * Whether the initialization of the class has completed. A class whose initializer is still running is not
+     * initialized yet, not even for the thread running it.
+     */
     public boolean isInit() {
         return state.init;
     }
 
-    public void setInit(boolean n) {
-        state.init = n;
+    /**
+     * Whether the initializer of the class completed abruptly, see {@link #failInitialization()}.
+     */
+    public boolean isErroneous() {
+        return state.erroneous;
+    }
+
+    /**
+     * Claims the initialization of the class for the current thread. If another thread is initializing the class,
+     * waits until it is done.
+     *
+     * @return whether the current thread has to run the initialization and {@link #finishInitialization()} or
+     * {@link #failInitialization()} it, {@code false} if the class is initialized or erroneous or the current thread
+     * is initializing it already
+     */
+    public boolean beginInitialization() {
+        synchronized (state) {
+            Thread current = Thread.currentThread();
+            boolean interrupted = false;
+
+            while (state.initializingThread != null && state.initializingThread != current) {
+                try {
+                    state.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                current.interrupt();
+            }
+
+            if (state.init || state.erroneous || state.initializingThread == current) {
+                return false;
+            }
+            state.initializingThread = current;
+            return true;
+        }
+    }
+
+    /**
+     * Marks the class initialized and wakes the threads waiting for it.
+     */
+    public void finishInitialization() {
+        synchronized (state) {
+            state.init = true;
+            state.initializingThread = null;
+            state.notifyAll();
+        }
+    }
+
+    /**
+     * Marks the class erroneous, as its initializer completed abruptly, and wakes the threads waiting for it.
+     */
+    public void failInitialization() {
+        synchronized (state) {
+            state.erroneous = true;
+            state.initializingThread = null;
+            state.notifyAll();
+        }
     }
 
     public void setStaticAddress(long address) {
@@ -47,6 +121,37 @@ public record KlassDesc(
         return state.staticAddress;
     }
 
+    /**
+     * Implementations of the virtual methods of the class indexed by {@link MethodDesc#slot()}, the layout of the
+     * superclass vtable is a prefix of it.
+     */
+    public InlineCache.Target[] vtable() {
+        return state.vtable;
+    }
+
+    public void setVtable(InlineCache.Target[] vtable) {
+        state.vtable = vtable;
+    }
+
+    /**
+     * Reference to the {@code java/lang/Class} instance of the class, {@code 0} until it is created.
+     */
+    public long mirror() {
+        return state.mirror;
+    }
+
+    public void setMirror(long mirror) {
+        state.mirror = mirror;
+    }
+
+    public Itable itable() {
+        return state.itable;
+    }
+
+    public void setItable(Itable itable) {
+        state.itable = itable;
+    }
+
     public MethodDesc getClinit() {
         return methods().get(CLINIT_METH_FULL_NAME);
     }
@@ -65,16 +170,72 @@ public record KlassDesc(
                 yield methodMeta;
             }
             case VIRTUAL -> {
-                var methodMeta = vtable.get(signature);
+                var owner = selectMethodOwner(signature);
+                var methodMeta = owner != null ? owner.methods.get(signature) : null;
                 checkAccess(name, methodMeta, invokeType);
                 yield methodMeta;
             }
             case INTERFACE -> {
-                yield null;
+                var methodMeta = methods.get(signature);
+                checkAccess(name, methodMeta, invokeType);
+                yield methodMeta;
             }
         };
     }
 
+    /**
+     * Selects the implementation of an instance method invoked on a receiver of this class: the superclass chain
+     * is searched first, then superinterfaces for a default method.
+     *
+     * @return the class declaring the selected method or {@code null} if there is no implementation
+     */
+    public KlassDesc selectMethodOwner(String signature) {
+        return findInHierarchy(klass -> {
+            var method = klass.methods.get(signature);
+            return method != null && !method.fStatic() && !method.fAbstract() && (!klass.isInterface() || method.access() != Access.PRIVATE);
+        });
+    }
+
+    /**
+     * Resolves a method referenced through this class: the class itself and its superclasses are searched first,
+     * then superinterfaces.
+     *
+     * @return the class declaring the method or {@code null} if there is no such method
+     */
+    public KlassDesc findMethodOwner(String signature) {
+        return findInHierarchy(klass -> klass.methods.containsKey(signature));
+    }
+
+    /**
+     * Resolves a field referenced through this class, the lookup order is the same as for methods.
+     *
+     * @return the class declaring the field or {@code null} if there is no such field
+     */
+    public KlassDesc findFieldOwner(String fieldName) {
+        return findInHierarchy(klass -> klass.fieldGroup.fields().containsKey(klass.name + "." + fieldName));
+    }
+
+    private KlassDesc findInHierarchy(Predicate<KlassDesc> declares) {
+        for (var klass = this; klass != null; klass = klass.superKlass) {
+            if (declares.test(klass)) {
+                return klass;
+            }
+        }
+
+        var pending = new ArrayDeque<KlassDesc>();
+        for (var klass = this; klass != null; klass = klass.superKlass) {
+            pending.addAll(Arrays.asList(klass.interfaces));
+        }
+        while (!pending.isEmpty()) {
+            var iface = pending.poll();
+            if (declares.test(iface)) {
+                return iface;
+            }
+            pending.addAll(Arrays.asList(iface.interfaces));
+        }
+        return null;
+    }
+
     private void checkAccess(String name, MethodDesc methodMeta, InvokeType invokeType) {
         if (methodMeta == null) {
             throw new IllegalArgumentException("Method %s is not found".formatted(name));
@@ -85,8 +246,14 @@ public record KlassDesc(
     }
 
     public boolean isInterface() {
-        return Stream.of(this.accessFlags)
-                .anyMatch(af -> af == ACC_INTERFACE);
+        return supertypes.isInterface();
+    }
+
+    /**
+     * Whether instances of this class are instances of the given class or interface too.
+     */
+    public boolean isSubtypeOf(KlassDesc klass) {
+        return supertypes.contains(klass);
     }
 
     @Override
@@ -100,13 +267,12 @@ public record KlassDesc(
                 && Arrays.equals(interfaces, klass.interfaces)
                 && Objects.equals(fieldGroup, klass.fieldGroup)
                 && Objects.equals(methods, klass.methods)
-                && Objects.equals(vtable, klass.vtable)
                 && Objects.equals(constantPool, klass.constantPool);
     }
 
     @Override
     public int hashCode() {
-        int result = Objects.hash(name, superKlass, fieldGroup, methods, vtable, constantPool);
+        int result = Objects.hash(name, superKlass, fieldGroup, methods, constantPool);
         result = 31 * result + Arrays.hashCode(accessFlags);
         result = 31 * result + Arrays.hashCode(interfaces);
         return result;
@@ -121,7 +287,6 @@ public record KlassDesc(
                 ", interfaces=" + Arrays.toString(interfaces) +
                 ", fieldGroup=" + fieldGroup +
                 ", methods=" + methods +
-                ", vtable=" + vtable +
                 ", constantPool=" + constantPool +
                 '}';
     }
@@ -1,9 +1,9 @@
 package com.lewigh.xsjvm.engine.runtime;
 
-import com.lewigh.xsjvm.classloader.reader.info.attribute.ExceptionTable;
-import com.lewigh.xsjvm.classloader.reader.info.attribute.Instruction;
+import com.lewigh.xsjvm.engine.jit.CompiledCode;
 import lombok.NonNull;
 
+import java.lang.invoke.MethodHandle;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.Objects;
@@ -21,26 +21,175 @@ public record MethodDesc(
         boolean fBridge,
         boolean fSyntetic,
         boolean fStrict,
+        int slot,
         short maxStack,
         short maxLocals,
-        @NonNull Instruction[] instructions,
-        @NonNull ExceptionTable[] exceptionTable,
-        Map<Short, Short> lineNumberMapping
+        @NonNull int[] code,
+        @NonNull ExceptionHandlers exceptionHandlers,
+        Map<Integer, Integer> lineNumberMapping,
+        @NonNull InlineCache[] inlineCaches,
+        @NonNull State state
 ) {
 
+    /**
+     * Slot of a method which is not dispatched by a table.
+     */
+    public static final int NO_SLOT = -1;
+
+    /**
+     * Profile and linkage of the method, shared by the guest threads running it. Counters are updated without
+     * synchronization and may miss a count, lazily created tables are created under the lock of the state.
+     */
+    public static class State {
+        private int invocations;
+        private int failedCompilations;
+        private volatile CompiledCode compiledCode;
+        /**
+         * Taken backward branches and code entered on stack replacement, both indexed by the loop header.
+         */
+        private int[] backedges;
+        private volatile CompiledCode[] osrCode;
+        /**
+         * Implicit exceptions thrown, indexed by the throwing instruction.
+         */
+        private int[] implicitThrows;
+        private MethodHandle nativeCode;
+        /**
+         * Linked {@code invokedynamic} call sites, indexed by the instruction.
+         */
+        private volatile DynamicCallSite[] callSites;
+    }
+
+    /**
+     * Inline cache of the call site at the index of the code stream, created on the first call.
+     */
+    public InlineCache inlineCache(int ip) {
+        return inlineCaches[ip];
+    }
+
+    public void setInlineCache(int ip, InlineCache cache) {
+        inlineCaches[ip] = cache;
+    }
+
+    /**
+     * Target the {@code invokedynamic} at the index of the code stream is linked to, {@code null} until its first
+     * execution.
+     */
+    public DynamicCallSite callSite(int ip) {
+        return state.callSites == null ? null : state.callSites[ip];
+    }
+
+    public void linkCallSite(int ip, DynamicCallSite callSite) {
+        synchronized (state) {
+            if (state.callSites == null) {
+                state.callSites = new DynamicCallSite[code.length];
+            }
+            state.callSites[ip] = callSite;
+        }
+    }
+
+    /**
+     * Counts an invocation of the method.
+     *
+     * @return number of invocations since the method was loaded or since the last {@link #resetInvocations()}
+     */
+    public int countInvocation() {
+        return ++state.invocations;
+    }
+
+    public void resetInvocations() {
+        state.invocations = 0;
+    }
+
+    public int failedCompilations() {
+        return state.failedCompilations;
+    }
+
+    public void failCompilation() {
+        state.failedCompilations++;
+    }
+
+    /**
+     * Host code the method was compiled to, {@code null} while the method is interpreted.
+     */
+    public CompiledCode compiledCode() {
+        return state.compiledCode;
+    }
+
+    public void installCompiledCode(CompiledCode code) {
+        state.compiledCode = code;
+    }
+
+    /**
+     * Counts a taken backward branch to the loop header.
+     *
+     * @return number of backward branches to the header since the method was loaded or since the last
+     * {@link #resetBackedges(int)}
+     */
+    public int countBackedge(int headerIp) {
+        if (state.backedges == null) {
+            state.backedges = new int[code.length];
+        }
+        return ++state.backedges[headerIp];
+    }
+
+    public void resetBackedges(int headerIp) {
+        state.backedges[headerIp] = 0;
+    }
+
+    /**
+     * Host code a frame looping at the header can continue in, {@code null} until the loop gets hot.
+     */
+    public CompiledCode osrCode(int headerIp) {
+        return state.osrCode == null ? null : state.osrCode[headerIp];
+    }
+
+    public void installOsrCode(int headerIp, CompiledCode code) {
+        synchronized (state) {
+            if (state.osrCode == null) {
+                state.osrCode = new CompiledCode[this.code.length];
+            }
+            state.osrCode[headerIp] = code;
+        }
+    }
+
+    /**
+     * Counts an implicit exception thrown by the instruction.
+     *
+     * @return number of implicit exceptions the instruction has thrown since the method was loaded, saturated at
+     * {@link Integer#MAX_VALUE}
+     */
+    public int countImplicitThrow(int ip) {
+        if (state.implicitThrows == null) {
+            state.implicitThrows = new int[code.length];
+        }
+        int count = state.implicitThrows[ip];
+        return count == Integer.MAX_VALUE ? count : (state.implicitThrows[ip] = count + 1);
+    }
+
+    /**
+     * Host implementation a native method is bound to, {@code null} until the first call.
+     */
+    public MethodHandle nativeCode() {
+        return state.nativeCode;
+    }
+
+    public void bindNativeCode(MethodHandle code) {
+        state.nativeCode = code;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         MethodDesc method = (MethodDesc) o;
-        return fStatic == method.fStatic && fFinal == method.fFinal && fNative == method.fNative && fSynchronized == method.fSynchronized && fAbstract == method.fAbstract && fVarargs == method.fVarargs && fBridge == method.fBridge && fSyntetic == method.fSyntetic && fStrict == method.fStrict && maxStack == method.maxStack && maxLocals == method.maxLocals && Objects.equals(name, method.name) && Objects.equals(descriptor, method.descriptor) && access == method.access && Arrays.equals(instructions, method.instructions) && Arrays.equals(exceptionTable, method.exceptionTable);
+        return fStatic == method.fStatic && fFinal == method.fFinal && fNative == method.fNative && fSynchronized == method.fSynchronized && fAbstract == method.fAbstract && fVarargs == method.fVarargs && fBridge == method.fBridge && fSyntetic == method.fSyntetic && fStrict == method.fStrict && slot == method.slot && maxStack == method.maxStack && maxLocals == method.maxLocals && Objects.equals(name, method.name) && Objects.equals(descriptor, method.descriptor) && access == method.access && Arrays.equals(code, method.code);
     }
 
     @Override
     public int hashCode() {
-        int result = Objects.hash(name, descriptor, access, fStatic, fFinal, fNative, fSynchronized, fAbstract, fVarargs, fBridge, fSyntetic, fStrict, maxStack, maxLocals);
-        result = 31 * result + Arrays.hashCode(instructions);
-        result = 31 * result + Arrays.hashCode(exceptionTable);
+        int result = Objects.hash(name, descriptor, access, fStatic, fFinal, fNative, fSynchronized, fAbstract, fVarargs, fBridge, fSyntetic, fStrict, slot, maxStack, maxLocals);
+        result = 31 * result + Arrays.hashCode(code);
         return result;
     }
 
@@ -59,10 +208,10 @@ public record MethodDesc(
                 ", fBridge=" + fBridge +
                 ", fSyntetic=" + fSyntetic +
                 ", fStrict=" + fStrict +
+                ", slot=" + slot +
                 ", maxStack=" + maxStack +
                 ", maxLocals=" + maxLocals +
-                ", instructions=" + Arrays.toString(instructions) +
-                ", exceptionTable=" + Arrays.toString(exceptionTable) +
+                ", code=" + Arrays.toString(code) +
                 '}';
     }
 }
@@ -0,0 +1,77 @@
+package com.lewigh.xsjvm.engine.runtime;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Supertypes of a class computed at link time, so a subtype check needs no walk over the class hierarchy.
+ * <p>
+ * The primary display keeps the ids of the superclass chain indexed by depth, {@code java/lang/Object} first and
+ * the class itself last, so a class is checked with one comparison at the depth of the target. Interfaces are not
+ * part of any chain, they are found among the sorted ids of the secondary supertypes: every interface the class
+ * implements directly or through its superclasses and superinterfaces, itself included for an interface.
+ */
+public record Supertypes(@NonNull int[] primary, @NonNull int[] secondary, boolean isInterface) {
+
+    public static Supertypes of(int id, KlassDesc superKlass, @NonNull KlassDesc[] interfaces, boolean isInterface) {
+        int[] superPrimary = superKlass != null ? superKlass.supertypes().primary() : new int[0];
+        int[] primary = isInterface ? superPrimary : append(superPrimary, id);
+
+        IntStream secondary = IntStream.empty();
+        if (superKlass != null) {
+            secondary = IntStream.of(superKlass.supertypes().secondary());
+        }
+        for (var iface : interfaces) {
+            secondary = IntStream.concat(secondary, IntStream.of(iface.supertypes().secondary()));
+        }
+        if (isInterface) {
+            secondary = IntStream.concat(secondary, IntStream.of(id));
+        }
+
+        return new Supertypes(primary, secondary.distinct().sorted().toArray(), isInterface);
+    }
+
+    public boolean contains(@NonNull KlassDesc klass) {
+        Supertypes target = klass.supertypes();
+
+        if (target.isInterface) {
+            return Arrays.binarySearch(secondary, klass.id()) >= 0;
+        }
+
+        int depth = target.primary.length - 1;
+        return depth < primary.length && primary[depth] == klass.id();
+    }
+
+    private static int[] append(int[] ids, int id) {
+        int[] result = Arrays.copyOf(ids, ids.length + 1);
+        result[ids.length] = id;
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Supertypes that = (Supertypes) o;
+        return isInterface == that.isInterface && Arrays.equals(primary, that.primary) && Arrays.equals(secondary, that.secondary);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Boolean.hashCode(isInterface);
+        result = 31 * result + Arrays.hashCode(primary);
+        result = 31 * result + Arrays.hashCode(secondary);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Supertypes{" +
+                "primary=" + Arrays.toString(primary) +
+                ", secondary=" + Arrays.toString(secondary) +
+                ", isInterface=" + isInterface +
+                '}';
+    }
+}
@@ -253,7 +253,7 @@ public sealed interface Value {
     default long asRef() {
         if (this instanceof Ref reference) {
             if (reference instanceof Null) {
-                throw new NullPointerException();
+                throw ImplicitException.of(ImplicitException.Kind.NULL_POINTER);
             }
             return reference.value;
         }
@@ -0,0 +1,24 @@
+package com.lewigh.xsjvm.mem;
+
+/**
+ * Memory ordering of a heap access, the modes of {@link java.lang.invoke.VarHandle} from the weakest to the
+ * strongest.
+ */
+public enum AccessMode {
+    /**
+     * No ordering with other accesses, the access of a field which is not volatile.
+     */
+    PLAIN,
+    /**
+     * Atomic and coherent for the one address, yet unordered with accesses to others.
+     */
+    OPAQUE,
+    /**
+     * Loads acquire and stores release.
+     */
+    ACQUIRE_RELEASE,
+    /**
+     * Sequentially consistent, the access of a volatile field.
+     */
+    VOLATILE
+}
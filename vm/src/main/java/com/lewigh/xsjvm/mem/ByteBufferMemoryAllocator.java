@@ -1,6 +1,10 @@
 package com.lewigh.xsjvm.mem;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
 
 public class ByteBufferMemoryAllocator implements MemoryAllocator {
 
@@ -8,10 +12,21 @@ public class ByteBufferMemoryAllocator implements MemoryAllocator {
     public static final int META_SIZE = 8;
     public static final int PAYLOAD_SIZE = CHANK_SIZE - META_SIZE;
 
+    /**
+     * Atomic views of the heap, which keeps the default big-endian order of a buffer. They support only values
+     * aligned to their size.
+     */
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
     private final ByteBuffer heap;
 
     private int position;
     private int maxSize;
+    /**
+     * Guards the atomic operations on values which are not aligned to their size, fields are packed without gaps.
+     */
+    private final Object misaligned = new Object();
 
     private ByteBufferMemoryAllocator(ByteBuffer heap, int maxSize) {
         this.heap = heap;
@@ -105,7 +120,156 @@ public class ByteBufferMemoryAllocator implements MemoryAllocator {
     }
 
     @Override
-    public long allocate(long bytes) {
+    public boolean compareAndSetInt(long address, int expected, int x) {
+        int index = (int) address + META_SIZE;
+        if (index % Integer.BYTES == 0) {
+            return INTS.compareAndSet(heap, index, expected, x);
+        }
+        synchronized (misaligned) {
+            if (heap.getInt(index) != expected) {
+                return false;
+            }
+            heap.putInt(index, x);
+            return true;
+        }
+    }
+
+    @Override
+    public boolean compareAndSetLong(long address, long expected, long x) {
+        int index = (int) address + META_SIZE;
+        if (index % Long.BYTES == 0) {
+            return LONGS.compareAndSet(heap, index, expected, x);
+        }
+        synchronized (misaligned) {
+            if (heap.getLong(index) != expected) {
+                return false;
+            }
+            heap.putLong(index, x);
+            return true;
+        }
+    }
+
+    /**
+     * Addresses take an int, see {@link #putAddress(long, long)}.
+     */
+    @Override
+    public boolean compareAndSetAddress(long address, long expected, long x) {
+        return compareAndSetInt(address, (int) expected, (int) x);
+    }
+
+    @Override
+    public int getAndAddInt(long address, int delta) {
+        int index = (int) address + META_SIZE;
+        if (index % Integer.BYTES == 0) {
+            return (int) INTS.getAndAdd(heap, index, delta);
+        }
+        synchronized (misaligned) {
+            int value = heap.getInt(index);
+            heap.putInt(index, value + delta);
+            return value;
+        }
+    }
+
+    @Override
+    public long getAndAddLong(long address, long delta) {
+        int index = (int) address + META_SIZE;
+        if (index % Long.BYTES == 0) {
+            return (long) LONGS.getAndAdd(heap, index, delta);
+        }
+        synchronized (misaligned) {
+            long value = heap.getLong(index);
+            heap.putLong(index, value + delta);
+            return value;
+        }
+    }
+
+    @Override
+    public int getInt(long address, AccessMode mode) {
+        int index = (int) address + META_SIZE;
+        if (mode == AccessMode.PLAIN) {
+            return heap.getInt(index);
+        }
+        if (index % Integer.BYTES != 0) {
+            synchronized (misaligned) {
+                return heap.getInt(index);
+            }
+        }
+        return switch (mode) {
+            case OPAQUE -> (int) INTS.getOpaque(heap, index);
+            case ACQUIRE_RELEASE -> (int) INTS.getAcquire(heap, index);
+            default -> (int) INTS.getVolatile(heap, index);
+        };
+    }
+
+    @Override
+    public void putInt(long address, int x, AccessMode mode) {
+        int index = (int) address + META_SIZE;
+        if (mode == AccessMode.PLAIN) {
+            heap.putInt(index, x);
+        } else if (index % Integer.BYTES != 0) {
+            synchronized (misaligned) {
+                heap.putInt(index, x);
+            }
+        } else {
+            switch (mode) {
+                case OPAQUE -> INTS.setOpaque(heap, index, x);
+                case ACQUIRE_RELEASE -> INTS.setRelease(heap, index, x);
+                default -> INTS.setVolatile(heap, index, x);
+            }
+        }
+    }
+
+    @Override
+    public long getLong(long address, AccessMode mode) {
+        int index = (int) address + META_SIZE;
+        if (mode == AccessMode.PLAIN) {
+            return heap.getLong(index);
+        }
+        if (index % Long.BYTES != 0) {
+            synchronized (misaligned) {
+                return heap.getLong(index);
+            }
+        }
+        return switch (mode) {
+            case OPAQUE -> (long) LONGS.getOpaque(heap, index);
+            case ACQUIRE_RELEASE -> (long) LONGS.getAcquire(heap, index);
+            default -> (long) LONGS.getVolatile(heap, index);
+        };
+    }
+
+    @Override
+    public void putLong(long address, long x, AccessMode mode) {
+        int index = (int) address + META_SIZE;
+        if (mode == AccessMode.PLAIN) {
+            heap.putLong(index, x);
+        } else if (index % Long.BYTES != 0) {
+            synchronized (misaligned) {
+                heap.putLong(index, x);
+            }
+        } else {
+            switch (mode) {
+                case OPAQUE -> LONGS.setOpaque(heap, index, x);
+                case ACQUIRE_RELEASE -> LONGS.setRelease(heap, index, x);
+                default -> LONGS.setVolatile(heap, index, x);
+            }
+        }
+    }
+
+    @Override
+    public long getAddress(long address, AccessMode mode) {
+        return getInt(address, mode);
+    }
+
+    @Override
+    public void putAddress(long address, long x, AccessMode mode) {
+        putInt(address, (int) x, mode);
+    }
+
+    /**
+     * Chunks are handed out by one thread at a time, reads and writes of allocated memory take no lock.
+     */
+    @Override
+    public synchronized long allocate(long bytes) {
         int address = allocate0((int) bytes);
         if (address == -1) {
             throw new IllegalStateException("Unable to allocate memory size %d. Free memory is not found".formatted(bytes));
@@ -113,6 +277,23 @@ public class ByteBufferMemoryAllocator implements MemoryAllocator {
         return address;
     }
 
+    @Override
+    public void copyMemory(long from, long to, long bytes) {
+        System.arraycopy(heap.array(), (int) from + META_SIZE, heap.array(), (int) to + META_SIZE, (int) bytes);
+    }
+
+    @Override
+    public void setMemory(long address, long bytes, byte value) {
+        int start = (int) address + META_SIZE;
+        Arrays.fill(heap.array(), start, start + (int) bytes, value);
+    }
+
+    @Override
+    public long mismatch(long first, long second, long bytes) {
+        int firstStart = (int) first + META_SIZE;
+        int secondStart = (int) second + META_SIZE;
+        return Arrays.mismatch(heap.array(), firstStart, firstStart + (int) bytes, heap.array(), secondStart, secondStart + (int) bytes);
+    }
 
     private void init() {
         for (int i = 0; i < maxSize; i += CHANK_SIZE) {
@@ -213,7 +394,7 @@ public class ByteBufferMemoryAllocator implements MemoryAllocator {
         return addr + getChunkSize(addr);
     }
 
-    public int allocate0(int size) {
+    public synchronized int allocate0(int size) {
 
         int target = useChunk(position, size);
 
@@ -222,7 +403,7 @@ public class ByteBufferMemoryAllocator implements MemoryAllocator {
         return target;
     }
 
-    public boolean free(int address) {
+    public synchronized boolean free(int address) {
         if (address % CHANK_SIZE != 0) {
             throw new IllegalStateException("Incorrect address for free %d".formatted(address));
         }
@@ -35,5 +35,60 @@ public interface MemoryAllocator {
 
     void putAddress(long address, long x);
 
+    /**
+     * Atomically sets the int to the new value if it holds the expected one. The atomic operations below work at
+     * any address and are sequentially consistent, like the volatile ones of {@link java.lang.invoke.VarHandle}.
+     *
+     * @return whether the value was set
+     */
+    boolean compareAndSetInt(long address, int expected, int x);
+
+    boolean compareAndSetLong(long address, long expected, long x);
+
+    boolean compareAndSetAddress(long address, long expected, long x);
+
+    /**
+     * Atomically adds the delta to the int.
+     *
+     * @return the previous value
+     */
+    int getAndAddInt(long address, int delta);
+
+    long getAndAddLong(long address, long delta);
+
+    /**
+     * Reads the int with the memory ordering of the mode. Like the atomic operations, ordered accesses work at any
+     * address.
+     */
+    int getInt(long address, AccessMode mode);
+
+    void putInt(long address, int x, AccessMode mode);
+
+    long getLong(long address, AccessMode mode);
+
+    void putLong(long address, long x, AccessMode mode);
+
+    long getAddress(long address, AccessMode mode);
+
+    void putAddress(long address, long x, AccessMode mode);
+
+    /**
+     * Allocates a block of the size, guest threads may allocate concurrently.
+     */
     long allocate(long bytes);
+
+    /**
+     * Copies the bytes as if through a temporary buffer, so the source and the destination may overlap.
+     */
+    void copyMemory(long from, long to, long bytes);
+
+    /**
+     * Sets every byte of the block to the value.
+     */
+    void setMemory(long address, long bytes, byte value);
+
+    /**
+     * @return offset of the first byte which differs between the two blocks, {@code -1} if they are equal
+     */
+    long mismatch(long first, long second, long bytes);
 }
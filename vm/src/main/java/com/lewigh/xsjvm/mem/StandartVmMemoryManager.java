@@ -5,14 +5,24 @@ import com.lewigh.xsjvm.engine.runtime.FieldDesc;
 import com.lewigh.xsjvm.engine.runtime.Jtype;
 import com.lewigh.xsjvm.engine.runtime.Value;
 
+import java.lang.invoke.VarHandle;
 import java.util.Collection;
 
 public class StandartVmMemoryManager implements VmMemoryManager {
 
+    private static final Jtype.Primitive[] PRIMITIVES = Jtype.Primitive.values();
+
     private static final int MARK_WORD_HEADER_SIZE = 4;
     private static final int CLASS_WORD_HEADER_SIZE = 4;
-    private static final int ARRAY_HEADER_SIZE = 4;
+    /**
+     * Length of an array followed by the ordinal of its element type, which keeps the elements 8-byte aligned.
+     */
+    private static final int ARRAY_LENGTH_SIZE = 4;
+    private static final int ARRAY_ELEMENT_TYPE_SIZE = 4;
+    private static final int ARRAY_HEADER_SIZE = ARRAY_LENGTH_SIZE + ARRAY_ELEMENT_TYPE_SIZE;
     private static final int OBJECT_HEADERS_SIZE = MARK_WORD_HEADER_SIZE + CLASS_WORD_HEADER_SIZE;
+    private static final int ARRAY_HEADERS_SIZE = OBJECT_HEADERS_SIZE + ARRAY_HEADER_SIZE;
+    private static final int NO_ELEMENT_CLASS = 0;
 
     private final MemoryAllocator allocator;
 
@@ -27,6 +37,8 @@ public class StandartVmMemoryManager implements VmMemoryManager {
 
             long cursor = objectAddress;
 
+            allocator.putInt(cursor, 0);
+
             cursor += MARK_WORD_HEADER_SIZE;
 
             allocator.putInt(cursor, classId);
@@ -50,62 +62,44 @@ public class StandartVmMemoryManager implements VmMemoryManager {
     @Override
     public long allocateArray(Jtype.Primitive type, int size) throws MemoryManagmentException {
         try {
-
-            int payloadSize = type.getAlign().getTotal() * size;
-
-            int totalSize = OBJECT_HEADERS_SIZE + payloadSize;
-
-            long objectAddress = allocator.allocate(totalSize);
-
-            long cursor = objectAddress;
-
-            cursor += MARK_WORD_HEADER_SIZE;
-
-            allocator.putInt(cursor, 0);
-
-            cursor += CLASS_WORD_HEADER_SIZE;
-
-            allocator.putInt(cursor, size);
-
-            cursor += ARRAY_HEADER_SIZE;
-
-            for (int i = 0; i < size; i++) {
-                initWithType(cursor, type);
-                cursor += type.getAlign().getTotal();
-            }
-
-            return objectAddress;
+            return allocateArray(NO_ELEMENT_CLASS, type, size);
         } catch (Throwable e) {
             throw new MemoryManagmentException("", e);
         }
     }
 
     @Override
-    public long allocateArray(int classId, Collection<FieldDesc> fields, long payloadSize, int size) {
-        long totalSize = OBJECT_HEADERS_SIZE + computeTotalObjectSize(payloadSize) * size;
+    public long allocateArray(int classId, int size) {
+        return allocateArray(classId, Jtype.Primitive.REFERENCE, size);
+    }
 
-        long objectAddress = allocator.allocate(totalSize);
+    /**
+     * The class word of an array keeps the complement of the class id of its elements, which makes it negative.
+     */
+    private long allocateArray(int elementClassId, Jtype.Primitive type, int size) {
+        long payloadSize = (long) type.getAlign().getTotal() * size;
+
+        long objectAddress = allocator.allocate(ARRAY_HEADERS_SIZE + payloadSize);
 
         long cursor = objectAddress;
 
+        allocator.putInt(cursor, 0);
+
         cursor += MARK_WORD_HEADER_SIZE;
 
-        allocator.putInt(cursor, classId);
+        allocator.putInt(cursor, ~elementClassId);
 
         cursor += CLASS_WORD_HEADER_SIZE;
 
         allocator.putInt(cursor, size);
 
-        cursor += ARRAY_HEADER_SIZE;
+        cursor += ARRAY_LENGTH_SIZE;
 
-        for (int i = 0; i < size; i++) {
-            for (var field : fields) {
-                var type = field.type().primitive();
+        allocator.putInt(cursor, type.ordinal());
 
-                initWithType(cursor, type);
-                cursor += type.getAlign().getTotal();
-            }
-        }
+        cursor += ARRAY_ELEMENT_TYPE_SIZE;
+
+        allocator.setMemory(cursor, payloadSize, (byte) 0);
 
         return objectAddress;
     }
@@ -113,13 +107,7 @@ public class StandartVmMemoryManager implements VmMemoryManager {
     @Override
     public void setArrayElement(long address, int index, Jtype.Primitive type, Number value) throws MemoryManagmentException {
         try {
-            var cursor = address + OBJECT_HEADERS_SIZE + ARRAY_HEADER_SIZE;
-
-            var off = type.getAlign().getTotal() * index;
-
-            cursor += off;
-
-            putWithType(cursor, type, value);
+            putWithType(elementAddress(address, index, type), type, value);
         } catch (Throwable e) {
             throw new MemoryManagmentException("Error while allocationg an array", e);
         }
@@ -129,22 +117,98 @@ public class StandartVmMemoryManager implements VmMemoryManager {
     public Value getArrayElement(long address, int index, Jtype.Primitive type) throws MemoryManagmentException {
 
         try {
-            var cursor = address + OBJECT_HEADERS_SIZE;
-
-            var off = type.getAlign().getTotal() * index;
-
-            cursor += off;
-
-            return getWithType(cursor, type);
+            return getWithType(elementAddress(address, index, type), type);
         } catch (Throwable e) {
             throw new MemoryManagmentException(e);
         }
     }
 
+    @Override
+    public void setArrayElementRaw(long address, int index, Jtype.Primitive type, long raw) throws MemoryManagmentException {
+        putRaw(elementAddress(address, index, type), type, raw);
+    }
+
+    @Override
+    public long getArrayElementRaw(long address, int index, Jtype.Primitive type) throws MemoryManagmentException {
+        return getRaw(elementAddress(address, index, type), type);
+    }
+
     public int arrayLength(long address) {
-        var cur = address + OBJECT_HEADERS_SIZE;
+        return allocator.getInt(address + OBJECT_HEADERS_SIZE);
+    }
+
+    @Override
+    public boolean isArray(long address) {
+        return allocator.getInt(address + MARK_WORD_HEADER_SIZE) < 0;
+    }
 
-        return getWithType(cur, Jtype.Primitive.INT).asInt();
+    @Override
+    public Jtype.Primitive arrayElementType(long address) {
+        return PRIMITIVES[allocator.getInt(address + OBJECT_HEADERS_SIZE + ARRAY_LENGTH_SIZE)];
+    }
+
+    @Override
+    public void copyArray(long from, int fromIndex, long to, int toIndex, int length) {
+        Jtype.Primitive type = arrayElementType(from);
+
+        allocator.copyMemory(elementAddress(from, fromIndex, type), elementAddress(to, toIndex, type), elementsSize(type, length));
+    }
+
+    /**
+     * Zeroes and bytes are set directly, any other value is written once and then doubled by copying the filled
+     * part of the range.
+     */
+    @Override
+    public void fillArray(long address, int fromIndex, int toIndex, long raw) {
+        if (fromIndex >= toIndex) {
+            return;
+        }
+
+        Jtype.Primitive type = arrayElementType(address);
+        long start = elementAddress(address, fromIndex, type);
+        long bytes = elementsSize(type, toIndex - fromIndex);
+        int elementSize = type.getAlign().getTotal();
+
+        if (raw == 0 || elementSize == 1) {
+            allocator.setMemory(start, bytes, (byte) raw);
+            return;
+        }
+
+        putRaw(start, type, raw);
+        for (long filled = elementSize; filled < bytes; filled *= 2) {
+            allocator.copyMemory(start, start + filled, Math.min(filled, bytes - filled));
+        }
+    }
+
+    @Override
+    public int mismatchArrays(long first, int firstIndex, long second, int secondIndex, int length) {
+        Jtype.Primitive type = arrayElementType(first);
+
+        long offset = allocator.mismatch(elementAddress(first, firstIndex, type), elementAddress(second, secondIndex, type), elementsSize(type, length));
+
+        return offset < 0 ? -1 : (int) (offset / type.getAlign().getTotal());
+    }
+
+    @Override
+    public long cloneArray(long address) {
+        return copyObject(address, ARRAY_HEADERS_SIZE + elementsSize(arrayElementType(address), arrayLength(address)));
+    }
+
+    @Override
+    public long cloneObject(long address, long payloadSize) {
+        return copyObject(address, computeTotalObjectSize(payloadSize));
+    }
+
+    /**
+     * The copy starts unlocked, only the class word and the payload are copied.
+     */
+    private long copyObject(long address, long totalSize) {
+        long copy = allocator.allocate(totalSize);
+
+        allocator.copyMemory(address, copy, totalSize);
+        allocator.putInt(copy, 0);
+
+        return copy;
     }
 
     @Override
@@ -213,6 +277,114 @@ public class StandartVmMemoryManager implements VmMemoryManager {
         }
     }
 
+    @Override
+    public void putRaw(long address, Jtype.Primitive type, long raw) throws MemoryManagmentException {
+        try {
+            switch (type) {
+                case VOID -> {
+                }
+                case BYTE, BOOL -> allocator.putByte(address, (byte) raw);
+                case SHORT -> allocator.putShort(address, (short) raw);
+                case CHAR -> allocator.putChar(address, (char) raw);
+                case INT, FLOAT -> allocator.putInt(address, (int) raw);
+                case LONG, DOUBLE -> allocator.putLong(address, raw);
+                case REFERENCE, ARRAY -> allocator.putAddress(address, raw);
+            }
+        } catch (Throwable e) {
+            throw new MemoryManagmentException("Unable to put value into memory", e);
+        }
+    }
+
+    @Override
+    public long getRaw(long address, Jtype.Primitive type) throws MemoryManagmentException {
+        try {
+            return switch (type) {
+                case VOID -> throw new IllegalArgumentException("Void value can not be read");
+                case BYTE -> allocator.getByte(address);
+                case BOOL -> allocator.getByte(address) != 0 ? 1 : 0;
+                case SHORT -> allocator.getShort(address);
+                case CHAR -> allocator.getChar(address);
+                case INT, FLOAT -> allocator.getInt(address);
+                case LONG, DOUBLE -> allocator.getLong(address);
+                case REFERENCE, ARRAY -> allocator.getAddress(address);
+            };
+        } catch (Throwable e) {
+            throw new MemoryManagmentException("Unable to get value from memory", e);
+        }
+    }
+
+    /**
+     * Values smaller than an int have no ordered access of the allocator, their plain access is fenced instead.
+     */
+    @Override
+    public long getRaw(long address, Jtype.Primitive type, AccessMode mode) {
+        if (mode == AccessMode.PLAIN) {
+            return getRaw(address, type);
+        }
+        return switch (type) {
+            case INT, FLOAT -> allocator.getInt(address, mode);
+            case LONG, DOUBLE -> allocator.getLong(address, mode);
+            case REFERENCE, ARRAY -> allocator.getAddress(address, mode);
+            default -> {
+                if (mode == AccessMode.VOLATILE) {
+                    VarHandle.fullFence();
+                }
+                long raw = getRaw(address, type);
+                VarHandle.acquireFence();
+                yield raw;
+            }
+        };
+    }
+
+    @Override
+    public void putRaw(long address, Jtype.Primitive type, long raw, AccessMode mode) {
+        if (mode == AccessMode.PLAIN) {
+            putRaw(address, type, raw);
+            return;
+        }
+        switch (type) {
+            case INT, FLOAT -> allocator.putInt(address, (int) raw, mode);
+            case LONG, DOUBLE -> allocator.putLong(address, raw, mode);
+            case REFERENCE, ARRAY -> allocator.putAddress(address, raw, mode);
+            default -> {
+                VarHandle.releaseFence();
+                putRaw(address, type, raw);
+                if (mode == AccessMode.VOLATILE) {
+                    VarHandle.fullFence();
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean compareAndSetRaw(long address, Jtype.Primitive type, long expected, long raw) {
+        return switch (type) {
+            case INT, FLOAT -> allocator.compareAndSetInt(address, (int) expected, (int) raw);
+            case LONG, DOUBLE -> allocator.compareAndSetLong(address, expected, raw);
+            case REFERENCE, ARRAY -> allocator.compareAndSetAddress(address, expected, raw);
+            default -> throw new IllegalArgumentException("Value of type %s can not be compared and set".formatted(type));
+        };
+    }
+
+    @Override
+    public long getAndAddRaw(long address, Jtype.Primitive type, long delta) {
+        return switch (type) {
+            case INT -> allocator.getAndAddInt(address, (int) delta);
+            case LONG -> allocator.getAndAddLong(address, delta);
+            default -> throw new IllegalArgumentException("Value of type %s can not be added to".formatted(type));
+        };
+    }
+
+    @Override
+    public long fieldAddress(long objectAddress, long offset) {
+        return objectAddress + OBJECT_HEADERS_SIZE + offset;
+    }
+
+    @Override
+    public long arrayBaseOffset() {
+        return ARRAY_HEADERS_SIZE;
+    }
+
     @Override
     public int getClassId(long objectAddress) throws MemoryManagmentException {
         try {
@@ -222,6 +394,23 @@ public class StandartVmMemoryManager implements VmMemoryManager {
         }
     }
 
+    @Override
+    public int getMarkWord(long objectAddress) {
+        return allocator.getInt(objectAddress);
+    }
+
+    @Override
+    public boolean compareAndSetMarkWord(long objectAddress, int expected, int mark) {
+        return allocator.compareAndSetInt(objectAddress, expected, mark);
+    }
+
+    private static long elementAddress(long address, int index, Jtype.Primitive type) {
+        return address + ARRAY_HEADERS_SIZE + elementsSize(type, index);
+    }
+
+    private static long elementsSize(Jtype.Primitive type, int count) {
+        return (long) type.getAlign().getTotal() * count;
+    }
 
     private long computeTotalObjectSize(long payloadSize) {
         return OBJECT_HEADERS_SIZE + payloadSize;
@@ -3,6 +3,8 @@ package com.lewigh.xsjvm.mem;
 import com.lewigh.xsjvm.MemoryManagmentException;
 import sun.misc.Unsafe;
 
+import java.nio.ByteOrder;
+
 public class UnsafeMemoryAllocator implements MemoryAllocator {
 
     private final Unsafe unsafe;
@@ -104,8 +106,116 @@ public class UnsafeMemoryAllocator implements MemoryAllocator {
         unsafe.putAddress(address, x);
     }
 
+    @Override
+    public boolean compareAndSetInt(long address, int expected, int x) {
+        return unsafe.compareAndSwapInt(null, address, expected, x);
+    }
+
+    @Override
+    public boolean compareAndSetLong(long address, long expected, long x) {
+        return unsafe.compareAndSwapLong(null, address, expected, x);
+    }
+
+    /**
+     * Addresses take a long, see {@link Unsafe#addressSize()}.
+     */
+    @Override
+    public boolean compareAndSetAddress(long address, long expected, long x) {
+        return unsafe.compareAndSwapLong(null, address, expected, x);
+    }
+
+    @Override
+    public int getAndAddInt(long address, int delta) {
+        return unsafe.getAndAddInt(null, address, delta);
+    }
+
+    @Override
+    public long getAndAddLong(long address, long delta) {
+        return unsafe.getAndAddLong(null, address, delta);
+    }
+
+    /**
+     * {@link Unsafe} has no load weaker than the volatile one, which costs no more than a plain load on x86. Its
+     * ordered stores are release stores, which serve the opaque ones too.
+     */
+    @Override
+    public int getInt(long address, AccessMode mode) {
+        return mode == AccessMode.PLAIN ? unsafe.getInt(address) : unsafe.getIntVolatile(null, address);
+    }
+
+    @Override
+    public void putInt(long address, int x, AccessMode mode) {
+        switch (mode) {
+            case PLAIN -> unsafe.putInt(address, x);
+            case OPAQUE, ACQUIRE_RELEASE -> unsafe.putOrderedInt(null, address, x);
+            case VOLATILE -> unsafe.putIntVolatile(null, address, x);
+        }
+    }
+
+    @Override
+    public long getLong(long address, AccessMode mode) {
+        return mode == AccessMode.PLAIN ? unsafe.getLong(address) : unsafe.getLongVolatile(null, address);
+    }
+
+    @Override
+    public void putLong(long address, long x, AccessMode mode) {
+        switch (mode) {
+            case PLAIN -> unsafe.putLong(address, x);
+            case OPAQUE, ACQUIRE_RELEASE -> unsafe.putOrderedLong(null, address, x);
+            case VOLATILE -> unsafe.putLongVolatile(null, address, x);
+        }
+    }
+
+    @Override
+    public long getAddress(long address, AccessMode mode) {
+        return mode == AccessMode.PLAIN ? unsafe.getAddress(address) : unsafe.getLongVolatile(null, address);
+    }
+
+    @Override
+    public void putAddress(long address, long x, AccessMode mode) {
+        if (mode == AccessMode.PLAIN) {
+            unsafe.putAddress(address, x);
+        } else {
+            putLong(address, x, mode);
+        }
+    }
+
     @Override
     public long allocate(long bytes) {
         return unsafe.allocateMemory(bytes);
     }
+
+    @Override
+    public void copyMemory(long from, long to, long bytes) {
+        unsafe.copyMemory(from, to, bytes);
+    }
+
+    @Override
+    public void setMemory(long address, long bytes, byte value) {
+        unsafe.setMemory(address, bytes, value);
+    }
+
+    /**
+     * Compares eight bytes at a time, the first differing byte of two words is found from their xor.
+     */
+    @Override
+    public long mismatch(long first, long second, long bytes) {
+        long offset = 0;
+
+        for (; offset + Long.BYTES <= bytes; offset += Long.BYTES) {
+            long difference = unsafe.getLong(first + offset) ^ unsafe.getLong(second + offset);
+            if (difference != 0) {
+                int bits = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN
+                        ? Long.numberOfTrailingZeros(difference)
+                        : Long.numberOfLeadingZeros(difference);
+                return offset + bits / Byte.SIZE;
+            }
+        }
+        for (; offset < bytes; offset++) {
+            if (unsafe.getByte(first + offset) != unsafe.getByte(second + offset)) {
+                return offset;
+            }
+        }
+        return -1;
+    }
 }
@@ -13,20 +13,122 @@ public interface VmMemoryManager {
 
     long allocateArray(Jtype.Primitive type, int size) throws MemoryManagmentException;
 
-    long allocateArray(int classId, Collection<FieldDesc> fields, long payloadSize, int size);
+    /**
+     * Allocates an array of references to instances of the class, every element is {@code null}.
+     */
+    long allocateArray(int classId, int size);
 
     void setArrayElement(long address, int index, Jtype.Primitive type, Number value) throws MemoryManagmentException;
 
     Value getArrayElement(long address, int index, Jtype.Primitive type) throws MemoryManagmentException;
 
+    void setArrayElementRaw(long address, int index, Jtype.Primitive type, long raw) throws MemoryManagmentException;
+
+    long getArrayElementRaw(long address, int index, Jtype.Primitive type) throws MemoryManagmentException;
+
     int arrayLength(long address);
 
+    boolean isArray(long address);
+
+    Jtype.Primitive arrayElementType(long address);
+
+    /**
+     * Copies elements between arrays of the same element type, the ranges may overlap.
+     */
+    void copyArray(long from, int fromIndex, long to, int toIndex, int length);
+
+    /**
+     * Sets the elements in the range from the first index inclusive to the second exclusive to the value kept in
+     * the raw slot form.
+     */
+    void fillArray(long address, int fromIndex, int toIndex, long raw);
+
+    /**
+     * Compares elements of arrays of the same element type bit by bit.
+     *
+     * @return position of the first differing element relative to the start of the ranges, {@code -1} if the
+     * ranges are equal
+     */
+    int mismatchArrays(long first, int firstIndex, long second, int secondIndex, int length);
+
+    /**
+     * @return shallow copy of the array
+     */
+    long cloneArray(long address);
+
+    /**
+     * @return shallow copy of the object whose fields take the given size
+     */
+    long cloneObject(long address, long payloadSize);
+
     void putWithType(long address, Jtype.Primitive type, Number value) throws MemoryManagmentException;
 
     void initWithType(long address, Jtype.Primitive type) throws MemoryManagmentException;
 
     Value getWithType(long address, Jtype.Primitive type) throws MemoryManagmentException;
 
+    /**
+     * Writes a value kept in the raw slot form: int-like values as int, floats and doubles as their raw bits,
+     * references as addresses.
+     */
+    void putRaw(long address, Jtype.Primitive type, long raw) throws MemoryManagmentException;
+
+    /**
+     * Reads a value into the raw slot form, see {@link #putRaw(long, Jtype.Primitive, long)}.
+     */
+    long getRaw(long address, Jtype.Primitive type) throws MemoryManagmentException;
+
+    /**
+     * Reads a value into the raw slot form with the memory ordering of the mode.
+     */
+    long getRaw(long address, Jtype.Primitive type, AccessMode mode);
+
+    /**
+     * Writes a value kept in the raw slot form with the memory ordering of the mode.
+     */
+    void putRaw(long address, Jtype.Primitive type, long raw, AccessMode mode);
+
+    /**
+     * Atomically replaces a value kept in the raw slot form if it is the expected one. Only int, long and
+     * reference-sized values are supported, floats and doubles are compared by their raw bits.
+     *
+     * @return whether the value was replaced
+     */
+    boolean compareAndSetRaw(long address, Jtype.Primitive type, long expected, long raw);
+
+    /**
+     * Atomically adds the delta to an int or a long.
+     *
+     * @return the previous value
+     */
+    long getAndAddRaw(long address, Jtype.Primitive type, long delta);
+
+    /**
+     * Address of the field placed at the given offset of the object payload, right after the object headers.
+     */
+    long fieldAddress(long objectAddress, long offset);
+
+    /**
+     * Offset of the first element of an array from its address, the same for every element type.
+     */
+    long arrayBaseOffset();
+
+    /**
+     * @return class id of the object, for an array the negative complement of the class id of its elements, which
+     * is {@code 0} for primitive elements
+     */
     int getClassId(long objectAddress) throws MemoryManagmentException;
 
+    /**
+     * @return lock state of the object, {@code 0} for an object nobody has locked
+     */
+    int getMarkWord(long objectAddress);
+
+    /**
+     * Atomically replaces the lock state of the object if it is the expected one.
+     *
+     * @return whether the state was replaced
+     */
+    boolean compareAndSetMarkWord(long objectAddress, int expected, int mark);
+
 }
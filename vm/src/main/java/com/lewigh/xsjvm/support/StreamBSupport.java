@@ -19,18 +19,38 @@ public class StreamBSupport {
     }
 
     public static long readAsLong(InputStream is) throws IOException {
-        return ByteBuffer.wrap(is.readNBytes(8)).getInt();
+        return ByteBuffer.wrap(is.readNBytes(8)).getLong();
     }
 
     public static float readAsFloat(InputStream is) throws IOException {
-        return ByteBuffer.wrap(is.readNBytes(4)).getInt();
+        return ByteBuffer.wrap(is.readNBytes(4)).getFloat();
     }
 
     public static double readAsDouble(InputStream is) throws IOException {
-        return ByteBuffer.wrap(is.readNBytes(8)).getInt();
+        return ByteBuffer.wrap(is.readNBytes(8)).getDouble();
     }
 
+    /**
+     * Decodes the modified UTF-8 of class files: a char takes one to three bytes, {@code \u0000} takes two and a
+     * supplementary character is a pair of surrogates, each encoded on its own.
+     *
+     * @param size number of bytes, unsigned
+     */
     public static String readAsString(InputStream is, short size) throws IOException {
-        return new String(is.readNBytes(size));
+        byte[] bytes = is.readNBytes(Short.toUnsignedInt(size));
+        char[] chars = new char[bytes.length];
+
+        int length = 0;
+        for (int i = 0; i < bytes.length; length++) {
+            int b = bytes[i++] & 0xFF;
+            if (b < 0x80) {
+                chars[length] = (char) b;
+            } else if (b < 0xE0) {
+                chars[length] = (char) ((b & 0x1F) << 6 | bytes[i++] & 0x3F);
+            } else {
+                chars[length] = (char) ((b & 0x0F) << 12 | (bytes[i++] & 0x3F) << 6 | bytes[i++] & 0x3F);
+            }
+        }
+        return new String(chars, 0, length);
     }
 }
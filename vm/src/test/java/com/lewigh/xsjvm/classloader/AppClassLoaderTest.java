@@ -0,0 +1,213 @@
+package com.lewigh.xsjvm.classloader;
+
+import com.lewigh.xsjvm.engine.GuestVm;
+import com.lewigh.xsjvm.engine.PackagePrivateMethod;
+import org.junit.jupiter.api.Test;
+
+import static com.lewigh.xsjvm.engine.GuestAssertions.check;
+
+class AppClassLoaderTest {
+
+    @Test
+    void vtableSlotsAreInheritedAndOverridden() {
+        GuestVm.run(VirtualCalls.class);
+    }
+
+    @Test
+    void itablesDispatchInterfaceAndDefaultMethods() {
+        GuestVm.run(InterfaceCalls.class);
+    }
+
+    static class VirtualCalls {
+
+        public static void main(String[] args) {
+            Animal animal = new Animal();
+            Animal dog = new Dog();
+            Animal puppy = new Puppy();
+
+            // one call site sees every class of the hierarchy
+            check(kind(animal) == 1 && kind(dog) == 1 && kind(puppy) == 3);
+            check(sound(animal) == 10 && sound(dog) == 20 && sound(puppy) == 20);
+            check(legs(animal) == 4 && legs(dog) == 4 && legs(puppy) == 4);
+            check(((Dog) puppy).wag() == 300 && ((Dog) dog).wag() == 200);
+
+            // the method of the subclass has the same name but is in another package, so it is a new method
+            var other = new OtherPackage();
+            check(other.callId() == 1);
+            check(other.id() == 2);
+        }
+
+        static int kind(Animal animal) {
+            return animal.kind();
+        }
+
+        static int sound(Animal animal) {
+            return animal.sound();
+        }
+
+        static int legs(Animal animal) {
+            return animal.legs();
+        }
+    }
+
+    static class Animal {
+
+        int kind() {
+            return 1;
+        }
+
+        int sound() {
+            return 10;
+        }
+
+        int legs() {
+            return 4;
+        }
+    }
+
+    static class Dog extends Animal {
+
+        @Override
+        int sound() {
+            return 20;
+        }
+
+        int wag() {
+            return 200;
+        }
+    }
+
+    static class Puppy extends Dog {
+
+        @Override
+        int kind() {
+            return 3;
+        }
+
+        @Override
+        int wag() {
+            return 300;
+        }
+    }
+
+    static class OtherPackage extends PackagePrivateMethod {
+
+        int id() {
+            return 2;
+        }
+    }
+
+    static class InterfaceCalls {
+
+        public static void main(String[] args) {
+            Shape square = new Square();
+            Shape triangle = new Triangle();
+            Shape rounded = new RoundedSquare();
+
+            // one call site sees every class, the default method is selected for the classes not overriding it
+            check(sides(square) == 4 && sides(triangle) == 3 && sides(rounded) == 4);
+            check(corners(square) == 4 && corners(triangle) == 30 && corners(rounded) == 0);
+
+            // the same default method is inherited through both interfaces
+            Both both = new Both();
+            check(both.base() == 10);
+            check(left(both) == 10 && right(both) == 10);
+            check(left(new LeftOnly()) == 11);
+
+            // a default method calls a private method of its interface with invokeinterface
+            check(((WithPrivate) new Revealing()).reveal() == 7);
+        }
+
+        static int sides(Shape shape) {
+            return shape.sides();
+        }
+
+        static int corners(Shape shape) {
+            return shape.corners();
+        }
+
+        static int left(Left left) {
+            return left.base();
+        }
+
+        static int right(Right right) {
+            return right.base();
+        }
+    }
+
+    interface Shape {
+
+        int sides();
+
+        default int corners() {
+            return sides();
+        }
+    }
+
+    static class Square implements Shape {
+
+        @Override
+        public int sides() {
+            return 4;
+        }
+    }
+
+    static class Triangle implements Shape {
+
+        @Override
+        public int sides() {
+            return 3;
+        }
+
+        @Override
+        public int corners() {
+            return 30;
+        }
+    }
+
+    static class RoundedSquare extends Square {
+
+        @Override
+        public int corners() {
+            return 0;
+        }
+    }
+
+    interface Base {
+
+        default int base() {
+            return 10;
+        }
+    }
+
+    interface Left extends Base {
+    }
+
+    interface Right extends Base {
+    }
+
+    static class Both implements Left, Right {
+    }
+
+    static class LeftOnly implements Left {
+
+        @Override
+        public int base() {
+            return 11;
+        }
+    }
+
+    interface WithPrivate {
+
+        private int secret() {
+            return 7;
+        }
+
+        default int reveal() {
+            return secret();
+        }
+    }
+
+    static class Revealing implements WithPrivate {
+    }
+}
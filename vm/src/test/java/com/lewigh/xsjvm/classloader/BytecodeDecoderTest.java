@@ -0,0 +1,110 @@
+package com.lewigh.xsjvm.classloader;
+
+import com.lewigh.xsjvm.classloader.reader.info.attribute.Instruction;
+import com.lewigh.xsjvm.classloader.reader.info.attribute.OpCode;
+import org.junit.jupiter.api.Test;
+
+import static com.lewigh.xsjvm.engine.runtime.Bytecodes.*;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BytecodeDecoderTest {
+
+    @Test
+    void forwardBranchIsConvertedToStreamIndex() {
+        // static int max(int a, int b) { if (a > b) return a; else return b; }
+        var decoded = BytecodeDecoder.decode(new Instruction[]{
+                instruction(0, OpCode.ILOAD_0),
+                instruction(1, OpCode.ILOAD_1),
+                instruction(2, OpCode.IF_ICMPLE, 5),
+                instruction(5, OpCode.ILOAD_0),
+                instruction(6, OpCode.IRETURN),
+                instruction(7, OpCode.ILOAD_1),
+                instruction(8, OpCode.IRETURN)
+        }, 9);
+
+        assertArrayEquals(new int[]{
+                ILOAD, 0,
+                ILOAD, 1,
+                IF_ICMPLE, 9,
+                ILOAD, 0,
+                IRETURN,
+                ILOAD, 1,
+                IRETURN
+        }, decoded.code());
+    }
+
+    @Test
+    void switchTargetsAreConvertedToStreamIndices() {
+        // switch (a) { case 0: return 1; case 1: return 2; default: return 0; }
+        var decoded = BytecodeDecoder.decode(new Instruction[]{
+                instruction(0, OpCode.ILOAD_0),
+                instruction(1, OpCode.TABLESWITCH, 27, 0, 1, 23, 25),
+                instruction(24, OpCode.ICONST_1),
+                instruction(25, OpCode.IRETURN),
+                instruction(26, OpCode.ICONST_2),
+                instruction(27, OpCode.IRETURN),
+                instruction(28, OpCode.ICONST_0),
+                instruction(29, OpCode.IRETURN)
+        }, 30);
+
+        assertArrayEquals(new int[]{
+                ILOAD, 0,
+                TABLESWITCH, 12, 0, 1, 8, 10,
+                ICONST_1,
+                IRETURN,
+                ICONST_2,
+                IRETURN,
+                ICONST_0,
+                IRETURN
+        }, decoded.code());
+    }
+
+    @Test
+    void backwardBranchIsConvertedToStreamIndex() {
+        // for (int i = 0; i < 10; i++) {}
+        var decoded = BytecodeDecoder.decode(new Instruction[]{
+                instruction(0, OpCode.ICONST_0),
+                instruction(1, OpCode.ISTORE_0),
+                instruction(2, OpCode.ILOAD_0),
+                instruction(3, OpCode.BIPUSH, 10),
+                instruction(5, OpCode.IF_ICMPGE, 9),
+                instruction(8, OpCode.IINC, 0, 1),
+                instruction(11, OpCode.GOTO, -9),
+                instruction(14, OpCode.RETURN)
+        }, 15);
+
+        assertArrayEquals(new int[]{
+                ICONST_0,
+                ISTORE, 0,
+                ILOAD, 0,
+                BIPUSH, 10,
+                IF_ICMPGE, 14,
+                IINC, 0, 1,
+                GOTO, 3,
+                RETURN
+        }, decoded.code());
+    }
+
+    @Test
+    void pushedByteIsSignExtended() {
+        var decoded = BytecodeDecoder.decode(new Instruction[]{
+                instruction(0, OpCode.BIPUSH, 0xFF),
+                instruction(2, OpCode.IRETURN)
+        }, 3);
+
+        assertArrayEquals(new int[]{BIPUSH, -1, IRETURN}, decoded.code());
+    }
+
+    @Test
+    void branchIntoTheMiddleOfInstruction() {
+        assertThrows(IllegalStateException.class, () -> BytecodeDecoder.decode(new Instruction[]{
+                instruction(0, OpCode.GOTO, 2),
+                instruction(3, OpCode.RETURN)
+        }, 4));
+    }
+
+    private static Instruction instruction(int pc, OpCode opCode, int... operands) {
+        return new Instruction(pc, opCode, operands);
+    }
+}
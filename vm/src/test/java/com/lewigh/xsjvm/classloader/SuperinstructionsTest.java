@@ -0,0 +1,53 @@
+package com.lewigh.xsjvm.classloader;
+
+import org.junit.jupiter.api.Test;
+
+import static com.lewigh.xsjvm.engine.runtime.Bytecodes.*;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class SuperinstructionsTest {
+
+    @Test
+    void onlyLeadingOpcodeOfSequenceIsReplaced() {
+        int[] code = {
+                ILOAD, 0,
+                ILOAD, 1,
+                IADD,
+                ISTORE, 2,
+                ALOAD, 3,
+                GETFIELD, 7, 0, 0,
+                RETURN
+        };
+
+        Superinstructions.fuse(code);
+
+        assertArrayEquals(new int[]{
+                ILOAD_ILOAD_IADD_ISTORE, 0,
+                ILOAD, 1,
+                IADD,
+                ISTORE, 2,
+                ALOAD_GETFIELD, 3,
+                GETFIELD, 7, 0, 0,
+                RETURN
+        }, code);
+    }
+
+    @Test
+    void loadBeforeIntCompareIsFused() {
+        int[] code = {
+                ILOAD, 0,
+                ILOAD, 1,
+                IF_ICMPGE, 0,
+                RETURN
+        };
+
+        Superinstructions.fuse(code);
+
+        assertArrayEquals(new int[]{
+                ILOAD, 0,
+                ILOAD_IF_ICMP, 1,
+                IF_ICMPGE, 0,
+                RETURN
+        }, code);
+    }
+}
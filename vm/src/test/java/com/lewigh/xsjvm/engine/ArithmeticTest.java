@@ -0,0 +1,250 @@
+package com.lewigh.xsjvm.engine;
+
+import org.junit.jupiter.api.Test;
+
+import static com.lewigh.xsjvm.engine.GuestAssertions.check;
+
+class ArithmeticTest {
+
+    @Test
+    void divisionByZeroThrowsArithmeticException() {
+        GuestVm.run(DivisionByZero.class);
+    }
+
+    @Test
+    void divisionOverflowWrapsAround() {
+        GuestVm.run(DivisionOverflow.class);
+    }
+
+    @Test
+    void shiftCountIsMasked() {
+        GuestVm.run(Shifts.class);
+    }
+
+    @Test
+    void comparisonWithNanIsFalse() {
+        GuestVm.run(NanComparisons.class);
+    }
+
+    @Test
+    void conversionsSaturateAndNarrow() {
+        GuestVm.run(Conversions.class);
+    }
+
+    static class DivisionByZero {
+
+        public static void main(String[] args) {
+            check(idivThrows(1, 0));
+            check(iremThrows(1, 0));
+            check(ldivThrows(1, 0));
+            check(lremThrows(1, 0));
+            check(!idivThrows(1, 1));
+        }
+
+        static boolean idivThrows(int a, int b) {
+            try {
+                return a / b < 0;
+            } catch (ArithmeticException e) {
+                return true;
+            }
+        }
+
+        static boolean iremThrows(int a, int b) {
+            try {
+                return a % b < 0;
+            } catch (ArithmeticException e) {
+                return true;
+            }
+        }
+
+        static boolean ldivThrows(long a, long b) {
+            try {
+                return a / b < 0;
+            } catch (ArithmeticException e) {
+                return true;
+            }
+        }
+
+        static boolean lremThrows(long a, long b) {
+            try {
+                return a % b < 0;
+            } catch (ArithmeticException e) {
+                return true;
+            }
+        }
+    }
+
+    static class DivisionOverflow {
+
+        public static void main(String[] args) {
+            check(idiv(Integer.MIN_VALUE, -1) == Integer.MIN_VALUE);
+            check(irem(Integer.MIN_VALUE, -1) == 0);
+            check(ldiv(Long.MIN_VALUE, -1) == Long.MIN_VALUE);
+            check(lrem(Long.MIN_VALUE, -1) == 0);
+            check(idiv(-7, 2) == -3);
+            check(irem(-7, 2) == -1);
+        }
+
+        static int idiv(int a, int b) {
+            return a / b;
+        }
+
+        static int irem(int a, int b) {
+            return a % b;
+        }
+
+        static long ldiv(long a, long b) {
+            return a / b;
+        }
+
+        static long lrem(long a, long b) {
+            return a % b;
+        }
+    }
+
+    static class Shifts {
+
+        public static void main(String[] args) {
+            check(ishl(1, 33) == 2);
+            check(ishr(-8, 33) == -4);
+            check(iushr(-1, 32) == -1);
+            check(iushr(-1, 28) == 15);
+            check(lshl(1, 65) == 2);
+            check(lshr(-8, 65) == -4);
+            check(lushr(-1, 64) == -1);
+            check(lushr(-1, 60) == 15);
+        }
+
+        static int ishl(int value, int count) {
+            return value << count;
+        }
+
+        static int ishr(int value, int count) {
+            return value >> count;
+        }
+
+        static int iushr(int value, int count) {
+            return value >>> count;
+        }
+
+        static long lshl(long value, int count) {
+            return value << count;
+        }
+
+        static long lshr(long value, int count) {
+            return value >> count;
+        }
+
+        static long lushr(long value, int count) {
+            return value >>> count;
+        }
+    }
+
+    /**
+     * javac compiles {@code <} and {@code <=} to {@code fcmpg}/{@code dcmpg} and {@code >} and {@code >=} to
+     * {@code fcmpl}/{@code dcmpl}, so each comparison with NaN is false only if both variants treat NaN right.
+     */
+    static class NanComparisons {
+
+        public static void main(String[] args) {
+            float fNan = Float.NaN;
+            check(!flt(fNan, 1) && !fle(fNan, 1) && !fgt(fNan, 1) && !fge(fNan, 1));
+            check(!flt(1, fNan) && !fgt(1, fNan));
+            check(flt(1, 2) && fgt(2, 1) && fle(1, 1) && fge(1, 1));
+
+            double dNan = Double.NaN;
+            check(!dlt(dNan, 1) && !dle(dNan, 1) && !dgt(dNan, 1) && !dge(dNan, 1));
+            check(!dlt(1, dNan) && !dgt(1, dNan));
+            check(dlt(1, 2) && dgt(2, 1) && dle(1, 1) && dge(1, 1));
+        }
+
+        static boolean flt(float a, float b) {
+            return a < b;
+        }
+
+        static boolean fle(float a, float b) {
+            return a <= b;
+        }
+
+        static boolean fgt(float a, float b) {
+            return a > b;
+        }
+
+        static boolean fge(float a, float b) {
+            return a >= b;
+        }
+
+        static boolean dlt(double a, double b) {
+            return a < b;
+        }
+
+        static boolean dle(double a, double b) {
+            return a <= b;
+        }
+
+        static boolean dgt(double a, double b) {
+            return a > b;
+        }
+
+        static boolean dge(double a, double b) {
+            return a >= b;
+        }
+    }
+
+    static class Conversions {
+
+        public static void main(String[] args) {
+            check(f2i(Float.NaN) == 0);
+            check(f2i(1e20f) == Integer.MAX_VALUE);
+            check(f2i(-1e20f) == Integer.MIN_VALUE);
+            check(f2i(-2.7f) == -2);
+            check(f2l(Float.POSITIVE_INFINITY) == Long.MAX_VALUE);
+            check(d2i(1e300) == Integer.MAX_VALUE);
+            check(d2l(Double.NaN) == 0);
+            check(d2l(Double.NEGATIVE_INFINITY) == Long.MIN_VALUE);
+            check(d2l(1e300) == Long.MAX_VALUE);
+
+            check(i2l(-1) == -1L);
+            check(l2i(0x1_0000_0005L) == 5);
+            check(i2b(200) == -56);
+            check(i2c(-1) == 65535);
+            check(i2s(70000) == 4464);
+        }
+
+        static int f2i(float value) {
+            return (int) value;
+        }
+
+        static long f2l(float value) {
+            return (long) value;
+        }
+
+        static int d2i(double value) {
+            return (int) value;
+        }
+
+        static long d2l(double value) {
+            return (long) value;
+        }
+
+        static long i2l(int value) {
+            return value;
+        }
+
+        static int l2i(long value) {
+            return (int) value;
+        }
+
+        static int i2b(int value) {
+            return (byte) value;
+        }
+
+        static int i2c(int value) {
+            return (char) value;
+        }
+
+        static int i2s(int value) {
+            return (short) value;
+        }
+    }
+}
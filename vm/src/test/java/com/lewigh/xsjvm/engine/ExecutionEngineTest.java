@@ -0,0 +1,224 @@
+package com.lewigh.xsjvm.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.annotation.RetentionPolicy;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+
+import static com.lewigh.xsjvm.engine.GuestAssertions.check;
+import static com.lewigh.xsjvm.engine.runtime.Bytecodes.LOOKUPSWITCH;
+import static com.lewigh.xsjvm.engine.runtime.Bytecodes.TABLESWITCH;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ExecutionEngineTest {
+
+    @Test
+    void tableSwitchIndexesTableWithinBounds() {
+        // tableswitch default 100, low -1, high 2, targets 10, 11, 12, 13 at index 5
+        int[] code = {0, 0, 0, 0, 0, TABLESWITCH, 100, -1, 2, 10, 11, 12, 13};
+
+        assertEquals(10, ExecutionEngine.tableSwitch(code, 5, -1));
+        assertEquals(11, ExecutionEngine.tableSwitch(code, 5, 0));
+        assertEquals(13, ExecutionEngine.tableSwitch(code, 5, 2));
+        assertEquals(100, ExecutionEngine.tableSwitch(code, 5, -2));
+        assertEquals(100, ExecutionEngine.tableSwitch(code, 5, 3));
+        assertEquals(100, ExecutionEngine.tableSwitch(code, 5, Integer.MIN_VALUE));
+        assertEquals(100, ExecutionEngine.tableSwitch(code, 5, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void lookupSwitchSearchesSortedKeys() {
+        // lookupswitch default 100, pairs -50:10, -1:11, 7:12, 1000:13
+        int[] code = {LOOKUPSWITCH, 100, 4, -50, 10, -1, 11, 7, 12, 1000, 13};
+
+        assertEquals(10, ExecutionEngine.lookupSwitch(code, 0, -50));
+        assertEquals(11, ExecutionEngine.lookupSwitch(code, 0, -1));
+        assertEquals(12, ExecutionEngine.lookupSwitch(code, 0, 7));
+        assertEquals(13, ExecutionEngine.lookupSwitch(code, 0, 1000));
+        assertEquals(100, ExecutionEngine.lookupSwitch(code, 0, 0));
+        assertEquals(100, ExecutionEngine.lookupSwitch(code, 0, -51));
+        assertEquals(100, ExecutionEngine.lookupSwitch(code, 0, 1001));
+    }
+
+    @Test
+    void emptyLookupSwitchTakesDefault() {
+        int[] code = {LOOKUPSWITCH, 100, 0};
+
+        assertEquals(100, ExecutionEngine.lookupSwitch(code, 0, 0));
+        assertEquals(100, ExecutionEngine.lookupSwitch(code, 0, -1));
+    }
+
+    @Test
+    void guestSwitchesOnStringsAndEnums() {
+        GuestVm.run(Switches.class);
+    }
+
+    @Test
+    void exceptionThrownThroughNativeCallbackReachesGuestHandler() {
+        GuestVm.run(ThrowingPrivilegedAction.class);
+    }
+
+    @Test
+    void exceptionEscapingClassInitializerIsThrownByTriggeringInstruction() {
+        GuestVm.run(FailingInitializer.class);
+    }
+
+    @Test
+    void arrayTypeChecksCompareElementClasses() {
+        GuestVm.run(ArrayTypeChecks.class);
+    }
+
+    @SuppressWarnings("removal")
+    static class ThrowingPrivilegedAction {
+
+        public static void main(String[] args) {
+            boolean caught = false;
+            try {
+                AccessController.doPrivileged((PrivilegedAction<Object>) () -> {
+                    throw new IllegalStateException();
+                });
+            } catch (IllegalStateException e) {
+                caught = true;
+            }
+            if (!caught) {
+                throw new AssertionError();
+            }
+        }
+    }
+
+    static class ArrayTypeChecks {
+
+        public static void main(String[] args) {
+            Object strings = new String[1];
+            Object objects = new Object[1];
+            Object ints = new int[1];
+
+            check(strings instanceof String[]);
+            check(strings instanceof Object[]);
+            check(strings instanceof CharSequence[]);
+            check(!(strings instanceof Integer[]));
+            check(!(objects instanceof String[]));
+            check(!(ints instanceof Object[]));
+            check(ints instanceof int[]);
+            check(!(ints instanceof long[]));
+
+            boolean thrown = false;
+            try {
+                Integer[] integers = (Integer[]) strings;
+            } catch (ClassCastException e) {
+                thrown = true;
+            }
+            check(thrown);
+        }
+    }
+
+    static class FailingInitializer {
+
+        public static void main(String[] args) {
+            Throwable first = null;
+            try {
+                read();
+            } catch (Throwable e) {
+                first = e;
+            }
+            check(first instanceof ExceptionInInitializerError);
+            check(first.getCause() instanceof IllegalStateException);
+
+            Throwable second = null;
+            try {
+                second = new Throwable(String.valueOf(Failing.value));
+            } catch (Throwable e) {
+                second = e;
+            }
+            check(second instanceof NoClassDefFoundError);
+
+            boolean errorThrownAsIs = false;
+            try {
+                errorThrownAsIs = FailingWithError.value < 0;
+            } catch (InternalError e) {
+                errorThrownAsIs = true;
+            }
+            check(errorThrownAsIs);
+        }
+
+        /**
+         * Triggers the initializer by its first instruction.
+         */
+        static int read() {
+            return Failing.value;
+        }
+    }
+
+    static class Failing {
+
+        static int value = compute();
+
+        static int compute() {
+            throw new IllegalStateException();
+        }
+    }
+
+    static class FailingWithError {
+
+        static int value = compute();
+
+        static int compute() {
+            throw new InternalError();
+        }
+    }
+
+    static class Switches {
+
+        public static void main(String[] args) {
+            check(dense(-1) == 1 && dense(0) == 2 && dense(2) == 4 && dense(3) == 0 && dense(-5) == 0);
+            check(sparse(-1000) == 1 && sparse(7) == 2 && sparse(100_000) == 3 && sparse(8) == 0);
+
+            check(command("start") == 1 && command("stop") == 2 && command("pause") == 0);
+            // "Aa" and "BB" share their hash code
+            check(command("Aa") == 3 && command("BB") == 4);
+
+            check(retention(RetentionPolicy.SOURCE) == 1 && retention(RetentionPolicy.RUNTIME) == 3);
+            check(retention(RetentionPolicy.CLASS) == 2);
+        }
+
+        static int dense(int key) {
+            switch (key) {
+                case -1: return 1;
+                case 0: return 2;
+                case 1: return 3;
+                case 2: return 4;
+                default: return 0;
+            }
+        }
+
+        static int sparse(int key) {
+            switch (key) {
+                case -1000: return 1;
+                case 7: return 2;
+                case 100_000: return 3;
+                default: return 0;
+            }
+        }
+
+        static int command(String name) {
+            switch (name) {
+                case "start": return 1;
+                case "stop": return 2;
+                case "Aa": return 3;
+                case "BB": return 4;
+                default: return 0;
+            }
+        }
+
+        static int retention(RetentionPolicy policy) {
+            switch (policy) {
+                case SOURCE: return 1;
+                case CLASS: return 2;
+                case RUNTIME: return 3;
+                default: return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.lewigh.xsjvm.engine;
+
+import com.lewigh.xsjvm.engine.runtime.ImplicitException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.lewigh.xsjvm.engine.GuestAssertions.check;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FastThrowTest {
+
+    private static final int THRESHOLD = 10;
+    private static final int THROWS = 25;
+
+    private static void run(Class<?> mainClass, FastThrow fastThrow) {
+        new ExecutionEngine(GuestVm.classLoader(), GuestVm.memoryManager(), fastThrow)
+                .execute(GuestVm.internalName(mainClass));
+    }
+
+    private static List<FastThrow.Site> sitesOf(FastThrow fastThrow, Class<?> klass) {
+        return fastThrow.switchedSites().stream()
+                .filter(site -> site.className().equals(GuestVm.internalName(klass)))
+                .toList();
+    }
+
+    @Test
+    void hotThrowSiteSwitchesToPreallocatedException() {
+        var fastThrow = new FastThrow(true, THRESHOLD);
+
+        run(Switched.class, fastThrow);
+
+        assertEquals(THRESHOLD, fastThrow.created(ImplicitException.Kind.NULL_POINTER));
+        assertEquals(THROWS - THRESHOLD, fastThrow.reused(ImplicitException.Kind.NULL_POINTER));
+        List<FastThrow.Site> sites = sitesOf(fastThrow, Throwing.class);
+        assertEquals(1, sites.size());
+        assertEquals("length", sites.get(0).methodName());
+        assertEquals(ImplicitException.Kind.NULL_POINTER, sites.get(0).kind());
+    }
+
+    @Test
+    void disabledFastThrowCreatesEveryException() {
+        var fastThrow = new FastThrow(false, THRESHOLD);
+
+        run(NotSwitched.class, fastThrow);
+
+        assertEquals(THROWS, fastThrow.created(ImplicitException.Kind.NULL_POINTER));
+        assertEquals(0, fastThrow.reused(ImplicitException.Kind.NULL_POINTER));
+        assertTrue(sitesOf(fastThrow, Throwing.class).isEmpty());
+    }
+
+    static class Throwing {
+
+        /**
+         * Throws {@code count} null pointer exceptions at the same instruction and returns them as they were caught.
+         */
+        static Object[] throwAll(int count) {
+            Object[] caught = new Object[count];
+            int caughtCount = 0;
+            for (int i = 0; i < count; i++) {
+                try {
+                    length(null);
+                } catch (NullPointerException e) {
+                    caught[caughtCount++] = e;
+                }
+            }
+            check(caughtCount == count);
+            return caught;
+        }
+
+        static int length(String value) {
+            return value.length();
+        }
+    }
+
+    static class Switched {
+
+        public static void main(String[] args) {
+            Object[] caught = Throwing.throwAll(THROWS);
+
+            check(caught[0] != caught[1]);
+            check(caught[THRESHOLD - 1] != caught[THRESHOLD]);
+            check(caught[THRESHOLD] == caught[THROWS - 1]);
+        }
+    }
+
+    static class NotSwitched {
+
+        public static void main(String[] args) {
+            Object[] caught = Throwing.throwAll(THROWS);
+
+            check(caught[THROWS - 2] != caught[THROWS - 1]);
+        }
+    }
+}
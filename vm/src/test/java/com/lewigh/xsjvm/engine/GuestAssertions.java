@@ -0,0 +1,17 @@
+package com.lewigh.xsjvm.engine;
+
+/**
+ * Checks made by guest programs, see {@link GuestVm}. A failed check throws, which the engine turns into an uncaught
+ * exception of the test.
+ */
+public final class GuestAssertions {
+
+    private GuestAssertions() {
+    }
+
+    public static void check(boolean condition) {
+        if (!condition) {
+            throw new AssertionError();
+        }
+    }
+}
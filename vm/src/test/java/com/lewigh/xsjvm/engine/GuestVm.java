@@ -0,0 +1,94 @@
+package com.lewigh.xsjvm.engine;
+
+import com.lewigh.xsjvm.classloader.AppClassLoader;
+import com.lewigh.xsjvm.classloader.ClassStorage;
+import com.lewigh.xsjvm.classloader.reader.ClassReader;
+import com.lewigh.xsjvm.mem.StandartVmMemoryManager;
+import com.lewigh.xsjvm.mem.UnsafeMemoryAllocator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Runs guest code in tests. The runtime classes are the {@code java.base} module of the host JDK, copied out of the
+ * {@code jrt:/} file system into {@code target/guest-runtime} once, the application classes are the test classes.
+ * A guest program reports a failed check by throwing, which the engine turns into an uncaught exception.
+ */
+public final class GuestVm {
+
+    private static final Path RUNTIME = Path.of("target", "guest-runtime");
+
+    private static List<Path> classPath;
+
+    private GuestVm() {
+    }
+
+    /**
+     * Runs the {@code main} method of the guest class.
+     */
+    public static void run(Class<?> mainClass) {
+        new ExecutionEngine(classLoader(), memoryManager()).execute(internalName(mainClass));
+    }
+
+    public static AppClassLoader classLoader() {
+        return new AppClassLoader(classPath(), new ClassReader(), new ClassStorage());
+    }
+
+    public static StandartVmMemoryManager memoryManager() {
+        return new StandartVmMemoryManager(UnsafeMemoryAllocator.create());
+    }
+
+    public static String internalName(Class<?> klass) {
+        return klass.getName().replace('.', '/');
+    }
+
+    private static synchronized List<Path> classPath() {
+        if (classPath == null) {
+            try {
+                Path testClasses = Path.of(GuestVm.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+                classPath = Stream.concat(files(runtime()), files(testClasses)).toList();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (URISyntaxException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return classPath;
+    }
+
+    private static Path runtime() throws IOException {
+        if (Files.isDirectory(RUNTIME)) {
+            return RUNTIME;
+        }
+
+        Path modules = FileSystems.getFileSystem(URI.create("jrt:/")).getPath("/modules", "java.base");
+        Path copy = Files.createTempDirectory(RUNTIME.getParent(), "guest-runtime");
+        try (Stream<Path> entries = Files.walk(modules)) {
+            for (Path entry : (Iterable<Path>) entries::iterator) {
+                Path target = copy.resolve(modules.relativize(entry).toString());
+                if (Files.isDirectory(entry)) {
+                    Files.createDirectories(target);
+                } else {
+                    Files.copy(entry, target);
+                }
+            }
+        }
+        // a runtime copied only in part is never picked up
+        Files.move(copy, RUNTIME, StandardCopyOption.ATOMIC_MOVE);
+        return RUNTIME;
+    }
+
+    private static Stream<Path> files(Path directory) throws IOException {
+        try (Stream<Path> files = Files.find(directory, 20, (path, attributes) -> attributes.isRegularFile())) {
+            return files.toList().stream();
+        }
+    }
+}
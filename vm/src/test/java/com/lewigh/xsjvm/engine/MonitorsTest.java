@@ -0,0 +1,78 @@
+package com.lewigh.xsjvm.engine;
+
+import com.lewigh.xsjvm.engine.runtime.ImplicitException;
+import com.lewigh.xsjvm.mem.ByteBufferMemoryAllocator;
+import com.lewigh.xsjvm.mem.StandartVmMemoryManager;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MonitorsTest {
+
+    private final StandartVmMemoryManager memoryManager = new StandartVmMemoryManager(ByteBufferMemoryAllocator.create(1 << 12));
+    private final Monitors monitors = new Monitors(memoryManager, new GreenScheduler(thread -> true), new Safepoints());
+    private final VmThread thread = VmThread.main();
+    private final long object = memoryManager.allocateObject(1, List.of(), 8);
+
+    @Test
+    void uncontendedLockStaysInTheMarkWord() {
+        assertEquals(0, memoryManager.getMarkWord(object));
+
+        assertTrue(monitors.enter(thread, object));
+        assertTrue(monitors.enter(thread, object));
+        assertTrue(monitors.holds(thread, object));
+        assertNotEquals(0, memoryManager.getMarkWord(object));
+
+        monitors.exit(thread, object);
+        assertTrue(monitors.holds(thread, object));
+        monitors.exit(thread, object);
+
+        assertFalse(monitors.holds(thread, object));
+        assertEquals(0, memoryManager.getMarkWord(object));
+    }
+
+    @Test
+    void deepReentryInflatesAndReleaseDeflates() {
+        for (int i = 0; i < 100; i++) {
+            monitors.enter(thread, object);
+        }
+        for (int i = 0; i < 99; i++) {
+            monitors.exit(thread, object);
+        }
+        assertTrue(monitors.holds(thread, object));
+
+        monitors.exit(thread, object);
+        assertFalse(monitors.holds(thread, object));
+        assertEquals(0, memoryManager.getMarkWord(object));
+    }
+
+    @Test
+    void threadWhichDoesNotOwnTheMonitorFails() {
+        var other = VmThread.of(2, false);
+        monitors.enter(thread, object);
+
+        var e = assertThrows(ImplicitException.class, () -> monitors.exit(other, object));
+        assertEquals(ImplicitException.Kind.ILLEGAL_MONITOR_STATE, e.getKind());
+        assertThrows(ImplicitException.class, () -> monitors.signal(other, object, true));
+        assertFalse(monitors.holds(other, object));
+    }
+
+    @Test
+    void timedWaitReturnsOwningTheMonitor() {
+        monitors.enter(thread, object);
+        monitors.enter(thread, object);
+
+        monitors.await(thread, object, 1);
+
+        assertTrue(monitors.holds(thread, object));
+        monitors.exit(thread, object);
+        monitors.exit(thread, object);
+        assertEquals(0, memoryManager.getMarkWord(object));
+    }
+}
@@ -0,0 +1,16 @@
+package com.lewigh.xsjvm.engine;
+
+/**
+ * Guest class whose package-private method a subclass in another package can not override, see
+ * {@code AppClassLoaderTest}.
+ */
+public class PackagePrivateMethod {
+
+    int id() {
+        return 1;
+    }
+
+    public int callId() {
+        return id();
+    }
+}
@@ -0,0 +1,135 @@
+package com.lewigh.xsjvm.engine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SafepointsTest {
+
+    private final Safepoints safepoints = new Safepoints();
+    private final VmThread thread = VmThread.of(1, false);
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    private final AtomicLong progress = new AtomicLong();
+    private Thread host;
+
+    @AfterEach
+    void stopThread() throws InterruptedException {
+        running.set(false);
+        if (host != null) {
+            host.join();
+        }
+    }
+
+    /**
+     * Runs the thread on a host thread which polls like the interpreter does on its backward branches.
+     */
+    private void startPolling() {
+        safepoints.attach(thread);
+        host = new Thread(() -> {
+            safepoints.resume(thread);
+            while (running.get()) {
+                progress.incrementAndGet();
+                if (safepoints.isArmed()) {
+                    safepoints.poll(thread);
+                }
+            }
+            safepoints.detach(thread);
+        });
+        host.start();
+        while (progress.get() == 0) {
+            Thread.onSpinWait();
+        }
+    }
+
+    @Test
+    void runningThreadRunsItsHandshakeItself() {
+        startPolling();
+        var runner = new AtomicReference<Thread>();
+
+        assertTrue(safepoints.handshake(null, thread, target -> runner.set(Thread.currentThread())));
+
+        assertSame(host, runner.get());
+        assertFalse(safepoints.isArmed());
+    }
+
+    @Test
+    void requesterRunsTheHandshakeOfSafeThread() {
+        safepoints.attach(thread);
+        var runner = new AtomicReference<Thread>();
+
+        assertTrue(safepoints.handshake(null, thread, target -> runner.set(Thread.currentThread())));
+
+        assertSame(Thread.currentThread(), runner.get());
+        assertEquals(1, safepoints.statistics().handshakes());
+    }
+
+    @Test
+    void handshakeOfTerminatedThreadIsSkipped() {
+        safepoints.attach(thread);
+        safepoints.detach(thread);
+
+        assertFalse(safepoints.handshake(null, thread, target -> {
+        }));
+        assertEquals(0, safepoints.handshakeAll(null, target -> {
+        }));
+    }
+
+    @Test
+    void safepointOperationRunsWhileEveryThreadIsStopped() {
+        startPolling();
+        var stopped = new AtomicBoolean();
+
+        safepoints.synchronize(null, () -> {
+            long before = progress.get();
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            stopped.set(progress.get() == before && host.getState() == Thread.State.WAITING);
+        });
+
+        assertTrue(stopped.get());
+        var statistics = safepoints.statistics();
+        assertEquals(1, statistics.safepoints());
+        assertTrue(statistics.timeToSafepoint() <= statistics.pause());
+        assertEquals(statistics.timeToSafepoint(), statistics.maxTimeToSafepoint());
+    }
+
+    @Test
+    void blockedThreadDoesNotDelayTheSafepoint() throws InterruptedException {
+        safepoints.attach(thread);
+        safepoints.resume(thread);
+        var release = new Object();
+        host = new Thread(() -> safepoints.block(thread, () -> {
+            synchronized (release) {
+                while (running.get()) {
+                    try {
+                        release.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }));
+        host.start();
+
+        safepoints.synchronize(null, () -> {
+        });
+
+        synchronized (release) {
+            running.set(false);
+            release.notifyAll();
+        }
+        host.join();
+        assertEquals(1, safepoints.statistics().safepoints());
+    }
+}
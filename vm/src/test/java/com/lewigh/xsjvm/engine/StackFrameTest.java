@@ -0,0 +1,146 @@
+package com.lewigh.xsjvm.engine;
+
+import com.lewigh.xsjvm.engine.runtime.KlassDesc;
+import com.lewigh.xsjvm.engine.runtime.MethodDesc;
+import com.lewigh.xsjvm.engine.runtime.Value;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.lewigh.xsjvm.engine.GuestAssertions.check;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StackFrameTest {
+
+    private static final long REF = 0x7f00_0000_1000L;
+    private static final long OTHER_REF = 0x7f00_0000_2000L;
+
+    private final KlassDesc klass = GuestVm.classLoader().load(GuestVm.internalName(WideLocals.class));
+    private final MethodDesc mix = klass.findMethod("mix", "(IJLjava/lang/Object;D)D", InvokeType.STATIC);
+    private final MethodDesc main = klass.findMethod("main", "([Ljava/lang/String;)V", InvokeType.STATIC);
+
+    private static List<Long> references(StackFrame frame) {
+        List<Long> references = new ArrayList<>();
+        frame.visitReferences(references::add);
+        return references;
+    }
+
+    @Test
+    void wideArgumentsTakeTwoLocals() {
+        long[] args = {7, -3L, REF, Double.doubleToRawLongBits(2.5)};
+
+        StackFrame frame = StackFrame.create(klass, mix, args);
+
+        long[] locals = frame.getLocals();
+        assertEquals(7, locals[0]);
+        assertEquals(-3L, locals[1]);
+        assertEquals(REF, locals[3]);
+        assertEquals(2.5, Double.longBitsToDouble(locals[4]));
+        assertArrayEquals(new Value[]{new Value.Int(7), new Value.Long(-3), Value.Ref.from(REF), new Value.Double(2.5)},
+                frame.getParameters());
+    }
+
+    @Test
+    void forkedCallKeepsWideArgumentsInPlace() {
+        StackFrame caller = StackFrame.create(klass, main);
+        caller.pushInt(7);
+        caller.pushLong(Long.MIN_VALUE);
+        caller.pushRef(REF);
+        caller.pushDouble(-0.0);
+
+        StackFrame callee = caller.fork(klass, mix);
+
+        assertTrue(caller.isStackEmpty());
+        assertEquals(7, callee.loadInt(0));
+        assertEquals(Long.MIN_VALUE, callee.getLocals()[1]);
+        assertEquals(REF, callee.loadRef(3));
+        assertEquals(Double.doubleToRawLongBits(-0.0), callee.getLocals()[4]);
+        assertEquals(List.of(REF), references(callee));
+    }
+
+    @Test
+    void referencesAreFoundByTheirTags() {
+        StackFrame frame = StackFrame.create(klass, mix, new long[]{0, REF, OTHER_REF, 0});
+        // a long whose bits look like an address is no reference
+        assertEquals(List.of(OTHER_REF), references(frame));
+
+        frame.pushRef(REF);
+        frame.pushRef(0);
+        assertEquals(List.of(OTHER_REF, REF), references(frame));
+
+        frame.drop();
+        frame.pushLong(OTHER_REF);
+        // a long stored over the reference local replaces it
+        frame.store(3);
+        assertEquals(List.of(REF), references(frame));
+    }
+
+    @Test
+    void wideStackValuesTakeOneSlot() {
+        StackFrame frame = StackFrame.create(klass, main);
+        frame.pushInt(1);
+        frame.pushLong(2);
+
+        frame.dup2();
+        assertEquals(2, frame.popLong());
+        assertEquals(2, frame.popLong());
+
+        frame.pushDouble(3.0);
+        frame.drop2();
+        assertEquals(1, frame.popInt());
+        assertTrue(frame.isStackEmpty());
+    }
+
+    @Test
+    void guestMixesWideAndNarrowLocals() {
+        GuestVm.run(WideLocals.class);
+    }
+
+    static class WideLocals {
+
+        public static void main(String[] args) {
+            Object marker = new Object();
+
+            check(mix(3, 1L << 40, marker, 0.5) == 3 + (1L << 40) + 0.5);
+            check(swap(Long.MAX_VALUE, Double.MIN_VALUE, marker) == marker);
+
+            long total = 0;
+            double scale = 1.5;
+            String text = "x";
+            for (int i = 0; i < 4; i++) {
+                long square = (long) i * i;
+                total += square;
+                scale *= 2;
+                text = text + i;
+            }
+            check(total == 14 && scale == 24.0 && text.equals("x0123"));
+        }
+
+        static double mix(int a, long b, Object c, double d) {
+            check(c != null);
+            return a + b + d;
+        }
+
+        /**
+         * Reuses the locals of a long and a double for other types.
+         */
+        static Object swap(long wide, double wider, Object reference) {
+            long copy = wide;
+            double doubleCopy = wider;
+            check(copy == Long.MAX_VALUE && doubleCopy == Double.MIN_VALUE);
+            {
+                int first = (int) (copy >>> 32);
+                Object second = reference;
+                check(first == Integer.MAX_VALUE && second == reference);
+            }
+            {
+                float third = (float) doubleCopy;
+                check(third == 0.0f);
+            }
+            return reference;
+        }
+    }
+}
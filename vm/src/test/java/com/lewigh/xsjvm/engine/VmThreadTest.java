@@ -0,0 +1,121 @@
+package com.lewigh.xsjvm.engine;
+
+import org.junit.jupiter.api.Test;
+
+import static com.lewigh.xsjvm.engine.GuestAssertions.check;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VmThreadTest {
+
+    @Test
+    void wakeUpBeforeTheSliceEndsKeepsTheThreadRunnable() {
+        var thread = VmThread.green(1, false, new ThreadStack());
+
+        long ticket = thread.requestPark();
+        assertTrue(thread.isParkRequested());
+        assertFalse(thread.unpark(ticket));
+
+        assertFalse(thread.park());
+        assertFalse(thread.isParkRequested());
+    }
+
+    @Test
+    void staleWakeUpIsIgnored() {
+        var thread = VmThread.green(1, false, new ThreadStack());
+
+        long first = thread.requestPark();
+        assertTrue(thread.park());
+        assertTrue(thread.unpark(first));
+
+        long second = thread.requestPark();
+        assertTrue(thread.park());
+        assertFalse(thread.unpark(first));
+        assertTrue(thread.unpark(second));
+        assertFalse(thread.unpark(second));
+    }
+
+    @Test
+    void nestedCallsCannotPark() {
+        var thread = VmThread.green(1, false, new ThreadStack());
+
+        thread.enterStack(new ThreadStack());
+        assertFalse(thread.canPark());
+        thread.exitStack();
+        assertTrue(thread.canPark());
+        assertFalse(VmThread.main().canPark());
+    }
+
+    @Test
+    void threadsHaveDistinctPositiveIds() {
+        var first = VmThread.of(1, false);
+        var second = VmThread.main();
+
+        assertTrue(first.id() > 0);
+        assertNotEquals(first.id(), second.id());
+    }
+
+    @Test
+    void quantumRequestsYieldOnlyWhenPreemptible() {
+        var stack = new ThreadStack();
+        assertFalse(stack.tick());
+
+        stack.setQuantum(3);
+        assertFalse(stack.tick());
+        assertFalse(stack.tick());
+        assertTrue(stack.tick());
+        assertTrue(stack.takeYieldRequest());
+        assertFalse(stack.takeYieldRequest());
+    }
+
+    @Test
+    void joinedGuestThreadsLeaveTheirWritesVisible() {
+        GuestVm.run(StartAndJoin.class);
+    }
+
+    static class StartAndJoin {
+
+        static long total;
+
+        public static void main(String[] args) throws InterruptedException {
+            int[] written = new int[1];
+            Thread child = new Thread(() -> written[0] = 42);
+
+            child.start();
+            child.join();
+            check(written[0] == 42);
+            check(!child.isAlive());
+
+            Thread[] workers = new Thread[4];
+            for (int i = 0; i < workers.length; i++) {
+                long part = i + 1;
+                workers[i] = new Thread(() -> {
+                    synchronized (StartAndJoin.class) {
+                        total += part;
+                    }
+                });
+                workers[i].start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            check(total == 1 + 2 + 3 + 4);
+
+            // a child which starts and joins a grandchild of its own
+            String[] message = new String[1];
+            Thread parent = new Thread(() -> {
+                Thread grandchild = new Thread(() -> message[0] = "from grandchild");
+                grandchild.start();
+                try {
+                    grandchild.join();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            parent.start();
+            parent.join();
+            check("from grandchild".equals(message[0]));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.lewigh.xsjvm.engine.indy;
+
+import com.lewigh.xsjvm.classloader.BytecodeDecoder;
+import com.lewigh.xsjvm.classloader.reader.info.attribute.CodeAttribute;
+import com.lewigh.xsjvm.classloader.reader.info.attribute.OpCode;
+import com.lewigh.xsjvm.classloader.reader.pool.Constant;
+import com.lewigh.xsjvm.classloader.reader.resolvers.DescriptorResolver;
+import org.junit.jupiter.api.Test;
+
+import static com.lewigh.xsjvm.engine.runtime.Bytecodes.*;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ClassSpinnerTest {
+
+    @Test
+    void spunCodeDecodesLikeReadCode() {
+        var spinner = new ClassSpinner("t/Lambda", "java/lang/Object", new String[]{"java/util/function/IntSupplier"});
+        spinner.addField(0x12, "arg$1", "I");
+
+        short field = spinner.fieldRef("t/Lambda", "arg$1", "I");
+        short method = spinner.methodRef("t/Owner", "lambda$0", "(I)I", false);
+        spinner.addMethod(0x11, "getAsInt", "()I")
+                .op(OpCode.ALOAD, 0)
+                .op(OpCode.GETFIELD, field)
+                .op(OpCode.INVOKESTATIC, method)
+                .op(OpCode.IRETURN)
+                .end(2, 1);
+
+        var classFile = spinner.toClassFile();
+        var code = (CodeAttribute) classFile.methods()[0].attributes()[0];
+
+        assertEquals(9, code.codeLength());
+        assertArrayEquals(new int[]{
+                ALOAD, 0,
+                GETFIELD, field, 0, 0,
+                INVOKESTATIC, method,
+                IRETURN
+        }, BytecodeDecoder.decode(code.code(), code.codeLength()).code());
+
+        var pool = classFile.constantPool();
+        var ref = (Constant.MethodRefInfo) pool.get(method);
+        assertEquals("t/Owner", pool.resolveClassRef(ref.classIndex()));
+        assertEquals(field, spinner.fieldRef("t/Lambda", "arg$1", "I"));
+    }
+
+    @Test
+    void descriptorsRoundTrip() {
+        String descriptor = "(IJ[Ljava/lang/String;[[D)Ljava/util/List;";
+        var type = DescriptorResolver.resolveMethodDescriptor(descriptor);
+
+        assertEquals(descriptor, ClassSpinner.descriptor(type.paarameterTypes(), type.returnType()));
+    }
+}
@@ -0,0 +1,61 @@
+package com.lewigh.xsjvm.engine.indy;
+
+import com.lewigh.xsjvm.engine.GuestVm;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.lewigh.xsjvm.engine.GuestAssertions.check;
+
+class LambdasTest {
+
+    @Test
+    void guestLambdasCaptureTheirArguments() {
+        GuestVm.run(Captures.class);
+    }
+
+    @Test
+    void guestStreamPipelinesRun() {
+        GuestVm.run(Pipelines.class);
+    }
+
+    static class Captures {
+
+        private final int base = 40;
+
+        public static void main(String[] args) {
+            int two = 2;
+            IntSupplier captured = () -> two;
+            IntSupplier bound = new Captures()::answer;
+
+            check(captured.getAsInt() == 2);
+            check(bound.getAsInt() == 42);
+        }
+
+        int answer() {
+            return base + 2;
+        }
+    }
+
+    static class Pipelines {
+
+        public static void main(String[] args) {
+            check(IntStream.range(0, 10).sum() == 45);
+            check(IntStream.range(0, 100).filter(i -> i % 3 == 0).map(i -> i * i).sum() == 112761);
+            check(IntStream.rangeClosed(1, 5).reduce(1, (a, b) -> a * b) == 120);
+            check(Arrays.stream(new int[]{4, 9, 2}).max().getAsInt() == 9);
+
+            check(Stream.of("a", "bb", "ccc").mapToInt(String::length).sum() == 6);
+            check(List.of(1, 2, 3, 4).stream().filter(i -> i % 2 == 0).count() == 2);
+            check(Stream.of(3, 1, 2).sorted().findFirst().get() == 1);
+
+            List<String> marked = Stream.of("x", "y").map(s -> s + "!").collect(Collectors.toList());
+            check(marked.equals(List.of("x!", "y!")));
+        }
+    }
+}
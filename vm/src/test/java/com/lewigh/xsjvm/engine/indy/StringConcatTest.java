@@ -0,0 +1,68 @@
+package com.lewigh.xsjvm.engine.indy;
+
+import com.lewigh.xsjvm.engine.GuestVm;
+import org.junit.jupiter.api.Test;
+
+import static com.lewigh.xsjvm.engine.GuestAssertions.check;
+
+class StringConcatTest {
+
+    @Test
+    void guestConcatFormatsEveryArgumentType() {
+        GuestVm.run(Concat.class);
+    }
+
+    @Test
+    void guestConcatWidensToUtf16() {
+        GuestVm.run(Utf16Concat.class);
+    }
+
+    static class Concat {
+
+        public static void main(String[] args) {
+            char c = 'x';
+            String nullString = null;
+            Object nullObject = null;
+            long min = Long.MIN_VALUE;
+            double d = 0.1;
+
+            check(("c=" + c).equals("c=x"));
+            check(("" + nullString + '|' + nullObject).equals("null|null"));
+            check(("long " + min + ", " + -1L).equals("long -9223372036854775808, -1"));
+            check((d + "; " + -0.0 + "; " + 1e20 + "; " + Double.NaN).equals("0.1; -0.0; 1.0E20; NaN"));
+            check((1.5f + "/" + true + "/" + (byte) -1 + "/" + (short) 7).equals("1.5/true/-1/7"));
+            check(("[" + new Point(3, -4) + "]").equals("[(3, -4)]"));
+            // constants which collide with the tags of the recipe
+            check(("\u0001" + c + "\u0002").equals("\u0001x\u0002"));
+        }
+    }
+
+    static class Utf16Concat {
+
+        public static void main(String[] args) {
+            int n = 3;
+            char omega = '\u03A9';
+
+            String constantText = "\u20AC" + n;
+            check(constantText.length() == 2 && constantText.charAt(0) == '\u20AC' && constantText.charAt(1) == '3');
+            check(constantText.equals("\u20AC3"));
+
+            String argument = "n=" + omega + n;
+            check(argument.equals("n=\u03A93"));
+
+            String latin1 = "caf\u00E9 " + n;
+            check(latin1.equals("caf\u00E9 3"));
+
+            String mixed = argument + "/" + latin1;
+            check(mixed.equals("n=\u03A93/caf\u00E9 3") && mixed.charAt(8) == '\u00E9');
+        }
+    }
+
+    record Point(int x, int y) {
+
+        @Override
+        public String toString() {
+            return "(" + x + ", " + y + ")";
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.lewigh.xsjvm.engine.jit;
+
+import com.lewigh.xsjvm.classloader.AppClassLoader;
+import com.lewigh.xsjvm.engine.GuestVm;
+import com.lewigh.xsjvm.engine.InvokeType;
+import com.lewigh.xsjvm.engine.StackFrame;
+import com.lewigh.xsjvm.engine.runtime.Bytecodes;
+import com.lewigh.xsjvm.engine.runtime.ImplicitException;
+import com.lewigh.xsjvm.engine.runtime.KlassDesc;
+import com.lewigh.xsjvm.engine.runtime.MethodDesc;
+import lombok.NonNull;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JitCompilerTest {
+
+    private final AppClassLoader classLoader = GuestVm.classLoader();
+    private final JitCompiler jit = new JitCompiler();
+    private final JitRuntime runtime = new JitRuntime(GuestVm.memoryManager(), classLoader, new JitRuntime.Host() {
+        @Override
+        public long call(@NonNull KlassDesc klass, @NonNull MethodDesc method, long[] args) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long allocate(@NonNull KlassDesc klass) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void poll() {
+        }
+    });
+    private final KlassDesc klass = classLoader.load(GuestVm.internalName(Guest.class));
+
+    /**
+     * Invokes the method until it gets hot, the way the interpreter counts its invocations.
+     */
+    private CompiledCode hot(MethodDesc method) {
+        CompiledCode code = null;
+        for (int i = 0; i <= JitCompiler.THRESHOLD && code == null; i++) {
+            code = jit.compiledCode(klass, method);
+        }
+        return code;
+    }
+
+    /**
+     * Takes the backward branch of the loop until it gets hot, the way the interpreter counts them.
+     */
+    private CompiledCode hotLoop(MethodDesc method, int headerIp) {
+        CompiledCode code = null;
+        for (int i = 0; i <= JitCompiler.OSR_THRESHOLD && code == null; i++) {
+            code = jit.osrCode(klass, method, headerIp);
+        }
+        return code;
+    }
+
+    private static int loopHeader(MethodDesc method) {
+        int[] code = method.code();
+        for (int ip = 0; ip < code.length; ip += Bytecodes.length(code, ip)) {
+            if (Bytecodes.isBranch(code[ip]) && code[ip + 1] <= ip) {
+                return code[ip + 1];
+            }
+        }
+        throw new IllegalArgumentException("%s has no loop".formatted(method.name()));
+    }
+
+    @Test
+    void hotMethodIsCompiled() {
+        MethodDesc method = klass.findMethod("polynomial", "(IJ)J", InvokeType.STATIC);
+
+        CompiledCode code = hot(method);
+
+        assertNotNull(code);
+        assertEquals(Guest.polynomial(7, 3), code.run(runtime, new long[]{7, 3}));
+        assertEquals(Guest.polynomial(-1, 5), code.run(runtime, new long[]{-1, 5}));
+    }
+
+    @Test
+    void uncommonTrapHandsTheFrameToTheInterpreter() {
+        MethodDesc method = klass.findMethod("trap", "(IJ)J", InvokeType.STATIC);
+        CompiledCode code = hot(method);
+
+        Deoptimization deopt = assertThrows(Deoptimization.class, () -> code.run(runtime, new long[]{3, 7}));
+        assertEquals(Bytecodes.GETSTATIC, method.code()[deopt.getIp()]);
+
+        jit.invalidate(klass, method, deopt);
+        assertNull(method.compiledCode());
+
+        StackFrame frame = StackFrame.create(klass, method);
+        frame.restore(deopt.getIp(), deopt.getTags(), deopt.getValues());
+
+        assertEquals(deopt.getIp(), frame.getIp());
+        assertEquals(21, frame.popLong());
+        assertTrue(frame.isStackEmpty());
+        assertEquals(3, frame.loadInt(0));
+        assertEquals(7, frame.getLocals()[1]);
+    }
+
+    @Test
+    void arrayTypeChecksRunWithoutTrap() {
+        MethodDesc isIntegers = klass.findMethod("isIntegers", "(Ljava/lang/Object;)Z", InvokeType.STATIC);
+        MethodDesc toIntegers = klass.findMethod("toIntegers", "(Ljava/lang/Object;)[Ljava/lang/Integer;", InvokeType.STATIC);
+        long strings = runtime.newReferenceArray(classLoader.load("java/lang/String"), 1);
+        long integers = runtime.newReferenceArray(classLoader.load("java/lang/Integer"), 1);
+
+        CompiledCode instanceOf = hot(isIntegers);
+        CompiledCode checkCast = hot(toIntegers);
+
+        assertEquals(1, instanceOf.run(runtime, new long[]{integers}));
+        assertEquals(0, instanceOf.run(runtime, new long[]{strings}));
+        assertEquals(integers, checkCast.run(runtime, new long[]{integers}));
+        var e = assertThrows(ImplicitException.class, () -> checkCast.run(runtime, new long[]{strings}));
+        assertEquals(ImplicitException.Kind.CLASS_CAST, e.getKind());
+        assertNotNull(isIntegers.compiledCode());
+        assertNotNull(toIntegers.compiledCode());
+    }
+
+    @Test
+    void hotLoopContinuesInCompiledCode() {
+        MethodDesc method = klass.findMethod("sum", "(IJ)J", InvokeType.STATIC);
+        int headerIp = loopHeader(method);
+
+        CompiledCode code = hotLoop(method, headerIp);
+
+        assertNotNull(code);
+        assertNull(method.compiledCode());
+        // n = 10, step = 3, total = 100 and i = 4 as the frame leaves them at the header
+        long[] locals = new long[method.maxLocals()];
+        locals[0] = 10;
+        locals[1] = 3;
+        locals[3] = 100;
+        locals[5] = 4;
+        assertEquals(100 + 3 * (4 + 5 + 6 + 7 + 8 + 9), code.run(runtime, locals));
+    }
+
+    @Test
+    void uncommonTrapInLoopHandsTheFrameBack() {
+        MethodDesc method = klass.findMethod("trapInLoop", "(I)J", InvokeType.STATIC);
+        int headerIp = loopHeader(method);
+        CompiledCode code = hotLoop(method, headerIp);
+
+        StackFrame frame = StackFrame.create(klass, method, new long[]{10});
+        // total = 1 and i = 2 as the frame leaves them at the header
+        long[] locals = frame.getLocals();
+        locals[1] = 1;
+        locals[3] = 2;
+
+        Deoptimization deopt = assertThrows(Deoptimization.class, () -> code.run(runtime, locals));
+        assertEquals(Bytecodes.GETSTATIC, method.code()[deopt.getIp()]);
+
+        jit.invalidateOsr(klass, method, headerIp, deopt);
+        assertNull(method.osrCode(headerIp));
+
+        frame.restore(deopt.getIp(), deopt.getTags(), deopt.getValues());
+
+        assertEquals(1 + 2 + 3 + 4, frame.popLong());
+        assertTrue(frame.isStackEmpty());
+        long[] restored = frame.getLocals();
+        assertEquals(10, restored[0]);
+        assertEquals(1 + 2 + 3 + 4, restored[1]);
+        assertEquals(5, restored[3]);
+    }
+
+    static class Guest {
+
+        static long polynomial(int x, long y) {
+            long result = 0;
+            for (int i = 0; i < x; i++) {
+                result = result * y + i;
+            }
+            return result;
+        }
+
+        /**
+         * Reads a static field of a class which is not initialized yet, that is a trap in compiled code.
+         */
+        static long trap(int x, long y) {
+            return y * x + Holder.value;
+        }
+
+        static boolean isIntegers(Object value) {
+            return value instanceof Integer[];
+        }
+
+        static Integer[] toIntegers(Object value) {
+            return (Integer[]) value;
+        }
+
+        static long sum(int n, long step) {
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                total += i * step;
+            }
+            return total;
+        }
+
+        /**
+         * Traps in the sixth iteration of the loop.
+         */
+        static long trapInLoop(int n) {
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                if (i == 5) {
+                    total += Holder.value;
+                }
+                total += i;
+            }
+            return total;
+        }
+    }
+
+    static class Holder {
+
+        static long value = 1;
+    }
+}
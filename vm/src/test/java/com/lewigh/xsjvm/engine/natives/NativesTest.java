@@ -0,0 +1,115 @@
+package com.lewigh.xsjvm.engine.natives;
+
+import com.lewigh.xsjvm.engine.GuestVm;
+import com.lewigh.xsjvm.engine.InvokeType;
+import com.lewigh.xsjvm.engine.runtime.ImplicitException;
+import com.lewigh.xsjvm.engine.runtime.KlassDesc;
+import com.lewigh.xsjvm.engine.runtime.MethodDesc;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import static com.lewigh.xsjvm.engine.GuestAssertions.check;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class NativesTest {
+
+    private static final long REF = 0x7f00_0000_1000L;
+
+    private final KlassDesc klass = GuestVm.classLoader().load(GuestVm.internalName(Declaring.class));
+    private final Natives natives = new Natives();
+
+    private static MethodHandle implementation(String name, Class<?> returnType, Class<?>... parameterTypes) {
+        try {
+            return MethodHandles.lookup().findStatic(NativesTest.class, name, MethodType.methodType(returnType, parameterTypes));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long call(MethodHandle bound, long... args) throws Throwable {
+        return (long) bound.invokeExact(args);
+    }
+
+    /**
+     * Checks the arguments arrive as they were passed, the reference as its address.
+     */
+    private static double mixed(long wide, double wider, long reference, float narrow, int small) {
+        return wide + wider + narrow + small + (reference == REF ? 1 : 0);
+    }
+
+    private static float scaled(long receiver, double factor, long value) {
+        return receiver == REF ? (float) (factor * value) : Float.NaN;
+    }
+
+    @Test
+    void staticNativeTakesMixedArguments() throws Throwable {
+        natives.register(klass.name(), "mixed", "(JDLjava/lang/Object;FI)D",
+                implementation("mixed", double.class, long.class, double.class, long.class, float.class, int.class));
+        MethodDesc method = klass.findMethod("mixed", "(JDLjava/lang/Object;FI)D", InvokeType.STATIC);
+
+        long result = call(natives.bind(klass, method),
+                1L << 40, Double.doubleToRawLongBits(0.25), REF, Float.floatToRawIntBits(-2.5f), -3);
+
+        assertEquals((1L << 40) + 0.25 - 2.5 - 3 + 1, Double.longBitsToDouble(result));
+    }
+
+    @Test
+    void instanceNativeTakesReceiverFirst() throws Throwable {
+        natives.register(klass.name(), "scaled", "(DJ)F",
+                implementation("scaled", float.class, long.class, double.class, long.class));
+        MethodDesc method = klass.findMethod("scaled", "(DJ)F", InvokeType.VIRTUAL);
+
+        long result = call(natives.bind(klass, method), REF, Double.doubleToRawLongBits(1.5), -4L);
+
+        assertEquals(-6.0f, Float.intBitsToFloat((int) result));
+    }
+
+    @Test
+    void implementationMustFollowDescriptor() {
+        natives.register(klass.name(), "mixed", "(JDLjava/lang/Object;FI)D",
+                implementation("scaled", float.class, long.class, double.class, long.class));
+        MethodDesc method = klass.findMethod("mixed", "(JDLjava/lang/Object;FI)D", InvokeType.STATIC);
+
+        assertThrows(Natives.Exception.class, () -> natives.bind(klass, method));
+    }
+
+    @Test
+    void unboundNativeThrowsUnsatisfiedLink() {
+        MethodDesc method = klass.findMethod("missing", "()I", InvokeType.STATIC);
+        MethodHandle bound = natives.bind(klass, method);
+
+        var e = assertThrows(ImplicitException.class, () -> call(bound));
+        assertSame(ImplicitException.Kind.UNSATISFIED_LINK, e.getKind());
+    }
+
+    @Test
+    void guestCatchesUnsatisfiedLink() {
+        GuestVm.run(Declaring.class);
+    }
+
+    static class Declaring {
+
+        public static void main(String[] args) {
+            boolean caught = false;
+            try {
+                missing();
+            } catch (UnsatisfiedLinkError e) {
+                caught = true;
+            }
+            check(caught);
+            // the guest is still in shape to run code after it
+            check(StrictMath.atan2(0.0, 1.0) == 0.0);
+        }
+
+        static native double mixed(long wide, double wider, Object reference, float narrow, int small);
+
+        native float scaled(double factor, long value);
+
+        static native int missing();
+    }
+}
@@ -0,0 +1,52 @@
+package com.lewigh.xsjvm.engine.runtime;
+
+import com.lewigh.xsjvm.classloader.reader.info.attribute.ExceptionTable;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ExceptionHandlersTest {
+
+    @Test
+    void candidatesKeepTableOrder() {
+        // try { try { [2, 6) } catch (A) { 10 } } catch (B) { 12 } finally { 14 }, pcs equal stream indices
+        var handlers = ExceptionHandlers.of(new ExceptionTable[]{
+                entry(2, 6, 10, 3),
+                entry(0, 8, 12, 4),
+                entry(0, 8, 14, ExceptionHandlers.ANY)
+        }, pc -> pc, 16);
+
+        assertArrayEquals(new int[]{1, 2}, handlers.candidatesAt(0));
+        assertArrayEquals(new int[]{0, 1, 2}, handlers.candidatesAt(5));
+        assertArrayEquals(new int[]{}, handlers.candidatesAt(8));
+
+        assertEquals(10, handlers.handlerIp(0));
+        assertEquals(4, handlers.catchType(1));
+        assertEquals(ExceptionHandlers.ANY, handlers.catchType(2));
+    }
+
+    @Test
+    void indicesCoveredBySameHandlersShareCandidates() {
+        var handlers = ExceptionHandlers.of(new ExceptionTable[]{
+                entry(0, 4, 6, 0)
+        }, pc -> pc, 8);
+
+        assertSame(handlers.candidatesAt(0), handlers.candidatesAt(3));
+    }
+
+    @Test
+    void indicesOutsideCodeHaveNoCandidates() {
+        var handlers = ExceptionHandlers.of(new ExceptionTable[]{
+                entry(0, 4, 6, 0)
+        }, pc -> pc, 8);
+
+        assertArrayEquals(new int[]{}, handlers.candidatesAt(-1));
+        assertArrayEquals(new int[]{}, handlers.candidatesAt(8));
+    }
+
+    private static ExceptionTable entry(int start, int end, int handler, int catchType) {
+        return new ExceptionTable((short) start, (short) end, (short) handler, (short) catchType);
+    }
+}
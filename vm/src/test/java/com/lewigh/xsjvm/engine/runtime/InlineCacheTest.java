@@ -0,0 +1,140 @@
+package com.lewigh.xsjvm.engine.runtime;
+
+import com.lewigh.xsjvm.classloader.AppClassLoader;
+import com.lewigh.xsjvm.engine.GuestVm;
+import org.junit.jupiter.api.Test;
+
+import static com.lewigh.xsjvm.engine.GuestAssertions.check;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class InlineCacheTest {
+
+    private static final String SIGNATURE = "id()I";
+
+    private final AppClassLoader classLoader = GuestVm.classLoader();
+
+    /**
+     * Calls through the cache the way the interpreter dispatches a quickened {@code invokevirtual}.
+     */
+    private static String call(InlineCache cache, KlassDesc receiverKlass, int slot) {
+        InlineCache.Target target = cache.lookup(receiverKlass.id());
+
+        if (target == null) {
+            target = InlineCache.select(receiverKlass, slot, cache.getSignature());
+            cache.update(receiverKlass.id(), target);
+        }
+        return target.klass().name();
+    }
+
+    private KlassDesc load(Class<?> klass) {
+        return classLoader.load(GuestVm.internalName(klass));
+    }
+
+    @Test
+    void callSiteGoesFromMonomorphicToMegamorphic() {
+        KlassDesc[] receivers = {load(R0.class), load(R1.class), load(R2.class), load(R3.class), load(R4.class)};
+        int slot = load(Receiver.class).methods().get(SIGNATURE).slot();
+        var cache = new InlineCache(SIGNATURE, 0, null);
+
+        assertEquals(InlineCache.State.UNINITIALIZED, cache.state());
+
+        assertEquals(receivers[0].name(), call(cache, receivers[0], slot));
+        assertEquals(InlineCache.State.MONOMORPHIC, cache.state());
+        assertEquals(receivers[0].name(), call(cache, receivers[0], slot));
+        assertEquals(1, cache.getHits());
+
+        assertEquals(receivers[1].name(), call(cache, receivers[1], slot));
+        assertEquals(InlineCache.State.POLYMORPHIC, cache.state());
+
+        for (KlassDesc receiver : receivers) {
+            assertEquals(receiver.name(), call(cache, receiver, slot));
+        }
+        assertEquals(InlineCache.State.MEGAMORPHIC, cache.state());
+
+        // the fifth class is never cached, every call selects its target again
+        assertNull(cache.lookup(receivers[4].id()));
+        assertEquals(receivers[4].name(), call(cache, receivers[4], slot));
+        assertSame(receivers[0].vtable()[slot], cache.lookup(receivers[0].id()));
+    }
+
+    @Test
+    void megamorphicGuestCallSiteCallsEveryTarget() {
+        GuestVm.run(MegamorphicCalls.class);
+    }
+
+    static class MegamorphicCalls {
+
+        public static void main(String[] args) {
+            Receiver[] receivers = {new R0(), new R1(), new R2(), new R3(), new R4(), new R5()};
+
+            for (int round = 0; round < 3; round++) {
+                for (int i = 0; i < receivers.length; i++) {
+                    check(id(receivers[i]) == i);
+                }
+            }
+            // R5 overrides the method of R4, the megamorphic site still tells them apart
+            check(id(new R5()) == 5 && id(new R4()) == 4);
+        }
+
+        static int id(Receiver receiver) {
+            return receiver.id();
+        }
+    }
+
+    static class Receiver {
+
+        int id() {
+            return -1;
+        }
+    }
+
+    static class R0 extends Receiver {
+
+        @Override
+        int id() {
+            return 0;
+        }
+    }
+
+    static class R1 extends Receiver {
+
+        @Override
+        int id() {
+            return 1;
+        }
+    }
+
+    static class R2 extends Receiver {
+
+        @Override
+        int id() {
+            return 2;
+        }
+    }
+
+    static class R3 extends Receiver {
+
+        @Override
+        int id() {
+            return 3;
+        }
+    }
+
+    static class R4 extends Receiver {
+
+        @Override
+        int id() {
+            return 4;
+        }
+    }
+
+    static class R5 extends R4 {
+
+        @Override
+        int id() {
+            return 5;
+        }
+    }
+}
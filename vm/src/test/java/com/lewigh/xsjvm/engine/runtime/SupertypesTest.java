@@ -0,0 +1,111 @@
+package com.lewigh.xsjvm.engine.runtime;
+
+import com.lewigh.xsjvm.engine.GuestVm;
+import org.junit.jupiter.api.Test;
+
+import static com.lewigh.xsjvm.engine.GuestAssertions.check;
+
+class SupertypesTest {
+
+    @Test
+    void typeChecksFindPrimaryAndSecondarySupertypes() {
+        GuestVm.run(TypeChecks.class);
+    }
+
+    @Test
+    void typeCheckSiteSeesSeveralClasses() {
+        GuestVm.run(CachedTypeChecks.class);
+    }
+
+    static class TypeChecks {
+
+        public static void main(String[] args) {
+            Object deepest = new Level5();
+
+            check(deepest instanceof Level1);
+            check(deepest instanceof Level4);
+            check(!(new Level2() instanceof Level3));
+            check(((Level1) deepest).depth() == 5);
+
+            // the interface is implemented by a superclass and reached through a superinterface
+            check(deepest instanceof Marked);
+            check(deepest instanceof Marker);
+            check(!(new Level2() instanceof Marker));
+            check(((Marker) deepest).mark() == 3);
+        }
+    }
+
+    static class CachedTypeChecks {
+
+        public static void main(String[] args) {
+            // the site keeps the class of the last object which passed
+            check(isLevel2(new Level5()) && isLevel2(new Level5()));
+            check(isLevel2(new Level3()));
+            check(!isLevel2(new Level1()));
+            check(!isLevel2("level"));
+            check(isLevel2(new Level5()));
+
+            check(isMarker(new Level3()) && isMarker(new Level4()));
+            check(!isMarker(new Level1()));
+
+            check(asLevel2(new Level5()) != null && asLevel2(new Level2()) != null);
+            boolean thrown = false;
+            try {
+                asLevel2(new Level1());
+            } catch (ClassCastException e) {
+                thrown = true;
+            }
+            check(thrown);
+            check(asLevel2(null) == null);
+        }
+
+        static boolean isLevel2(Object object) {
+            return object instanceof Level2;
+        }
+
+        static boolean isMarker(Object object) {
+            return object instanceof Marker;
+        }
+
+        static Level2 asLevel2(Object object) {
+            return (Level2) object;
+        }
+    }
+
+    interface Marker {
+
+        int mark();
+    }
+
+    interface Marked extends Marker {
+    }
+
+    static class Level1 {
+
+        int depth() {
+            return 1;
+        }
+    }
+
+    static class Level2 extends Level1 {
+    }
+
+    static class Level3 extends Level2 implements Marked {
+
+        @Override
+        public int mark() {
+            return 3;
+        }
+    }
+
+    static class Level4 extends Level3 {
+    }
+
+    static class Level5 extends Level4 {
+
+        @Override
+        int depth() {
+            return 5;
+        }
+    }
+}
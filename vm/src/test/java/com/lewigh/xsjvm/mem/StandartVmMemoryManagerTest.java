@@ -0,0 +1,117 @@
+package com.lewigh.xsjvm.mem;
+
+import com.lewigh.xsjvm.engine.runtime.Jtype;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StandartVmMemoryManagerTest {
+
+    private final StandartVmMemoryManager memoryManager = new StandartVmMemoryManager(ByteBufferMemoryAllocator.create(1 << 16));
+
+    @Test
+    void arraysKnowTheirElementType() {
+        long ints = memoryManager.allocateArray(Jtype.Primitive.INT, 3);
+        long refs = memoryManager.allocateArray(7, 2);
+
+        assertTrue(memoryManager.isArray(ints));
+        assertEquals(Jtype.Primitive.INT, memoryManager.arrayElementType(ints));
+        assertEquals(Jtype.Primitive.REFERENCE, memoryManager.arrayElementType(refs));
+        assertEquals(3, memoryManager.arrayLength(ints));
+        assertEquals(0, memoryManager.getArrayElementRaw(ints, 2, Jtype.Primitive.INT));
+    }
+
+    @Test
+    void overlappingCopyMovesElements() {
+        long array = sequence(8);
+
+        memoryManager.copyArray(array, 0, array, 2, 5);
+
+        assertEquals(List.of(0, 1, 0, 1, 2, 3, 4, 7), elements(array));
+    }
+
+    @Test
+    void fillDoublesTheFilledRange() {
+        long array = memoryManager.allocateArray(Jtype.Primitive.LONG, 11);
+
+        memoryManager.fillArray(array, 1, 10, -5);
+
+        assertEquals(0, memoryManager.getArrayElementRaw(array, 0, Jtype.Primitive.LONG));
+        for (int i = 1; i < 10; i++) {
+            assertEquals(-5, memoryManager.getArrayElementRaw(array, i, Jtype.Primitive.LONG));
+        }
+        assertEquals(0, memoryManager.getArrayElementRaw(array, 10, Jtype.Primitive.LONG));
+    }
+
+    @Test
+    void cloneCopiesElementsAndMismatchFindsTheChange() {
+        long array = sequence(20);
+        long copy = memoryManager.cloneArray(array);
+
+        assertNotEquals(array, copy);
+        assertEquals(-1, memoryManager.mismatchArrays(array, 0, copy, 0, 20));
+
+        memoryManager.setArrayElementRaw(copy, 13, Jtype.Primitive.INT, 0);
+
+        assertEquals(13, memoryManager.mismatchArrays(array, 0, copy, 0, 20));
+        assertFalse(memoryManager.isArray(memoryManager.allocateObject(1, List.of(), 8)));
+    }
+
+    @Test
+    void atomicOperationsWorkAtAnyAlignment() {
+        long aligned = memoryManager.allocateArray(Jtype.Primitive.LONG, 4) + memoryManager.arrayBaseOffset();
+
+        for (long address : new long[]{aligned, aligned + 12}) {
+            assertTrue(memoryManager.compareAndSetRaw(address, Jtype.Primitive.LONG, 0, -7));
+            assertFalse(memoryManager.compareAndSetRaw(address, Jtype.Primitive.LONG, 0, 3));
+            assertEquals(-7, memoryManager.getAndAddRaw(address, Jtype.Primitive.LONG, 10));
+            assertEquals(3, memoryManager.getRaw(address, Jtype.Primitive.LONG, AccessMode.VOLATILE));
+
+            memoryManager.putRaw(address, Jtype.Primitive.INT, Float.floatToRawIntBits(1.5f), AccessMode.ACQUIRE_RELEASE);
+            assertTrue(memoryManager.compareAndSetRaw(address, Jtype.Primitive.FLOAT, Float.floatToRawIntBits(1.5f), -1));
+            assertEquals(-1, memoryManager.getRaw(address, Jtype.Primitive.INT));
+        }
+    }
+
+    @Test
+    void concurrentAddsAreNotLost() throws InterruptedException {
+        long misaligned = memoryManager.allocateArray(Jtype.Primitive.LONG, 2) + memoryManager.arrayBaseOffset() + 2;
+        Thread[] threads = new Thread[4];
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    memoryManager.getAndAddRaw(misaligned, Jtype.Primitive.INT, 1);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(40_000, memoryManager.getRaw(misaligned, Jtype.Primitive.INT, AccessMode.OPAQUE));
+    }
+
+    private long sequence(int length) {
+        long array = memoryManager.allocateArray(Jtype.Primitive.INT, length);
+        for (int i = 0; i < length; i++) {
+            memoryManager.setArrayElementRaw(array, i, Jtype.Primitive.INT, i);
+        }
+        return array;
+    }
+
+    private List<Integer> elements(long array) {
+        List<Integer> elements = new ArrayList<>();
+        for (int i = 0; i < memoryManager.arrayLength(array); i++) {
+            elements.add((int) memoryManager.getArrayElementRaw(array, i, Jtype.Primitive.INT));
+        }
+        return elements;
+    }
+}
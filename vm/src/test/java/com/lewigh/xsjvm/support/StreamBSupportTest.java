@@ -0,0 +1,42 @@
+package com.lewigh.xsjvm.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StreamBSupportTest {
+
+    @Test
+    void readsWideAndFloatingConstants() throws IOException {
+        byte[] bytes = ByteBuffer.allocate(24)
+                .putLong(0xCBF29CE484222325L)
+                .putFloat(1.5f)
+                .putDouble(-0.1)
+                .putInt(-7)
+                .array();
+        var is = new ByteArrayInputStream(bytes);
+
+        assertEquals(0xCBF29CE484222325L, StreamBSupport.readAsLong(is));
+        assertEquals(1.5f, StreamBSupport.readAsFloat(is));
+        assertEquals(-0.1, StreamBSupport.readAsDouble(is));
+        assertEquals(-7, StreamBSupport.readAsInt(is));
+    }
+
+    @Test
+    void readsModifiedUtf8() throws IOException {
+        String text = "a\u0000\u00E9\u20AC\uD83D\uDE00";
+        var out = new ByteArrayOutputStream();
+        new DataOutputStream(out).writeUTF(text);
+        var is = new ByteArrayInputStream(out.toByteArray());
+
+        short size = StreamBSupport.readAsShort(is);
+
+        assertEquals(text, StreamBSupport.readAsString(is, size));
+    }
+}